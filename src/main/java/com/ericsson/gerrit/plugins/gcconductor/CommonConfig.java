@@ -20,6 +20,17 @@ import org.eclipse.jgit.lib.Config;
 /** Database configuration parameters. */
 public abstract class CommonConfig {
 
+  /** How the referenced loose objects of a repository are compared to the threshold. */
+  public enum LooseEvaluation {
+    /** Count all the referenced loose objects. */
+    EXACT,
+    /**
+     * Estimate the referenced loose objects from a sample of the fan-out directories, counting all
+     * of them only if the estimate is too close to the threshold.
+     */
+    SAMPLING
+  }
+
   public static final String DB_URL_KEY = "databaseUrl";
   public static final String DB_NAME_KEY = "databaseName";
   public static final String DB_URL_OPTIONS_KEY = "databaseUrlOptions";
@@ -27,7 +38,16 @@ public abstract class CommonConfig {
   public static final String DB_PASS_KEY = "password";
   public static final String PACKED_KEY = "packed";
   public static final String LOOSE_KEY = "loose";
+  public static final String LOOSE_EVALUATION_KEY = "looseEvaluation";
+  public static final String PACK_WEIGHT_KEY = "packWeight";
+  public static final String SMALL_PACK_WEIGHT_KEY = "smallPackWeight";
+  public static final String LOOSE_OBJECT_WEIGHT_KEY = "looseObjectWeight";
+  public static final String LOOSE_REF_WEIGHT_KEY = "looseRefWeight";
+  public static final String GARBAGE_WEIGHT_KEY = "garbageWeight";
+  public static final String AGE_WEIGHT_KEY = "ageWeight";
   public static final String GC_FORCE_AGGRESSIVE_KEY = "forceAggressive";
+  public static final String QUEUE_TYPE_KEY = "queueType";
+  public static final String QUEUE_PATH_KEY = "queuePath";
 
   public static final String DEFAULT_DB_URL = "jdbc:postgresql://localhost:5432/";
   public static final String DEFAULT_DB_NAME = "gc";
@@ -35,7 +55,17 @@ public abstract class CommonConfig {
   public static final String DEFAULT_DB_PASSWORD = DEFAULT_DB_NAME;
   public static final int PACKED_DEFAULT = 40;
   public static final int LOOSE_DEFAULT = 400;
+  public static final LooseEvaluation LOOSE_EVALUATION_DEFAULT = LooseEvaluation.EXACT;
+  public static final int PACK_WEIGHT_DEFAULT = 10;
+  public static final int SMALL_PACK_WEIGHT_DEFAULT = 10;
+  public static final int LOOSE_OBJECT_WEIGHT_DEFAULT = 1;
+  public static final int LOOSE_REF_WEIGHT_DEFAULT = 1;
+  public static final int GARBAGE_WEIGHT_DEFAULT = 10;
+  public static final int AGE_WEIGHT_DEFAULT = 10;
   public static final boolean DEFAULT_GC_FORCE_AGGRESSIVE = false;
+  public static final String POSTGRES_QUEUE_TYPE = "postgres";
+  public static final String FILE_QUEUE_TYPE = "file";
+  public static final String DEFAULT_QUEUE_PATH = "/opt/gerrit/data/gc-conductor/queue";
 
   private final String databaseUrl;
   private final String databaseName;
@@ -44,7 +74,10 @@ public abstract class CommonConfig {
   private final String password;
   private final int packed;
   private final int loose;
+  private final LooseEvaluation looseEvaluation;
+  private final ScoreWeights scoreWeights;
   private final boolean aggressive;
+  private final String queuePath;
 
   /**
    * Create CommonConfig from the specified parameters.
@@ -56,7 +89,10 @@ public abstract class CommonConfig {
    * @param password The password of the database server user.
    * @param loose The number of loose objects to consider a repo dirty
    * @param packed The number of packs to consider a repo dirty
+   * @param looseEvaluation How the referenced loose objects are compared to the threshold.
+   * @param scoreWeights The weights of the dirtiness score of the repositories.
    * @param aggressive default gc mode aggressive or not.
+   * @param queuePath The directory holding the queue when using the file queue.
    */
   public CommonConfig(
       String databaseUrl,
@@ -66,7 +102,10 @@ public abstract class CommonConfig {
       String password,
       int packed,
       int loose,
-      boolean aggressive) {
+      LooseEvaluation looseEvaluation,
+      ScoreWeights scoreWeights,
+      boolean aggressive,
+      String queuePath) {
     this.databaseUrl = databaseUrl.replaceFirst("/?$", "/");
     this.databaseName = databaseName;
     this.databaseUrlOptions = databaseUrlOptions;
@@ -74,7 +113,10 @@ public abstract class CommonConfig {
     this.password = password;
     this.packed = packed;
     this.loose = loose;
+    this.looseEvaluation = looseEvaluation;
+    this.scoreWeights = scoreWeights;
     this.aggressive = aggressive;
+    this.queuePath = queuePath;
   }
 
   /** @return the database server URL. */
@@ -112,11 +154,37 @@ public abstract class CommonConfig {
     return loose;
   }
 
+  /** @return how the referenced loose objects are compared to the loose objects threshold. */
+  public LooseEvaluation getLooseEvaluation() {
+    return looseEvaluation;
+  }
+
+  /** @return the weights of the dirtiness score of the repositories. */
+  public ScoreWeights getScoreWeights() {
+    return scoreWeights;
+  }
+
   /** @return if gc mode is set to aggressive, by default its not aggressive */
   public boolean isAggressive() {
     return aggressive;
   }
 
+  /** @return the directory holding the queue when using the file queue. */
+  public String getQueuePath() {
+    return queuePath;
+  }
+
+  /**
+   * Returns <code>true</code> if the specified queue type selects the file queue.
+   *
+   * @param queueType The configured queue type, <code>null</code> if not set.
+   * @return <code>true</code> if the file queue should be used, <code>false</code> for the
+   *     PostgreSQL queue.
+   */
+  public static boolean isFileQueue(String queueType) {
+    return FILE_QUEUE_TYPE.equalsIgnoreCase(Strings.nullToEmpty(queueType).trim());
+  }
+
   protected static String getString(
       Config config, String section, String subsection, String key, String defaultValue) {
     String value = config.getString(section, subsection, key);
@@ -14,6 +14,7 @@
 
 package com.ericsson.gerrit.plugins.gcconductor;
 
+import com.ericsson.gerrit.plugins.gcconductor.filequeue.FileQueueModule;
 import com.ericsson.gerrit.plugins.gcconductor.postgresqueue.PostgresModule;
 import com.google.inject.AbstractModule;
 import com.google.inject.Binding;
@@ -22,6 +23,7 @@ import com.google.inject.Provides;
 import com.google.inject.Singleton;
 import com.google.inject.TypeLiteral;
 import com.google.inject.assistedinject.FactoryModuleBuilder;
+import com.google.inject.internal.UniqueAnnotations;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
@@ -31,15 +33,24 @@ import java.util.List;
 public class CommonModule extends AbstractModule {
 
   private Class<? extends CommonConfig> commonConfig;
+  private String queueType;
 
-  public CommonModule(Class<? extends CommonConfig> commonConfig) {
+  public CommonModule(Class<? extends CommonConfig> commonConfig, String queueType) {
     this.commonConfig = commonConfig;
+    this.queueType = queueType;
   }
 
   @Override
   protected void configure() {
-    install(new PostgresModule(commonConfig));
+    if (CommonConfig.isFileQueue(queueType)) {
+      install(new FileQueueModule(commonConfig));
+    } else {
+      install(new PostgresModule(commonConfig));
+    }
     install(new FactoryModuleBuilder().build(EvaluationTask.Factory.class));
+    bind(ShutdownListener.class)
+        .annotatedWith(UniqueAnnotations.create())
+        .to(LooseObjectScanner.class);
   }
 
   @Provides
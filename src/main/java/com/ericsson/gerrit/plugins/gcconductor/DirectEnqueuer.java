@@ -0,0 +1,45 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.ericsson.gerrit.plugins.gcconductor;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** Adds repositories to the queue in the calling thread. */
+@Singleton
+public class DirectEnqueuer implements Enqueuer {
+  private static final Logger log = LoggerFactory.getLogger(DirectEnqueuer.class);
+
+  private final GcQueue queue;
+
+  @Inject
+  public DirectEnqueuer(GcQueue queue) {
+    this.queue = queue;
+  }
+
+  @Override
+  public void enqueue(
+      String repository, String queuedFrom, boolean isAggressive, long score, long notBefore) {
+    try {
+      if (!queue.add(repository, queuedFrom, isAggressive, score, notBefore)) {
+        log.debug("Repository {} is already in queue", repository);
+      }
+    } catch (GcQueueException e) {
+      log.error("Error adding repository in queue {}", repository, e);
+    }
+  }
+}
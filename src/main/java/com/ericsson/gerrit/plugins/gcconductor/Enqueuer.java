@@ -0,0 +1,47 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.ericsson.gerrit.plugins.gcconductor;
+
+/** Implement this interface to add the repositories found dirty by the evaluation to the queue. */
+public interface Enqueuer {
+
+  /**
+   * Enqueue a repository to be garbage collected.
+   *
+   * <p>Implementations log the errors instead of throwing them, evaluation goes on with the next
+   * repository.
+   *
+   * @param repository The path to the repository.
+   * @param queuedFrom The hostname from which the repository is queued from.
+   * @param isAggressive sets gc mode to aggressive or non-aggressive.
+   * @param score The dirtiness score of the repository.
+   */
+  default void enqueue(String repository, String queuedFrom, boolean isAggressive, long score) {
+    enqueue(repository, queuedFrom, isAggressive, score, 0);
+  }
+
+  /**
+   * Enqueue a repository to be garbage collected, not before the specified time.
+   *
+   * @param repository The path to the repository.
+   * @param queuedFrom The hostname from which the repository is queued from.
+   * @param isAggressive sets gc mode to aggressive or non-aggressive.
+   * @param score The dirtiness score of the repository.
+   * @param notBefore The time in milliseconds since the epoch before which the repository is not
+   *     picked, 0 to make it pickable right away.
+   */
+  void enqueue(
+      String repository, String queuedFrom, boolean isAggressive, long score, long notBefore);
+}
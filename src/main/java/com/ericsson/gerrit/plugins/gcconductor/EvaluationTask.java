@@ -14,32 +14,46 @@
 
 package com.ericsson.gerrit.plugins.gcconductor;
 
+import com.ericsson.gerrit.plugins.gcconductor.CommonConfig.LooseEvaluation;
+import com.ericsson.gerrit.plugins.gcconductor.LooseObjectScanner.LooseObjects;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Objects;
 import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
 import java.io.File;
 import java.io.IOException;
+import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.errors.RepositoryNotFoundException;
 import org.eclipse.jgit.internal.storage.file.FileRepository;
-import org.eclipse.jgit.internal.storage.file.GC;
 import org.eclipse.jgit.internal.storage.file.GC.RepoStatistics;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.BitmapIndex;
+import org.eclipse.jgit.lib.BitmapIndex.BitmapBuilder;
 import org.eclipse.jgit.lib.ConfigConstants;
 import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.NullProgressMonitor;
 import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.RefDatabase;
+import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.lib.RepositoryCache;
 import org.eclipse.jgit.lib.RepositoryCache.FileKey;
+import org.eclipse.jgit.revwalk.BitmapWalker;
 import org.eclipse.jgit.revwalk.ObjectWalk;
 import org.eclipse.jgit.revwalk.RevObject;
 import org.eclipse.jgit.util.FS;
+import org.eclipse.jgit.util.GitTimeParser;
+import org.eclipse.jgit.util.MutableInteger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -47,11 +61,77 @@ import org.slf4j.LoggerFactory;
 public class EvaluationTask implements Runnable {
   private static final Logger log = LoggerFactory.getLogger(EvaluationTask.class);
 
+  private static final String PRUNE_EXPIRE_DEFAULT = "2.weeks.ago";
+  private static final String PRUNE_EXPIRE_NOW = "now";
+  private static final String PRUNE_EXPIRE_NEVER = "never";
+  private static final int FAN_OUT_DIRECTORIES = 256;
+  private static final int SAMPLED_FAN_OUT_DIRECTORIES = 32;
+  // two-sided 99% confidence
+  private static final double CONFIDENCE_Z = 2.576;
+
   private final CommonConfig cfg;
-  private final GcQueue queue;
+  private final Enqueuer enqueuer;
+  private final RepositoryStatistics statistics;
+  private final LooseObjectScanner scanner;
   private final String hostname;
 
   private String repositoryPath;
+  private ReachabilityCheck reachabilityCheck = ReachabilityCheck.NONE;
+  // loose objects gc can pack or prune, all the loose objects unless they were counted
+  private long reclaimableLooseObjects;
+  // time the oldest unreferenced loose object too recent to be pruned becomes prunable
+  private long cleanUntil = Long.MAX_VALUE;
+
+  /** Result of the evaluation of a repository. */
+  public enum Result {
+    /** The repository does not need to be gc'ed. */
+    CLEAN,
+    /** The repository needs to be gc'ed and was added to the queue. */
+    DIRTY,
+    /** The repository could not be evaluated. */
+    FAILED
+  }
+
+  /** How the reachability of the loose objects was checked, reported in the evaluation log. */
+  @VisibleForTesting
+  enum ReachabilityCheck {
+    NONE("no check"),
+    BITMAP("bitmap index"),
+    OBJECT_WALK("object walk");
+
+    private final String description;
+
+    ReachabilityCheck(String description) {
+      this.description = description;
+    }
+
+    @Override
+    public String toString() {
+      return description;
+    }
+  }
+
+  /** Loose objects of a repository by reachability and age. */
+  @VisibleForTesting
+  static class LooseObjectCounts {
+    final int total;
+    final int unreferenced;
+    final int unreferencedFresh;
+
+    LooseObjectCounts(int total, int unreferenced, int unreferencedFresh) {
+      this.total = total;
+      this.unreferenced = unreferenced;
+      this.unreferencedFresh = unreferencedFresh;
+    }
+
+    /**
+     * @return the number of loose objects gc can pack or prune, all of them but the unreferenced
+     *     ones too recent to be pruned.
+     */
+    int reclaimable() {
+      return total - unreferencedFresh;
+    }
+  }
 
   public interface Factory {
     /**
@@ -67,24 +147,80 @@ public class EvaluationTask implements Runnable {
    * Creates an EvaluationTask object.
    *
    * @param cfg The configuration where to read from dirtiness settings
-   * @param queue The queue to add the repository to be garbage collected
+   * @param enqueuer Where to add the repository to be garbage collected
+   * @param statistics Where to get the statistics of the repository from
+   * @param scanner The scanner listing the loose objects of the repository
    * @param hostname The hostname where the repository is evaluated.
    * @param repositoryPath Path to the repository to evaluate.
    */
   @Inject
   public EvaluationTask(
-      CommonConfig cfg, GcQueue queue, @Hostname String hostname, @Assisted String repositoryPath) {
+      CommonConfig cfg,
+      Enqueuer enqueuer,
+      RepositoryStatistics statistics,
+      LooseObjectScanner scanner,
+      @Hostname String hostname,
+      @Assisted String repositoryPath) {
     this.cfg = cfg;
-    this.queue = queue;
+    this.enqueuer = enqueuer;
+    this.statistics = statistics;
+    this.scanner = scanner;
     this.hostname = hostname;
     this.repositoryPath = repositoryPath;
   }
 
   @Override
   public void run() {
-    if (!isAlreadyInQueue() && isDirty()) {
-      insertRepository();
+    evaluate();
+  }
+
+  /**
+   * Evaluate the dirtiness of the repository and add it to the queue if it is dirty.
+   *
+   * @return the result of the evaluation.
+   */
+  public Result evaluate() {
+    return evaluate(() -> 0);
+  }
+
+  /**
+   * Evaluate the dirtiness of the repository and add it to the queue if it is dirty, not to be
+   * picked before the supplied time.
+   *
+   * @param notBefore Supplies the time in milliseconds since the epoch before which the repository
+   *     is not picked, 0 to make it pickable right away. Only called, once, when the repository is
+   *     added to the queue.
+   * @return the result of the evaluation.
+   */
+  public Result evaluate(LongSupplier notBefore) {
+    cleanUntil = Long.MAX_VALUE;
+    try (FileRepository repository =
+        (FileRepository)
+            RepositoryCache.open(FileKey.exact(new File(repositoryPath), FS.DETECTED))) {
+      RepoStatistics repoStatistics = statistics.get(repository);
+      if (isDirty(repository, repoStatistics)) {
+        insertRepository(score(repository, repoStatistics), notBefore.getAsLong());
+        return Result.DIRTY;
+      }
+      return Result.CLEAN;
+    } catch (RepositoryNotFoundException rnfe) {
+      log.debug("Repository no longer exist, aborting evaluation.");
+    } catch (IOException e) {
+      log.error("Error gathering '{}' statistics.", repositoryPath, e);
     }
+    return Result.FAILED;
+  }
+
+  /**
+   * Returns the time until which the last evaluation stays valid as long as the repository does not
+   * change on disk. Loose objects too recent to be pruned when the repository was evaluated become
+   * prunable later on and may then make the repository dirty.
+   *
+   * @return the time in milliseconds since the epoch, {@link Long#MAX_VALUE} if the result does not
+   *     expire.
+   */
+  public long getCleanUntil() {
+    return cleanUntil;
   }
 
   @Override
@@ -101,100 +237,270 @@ public class EvaluationTask implements Runnable {
     return repositoryPath.equals(other.repositoryPath);
   }
 
-  private boolean isAlreadyInQueue() {
-    try {
-      return queue.contains(repositoryPath);
-    } catch (GcQueueException e) {
-      log.error("Error checking if repository is already in queue {}", repositoryPath, e);
+  private boolean isDirty(FileRepository repository, RepoStatistics repoStatistics)
+      throws IOException {
+    long looseObjects = repoStatistics.numberOfLooseObjects;
+    reclaimableLooseObjects = looseObjects;
+    if (repoStatistics.numberOfPackFiles >= cfg.getPackedThreshold()) {
+      log.debug(
+          "The number of packs ({}) exceeds the configured limit of {}",
+          repoStatistics.numberOfPackFiles,
+          cfg.getPackedThreshold());
       return true;
     }
-  }
-
-  private boolean isDirty() {
-    try (FileRepository repository =
-        (FileRepository)
-            RepositoryCache.open(FileKey.exact(new File(repositoryPath), FS.DETECTED))) {
-      RepoStatistics statistics = new GC(repository).getStatistics();
-      if (statistics.numberOfPackFiles >= cfg.getPackedThreshold()) {
-        log.debug(
-            "The number of packs ({}) exceeds the configured limit of {}",
-            statistics.numberOfPackFiles,
-            cfg.getPackedThreshold());
-        return true;
-      }
-      long looseObjects = statistics.numberOfLooseObjects;
-      int looseThreshold = cfg.getLooseThreshold();
-      if (looseObjects >= looseThreshold) {
-        long referencedLooseObjects = 0;
-        long unreferencedLooseObjects = 0;
-        long duration = 0;
-        long start = System.currentTimeMillis();
-        unreferencedLooseObjects = getUnreferencedLooseObjectsCount(repository);
-        duration = System.currentTimeMillis() - start;
-        referencedLooseObjects = looseObjects - unreferencedLooseObjects;
-        log.debug(
-            "{} of {} loose objects in repository {} were unreferenced. Evaluating unreferenced objects took {}ms.",
-            unreferencedLooseObjects,
-            looseObjects,
-            repositoryPath,
-            duration);
-        return referencedLooseObjects >= looseThreshold;
+    int looseThreshold = cfg.getLooseThreshold();
+    if (looseObjects >= looseThreshold) {
+      long prunableBefore = getPrunableBefore(repository);
+      if (cfg.getLooseEvaluation() == LooseEvaluation.SAMPLING) {
+        Optional<Boolean> estimate =
+            estimateDirtiness(repository, looseObjects, looseThreshold, prunableBefore);
+        if (estimate.isPresent()) {
+          return estimate.get();
+        }
       }
-    } catch (RepositoryNotFoundException rnfe) {
-      log.debug("Repository no longer exist, aborting evaluation.");
-    } catch (IOException e) {
-      log.error("Error gathering '{}' statistics.", repositoryPath, e);
+      long start = System.currentTimeMillis();
+      LooseObjectCounts counts = countLooseObjects(repository, prunableBefore);
+      long duration = System.currentTimeMillis() - start;
+      log.debug(
+          "{} of {} loose objects in repository {} were unreferenced, {} of them too recent to be pruned. Evaluating unreferenced objects took {}ms using {}.",
+          counts.unreferenced,
+          counts.total,
+          repositoryPath,
+          counts.unreferencedFresh,
+          duration,
+          reachabilityCheck);
+      reclaimableLooseObjects = counts.reclaimable();
+      return counts.reclaimable() >= looseThreshold;
     }
     return false;
   }
 
+  /**
+   * Compute the dirtiness score of a dirty repository from the configured weights.
+   *
+   * <p>Unlike the thresholds, which decide if the repository is queued, the score orders the queued
+   * repositories.
+   */
+  @VisibleForTesting
+  long score(FileRepository repository, RepoStatistics repoStatistics) {
+    PackDirectory packDirectory =
+        PackDirectory.scan(new File(repository.getObjectsDirectory(), "pack"));
+    long daysSinceGc = packDirectory.daysSinceGc(System.currentTimeMillis());
+    long score =
+        cfg.getScoreWeights()
+            .score(
+                repoStatistics.numberOfPackFiles,
+                packDirectory.smallPacks,
+                reclaimableLooseObjects,
+                repoStatistics.numberOfLooseRefs,
+                packDirectory.garbageBytes,
+                daysSinceGc);
+    log.debug(
+        "Repository {} has a score of {}: {} packs, {} of them small, {} reclaimable loose objects, {} loose refs, {} bytes of garbage, {} days since last gc",
+        repositoryPath,
+        score,
+        repoStatistics.numberOfPackFiles,
+        packDirectory.smallPacks,
+        reclaimableLooseObjects,
+        repoStatistics.numberOfLooseRefs,
+        packDirectory.garbageBytes,
+        daysSinceGc);
+    return score;
+  }
+
+  private Optional<Boolean> estimateDirtiness(
+      FileRepository repository, long looseObjects, int looseThreshold, long prunableBefore)
+      throws IOException {
+    long start = System.currentTimeMillis();
+    LooseObjects sample =
+        scanner.scan(repository.getObjectsDirectory(), sampleFanOutDirectories(), prunableBefore);
+    LooseObjectCounts counts = countLooseObjects(repository, sample);
+    // the oldest sampled object stands for the oldest one, the unsampled directories are not read
+    updateCleanUntil(sample, counts, prunableBefore);
+    Optional<Boolean> dirty =
+        estimateDirtiness(looseObjects, counts.total, counts.reclaimable(), looseThreshold);
+    if (dirty.isPresent() && counts.total > 0) {
+      // extrapolated from the sample, the exact count is not known
+      reclaimableLooseObjects = looseObjects * counts.reclaimable() / counts.total;
+    }
+    log.debug(
+        "{} of {} sampled loose objects in repository {} could be packed or pruned, {}. Sampling took {}ms using {}.",
+        counts.reclaimable(),
+        counts.total,
+        repositoryPath,
+        dirty.map(d -> d ? "dirty" : "clean").orElse("too close to the threshold to decide"),
+        System.currentTimeMillis() - start,
+        reachabilityCheck);
+    return dirty;
+  }
+
+  /**
+   * Decide from a sample of the loose objects if the reclaimable loose objects reach the threshold.
+   *
+   * <p>Loose objects are spread uniformly over the fan-out directories, the loose objects of the
+   * sampled directories are a random sample of all of them. The reclaimable loose objects are
+   * extrapolated from the proportion of reclaimable objects in the sample and a decision is only
+   * made if the threshold is outside of the confidence interval of the extrapolation.
+   *
+   * @param looseObjects The number of loose objects in the repository.
+   * @param sampled The number of loose objects in the sample.
+   * @param reclaimable The number of loose objects in the sample that gc can pack or prune.
+   * @param looseThreshold The number of reclaimable loose objects to consider a repository dirty.
+   * @return whether the repository is dirty, empty if the threshold is too close to the estimate.
+   */
+  @VisibleForTesting
+  static Optional<Boolean> estimateDirtiness(
+      long looseObjects, int sampled, int reclaimable, int looseThreshold) {
+    if (sampled == 0) {
+      return Optional.empty();
+    }
+    // the proportion used for the error is pulled towards 1/2 so that samples entirely reclaimable
+    // or not do not make the error vanish
+    double proportion = (reclaimable + 1.0) / (sampled + 2.0);
+    double finitePopulation =
+        looseObjects > sampled ? (double) (looseObjects - sampled) / (looseObjects - 1) : 0;
+    double margin =
+        CONFIDENCE_Z
+            * looseObjects
+            * Math.sqrt(proportion * (1 - proportion) / sampled * finitePopulation);
+    double estimate = (double) looseObjects * reclaimable / sampled;
+    if (estimate - margin >= looseThreshold) {
+      return Optional.of(true);
+    }
+    if (estimate + margin < looseThreshold) {
+      return Optional.of(false);
+    }
+    return Optional.empty();
+  }
+
+  private static String[] sampleFanOutDirectories() {
+    int[] directories = new int[FAN_OUT_DIRECTORIES];
+    for (int i = 0; i < directories.length; i++) {
+      directories[i] = i;
+    }
+    Random random = ThreadLocalRandom.current();
+    String[] sample = new String[SAMPLED_FAN_OUT_DIRECTORIES];
+    for (int i = 0; i < sample.length; i++) {
+      int picked = i + random.nextInt(directories.length - i);
+      int directory = directories[picked];
+      directories[picked] = directories[i];
+      sample[i] = String.format("%02x", directory);
+    }
+    return sample;
+  }
+
+  /**
+   * Returns the time before which loose objects can be pruned, according to the gc.pruneExpire
+   * setting of the repository.
+   *
+   * @param repository The repository to read the setting from.
+   * @return the time in milliseconds since the epoch, or one of {@link
+   *     LooseObjectScanner#ALL_PRUNABLE} and {@link LooseObjectScanner#NONE_PRUNABLE}.
+   */
   @VisibleForTesting
-  int getUnreferencedLooseObjectsCount(FileRepository repo) throws IOException {
-    File objects = repo.getObjectsDirectory();
-    String[] fanout = objects.list();
-    if (fanout == null || fanout.length == 0) {
-      return 0;
+  static long getPrunableBefore(Repository repository) {
+    String pruneExpire =
+        repository
+            .getConfig()
+            .getString(
+                ConfigConstants.CONFIG_GC_SECTION, null, ConfigConstants.CONFIG_KEY_PRUNEEXPIRE);
+    if (pruneExpire == null) {
+      pruneExpire = PRUNE_EXPIRE_DEFAULT;
     }
-    Set<ObjectId> unreferencedCandidates = getUnreferencedCandidates(objects, fanout);
+    if (PRUNE_EXPIRE_NOW.equalsIgnoreCase(pruneExpire)) {
+      return LooseObjectScanner.ALL_PRUNABLE;
+    }
+    if (PRUNE_EXPIRE_NEVER.equalsIgnoreCase(pruneExpire)) {
+      return LooseObjectScanner.NONE_PRUNABLE;
+    }
+    try {
+      return GitTimeParser.parseInstant(pruneExpire).toEpochMilli();
+    } catch (ParseException e) {
+      log.warn(
+          "Invalid gc.pruneExpire '{}' in repository {}, no loose object is considered prunable",
+          pruneExpire,
+          repository.getDirectory());
+      return LooseObjectScanner.NONE_PRUNABLE;
+    }
+  }
+
+  @VisibleForTesting
+  LooseObjectCounts countLooseObjects(FileRepository repo, long prunableBefore) throws IOException {
+    LooseObjects looseObjects = scanner.scan(repo.getObjectsDirectory(), prunableBefore);
+    LooseObjectCounts counts = countLooseObjects(repo, looseObjects);
+    updateCleanUntil(looseObjects, counts, prunableBefore);
+    return counts;
+  }
+
+  private void updateCleanUntil(
+      LooseObjects looseObjects, LooseObjectCounts counts, long prunableBefore) {
+    if (counts.unreferencedFresh > 0 && looseObjects.oldestFresh() != Long.MAX_VALUE) {
+      // the oldest fresh object may be referenced, which only makes the expiry earlier
+      long pruneWindow = System.currentTimeMillis() - prunableBefore;
+      cleanUntil = Math.min(cleanUntil, looseObjects.oldestFresh() + pruneWindow);
+    }
+  }
+
+  private LooseObjectCounts countLooseObjects(FileRepository repo, LooseObjects looseObjects)
+      throws IOException {
+    ObjectIdSet unreferencedCandidates = looseObjects.all();
+    int total = unreferencedCandidates.size();
     if (unreferencedCandidates.isEmpty()) {
-      return 0;
+      reachabilityCheck = ReachabilityCheck.NONE;
+      return new LooseObjectCounts(0, 0, 0);
     }
-    try (ObjectWalk walk = new ObjectWalk(repo)) {
+    try (ObjectReader reader = repo.newObjectReader();
+        ObjectWalk walk = new ObjectWalk(reader)) {
+      BitmapIndex bitmapIndex = reader.getBitmapIndex();
+      if (bitmapIndex != null) {
+        reachabilityCheck = ReachabilityCheck.BITMAP;
+        BitmapBuilder reachable = findReachable(walk, bitmapIndex, getAllRefs(repo));
+        return new LooseObjectCounts(
+            total,
+            count(unreferencedCandidates, id -> !reachable.contains(id)),
+            count(looseObjects.fresh(), id -> !reachable.contains(id)));
+      }
+      reachabilityCheck = ReachabilityCheck.OBJECT_WALK;
       for (Ref ref : getAllRefs(repo)) {
         walk.markStart(walk.parseAny(ref.getObjectId()));
       }
       removeReferenced(unreferencedCandidates, walk);
     }
-    return unreferencedCandidates.size();
+    // only the unreferenced candidates are left
+    return new LooseObjectCounts(
+        total,
+        unreferencedCandidates.size(),
+        count(looseObjects.fresh(), unreferencedCandidates::contains));
   }
 
-  private Set<ObjectId> getUnreferencedCandidates(File objects, String[] fanout) {
-    Set<ObjectId> candidates = new HashSet<>();
-    for (String dir : fanout) {
-      if (dir.length() != 2) {
-        continue;
-      }
-      File[] entries = new File(objects, dir).listFiles();
-      if (entries != null) {
-        addCandidates(candidates, dir, entries);
-      }
-    }
-    return candidates;
+  @VisibleForTesting
+  ReachabilityCheck getReachabilityCheck() {
+    return reachabilityCheck;
   }
 
-  private void addCandidates(Set<ObjectId> candidates, String dir, File[] entries) {
-    for (File f : entries) {
-      String fileName = f.getName();
-      if (fileName.length() != Constants.OBJECT_ID_STRING_LENGTH - 2) {
-        continue;
-      }
-      try {
-        ObjectId id = ObjectId.fromString(dir + fileName);
-        candidates.add(id);
-      } catch (IllegalArgumentException notAnObject) {
-        // ignoring the file that does not represent loose object
-      }
+  /**
+   * Find the objects reachable from the refs using the bitmap index. The bitmaps of the indexed
+   * commits are reused as is, only the commits not covered by the index are walked.
+   */
+  private static BitmapBuilder findReachable(
+      ObjectWalk walk, BitmapIndex bitmapIndex, Collection<Ref> refs) throws IOException {
+    List<ObjectId> tips = new ArrayList<>(refs.size());
+    for (Ref ref : refs) {
+      tips.add(ref.getObjectId());
     }
+    BitmapWalker bitmapWalker = new BitmapWalker(walk, bitmapIndex, NullProgressMonitor.INSTANCE);
+    return bitmapWalker.findObjects(tips, null, false);
+  }
+
+  private static int count(ObjectIdSet ids, Predicate<AnyObjectId> predicate) {
+    MutableInteger count = new MutableInteger();
+    ids.forEach(
+        id -> {
+          if (predicate.test(id)) {
+            count.value++;
+          }
+        });
+    return count.value;
   }
 
   private Collection<Ref> getAllRefs(FileRepository repo) throws IOException {
@@ -215,36 +521,31 @@ public class EvaluationTask implements Runnable {
     return refs;
   }
 
-  private void removeReferenced(Set<ObjectId> id2File, ObjectWalk w) throws IOException {
+  private void removeReferenced(ObjectIdSet id2File, ObjectWalk w) throws IOException {
     RevObject ro = w.next();
     while (ro != null) {
-      if (id2File.remove(ro.getId()) && id2File.isEmpty()) {
+      if (id2File.remove(ro) && id2File.isEmpty()) {
         return;
       }
       ro = w.next();
     }
     ro = w.nextObject();
     while (ro != null) {
-      if (id2File.remove(ro.getId()) && id2File.isEmpty()) {
+      if (id2File.remove(ro) && id2File.isEmpty()) {
         return;
       }
       ro = w.nextObject();
     }
   }
 
-  private void insertRepository() {
-    try {
-      boolean isAggressive = cfg.isAggressive();
-      if (!isAggressive) // Force is aggressive option is not set then read repo config
-      {
-        // isAggressive based on current repo config
-        isAggressive = getGcModeFromRepository(repositoryPath);
-      }
-      queue.add(repositoryPath, hostname, isAggressive);
-
-    } catch (GcQueueException e) {
-      log.error("Error adding repository in queue {}", repositoryPath, e);
+  private void insertRepository(long score, long notBefore) {
+    boolean isAggressive = cfg.isAggressive();
+    if (!isAggressive) // Force is aggressive option is not set then read repo config
+    {
+      // isAggressive based on current repo config
+      isAggressive = getGcModeFromRepository(repositoryPath);
     }
+    enqueuer.enqueue(repositoryPath, hostname, isAggressive, score, notBefore);
   }
 
   @Override
@@ -15,8 +15,11 @@
 package com.ericsson.gerrit.plugins.gcconductor;
 
 import com.google.inject.Singleton;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 /**
  * Queue that holds Git repositories to be Gc'ed.
@@ -29,20 +32,84 @@ public interface GcQueue {
    * Add repository to the queue.
    *
    * <p>Repositories are unique in the queue. This method is idempotent, adding an already existing
-   * repository will neither add it again nor throw an exception.
+   * repository will neither add it again nor throw an exception. Adding an already existing
+   * non-aggressive repository as aggressive upgrades it to aggressive and adding it with a higher
+   * score raises its score, unless it was already picked.
    *
    * @param repository The path to the repository.
    * @param queuedFrom The hostname from which the repository is queued from.
    * @param isAggressive sets gc mode to aggressive or non-aggressive.
+   * @param score The dirtiness score of the repository, repositories with higher scores are picked
+   *     first.
+   * @return <code>true</code> if the repository was added, <code>false</code> if it was already in
+   *     the queue.
    * @throws GcQueueException if an error occur while adding the repository.
    */
-  void add(String repository, String queuedFrom, boolean isAggressive) throws GcQueueException;
+  default boolean add(String repository, String queuedFrom, boolean isAggressive, long score)
+      throws GcQueueException {
+    return add(repository, queuedFrom, isAggressive, score, 0);
+  }
+
+  /**
+   * Add repository to the queue, not to be picked before the specified time, as by {@link
+   * #add(String, String, boolean, long)}.
+   *
+   * <p>Adding an already existing repository that was not picked yet with an earlier time makes it
+   * pickable at that earlier time.
+   *
+   * @param repository The path to the repository.
+   * @param queuedFrom The hostname from which the repository is queued from.
+   * @param isAggressive sets gc mode to aggressive or non-aggressive.
+   * @param score The dirtiness score of the repository, repositories with higher scores are picked
+   *     first.
+   * @param notBefore The time in milliseconds since the epoch before which the repository is not
+   *     picked, 0 or a time in the past to make it pickable right away.
+   * @return <code>true</code> if the repository was added, <code>false</code> if it was already in
+   *     the queue.
+   * @throws GcQueueException if an error occur while adding the repository.
+   */
+  boolean add(
+      String repository, String queuedFrom, boolean isAggressive, long score, long notBefore)
+      throws GcQueueException;
+
+  /**
+   * Add repository to the queue with a score of 0, as by {@link #add(String, String, boolean,
+   * long)}.
+   *
+   * @param repository The path to the repository.
+   * @param queuedFrom The hostname from which the repository is queued from.
+   * @param isAggressive sets gc mode to aggressive or non-aggressive.
+   * @return <code>true</code> if the repository was added, <code>false</code> if it was already in
+   *     the queue.
+   * @throws GcQueueException if an error occur while adding the repository.
+   */
+  default boolean add(String repository, String queuedFrom, boolean isAggressive)
+      throws GcQueueException {
+    return add(repository, queuedFrom, isAggressive, 0);
+  }
+
+  /**
+   * Add repositories to the queue in a single operation.
+   *
+   * <p>Each repository is added as by {@link #add(String, String, boolean, long)}, in the iteration
+   * order of the specified map, and is pickable right away.
+   *
+   * @param repositories The paths to the repositories, mapped to their gc mode and score.
+   * @param queuedFrom The hostname from which the repositories are queued from.
+   * @return the number of repositories added, repositories that were already in the queue are not
+   *     counted.
+   * @throws GcQueueException if an error occur while adding the repositories.
+   */
+  int addAll(Map<String, GcRequest> repositories, String queuedFrom) throws GcQueueException;
 
   /**
    * Pick a repository from the queue.
    *
    * <p>If the queue contains an already picked repository by the specified executor, will return
-   * that repository.
+   * that repository. Otherwise, the repository with the highest score is picked, the oldest one
+   * among repositories with the same score. Repositories picked by an executor that did not renew
+   * its lease in time are considered free to pick. Repositories added with a time before which they
+   * are not picked are skipped until then.
    *
    * @param executor The name of the executor to assign repository to.
    * @param queuedForLongerThan Only pick repository that were in the queue for longer than
@@ -54,6 +121,41 @@ public interface GcQueue {
   RepositoryInfo pick(String executor, long queuedForLongerThan, Optional<String> queuedFrom)
       throws GcQueueException;
 
+  /**
+   * Pick a batch of repositories from the queue.
+   *
+   * <p>Repositories picked by an executor that did not renew its lease in time are picked first,
+   * then repositories not assigned to any executor, each by descending score then in queue order.
+   * They are all assigned to the specified executor in a single operation. Repositories already
+   * assigned to the specified executor are not picked again. Repositories not to be picked yet are
+   * skipped, as by {@link #pick(String, long, Optional)}.
+   *
+   * @param executor The name of the executor to assign repositories to.
+   * @param size The maximum number of repositories to pick.
+   * @param queuedForLongerThan Only pick repositories that were in the queue for longer than
+   *     specified number of seconds.
+   * @param queuedFrom If specified, only pick repositories queued from the specified hostname.
+   * @return list of RepositoryInfo representing the picked repositories, in pick order, empty if
+   *     none could be picked.
+   * @throws GcQueueException if an error occur while picking repositories.
+   */
+  List<RepositoryInfo> pickBatch(
+      String executor, int size, long queuedForLongerThan, Optional<String> queuedFrom)
+      throws GcQueueException;
+
+  /**
+   * Renew the lease of the repositories picked by executors whose name starts with the specified
+   * prefix.
+   *
+   * <p>Picked repositories are leased for a few minutes, executors have to renew their leases
+   * every minute while they hold repositories, otherwise the repositories become free to pick by
+   * other executors.
+   *
+   * @param executorPrefix The prefix of the executors names.
+   * @throws GcQueueException if an error occur while renewing the leases.
+   */
+  void renewLeases(String executorPrefix) throws GcQueueException;
+
   /**
    * Unpick a repository from the queue.
    *
@@ -62,6 +164,26 @@ public interface GcQueue {
    */
   void unpick(String repository) throws GcQueueException;
 
+  /**
+   * Unpick a repository from the queue if it is still picked by the specified executor.
+   *
+   * @param repository The path to the repository to unpick.
+   * @param executor The name of the executor the repository was picked by.
+   * @return <code>true</code> if the repository was unpicked, <code>false</code> if it was removed
+   *     from the queue or picked by another executor meanwhile.
+   * @throws GcQueueException if an error occur while unpicking the repository.
+   */
+  boolean unpick(String repository, String executor) throws GcQueueException;
+
+  /**
+   * Unpick all the repositories picked by executors whose name starts with the specified prefix.
+   *
+   * @param executorPrefix The prefix of the executors names.
+   * @return the number of unpicked repositories.
+   * @throws GcQueueException if an error occur while unpicking the repositories.
+   */
+  int unpickAll(String executorPrefix) throws GcQueueException;
+
   /**
    * Remove a repository from the queue.
    *
@@ -70,6 +192,17 @@ public interface GcQueue {
    */
   void remove(String repository) throws GcQueueException;
 
+  /**
+   * Remove a repository from the queue if it is still picked by the specified executor.
+   *
+   * @param repository The path to the repository to remove.
+   * @param executor The name of the executor the repository was picked by.
+   * @return <code>true</code> if the repository was removed, <code>false</code> if it was removed
+   *     from the queue or picked by another executor meanwhile.
+   * @throws GcQueueException if an error occur while removing the repository.
+   */
+  boolean remove(String repository, String executor) throws GcQueueException;
+
   /**
    * Returns <code>true</code> if the queue contains the specified repository.
    *
@@ -96,13 +229,44 @@ public interface GcQueue {
    * @return list of RepositoryInfo.
    * @throws GcQueueException if an error occur while listing the repositories.
    */
-  List<RepositoryInfo> list() throws GcQueueException;
+  default List<RepositoryInfo> list() throws GcQueueException {
+    List<RepositoryInfo> repositories = new ArrayList<>();
+    list(QueueFilter.all(), repositories::add);
+    return repositories;
+  }
+
+  /**
+   * Pass the repositories matching the specified filter to the consumer, from the oldest to the
+   * newest inserted.
+   *
+   * <p>Repositories are passed to the consumer as they are read from the queue, implementations
+   * should not hold all the matching repositories in memory.
+   *
+   * @param filter The criteria the repositories must match.
+   * @param consumer The consumer to pass each repository to.
+   * @return the number of repositories passed to the consumer.
+   * @throws GcQueueException if an error occur while listing the repositories.
+   */
+  int list(QueueFilter filter, Consumer<RepositoryInfo> consumer) throws GcQueueException;
 
   /**
    * Bump an existing repository to the top of the queue.
    *
+   * <p>The repository is moved to the front of the queue and its score is raised to the highest
+   * score in the queue, so it is the next repository picked.
+   *
    * @param repository The path to the repository.
    * @throws GcQueueException if an error occurs while bumping the sequence of a repository.
    */
   void bumpToFirst(String repository) throws GcQueueException;
+
+  /**
+   * Register a listener to be notified when repositories may be available to pick.
+   *
+   * <p>Notifications are only a hint, listeners still have to pick a repository from the queue
+   * and should keep polling at a slow pace in case a notification is lost.
+   *
+   * @param listener The listener to notify.
+   */
+  void addListener(GcQueueListener listener);
 }
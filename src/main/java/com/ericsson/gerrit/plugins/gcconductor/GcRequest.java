@@ -0,0 +1,77 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.ericsson.gerrit.plugins.gcconductor;
+
+import java.util.Objects;
+
+/** The gc mode and the dirtiness score a repository is added to the queue with. */
+public class GcRequest {
+
+  private final boolean aggressive;
+  private final long score;
+
+  public GcRequest(boolean aggressive, long score) {
+    this.aggressive = aggressive;
+    this.score = score;
+  }
+
+  public boolean isAggressive() {
+    return aggressive;
+  }
+
+  /** @return the dirtiness score, repositories with higher scores are picked first. */
+  public long getScore() {
+    return score;
+  }
+
+  /**
+   * Returns <code>true</code> if adding this request after the specified one changes nothing.
+   *
+   * @param other The request already made for the same repository.
+   * @return <code>true</code> if the other request is at least as aggressive and scored.
+   */
+  public boolean isCoveredBy(GcRequest other) {
+    return (other.aggressive || !aggressive) && other.score >= score;
+  }
+
+  /**
+   * Merge two requests for the same repository.
+   *
+   * @param other The other request.
+   * @return a request aggressive if any of the requests is, with the highest score.
+   */
+  public GcRequest merge(GcRequest other) {
+    return new GcRequest(aggressive || other.aggressive, Math.max(score, other.score));
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(aggressive, score);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (!(obj instanceof GcRequest)) {
+      return false;
+    }
+    GcRequest other = (GcRequest) obj;
+    return aggressive == other.aggressive && score == other.score;
+  }
+
+  @Override
+  public String toString() {
+    return (aggressive ? "aggressive" : "non-aggressive") + " gc, score " + score;
+  }
+}
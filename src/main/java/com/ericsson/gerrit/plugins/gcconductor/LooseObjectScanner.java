@@ -0,0 +1,275 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.ericsson.gerrit.plugins.gcconductor;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Lists the loose objects of repositories.
+ *
+ * <p>The fan-out directories of a repository are scanned in parallel, only the names of their
+ * files are read. All the scans share a pool with a bounded number of threads so that concurrent
+ * evaluations do not flood the file system.
+ */
+@Singleton
+public class LooseObjectScanner implements ShutdownListener {
+  static final int DEFAULT_PARALLELISM = 8;
+
+  // fan-out directories scanned sequentially by a single task
+  private static final int DIRECTORIES_PER_TASK = 8;
+
+  /** Makes all the loose objects prunable, as does a <code>gc.pruneExpire</code> of now. */
+  static final long ALL_PRUNABLE = Long.MAX_VALUE;
+
+  /** Makes none of the loose objects prunable, as does a <code>gc.pruneExpire</code> of never. */
+  static final long NONE_PRUNABLE = Long.MIN_VALUE;
+
+  private final ForkJoinPool pool;
+
+  @Inject
+  LooseObjectScanner() {
+    this(DEFAULT_PARALLELISM);
+  }
+
+  @VisibleForTesting
+  public LooseObjectScanner(int parallelism) {
+    pool =
+        new ForkJoinPool(
+            parallelism,
+            p -> {
+              ForkJoinWorkerThread thread =
+                  ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+              thread.setName("LooseObjectScanner-" + thread.getPoolIndex());
+              return thread;
+            },
+            null,
+            false);
+  }
+
+  /**
+   * Returns the loose objects found in the fan-out directories of an objects directory.
+   *
+   * @param objectsDirectory The objects directory of the repository.
+   * @return the ids of the loose objects, empty if there is none.
+   */
+  ObjectIdSet scan(File objectsDirectory) {
+    return scan(objectsDirectory, ALL_PRUNABLE).all();
+  }
+
+  /**
+   * Returns the loose objects found in the fan-out directories of an objects directory, telling
+   * apart the ones too recent to be pruned.
+   *
+   * @param objectsDirectory The objects directory of the repository.
+   * @param prunableBefore Loose objects modified before this time, in milliseconds since the epoch,
+   *     can be pruned. {@link #ALL_PRUNABLE} and {@link #NONE_PRUNABLE} spare reading the
+   *     modification times.
+   * @return the loose objects, empty if there is none.
+   */
+  LooseObjects scan(File objectsDirectory, long prunableBefore) {
+    String[] fanout = objectsDirectory.list();
+    return scan(objectsDirectory, fanout == null ? new String[0] : fanout, prunableBefore);
+  }
+
+  /**
+   * Returns the loose objects found in some of the fan-out directories of an objects directory,
+   * telling apart the ones too recent to be pruned.
+   *
+   * @param objectsDirectory The objects directory of the repository.
+   * @param fanout The names of the fan-out directories to scan, missing ones are ignored.
+   * @param prunableBefore Loose objects modified before this time, in milliseconds since the epoch,
+   *     can be pruned.
+   * @return the loose objects, empty if there is none.
+   */
+  LooseObjects scan(File objectsDirectory, String[] fanout, long prunableBefore) {
+    if (fanout.length == 0) {
+      return new LooseObjects(new ObjectIdSet(), new ObjectIdSet(), Long.MAX_VALUE);
+    }
+    List<Chunk> chunks =
+        pool.invoke(new FanOutScan(objectsDirectory, fanout, 0, fanout.length, prunableBefore));
+    int count = 0;
+    int freshCount = 0;
+    long oldestFresh = Long.MAX_VALUE;
+    for (Chunk chunk : chunks) {
+      count += chunk.ids.length / ObjectIdSet.WORDS;
+      freshCount += chunk.fresh.length / ObjectIdSet.WORDS;
+      oldestFresh = Math.min(oldestFresh, chunk.oldestFresh);
+    }
+    ObjectIdSet ids = new ObjectIdSet(count);
+    ObjectIdSet fresh = new ObjectIdSet(freshCount);
+    for (Chunk chunk : chunks) {
+      addAll(ids, chunk.ids);
+      addAll(fresh, chunk.fresh);
+    }
+    return new LooseObjects(ids, fresh, oldestFresh);
+  }
+
+  private static void addAll(ObjectIdSet set, int[] words) {
+    for (int offset = 0; offset < words.length; offset += ObjectIdSet.WORDS) {
+      set.addRaw(words, offset);
+    }
+  }
+
+  @Override
+  public void onShutdown() {
+    pool.shutdownNow();
+  }
+
+  /** Loose objects of a repository. */
+  static class LooseObjects {
+    private final ObjectIdSet all;
+    private final ObjectIdSet fresh;
+    private final long oldestFresh;
+
+    private LooseObjects(ObjectIdSet all, ObjectIdSet fresh, long oldestFresh) {
+      this.all = all;
+      this.fresh = fresh;
+      this.oldestFresh = oldestFresh;
+    }
+
+    /** @return all the loose objects. */
+    ObjectIdSet all() {
+      return all;
+    }
+
+    /** @return the loose objects too recent to be pruned. */
+    ObjectIdSet fresh() {
+      return fresh;
+    }
+
+    /**
+     * @return the modification time of the oldest loose object too recent to be pruned, in
+     *     milliseconds since the epoch, {@link Long#MAX_VALUE} if there is none or if none of the
+     *     loose objects are ever prunable.
+     */
+    long oldestFresh() {
+      return oldestFresh;
+    }
+  }
+
+  /** Raw words of the loose objects found by a task, and of the fresh ones among them. */
+  private static class Chunk {
+    private final int[] ids;
+    private final int[] fresh;
+    private final long oldestFresh;
+
+    private Chunk(int[] ids, int[] fresh, long oldestFresh) {
+      this.ids = ids;
+      this.fresh = fresh;
+      this.oldestFresh = oldestFresh;
+    }
+  }
+
+  /** Scans a range of the fan-out directories, splitting it among the threads of the pool. */
+  private static class FanOutScan extends RecursiveTask<List<Chunk>> {
+    private static final long serialVersionUID = 1L;
+
+    private final File objectsDirectory;
+    private final String[] fanout;
+    private final int from;
+    private final int to;
+    private final long prunableBefore;
+
+    FanOutScan(File objectsDirectory, String[] fanout, int from, int to, long prunableBefore) {
+      this.objectsDirectory = objectsDirectory;
+      this.fanout = fanout;
+      this.from = from;
+      this.to = to;
+      this.prunableBefore = prunableBefore;
+    }
+
+    @Override
+    protected List<Chunk> compute() {
+      if (to - from <= DIRECTORIES_PER_TASK) {
+        List<Chunk> chunks = new ArrayList<>();
+        chunks.add(scanDirectories());
+        return chunks;
+      }
+      int middle = (from + to) >>> 1;
+      FanOutScan left = new FanOutScan(objectsDirectory, fanout, from, middle, prunableBefore);
+      left.fork();
+      List<Chunk> chunks =
+          new FanOutScan(objectsDirectory, fanout, middle, to, prunableBefore).compute();
+      // each task parses into its own chunk, chunks are only gathered once both halves are done
+      chunks.addAll(left.join());
+      return chunks;
+    }
+
+    /** @return the raw words of the loose objects of the directories of this task. */
+    private Chunk scanDirectories() {
+      String[][] fileNames = new String[to - from][];
+      int count = 0;
+      for (int i = from; i < to; i++) {
+        if (fanout[i].length() == 2) {
+          fileNames[i - from] = new File(objectsDirectory, fanout[i]).list();
+          count += fileNames[i - from] != null ? fileNames[i - from].length : 0;
+        }
+      }
+      int[] words = new int[count * ObjectIdSet.WORDS];
+      int offset = 0;
+      int[] fresh = new int[0];
+      int freshOffset = 0;
+      long oldestFresh = Long.MAX_VALUE;
+      for (int i = from; i < to; i++) {
+        if (fileNames[i - from] != null) {
+          File directory = new File(objectsDirectory, fanout[i]);
+          for (String fileName : fileNames[i - from]) {
+            // files that do not represent loose objects are ignored
+            if (ObjectIdSet.parseLooseObject(fanout[i], fileName, words, offset)) {
+              long modified = freshSince(directory, fileName);
+              if (modified >= 0) {
+                oldestFresh = Math.min(oldestFresh, modified);
+                if (fresh.length == 0) {
+                  fresh = new int[words.length];
+                }
+                System.arraycopy(words, offset, fresh, freshOffset, ObjectIdSet.WORDS);
+                freshOffset += ObjectIdSet.WORDS;
+              }
+              offset += ObjectIdSet.WORDS;
+            }
+          }
+        }
+      }
+      return new Chunk(trim(words, offset), trim(fresh, freshOffset), oldestFresh);
+    }
+
+    /**
+     * @return the modification time of a fresh loose object, {@link Long#MAX_VALUE} if it never
+     *     becomes prunable, -1 if it is not fresh.
+     */
+    private long freshSince(File directory, String fileName) {
+      if (prunableBefore == ALL_PRUNABLE || prunableBefore == NONE_PRUNABLE) {
+        return prunableBefore == NONE_PRUNABLE ? Long.MAX_VALUE : -1;
+      }
+      // an object removed since the directory was listed has a modification time of 0, it is no
+      // longer fresh
+      long modified = new File(directory, fileName).lastModified();
+      return modified >= prunableBefore ? modified : -1;
+    }
+
+    private static int[] trim(int[] words, int length) {
+      return length == words.length ? words : Arrays.copyOf(words, length);
+    }
+  }
+}
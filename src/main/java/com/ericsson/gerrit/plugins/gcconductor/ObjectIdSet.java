@@ -0,0 +1,270 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.ericsson.gerrit.plugins.gcconductor;
+
+import java.util.function.Consumer;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * Set of object ids stored in a single <code>int</code> array.
+ *
+ * <p>The 5 words of the ids are stored inline in an open addressing table with linear probing, no
+ * object is allocated per id. Ids can be added from the names of loose object files and looked up
+ * with any {@link AnyObjectId}, e.g. the objects returned by a walk. This class is not thread
+ * safe.
+ */
+class ObjectIdSet {
+  static final int WORDS = Constants.OBJECT_ID_LENGTH / 4;
+  private static final int MIN_CAPACITY = 16;
+
+  // an id made of zeros marks an empty slot, the zero id itself is tracked separately
+  private int[] table;
+  private int mask;
+  private int size;
+  private boolean containsZeroId;
+  private final int[] scratch = new int[WORDS];
+
+  ObjectIdSet() {
+    this(MIN_CAPACITY / 2);
+  }
+
+  /** @param expectedSize The number of ids the set should hold without being resized. */
+  ObjectIdSet(int expectedSize) {
+    int capacity = MIN_CAPACITY;
+    while (capacity < expectedSize * 2) {
+      capacity <<= 1;
+    }
+    table = new int[capacity * WORDS];
+    mask = capacity - 1;
+  }
+
+  /** @return the number of ids in the set. */
+  int size() {
+    return size;
+  }
+
+  /** @return <code>true</code> if the set contains no id. */
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Add an id to the set.
+   *
+   * @param id The id to add.
+   * @return <code>true</code> if the id was added, <code>false</code> if it was already in the set.
+   */
+  boolean add(AnyObjectId id) {
+    id.copyRawTo(scratch, 0);
+    return addWords(scratch, 0);
+  }
+
+  /**
+   * Add an id from its raw words.
+   *
+   * @param words The array holding the 5 words of the id.
+   * @param offset The position of the first word in the array.
+   * @return <code>true</code> if the id was added, <code>false</code> if it was already in the set.
+   */
+  boolean addRaw(int[] words, int offset) {
+    return addWords(words, offset);
+  }
+
+  /**
+   * Parse the id of a loose object from the name of its fan-out directory and file, without
+   * allocating any object.
+   *
+   * @param dir The name of the fan-out directory, the first 2 hexadecimal digits of the id.
+   * @param fileName The name of the file, the last 38 hexadecimal digits of the id.
+   * @param words The array to store the 5 words of the id into.
+   * @param offset The position of the first word in the array.
+   * @return <code>true</code> if the names form a valid id, <code>false</code> otherwise.
+   */
+  static boolean parseLooseObject(String dir, String fileName, int[] words, int offset) {
+    if (dir.length() != 2 || fileName.length() != Constants.OBJECT_ID_STRING_LENGTH - 2) {
+      return false;
+    }
+    for (int w = 0; w < WORDS; w++) {
+      int word = 0;
+      for (int i = w * 8; i < w * 8 + 8; i++) {
+        int digit = hexDigit(i < 2 ? dir.charAt(i) : fileName.charAt(i - 2));
+        if (digit < 0) {
+          return false;
+        }
+        word = (word << 4) | digit;
+      }
+      words[offset + w] = word;
+    }
+    return true;
+  }
+
+  /**
+   * @param id The id to look for.
+   * @return <code>true</code> if the set contains the id.
+   */
+  boolean contains(AnyObjectId id) {
+    if (isZeroId(id)) {
+      return containsZeroId;
+    }
+    return find(id) >= 0;
+  }
+
+  /**
+   * Remove an id from the set.
+   *
+   * @param id The id to remove.
+   * @return <code>true</code> if the id was removed, <code>false</code> if it was not in the set.
+   */
+  boolean remove(AnyObjectId id) {
+    if (isZeroId(id)) {
+      if (!containsZeroId) {
+        return false;
+      }
+      containsZeroId = false;
+      size--;
+      return true;
+    }
+    int slot = find(id);
+    if (slot < 0) {
+      return false;
+    }
+    deleteSlot(slot);
+    size--;
+    return true;
+  }
+
+  /**
+   * Pass every id of the set to the consumer, in no particular order.
+   *
+   * @param consumer The consumer to pass the ids to.
+   */
+  void forEach(Consumer<ObjectId> consumer) {
+    if (containsZeroId) {
+      consumer.accept(ObjectId.zeroId());
+    }
+    for (int p = 0; p < table.length; p += WORDS) {
+      if (!isEmptySlot(table, p)) {
+        consumer.accept(ObjectId.fromRaw(table, p));
+      }
+    }
+  }
+
+  private boolean addWords(int[] words, int offset) {
+    if (isEmptySlot(words, offset)) {
+      if (containsZeroId) {
+        return false;
+      }
+      containsZeroId = true;
+      size++;
+      return true;
+    }
+    int slot = words[offset + 1] & mask;
+    while (!isEmptySlot(table, slot * WORDS)) {
+      if (equals(table, slot * WORDS, words, offset)) {
+        return false;
+      }
+      slot = (slot + 1) & mask;
+    }
+    System.arraycopy(words, offset, table, slot * WORDS, WORDS);
+    size++;
+    if (size * 4L > (mask + 1) * 3L) {
+      grow();
+    }
+    return true;
+  }
+
+  private int find(AnyObjectId id) {
+    // the hash code of an id is its second word, same as the slot of addWords
+    int slot = id.hashCode() & mask;
+    while (!isEmptySlot(table, slot * WORDS)) {
+      if (id.compareTo(table, slot * WORDS) == 0) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return -1;
+  }
+
+  // Shift back the following entries of the probe sequence instead of leaving a tombstone.
+  private void deleteSlot(int slot) {
+    int hole = slot;
+    int next = hole;
+    while (true) {
+      next = (next + 1) & mask;
+      if (isEmptySlot(table, next * WORDS)) {
+        break;
+      }
+      int home = table[next * WORDS + 1] & mask;
+      // entries whose home slot is cyclically in (hole, next] cannot move before their home slot
+      boolean staysInPlace =
+          hole <= next ? hole < home && home <= next : hole < home || home <= next;
+      if (!staysInPlace) {
+        System.arraycopy(table, next * WORDS, table, hole * WORDS, WORDS);
+        hole = next;
+      }
+    }
+    for (int i = hole * WORDS; i < hole * WORDS + WORDS; i++) {
+      table[i] = 0;
+    }
+  }
+
+  private void grow() {
+    int[] old = table;
+    table = new int[old.length * 2];
+    mask = (mask << 1) | 1;
+    size = containsZeroId ? 1 : 0;
+    for (int p = 0; p < old.length; p += WORDS) {
+      if (!isEmptySlot(old, p)) {
+        addWords(old, p);
+      }
+    }
+  }
+
+  private static int hexDigit(char c) {
+    if (c >= '0' && c <= '9') {
+      return c - '0';
+    }
+    if (c >= 'a' && c <= 'f') {
+      return c - 'a' + 10;
+    }
+    if (c >= 'A' && c <= 'F') {
+      return c - 'A' + 10;
+    }
+    return -1;
+  }
+
+  private static boolean isZeroId(AnyObjectId id) {
+    return id.compareTo(ObjectId.zeroId()) == 0;
+  }
+
+  private static boolean isEmptySlot(int[] words, int offset) {
+    return words[offset] == 0
+        && words[offset + 1] == 0
+        && words[offset + 2] == 0
+        && words[offset + 3] == 0
+        && words[offset + 4] == 0;
+  }
+
+  private static boolean equals(int[] a, int aOffset, int[] b, int bOffset) {
+    for (int i = 0; i < WORDS; i++) {
+      if (a[aOffset + i] != b[bOffset + i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,119 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.ericsson.gerrit.plugins.gcconductor;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/** Pack files and garbage found in the pack directory of a repository. */
+class PackDirectory {
+  static final long SMALL_PACK_SIZE = 1024 * 1024;
+
+  private static final String PACK_PREFIX = "pack-";
+  private static final String PACK_EXTENSION = "pack";
+  private static final String BITMAP_EXTENSION = "bitmap";
+  private static final String[] PACK_FILE_EXTENSIONS = {
+    PACK_EXTENSION, "idx", BITMAP_EXTENSION, "keep", "rev", "promisor", "mtimes"
+  };
+
+  final int smallPacks;
+  final long garbageBytes;
+  // time of the newest bitmap or, if none, of the oldest pack, 0 if there is no pack
+  final long lastGc;
+
+  private PackDirectory(int smallPacks, long garbageBytes, long lastGc) {
+    this.smallPacks = smallPacks;
+    this.garbageBytes = garbageBytes;
+    this.lastGc = lastGc;
+  }
+
+  /**
+   * List the pack directory of a repository.
+   *
+   * <p>Garbage files are the files of the pack directory that are neither pack files nor
+   * companions of an existing pack file, typically left over by an interrupted gc or push. Gc
+   * writes a bitmap index for the pack it creates, the newest bitmap is taken as the time of the
+   * last gc.
+   *
+   * @param packDirectory The pack directory of the repository.
+   * @return the pack files and garbage of the directory, none if the directory does not exist.
+   */
+  static PackDirectory scan(File packDirectory) {
+    File[] files = packDirectory.listFiles();
+    if (files == null) {
+      return new PackDirectory(0, 0, 0);
+    }
+    Set<String> packs = new HashSet<>();
+    int smallPacks = 0;
+    long oldestPack = Long.MAX_VALUE;
+    for (File file : files) {
+      if (file.isFile() && isPackFile(file.getName(), PACK_EXTENSION)) {
+        packs.add(baseName(file.getName()));
+        if (file.length() < SMALL_PACK_SIZE) {
+          smallPacks++;
+        }
+        oldestPack = Math.min(oldestPack, file.lastModified());
+      }
+    }
+    long garbageBytes = 0;
+    long newestBitmap = 0;
+    for (File file : files) {
+      String name = file.getName();
+      if (!file.isFile()) {
+        continue;
+      }
+      if (!packs.contains(baseName(name)) || !isPackFile(name, PACK_FILE_EXTENSIONS)) {
+        garbageBytes += file.length();
+      } else if (isPackFile(name, BITMAP_EXTENSION)) {
+        newestBitmap = Math.max(newestBitmap, file.lastModified());
+      }
+    }
+    long lastGc = newestBitmap > 0 ? newestBitmap : packs.isEmpty() ? 0 : oldestPack;
+    return new PackDirectory(smallPacks, garbageBytes, lastGc);
+  }
+
+  /**
+   * @param now The current time in milliseconds since the epoch.
+   * @return the number of full days since the last gc, 0 if there is no pack.
+   */
+  long daysSinceGc(long now) {
+    return lastGc == 0 ? 0 : Math.max(0, TimeUnit.MILLISECONDS.toDays(now - lastGc));
+  }
+
+  private static boolean isPackFile(String name, String... extensions) {
+    if (!name.startsWith(PACK_PREFIX)) {
+      return false;
+    }
+    String extension = extension(name);
+    for (String e : extensions) {
+      if (e.equals(extension)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static String extension(String name) {
+    int dot = name.lastIndexOf('.');
+    return dot < 0 ? "" : name.substring(dot + 1);
+  }
+
+  private static String baseName(String name) {
+    int dot = name.lastIndexOf('.');
+    return dot < 0 ? name : name.substring(0, dot);
+  }
+}
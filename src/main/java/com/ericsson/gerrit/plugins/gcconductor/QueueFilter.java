@@ -0,0 +1,137 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.ericsson.gerrit.plugins.gcconductor;
+
+import java.util.Optional;
+
+/** Criteria to select the repositories returned when listing the queue. */
+public class QueueFilter {
+
+  private static final QueueFilter ALL = builder().build();
+
+  private final Optional<String> executorPrefix;
+  private final Optional<String> queuedFrom;
+  private final Optional<Boolean> aggressive;
+  private final Optional<String> pathPrefix;
+  private final int limit;
+  private final int offset;
+
+  private QueueFilter(Builder builder) {
+    this.executorPrefix = builder.executorPrefix;
+    this.queuedFrom = builder.queuedFrom;
+    this.aggressive = builder.aggressive;
+    this.pathPrefix = builder.pathPrefix;
+    this.limit = builder.limit;
+    this.offset = builder.offset;
+  }
+
+  /** @return filter selecting all the repositories of the queue. */
+  public static QueueFilter all() {
+    return ALL;
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /** @return the prefix of the executors names the repositories are picked by, if any. */
+  public Optional<String> getExecutorPrefix() {
+    return executorPrefix;
+  }
+
+  /** @return the hostname the repositories were queued from, if any. */
+  public Optional<String> getQueuedFrom() {
+    return queuedFrom;
+  }
+
+  /** @return the gc mode of the repositories, if any. */
+  public Optional<Boolean> getAggressive() {
+    return aggressive;
+  }
+
+  /** @return the prefix of the repositories paths, if any. */
+  public Optional<String> getPathPrefix() {
+    return pathPrefix;
+  }
+
+  /** @return the maximum number of repositories to return, 0 if unlimited. */
+  public int getLimit() {
+    return limit;
+  }
+
+  /** @return the number of matching repositories to skip. */
+  public int getOffset() {
+    return offset;
+  }
+
+  public static class Builder {
+    private Optional<String> executorPrefix = Optional.empty();
+    private Optional<String> queuedFrom = Optional.empty();
+    private Optional<Boolean> aggressive = Optional.empty();
+    private Optional<String> pathPrefix = Optional.empty();
+    private int limit;
+    private int offset;
+
+    private Builder() {}
+
+    /**
+     * Only select repositories picked by an executor whose name starts with the specified prefix.
+     */
+    public Builder executorPrefix(String executorPrefix) {
+      this.executorPrefix = Optional.ofNullable(executorPrefix);
+      return this;
+    }
+
+    /** Only select repositories queued from the specified hostname. */
+    public Builder queuedFrom(String queuedFrom) {
+      this.queuedFrom = Optional.ofNullable(queuedFrom);
+      return this;
+    }
+
+    /** Only select aggressive or non-aggressive repositories. */
+    public Builder aggressive(Boolean aggressive) {
+      this.aggressive = Optional.ofNullable(aggressive);
+      return this;
+    }
+
+    /** Only select repositories whose path starts with the specified prefix. */
+    public Builder pathPrefix(String pathPrefix) {
+      this.pathPrefix = Optional.ofNullable(pathPrefix);
+      return this;
+    }
+
+    /** Select at most the specified number of repositories, 0 means unlimited. */
+    public Builder limit(int limit) {
+      if (limit < 0) {
+        throw new IllegalArgumentException("limit must not be negative: " + limit);
+      }
+      this.limit = limit;
+      return this;
+    }
+
+    /** Skip the specified number of matching repositories. */
+    public Builder offset(int offset) {
+      if (offset < 0) {
+        throw new IllegalArgumentException("offset must not be negative: " + offset);
+      }
+      this.offset = offset;
+      return this;
+    }
+
+    public QueueFilter build() {
+      return new QueueFilter(this);
+    }
+  }
+}
@@ -24,14 +24,26 @@ public class RepositoryInfo {
   private final String executor;
   private final String queuedFrom;
   private final boolean aggressive;
+  private final long score;
 
   public RepositoryInfo(
       String path, Timestamp queuedAt, String executor, String queuedFrom, boolean aggressive) {
+    this(path, queuedAt, executor, queuedFrom, aggressive, 0);
+  }
+
+  public RepositoryInfo(
+      String path,
+      Timestamp queuedAt,
+      String executor,
+      String queuedFrom,
+      boolean aggressive,
+      long score) {
     this.path = path;
     this.queuedAt = queuedAt;
     this.executor = executor;
     this.queuedFrom = queuedFrom;
     this.aggressive = aggressive;
+    this.score = score;
   }
 
   /** @return the path to the repository. */
@@ -57,4 +69,9 @@ public class RepositoryInfo {
   public boolean isAggressive() {
     return aggressive;
   }
+
+  /** @return the dirtiness score, repositories with higher scores are picked first. */
+  public long getScore() {
+    return score;
+  }
 }
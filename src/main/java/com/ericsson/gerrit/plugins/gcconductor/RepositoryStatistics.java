@@ -0,0 +1,32 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.ericsson.gerrit.plugins.gcconductor;
+
+import java.io.IOException;
+import org.eclipse.jgit.internal.storage.file.FileRepository;
+import org.eclipse.jgit.internal.storage.file.GC.RepoStatistics;
+
+/** Provides the statistics used to evaluate the dirtiness of repositories. */
+public interface RepositoryStatistics {
+
+  /**
+   * Returns the statistics of a repository.
+   *
+   * @param repository The repository to get the statistics of.
+   * @return the statistics of the repository.
+   * @throws IOException if an error occur while reading the statistics.
+   */
+  RepoStatistics get(FileRepository repository) throws IOException;
+}
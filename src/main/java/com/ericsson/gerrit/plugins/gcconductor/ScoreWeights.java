@@ -0,0 +1,108 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.ericsson.gerrit.plugins.gcconductor;
+
+import java.util.Objects;
+
+/**
+ * Weights of the dirtiness score of a repository.
+ *
+ * <p>The score is the weighted sum of the signs of fragmentation of the repository, the dirty
+ * repositories with the highest scores are picked first from the queue.
+ */
+public class ScoreWeights {
+  private static final long MEGABYTE = 1024 * 1024;
+
+  private final int pack;
+  private final int smallPack;
+  private final int looseObject;
+  private final int looseRef;
+  private final int garbage;
+  private final int age;
+
+  /**
+   * Create ScoreWeights from the specified weights.
+   *
+   * @param pack The weight of a pack file.
+   * @param smallPack The additional weight of a pack file smaller than a megabyte.
+   * @param looseObject The weight of a loose object gc can pack or prune.
+   * @param looseRef The weight of a loose ref.
+   * @param garbage The weight of a megabyte of garbage files in the pack directory.
+   * @param age The weight of a day since the last gc.
+   */
+  public ScoreWeights(
+      int pack, int smallPack, int looseObject, int looseRef, int garbage, int age) {
+    this.pack = pack;
+    this.smallPack = smallPack;
+    this.looseObject = looseObject;
+    this.looseRef = looseRef;
+    this.garbage = garbage;
+    this.age = age;
+  }
+
+  /**
+   * Compute the dirtiness score of a repository.
+   *
+   * @param packs The number of pack files.
+   * @param smallPacks The number of pack files smaller than a megabyte.
+   * @param looseObjects The number of loose objects gc can pack or prune.
+   * @param looseRefs The number of loose refs.
+   * @param garbageBytes The size of the garbage files in the pack directory.
+   * @param daysSinceGc The number of days since the last gc.
+   * @return the dirtiness score, never negative.
+   */
+  public long score(
+      long packs,
+      long smallPacks,
+      long looseObjects,
+      long looseRefs,
+      long garbageBytes,
+      long daysSinceGc) {
+    long score =
+        pack * packs
+            + smallPack * smallPacks
+            + looseObject * looseObjects
+            + looseRef * looseRefs
+            + garbage * (garbageBytes / MEGABYTE)
+            + age * daysSinceGc;
+    return Math.max(0, score);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(pack, smallPack, looseObject, looseRef, garbage, age);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (!(obj instanceof ScoreWeights)) {
+      return false;
+    }
+    ScoreWeights other = (ScoreWeights) obj;
+    return pack == other.pack
+        && smallPack == other.smallPack
+        && looseObject == other.looseObject
+        && looseRef == other.looseRef
+        && garbage == other.garbage
+        && age == other.age;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "pack=%d, smallPack=%d, looseObject=%d, looseRef=%d, garbage=%d, age=%d",
+        pack, smallPack, looseObject, looseRef, garbage, age);
+  }
+}
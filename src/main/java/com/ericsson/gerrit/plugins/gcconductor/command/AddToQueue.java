@@ -70,11 +70,13 @@ final class AddToQueue extends SshCommand {
         repositoryPath = GcUtils.resolvePath(gitRepositoryManager, projectCache, repository);
       }
       repository = repositoryPath.toString();
-      queue.add(repository, hostName, aggressive);
+      boolean added = queue.add(repository, hostName, aggressive);
       if (first) {
         queue.bumpToFirst(repository);
       }
-      stdout.println(String.format("%s was added to GC queue", repository));
+      stdout.println(
+          String.format(
+              added ? "%s was added to GC queue" : "%s is already in GC queue", repository));
     } catch (IOException | GcQueueException e) {
       throw die(e);
     }
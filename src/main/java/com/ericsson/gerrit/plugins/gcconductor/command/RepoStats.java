@@ -16,6 +16,7 @@ package com.ericsson.gerrit.plugins.gcconductor.command;
 
 import static com.google.gerrit.sshd.CommandMetaData.Mode.MASTER_OR_SLAVE;
 
+import com.ericsson.gerrit.plugins.gcconductor.RepositoryStatistics;
 import com.google.gerrit.common.data.GlobalCapability;
 import com.google.gerrit.extensions.annotations.RequiresCapability;
 import com.google.gerrit.server.git.GitRepositoryManager;
@@ -29,7 +30,6 @@ import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import org.eclipse.jgit.internal.storage.file.FileRepository;
-import org.eclipse.jgit.internal.storage.file.GC;
 import org.eclipse.jgit.internal.storage.file.GC.RepoStatistics;
 import org.eclipse.jgit.lib.RepositoryCache;
 import org.eclipse.jgit.lib.RepositoryCache.FileKey;
@@ -50,6 +50,8 @@ final class RepoStats extends SshCommand {
 
   @Inject private ProjectCache projectCache;
 
+  @Inject private RepositoryStatistics repositoryStatistics;
+
   @Override
   protected void run() throws UnloggedFailure {
     try {
@@ -71,7 +73,7 @@ final class RepoStats extends SshCommand {
     try (FileRepository repository =
         (FileRepository)
             RepositoryCache.open(FileKey.exact(new File(repositoryPath), FS.DETECTED))) {
-      return new GC(repository).getStatistics();
+      return repositoryStatistics.get(repository);
     } catch (IOException e) {
       throw die(e);
     }
@@ -17,7 +17,7 @@ package com.ericsson.gerrit.plugins.gcconductor.command;
 import static com.google.gerrit.sshd.CommandMetaData.Mode.MASTER_OR_SLAVE;
 
 import com.ericsson.gerrit.plugins.gcconductor.GcQueue;
-import com.ericsson.gerrit.plugins.gcconductor.RepositoryInfo;
+import com.ericsson.gerrit.plugins.gcconductor.QueueFilter;
 import com.google.common.base.Strings;
 import com.google.gerrit.common.data.GlobalCapability;
 import com.google.gerrit.extensions.annotations.RequiresCapability;
@@ -28,55 +28,88 @@ import com.google.gerrit.sshd.SshCommand;
 import com.google.inject.Inject;
 import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.List;
+import org.kohsuke.args4j.Option;
 
 @AdminHighPriorityCommand
 @RequiresCapability(GlobalCapability.ADMINISTRATE_SERVER)
 @CommandMetaData(name = "show-queue", description = "Show GC queue", runsAt = MASTER_OR_SLAVE)
 final class ShowQueue extends SshCommand {
+  // Typical executor names consist of 11 characters hostname suffixed by "-n" and typical queued
+  // from hostname consist of 11 characters, longer values are not truncated.
+  private static final String FORMAT = "%-12s %-13s %-11s %8s %s\n";
+  private static final String SEPARATOR =
+      "---------------------------------------------------------------------------------------\n";
+
+  @Option(
+      name = "--executor",
+      metaVar = "PREFIX",
+      usage = "only show repositories picked by executors whose name starts with PREFIX")
+  private String executorPrefix;
+
+  @Option(
+      name = "--queued-from",
+      metaVar = "HOSTNAME",
+      usage = "only show repositories queued from HOSTNAME")
+  private String queuedFrom;
+
+  @Option(
+      name = "--aggressive",
+      forbids = "--non-aggressive",
+      usage = "only show repositories queued for aggressive GC")
+  private boolean aggressive;
+
+  @Option(
+      name = "--non-aggressive",
+      forbids = "--aggressive",
+      usage = "only show repositories queued for non-aggressive GC")
+  private boolean nonAggressive;
+
+  @Option(
+      name = "--path-prefix",
+      metaVar = "PREFIX",
+      usage = "only show repositories whose path starts with PREFIX")
+  private String pathPrefix;
+
+  @Option(name = "--limit", metaVar = "CNT", usage = "maximum number of repositories to show")
+  private int limit;
+
+  @Option(name = "--offset", metaVar = "CNT", usage = "number of repositories to skip")
+  private int offset;
 
   @Inject private GcQueue queue;
 
   @Override
   protected void run() throws UnloggedFailure {
     try {
-      List<RepositoryInfo> repositories = queue.list();
-
-      // Find width of executor and queuedFrom column. Typical executor names
-      // consist of 11 characters hostname suffixed by "-n" and typical queued
-      // from hostname consist of 11 characters
-      int executorColumnWidth = 13;
-      int queuedFromColumnWidth = 11;
-      for (RepositoryInfo repositoryInfo : repositories) {
-        if (repositoryInfo.getExecutor() != null) {
-          executorColumnWidth =
-              Math.max(executorColumnWidth, repositoryInfo.getExecutor().length());
-        }
-        queuedFromColumnWidth =
-            Math.max(queuedFromColumnWidth, repositoryInfo.getQueuedFrom().length());
-      }
+      QueueFilter filter =
+          QueueFilter.builder()
+              .executorPrefix(executorPrefix)
+              .queuedFrom(queuedFrom)
+              .aggressive(aggressive ? Boolean.TRUE : nonAggressive ? Boolean.FALSE : null)
+              .pathPrefix(pathPrefix)
+              .limit(limit)
+              .offset(offset)
+              .build();
 
-      String format = "%-12s %-" + executorColumnWidth + "s %-" + queuedFromColumnWidth + "s %s\n";
-      stdout.print(String.format(format, "Queued At", "Executor", "Queued From", "Repository"));
-      stdout.print(
-          "------------------------------------------------------------------------------\n");
-      for (RepositoryInfo repositoryInfo : repositories) {
-        stdout.print(
-            String.format(
-                format,
-                queuedAt(repositoryInfo.getQueuedAt()),
-                Strings.nullToEmpty(repositoryInfo.getExecutor()),
-                repositoryInfo.getQueuedFrom(),
-                repositoryInfo.getPath()));
-      }
-      stdout.print(
-          "------------------------------------------------------------------------------\n");
       stdout.print(
-          "  "
-              + repositories.size()
-              + " repositor"
-              + (repositories.size() > 1 ? "ies" : "y")
-              + "\n");
+          String.format(FORMAT, "Queued At", "Executor", "Queued From", "Score", "Repository"));
+      stdout.print(SEPARATOR);
+      int count =
+          queue.list(
+              filter,
+              repositoryInfo ->
+                  stdout.print(
+                      String.format(
+                          FORMAT,
+                          queuedAt(repositoryInfo.getQueuedAt()),
+                          Strings.nullToEmpty(repositoryInfo.getExecutor()),
+                          repositoryInfo.getQueuedFrom(),
+                          repositoryInfo.getScore(),
+                          repositoryInfo.getPath())));
+      stdout.print(SEPARATOR);
+      stdout.print("  " + count + " repositor" + (count == 1 ? "y" : "ies") + "\n");
+    } catch (IllegalArgumentException e) {
+      throw die(e.getMessage());
     } catch (Exception e) {
       throw die(e);
     }
@@ -0,0 +1,386 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.ericsson.gerrit.plugins.gcconductor.evaluator;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import com.ericsson.gerrit.plugins.gcconductor.DirectEnqueuer;
+import com.ericsson.gerrit.plugins.gcconductor.Enqueuer;
+import com.ericsson.gerrit.plugins.gcconductor.GcQueue;
+import com.ericsson.gerrit.plugins.gcconductor.GcQueueException;
+import com.ericsson.gerrit.plugins.gcconductor.GcRequest;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.gerrit.extensions.annotations.PluginData;
+import com.google.gerrit.extensions.events.LifecycleListener;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Adds repositories to the queue from a background thread so that evaluation does not wait for the
+ * queue.
+ *
+ * <p>Repositories are appended to a buffer file in the plugin data directory before being added to
+ * the queue in batches. Repositories that could not be added, because the queue is unavailable or
+ * the plugin is unloaded, are kept in the buffer and added once the plugin is loaded again. When
+ * the buffer is full, repositories are added to the queue directly.
+ *
+ * <p>Buffered repositories are written to the buffer file right away, they survive a crash of the
+ * process. The buffer file is only synced to disk by the flushes, every second, repositories
+ * buffered during the last second may be lost if the host crashes.
+ */
+@Singleton
+class BufferedEnqueuer implements Enqueuer, LifecycleListener {
+  private static final Logger log = LoggerFactory.getLogger(BufferedEnqueuer.class);
+
+  static final String BUFFER_FILE = "enqueue.buffer";
+  static final int BATCH_SIZE = 500;
+
+  private static final long FLUSH_INTERVAL_MS = 1000;
+  private static final long STOP_TIMEOUT_SECONDS = 10;
+
+  private final GcQueue queue;
+  private final DirectEnqueuer directEnqueuer;
+  private final int capacity;
+  private final Path file;
+  private final ScheduledExecutorService flusher;
+  private final Object flushLock = new Object();
+
+  // repositories not added to the queue yet, in buffering order
+  private final Map<String, Entry> pending = new LinkedHashMap<>();
+  private FileChannel channel;
+  private DataOutputStream out;
+  // repositories were written to the buffer file since it was last synced to disk
+  private boolean unsynced;
+  private boolean flushing;
+  private boolean failing;
+
+  @Inject
+  BufferedEnqueuer(
+      GcQueue queue,
+      DirectEnqueuer directEnqueuer,
+      EvaluatorConfig config,
+      @PluginData Path dataDir,
+      @BufferFlusher ScheduledExecutorService flusher) {
+    this.queue = queue;
+    this.directEnqueuer = directEnqueuer;
+    this.capacity = config.getBufferSize();
+    this.file = dataDir.resolve(BUFFER_FILE);
+    this.flusher = flusher;
+  }
+
+  @Override
+  public void start() {
+    if (capacity == 0) {
+      return;
+    }
+    try {
+      open();
+    } catch (IOException e) {
+      log.error("Failed to open buffer {}, repositories are added to the queue directly", file, e);
+      return;
+    }
+    flusher.scheduleWithFixedDelay(this::flush, 0, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    flushing = true;
+  }
+
+  @Override
+  public void stop() {
+    flusher.shutdown();
+    if (flushing) {
+      try {
+        flusher.awaitTermination(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      flushing = false;
+    }
+    // repositories still buffered after this last attempt are added when the plugin is loaded again
+    flush();
+    close();
+  }
+
+  @Override
+  public void enqueue(String repository, String queuedFrom, boolean isAggressive, long score) {
+    if (!buffer(repository, queuedFrom, new GcRequest(isAggressive, score))) {
+      directEnqueuer.enqueue(repository, queuedFrom, isAggressive, score);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Repositories not to be picked right away are not buffered, they are added to the queue
+   * directly.
+   */
+  @Override
+  public void enqueue(
+      String repository, String queuedFrom, boolean isAggressive, long score, long notBefore) {
+    if (notBefore > 0) {
+      directEnqueuer.enqueue(repository, queuedFrom, isAggressive, score, notBefore);
+      return;
+    }
+    enqueue(repository, queuedFrom, isAggressive, score);
+  }
+
+  /** @return the number of repositories waiting to be added to the queue. */
+  @VisibleForTesting
+  synchronized int size() {
+    return pending.size();
+  }
+
+  /** Read the repositories left in the buffer file and open it for appending. */
+  @VisibleForTesting
+  synchronized void open() throws IOException {
+    if (Files.exists(file)) {
+      try (DataInputStream in =
+          new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+        replay(in);
+      }
+      if (pending.size() > capacity) {
+        // the buffer was filled with a larger size, replayed repositories are all kept and new
+        // ones are added to the queue directly until it drains
+        log.warn(
+            "{} buffered repositories exceed the buffer size of {}, they will all be added to the queue",
+            pending.size(),
+            capacity);
+      } else if (!pending.isEmpty()) {
+        log.info("{} buffered repositories will be added to the queue", pending.size());
+      }
+    } else {
+      Files.createDirectories(file.getParent());
+    }
+    compact();
+  }
+
+  @VisibleForTesting
+  synchronized void close() {
+    if (out != null) {
+      try {
+        out.close();
+      } catch (IOException e) {
+        log.warn("Failed to close buffer {}", file, e);
+      }
+      out = null;
+      channel = null;
+    }
+  }
+
+  /** Add the buffered repositories to the queue, until the buffer is empty or the queue fails. */
+  @VisibleForTesting
+  void flush() {
+    synchronized (flushLock) {
+      // syncs are batched here rather than paid by each buffered repository
+      sync();
+      int flushed = 0;
+      List<Map.Entry<String, Entry>> batch = nextBatch();
+      while (!batch.isEmpty()) {
+        try {
+          addToQueue(batch);
+        } catch (GcQueueException e) {
+          if (!failing) {
+            log.error("Failed to add buffered repositories to the queue, will retry", e);
+            failing = true;
+          }
+          break;
+        }
+        if (failing) {
+          log.info("Queue is available again, adding buffered repositories");
+          failing = false;
+        }
+        removeAll(batch);
+        flushed += batch.size();
+        batch = nextBatch();
+      }
+      if (flushed > 0) {
+        compactOrDisable();
+      }
+    }
+  }
+
+  private synchronized boolean buffer(String repository, String queuedFrom, GcRequest request) {
+    if (out == null) {
+      // buffer is disabled or closed
+      return false;
+    }
+    Entry buffered = pending.get(repository);
+    if (buffered != null && request.isCoveredBy(buffered.request)) {
+      return true;
+    }
+    if (buffered == null && pending.size() >= capacity) {
+      log.debug("Buffer is full, adding repository {} to the queue directly", repository);
+      return false;
+    }
+    Entry entry =
+        new Entry(queuedFrom, buffered == null ? request : request.merge(buffered.request));
+    try {
+      write(out, repository, entry);
+      out.flush();
+      unsynced = true;
+    } catch (IOException e) {
+      log.error("Failed to buffer repository {}", repository, e);
+      // drop the partially written record
+      compactOrDisable();
+      return false;
+    }
+    // replacing an entry upgrades it to aggressive or raises its score, it keeps its position
+    pending.put(repository, entry);
+    return true;
+  }
+
+  /** Sync the repositories written to the buffer file since the last sync to disk. */
+  private synchronized void sync() {
+    if (out == null || !unsynced) {
+      return;
+    }
+    try {
+      channel.force(false);
+      unsynced = false;
+    } catch (IOException e) {
+      log.warn("Failed to sync buffer {}", file, e);
+    }
+  }
+
+  private void replay(DataInputStream in) throws IOException {
+    while (true) {
+      try {
+        boolean isAggressive = in.readBoolean();
+        long score = in.readLong();
+        String queuedFrom = in.readUTF();
+        String repository = in.readUTF();
+        GcRequest request = new GcRequest(isAggressive, score);
+        Entry buffered = pending.get(repository);
+        if (buffered == null) {
+          pending.put(repository, new Entry(queuedFrom, request));
+        } else if (!request.isCoveredBy(buffered.request)) {
+          pending.put(repository, new Entry(queuedFrom, request.merge(buffered.request)));
+        }
+      } catch (EOFException | UTFDataFormatException e) {
+        // the last record was not completely written
+        return;
+      }
+    }
+  }
+
+  private synchronized List<Map.Entry<String, Entry>> nextBatch() {
+    List<Map.Entry<String, Entry>> batch = new ArrayList<>(Math.min(BATCH_SIZE, pending.size()));
+    for (Map.Entry<String, Entry> buffered : pending.entrySet()) {
+      if (batch.size() >= BATCH_SIZE) {
+        break;
+      }
+      batch.add(new AbstractMap.SimpleImmutableEntry<>(buffered));
+    }
+    return batch;
+  }
+
+  private void addToQueue(List<Map.Entry<String, Entry>> batch) throws GcQueueException {
+    Map<String, Map<String, GcRequest>> byQueuedFrom = new LinkedHashMap<>();
+    for (Map.Entry<String, Entry> buffered : batch) {
+      byQueuedFrom
+          .computeIfAbsent(buffered.getValue().queuedFrom, h -> new LinkedHashMap<>())
+          .put(buffered.getKey(), buffered.getValue().request);
+    }
+    for (Map.Entry<String, Map<String, GcRequest>> repositories : byQueuedFrom.entrySet()) {
+      int added = queue.addAll(repositories.getValue(), repositories.getKey());
+      log.debug("Added {} of {} buffered repositories", added, repositories.getValue().size());
+    }
+  }
+
+  private synchronized void removeAll(List<Map.Entry<String, Entry>> batch) {
+    for (Map.Entry<String, Entry> flushed : batch) {
+      // keep the repositories upgraded to aggressive or rescored while being added
+      pending.remove(flushed.getKey(), flushed.getValue());
+    }
+  }
+
+  private synchronized void compactOrDisable() {
+    try {
+      compact();
+    } catch (IOException e) {
+      log.error(
+          "Failed to rewrite buffer {}, repositories are added to the queue directly", file, e);
+      close();
+    }
+  }
+
+  /** Rewrite the buffer file with the repositories not added to the queue yet. */
+  private void compact() throws IOException {
+    Path tmp = file.resolveSibling(BUFFER_FILE + ".tmp");
+    try (FileChannel tmpChannel = openChannel(tmp, TRUNCATE_EXISTING);
+        DataOutputStream tmpOut = newOutput(tmpChannel)) {
+      for (Map.Entry<String, Entry> buffered : pending.entrySet()) {
+        write(tmpOut, buffered.getKey(), buffered.getValue());
+      }
+      tmpOut.flush();
+      // the rewritten buffer must not replace the current one before being on disk
+      tmpChannel.force(false);
+    }
+    close();
+    Files.move(tmp, file, ATOMIC_MOVE);
+    channel = openChannel(file, APPEND);
+    out = newOutput(channel);
+    unsynced = false;
+  }
+
+  private static FileChannel openChannel(Path path, OpenOption option) throws IOException {
+    return FileChannel.open(path, CREATE, WRITE, option);
+  }
+
+  private static DataOutputStream newOutput(FileChannel channel) {
+    return new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+  }
+
+  private static void write(DataOutputStream out, String repository, Entry entry)
+      throws IOException {
+    out.writeBoolean(entry.request.isAggressive());
+    out.writeLong(entry.request.getScore());
+    out.writeUTF(entry.queuedFrom);
+    out.writeUTF(repository);
+  }
+
+  private static class Entry {
+    final String queuedFrom;
+    final GcRequest request;
+
+    Entry(String queuedFrom, GcRequest request) {
+      this.queuedFrom = queuedFrom;
+      this.request = request;
+    }
+  }
+}
@@ -0,0 +1,245 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.ericsson.gerrit.plugins.gcconductor.evaluator;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+
+import com.ericsson.gerrit.plugins.gcconductor.DirectRepositoryStatistics;
+import com.ericsson.gerrit.plugins.gcconductor.RepositoryStatistics;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gerrit.extensions.annotations.PluginName;
+import com.google.gerrit.extensions.events.LifecycleListener;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.eclipse.jgit.internal.storage.file.FileRepository;
+import org.eclipse.jgit.internal.storage.file.GC.RepoStatistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Caches the statistics of the recently evaluated repositories.
+ *
+ * <p>Cached statistics are invalidated when a ref of the repository is updated, which is when
+ * objects are added, and when files are added to or removed from the pack directory of the
+ * repository, which catches the repacks of the gc executor. Cached statistics also expire after a
+ * while, for the changes that cannot be watched, like repacks by a gc executor on another host of
+ * a shared file system. Repositories whose pack directory cannot be watched are not cached.
+ */
+@Singleton
+class CachedRepositoryStatistics implements RepositoryStatistics, LifecycleListener {
+  private static final Logger log = LoggerFactory.getLogger(CachedRepositoryStatistics.class);
+
+  static final long EXPIRE_AFTER_WRITE_MINUTES = 15;
+
+  // invalidations are counted per stripe of repositories to detect the ones racing with a load
+  private static final int STRIPES = 1024;
+
+  private final DirectRepositoryStatistics directStatistics;
+  private final String pluginName;
+  private final Cache<String, Entry> cache;
+  private final AtomicLongArray invalidations = new AtomicLongArray(STRIPES);
+  private final ConcurrentMap<WatchKey, String> watchedRepositories = new ConcurrentHashMap<>();
+  // registering a watched directory again returns the same key, caching an entry with a key and
+  // cancelling the key of a removed entry are serialized so that a live entry never loses its key
+  private final Object watchLock = new Object();
+
+  private volatile WatchService watchService;
+  private ExecutorService watcher;
+
+  @Inject
+  CachedRepositoryStatistics(
+      DirectRepositoryStatistics directStatistics,
+      EvaluatorConfig config,
+      @PluginName String pluginName) {
+    this.directStatistics = directStatistics;
+    this.pluginName = pluginName;
+    int size = config.getStatisticsCacheSize();
+    this.cache =
+        size == 0
+            ? null
+            : CacheBuilder.newBuilder()
+                .maximumSize(size)
+                .expireAfterWrite(EXPIRE_AFTER_WRITE_MINUTES, TimeUnit.MINUTES)
+                .removalListener(this::onRemoval)
+                .build();
+  }
+
+  @Override
+  public void start() {
+    if (cache == null) {
+      return;
+    }
+    WatchService service;
+    try {
+      service = FileSystems.getDefault().newWatchService();
+    } catch (IOException e) {
+      log.error("Failed to create watch service, repository statistics are not cached", e);
+      return;
+    }
+    watcher =
+        Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder()
+                .setNameFormat(pluginName + "-statistics-watcher")
+                .setDaemon(true)
+                .build());
+    watcher.execute(() -> processEvents(service));
+    watchService = service;
+  }
+
+  @Override
+  public void stop() {
+    if (watchService != null) {
+      try {
+        watchService.close();
+      } catch (IOException e) {
+        log.warn("Failed to close watch service", e);
+      }
+      watchService = null;
+    }
+    if (watcher != null) {
+      watcher.shutdownNow();
+      watcher = null;
+    }
+    if (cache != null) {
+      cache.invalidateAll();
+    }
+  }
+
+  @Override
+  public RepoStatistics get(FileRepository repository) throws IOException {
+    WatchService service = watchService;
+    if (service == null) {
+      return directStatistics.get(repository);
+    }
+    String repositoryPath = repository.getDirectory().getAbsolutePath();
+    Entry entry = cache.getIfPresent(repositoryPath);
+    if (entry != null) {
+      return entry.statistics;
+    }
+    int stripe = stripe(repositoryPath);
+    long invalidationCount = invalidations.get(stripe);
+    // watch before reading the statistics so that no change is missed
+    WatchKey watchKey = watch(service, repository, repositoryPath);
+    RepoStatistics statistics = directStatistics.get(repository);
+    if (watchKey != null) {
+      synchronized (watchLock) {
+        if (cache.asMap().putIfAbsent(repositoryPath, new Entry(statistics, watchKey)) == null
+            && (invalidations.get(stripe) != invalidationCount || !watchKey.isValid())) {
+          // invalidated while reading the statistics, which may already be outdated
+          cache.invalidate(repositoryPath);
+        }
+      }
+    }
+    return statistics;
+  }
+
+  /**
+   * Invalidate the cached statistics of a repository.
+   *
+   * @param repositoryPath The absolute path to the repository.
+   */
+  void invalidate(String repositoryPath) {
+    if (cache != null) {
+      invalidations.incrementAndGet(stripe(repositoryPath));
+      cache.invalidate(repositoryPath);
+    }
+  }
+
+  @VisibleForTesting
+  long size() {
+    return cache == null ? 0 : cache.size();
+  }
+
+  private WatchKey watch(WatchService service, FileRepository repository, String repositoryPath) {
+    try {
+      WatchKey watchKey =
+          repository
+              .getObjectDatabase()
+              .getPackDirectory()
+              .toPath()
+              .register(service, ENTRY_CREATE, ENTRY_DELETE);
+      watchedRepositories.put(watchKey, repositoryPath);
+      return watchKey;
+    } catch (IOException | ClosedWatchServiceException e) {
+      log.debug("Cannot watch repository {}, its statistics are not cached", repositoryPath, e);
+      return null;
+    }
+  }
+
+  private void processEvents(WatchService service) {
+    try {
+      while (true) {
+        WatchKey watchKey = service.take();
+        // which files changed does not matter, any change invalidates the statistics
+        watchKey.pollEvents();
+        String repositoryPath = watchedRepositories.get(watchKey);
+        if (repositoryPath != null) {
+          invalidate(repositoryPath);
+        }
+        if (!watchKey.reset()) {
+          watchedRepositories.remove(watchKey);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ClosedWatchServiceException e) {
+      // stopped
+    }
+  }
+
+  private void onRemoval(RemovalNotification<String, Entry> notification) {
+    // the repository is watched again when its statistics are cached again
+    WatchKey watchKey = notification.getValue().watchKey;
+    synchronized (watchLock) {
+      Entry current = cache.asMap().get(notification.getKey());
+      if (current != null && current.watchKey == watchKey) {
+        // cached again meanwhile with the same key, which must keep watching the repository
+        return;
+      }
+      watchKey.cancel();
+      watchedRepositories.remove(watchKey);
+    }
+  }
+
+  private static int stripe(String repositoryPath) {
+    return Math.floorMod(repositoryPath.hashCode(), STRIPES);
+  }
+
+  private static class Entry {
+    private final RepoStatistics statistics;
+    private final WatchKey watchKey;
+
+    private Entry(RepoStatistics statistics, WatchKey watchKey) {
+      this.statistics = statistics;
+      this.watchKey = watchKey;
+    }
+  }
+}
@@ -0,0 +1,153 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.ericsson.gerrit.plugins.gcconductor.evaluator;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
+import com.google.gerrit.metrics.Counter0;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.Description.Units;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.metrics.Timer0;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.util.Comparator;
+import java.util.TreeSet;
+import java.util.concurrent.ScheduledExecutorService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded queue of the evaluation tasks waiting for a thread of the evaluator executor.
+ *
+ * <p>Waiting tasks are run by order of priority, then by order of submission. When the queue is
+ * full, the task with the lowest priority is shed: its future is cancelled and the repository is
+ * evaluated again on a later event.
+ */
+@Singleton
+class EvaluationQueue {
+  private static final Logger log = LoggerFactory.getLogger(EvaluationQueue.class);
+
+  private static final Comparator<Pending> BY_PRIORITY =
+      Comparator.comparingInt((Pending p) -> p.priority)
+          .reversed()
+          .thenComparingLong(p -> p.sequence);
+
+  private final ScheduledExecutorService executor;
+  private final int capacity;
+  private final Timer0 waitTime;
+  private final Counter0 shedTasks;
+  private final TreeSet<Pending> pending = new TreeSet<>(BY_PRIORITY);
+  private long sequence;
+
+  @Inject
+  EvaluationQueue(
+      @EvaluatorExecutor ScheduledExecutorService executor,
+      EvaluatorConfig config,
+      MetricMaker metricMaker) {
+    this.executor = executor;
+    this.capacity = config.getEvaluationQueueCapacity();
+
+    metricMaker.newCallbackMetric(
+        "evaluator/queue_depth",
+        Long.class,
+        new Description("Evaluation tasks waiting for a thread").setGauge().setUnit("tasks"),
+        () -> (long) size());
+    waitTime =
+        metricMaker.newTimer(
+            "evaluator/queue_wait_time",
+            new Description("Time evaluation tasks waited for a thread")
+                .setCumulative()
+                .setUnit(Units.MILLISECONDS));
+    shedTasks =
+        metricMaker.newCounter(
+            "evaluator/shed_tasks",
+            new Description("Evaluation tasks shed because the queue was full")
+                .setRate()
+                .setUnit("tasks"));
+  }
+
+  /**
+   * Submit a task to run once no task with a higher priority is waiting.
+   *
+   * @param task The task to run.
+   * @param priority The priority of the task, higher priorities run first.
+   * @return a future completed when the task ran, cancelled if the task was shed.
+   */
+  ListenableFuture<?> submit(Runnable task, int priority) {
+    ListenableFutureTask<?> future = ListenableFutureTask.create(task, null);
+    Pending shed = null;
+    boolean added;
+    synchronized (pending) {
+      Pending submitted = new Pending(task, future, priority, sequence++);
+      if (pending.size() < capacity) {
+        pending.add(submitted);
+        added = true;
+      } else if (!pending.isEmpty() && BY_PRIORITY.compare(submitted, pending.last()) < 0) {
+        // replaces the lowest priority task, whose thread will run the submitted one
+        shed = pending.pollLast();
+        pending.add(submitted);
+        added = false;
+      } else {
+        shed = submitted;
+        added = false;
+      }
+    }
+    if (added) {
+      executor.execute(this::runNext);
+    }
+    if (shed != null) {
+      log.debug("Evaluation queue is full, shedding {}", shed.task);
+      shedTasks.increment();
+      shed.future.cancel(false);
+    }
+    return future;
+  }
+
+  /** @return the number of tasks waiting for a thread. */
+  int size() {
+    synchronized (pending) {
+      return pending.size();
+    }
+  }
+
+  private void runNext() {
+    Pending next;
+    synchronized (pending) {
+      next = pending.pollFirst();
+    }
+    if (next != null) {
+      waitTime.record(System.nanoTime() - next.submittedAt, NANOSECONDS);
+      next.future.run();
+    }
+  }
+
+  private static class Pending {
+    final Runnable task;
+    final ListenableFutureTask<?> future;
+    final int priority;
+    final long sequence;
+    final long submittedAt = System.nanoTime();
+
+    Pending(Runnable task, ListenableFutureTask<?> future, int priority, long sequence) {
+      this.task = task;
+      this.future = future;
+      this.priority = priority;
+      this.sequence = sequence;
+    }
+  }
+}
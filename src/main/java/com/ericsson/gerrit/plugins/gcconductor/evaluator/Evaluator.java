@@ -14,12 +14,20 @@
 
 package com.ericsson.gerrit.plugins.gcconductor.evaluator;
 
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
 import com.ericsson.gerrit.plugins.gcconductor.EvaluationTask;
-import com.google.common.util.concurrent.JdkFutureAdapters;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.MoreExecutors;
 import com.google.gerrit.entities.Project;
 import com.google.gerrit.extensions.events.GitReferenceUpdatedListener;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.MetricMaker;
 import com.google.gerrit.server.config.GerritServerConfig;
 import com.google.gerrit.server.git.GitRepositoryManager;
 import com.google.gerrit.server.git.validators.UploadValidationListener;
@@ -28,11 +36,11 @@ import com.google.inject.Singleton;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Future;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
 import org.eclipse.jgit.errors.RepositoryNotFoundException;
 import org.eclipse.jgit.lib.Config;
 import org.eclipse.jgit.lib.ObjectId;
@@ -47,32 +55,78 @@ import org.slf4j.LoggerFactory;
 class Evaluator implements UploadValidationListener, PostUploadHook, GitReferenceUpdatedListener {
   private static final Logger log = LoggerFactory.getLogger(Evaluator.class);
   private static final ThreadLocal<String> uploadRepositoryPath = new ThreadLocal<String>() {};
+  private static final long MAX_RECHECK_ENTRIES = 100_000;
+  private static final long MAX_REPOSITORY_PATHS = 100_000;
 
-  private final ExecutorService executor;
+  private final ScheduledExecutorService executor;
+  private final EvaluationQueue evaluationQueue;
   private final EvaluationTask.Factory evaluationTaskFactory;
   private final GitRepositoryManager repoManager;
-  private final Map<String, Long> timestamps;
+  private final CachedRepositoryStatistics statistics;
+  private final long quietPeriod;
+  private final Cache<String, String> repositoryPaths =
+      CacheBuilder.newBuilder().maximumSize(MAX_REPOSITORY_PATHS).build();
+  // Projects waiting for the end of a burst of ref updates.
+  private final ConcurrentMap<String, Burst> pendingRefUpdates = new ConcurrentHashMap<>();
+  // Repositories evaluated less than expireTimeRecheck ago, entries are dropped once they expire.
+  private final Cache<String, Boolean> recentlyEvaluated;
+  private final AtomicLong recheckEvictions = new AtomicLong();
   private final Set<EvaluationTask> queuedEvaluationTasks =
       Collections.newSetFromMap(new ConcurrentHashMap<>());
 
-  private long expireTime;
-
   @Inject
   Evaluator(
-      @EvaluatorExecutor ExecutorService executor,
+      @EvaluatorExecutor ScheduledExecutorService executor,
+      EvaluationQueue evaluationQueue,
       EvaluationTask.Factory evaluationTaskFactory,
       GitRepositoryManager repoManager,
+      CachedRepositoryStatistics statistics,
       EvaluatorConfig config,
-      @GerritServerConfig Config gerritConfig) {
+      @GerritServerConfig Config gerritConfig,
+      MetricMaker metricMaker) {
     this.executor = executor;
+    this.evaluationQueue = evaluationQueue;
     this.evaluationTaskFactory = evaluationTaskFactory;
     this.repoManager = repoManager;
-    this.expireTime = config.getExpireTimeRecheck();
+    this.statistics = statistics;
+    this.quietPeriod = MILLISECONDS.toNanos(config.getRefUpdateQuietPeriod());
 
     int threads =
         gerritConfig.getInt(
             "receive", null, "threadPoolSize", Runtime.getRuntime().availableProcessors());
-    timestamps = new ConcurrentHashMap<>(10000, 0.75f, threads);
+    recentlyEvaluated =
+        CacheBuilder.newBuilder()
+            .concurrencyLevel(threads)
+            .maximumSize(MAX_RECHECK_ENTRIES)
+            .expireAfterWrite(Math.max(0, config.getExpireTimeRecheck()), MILLISECONDS)
+            .removalListener(
+                n -> {
+                  if (n.getCause() == RemovalCause.SIZE) {
+                    recheckEvictions.incrementAndGet();
+                  }
+                })
+            .build();
+
+    metricMaker.newCallbackMetric(
+        "evaluator/recheck_entries",
+        Long.class,
+        new Description("Repositories waiting for expireTimeRecheck before a new evaluation")
+            .setGauge()
+            .setUnit("repositories"),
+        this::recheckEntries);
+    metricMaker.newCallbackMetric(
+        "evaluator/recheck_evictions",
+        Long.class,
+        new Description("Repositories evicted before expireTimeRecheck because of the size limit")
+            .setCumulative()
+            .setUnit("evictions"),
+        recheckEvictions::get);
+  }
+
+  @VisibleForTesting
+  long recheckEntries() {
+    recentlyEvaluated.cleanUp();
+    return recentlyEvaluated.size();
   }
 
   @Override
@@ -101,7 +155,7 @@ class Evaluator implements UploadValidationListener, PostUploadHook, GitReferenc
   public void onPostUpload(PackStatistics stats) {
     String repositoryPath = uploadRepositoryPath.get();
     if (repositoryPath != null) {
-      queueEvaluationIfNecessary(repositoryPath);
+      queueEvaluationIfNecessary(repositoryPath, 0);
       uploadRepositoryPath.remove();
     }
   }
@@ -109,36 +163,115 @@ class Evaluator implements UploadValidationListener, PostUploadHook, GitReferenc
   @Override
   public void onGitReferenceUpdated(Event event) {
     String projectName = event.getProjectName();
-    Project.NameKey projectNameKey = Project.nameKey(projectName);
-    try (Repository repository = repoManager.openRepository(projectNameKey)) {
-      String repositoryPath = repository.getDirectory().getAbsolutePath();
-      queueEvaluationIfNecessary(repositoryPath);
-    } catch (RepositoryNotFoundException e) {
-      log.error("Project not found {}", projectName, e);
-    } catch (IOException e) {
-      log.error("Error getting repository for project {}", projectName, e);
+    if (quietPeriod == 0) {
+      evaluateUpdatedProject(projectName, 1);
+    } else if (pendingRefUpdates.merge(projectName, new Burst(), Burst::update).refUpdates == 1) {
+      executor.schedule(() -> evaluateAtEndOfBurst(projectName), quietPeriod, NANOSECONDS);
+    }
+  }
+
+  private void evaluateAtEndOfBurst(String projectName) {
+    while (true) {
+      Burst burst = pendingRefUpdates.get(projectName);
+      if (burst == null) {
+        return;
+      }
+      long remaining = burst.lastUpdate + quietPeriod - System.nanoTime();
+      if (remaining > 0) {
+        executor.schedule(() -> evaluateAtEndOfBurst(projectName), remaining, NANOSECONDS);
+        return;
+      }
+      // retry if the project was updated since the burst was read
+      if (pendingRefUpdates.remove(projectName, burst)) {
+        evaluateUpdatedProject(projectName, burst.refUpdates);
+        return;
+      }
+    }
+  }
+
+  private void evaluateUpdatedProject(String projectName, int refUpdates) {
+    String repositoryPath = getRepositoryPath(projectName);
+    if (repositoryPath != null) {
+      // objects were added to the repository
+      statistics.invalidate(repositoryPath);
+      queueEvaluationIfNecessary(repositoryPath, refUpdates);
     }
   }
 
-  private void queueEvaluationIfNecessary(String repositoryPath) {
+  /**
+   * Queue an evaluation of the repository of a project unless it was evaluated recently. The
+   * evaluation has the lowest priority, it is shed first when the evaluation queue is full.
+   *
+   * @param projectName The name of the project.
+   */
+  void evaluateProject(String projectName) {
+    String repositoryPath = getRepositoryPath(projectName);
+    if (repositoryPath != null) {
+      queueEvaluationIfNecessary(repositoryPath, 0);
+    }
+  }
+
+  private String getRepositoryPath(String projectName) {
+    String repositoryPath = repositoryPaths.getIfPresent(projectName);
+    if (repositoryPath == null) {
+      try (Repository repository = repoManager.openRepository(Project.nameKey(projectName))) {
+        repositoryPath = repository.getDirectory().getAbsolutePath();
+      } catch (RepositoryNotFoundException e) {
+        log.error("Project not found {}", projectName, e);
+        return null;
+      } catch (IOException e) {
+        log.error("Error getting repository for project {}", projectName, e);
+        return null;
+      }
+      repositoryPaths.put(projectName, repositoryPath);
+    }
+    return repositoryPath;
+  }
+
+  /**
+   * Queue an evaluation of the repository unless it was evaluated recently.
+   *
+   * @param repositoryPath The path to the repository.
+   * @param priority The priority of the evaluation, the number of ref updates that triggered it.
+   */
+  private void queueEvaluationIfNecessary(String repositoryPath, int priority) {
     if (lastCheckExpired(repositoryPath)) {
       EvaluationTask evaluationTask = evaluationTaskFactory.create(repositoryPath);
       if (queuedEvaluationTasks.add(evaluationTask)) {
-        Future<?> future = executor.submit(evaluationTask);
-        addTaskListener(future, evaluationTask);
-        timestamps.put(repositoryPath, System.currentTimeMillis());
+        recentlyEvaluated.put(repositoryPath, Boolean.TRUE);
+        ListenableFuture<?> future = evaluationQueue.submit(evaluationTask, priority);
+        future.addListener(
+            () -> {
+              queuedEvaluationTasks.remove(evaluationTask);
+              if (future.isCancelled()) {
+                // shed evaluations are not recent ones, the next event queues the repository again
+                recentlyEvaluated.invalidate(repositoryPath);
+              }
+            },
+            MoreExecutors.directExecutor());
       }
     }
   }
 
-  private void addTaskListener(Future<?> future, EvaluationTask evaluationTask) {
-    ListenableFuture<?> listenableFuture = JdkFutureAdapters.listenInPoolThread(future);
-    listenableFuture.addListener(
-        () -> queuedEvaluationTasks.remove(evaluationTask), MoreExecutors.directExecutor());
+  private boolean lastCheckExpired(String repositoryPath) {
+    return recentlyEvaluated.getIfPresent(repositoryPath) == null;
   }
 
-  private boolean lastCheckExpired(String repositoryPath) {
-    return !timestamps.containsKey(repositoryPath)
-        || System.currentTimeMillis() >= timestamps.get(repositoryPath) + expireTime;
+  /** Ref updates of a project that happened less than the quiet period apart. */
+  private static class Burst {
+    final long lastUpdate = System.nanoTime();
+    final int refUpdates;
+
+    Burst() {
+      this(1);
+    }
+
+    private Burst(int refUpdates) {
+      this.refUpdates = refUpdates;
+    }
+
+    Burst update(Burst other) {
+      return new Burst(refUpdates + other.refUpdates);
+    }
   }
 }
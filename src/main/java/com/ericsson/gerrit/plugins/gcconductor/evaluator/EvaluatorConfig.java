@@ -15,6 +15,7 @@
 package com.ericsson.gerrit.plugins.gcconductor.evaluator;
 
 import com.ericsson.gerrit.plugins.gcconductor.CommonConfig;
+import com.ericsson.gerrit.plugins.gcconductor.ScoreWeights;
 import com.google.common.base.Strings;
 import com.google.gerrit.server.config.ConfigUtil;
 import com.google.gerrit.server.config.PluginConfig;
@@ -27,12 +28,29 @@ import java.util.concurrent.TimeUnit;
 public class EvaluatorConfig extends CommonConfig {
   static final String THREAD_POOL_KEY = "threadPoolSize";
   static final String EXPIRE_TIME_RECHECK_KEY = "expireTimeRecheck";
+  static final String BUFFER_SIZE_KEY = "bufferSize";
+  static final String STATISTICS_CACHE_SIZE_KEY = "statisticsCacheSize";
+  static final String REF_UPDATE_QUIET_PERIOD_KEY = "refUpdateQuietPeriod";
+  static final String EVALUATION_QUEUE_CAPACITY_KEY = "evaluationQueueCapacity";
+  static final String SCHEDULED_EVALUATION_INTERVAL_KEY = "scheduledEvaluationInterval";
+  static final String SCHEDULED_EVALUATION_RATE_KEY = "scheduledEvaluationRate";
 
   static final int THREAD_POOL_DEFAULT = 4;
   static final String EXPIRE_TIME_RECHECK_DEFAULT = "60s";
+  static final int BUFFER_SIZE_DEFAULT = 10000;
+  static final int STATISTICS_CACHE_SIZE_DEFAULT = 1000;
+  static final String REF_UPDATE_QUIET_PERIOD_DEFAULT = "5s";
+  static final int EVALUATION_QUEUE_CAPACITY_DEFAULT = 1000;
+  static final int SCHEDULED_EVALUATION_RATE_DEFAULT = 10;
 
   private final int threadPoolSize;
   private final long expireTimeRecheck;
+  private final int bufferSize;
+  private final int statisticsCacheSize;
+  private final long refUpdateQuietPeriod;
+  private final int evaluationQueueCapacity;
+  private final long scheduledEvaluationInterval;
+  private final int scheduledEvaluationRate;
 
   @Inject
   EvaluatorConfig(PluginConfig cfg) {
@@ -44,12 +62,39 @@ public class EvaluatorConfig extends CommonConfig {
         cfg.getString(DB_PASS_KEY, DEFAULT_DB_PASSWORD),
         cfg.getInt(PACKED_KEY, PACKED_DEFAULT),
         cfg.getInt(LOOSE_KEY, LOOSE_DEFAULT),
-        cfg.getBoolean(GC_FORCE_AGGRESSIVE_KEY, DEFAULT_GC_FORCE_AGGRESSIVE));
+        cfg.getEnum(LOOSE_EVALUATION_KEY, LOOSE_EVALUATION_DEFAULT),
+        new ScoreWeights(
+            cfg.getInt(PACK_WEIGHT_KEY, PACK_WEIGHT_DEFAULT),
+            cfg.getInt(SMALL_PACK_WEIGHT_KEY, SMALL_PACK_WEIGHT_DEFAULT),
+            cfg.getInt(LOOSE_OBJECT_WEIGHT_KEY, LOOSE_OBJECT_WEIGHT_DEFAULT),
+            cfg.getInt(LOOSE_REF_WEIGHT_KEY, LOOSE_REF_WEIGHT_DEFAULT),
+            cfg.getInt(GARBAGE_WEIGHT_KEY, GARBAGE_WEIGHT_DEFAULT),
+            cfg.getInt(AGE_WEIGHT_KEY, AGE_WEIGHT_DEFAULT)),
+        cfg.getBoolean(GC_FORCE_AGGRESSIVE_KEY, DEFAULT_GC_FORCE_AGGRESSIVE),
+        cfg.getString(QUEUE_PATH_KEY, DEFAULT_QUEUE_PATH));
     threadPoolSize = cfg.getInt(THREAD_POOL_KEY, THREAD_POOL_DEFAULT);
 
     String expireTimeRecheckString =
         cfg.getString(EXPIRE_TIME_RECHECK_KEY, EXPIRE_TIME_RECHECK_DEFAULT);
     expireTimeRecheck = ConfigUtil.getTimeUnit(expireTimeRecheckString, -1, TimeUnit.MILLISECONDS);
+    bufferSize = Math.max(0, cfg.getInt(BUFFER_SIZE_KEY, BUFFER_SIZE_DEFAULT));
+    statisticsCacheSize =
+        Math.max(0, cfg.getInt(STATISTICS_CACHE_SIZE_KEY, STATISTICS_CACHE_SIZE_DEFAULT));
+
+    String refUpdateQuietPeriodString =
+        cfg.getString(REF_UPDATE_QUIET_PERIOD_KEY, REF_UPDATE_QUIET_PERIOD_DEFAULT);
+    refUpdateQuietPeriod =
+        Math.max(0, ConfigUtil.getTimeUnit(refUpdateQuietPeriodString, 0, TimeUnit.MILLISECONDS));
+    evaluationQueueCapacity =
+        Math.max(1, cfg.getInt(EVALUATION_QUEUE_CAPACITY_KEY, EVALUATION_QUEUE_CAPACITY_DEFAULT));
+
+    String scheduledEvaluationIntervalString =
+        Strings.nullToEmpty(cfg.getString(SCHEDULED_EVALUATION_INTERVAL_KEY));
+    scheduledEvaluationInterval =
+        Math.max(
+            0, ConfigUtil.getTimeUnit(scheduledEvaluationIntervalString, 0, TimeUnit.MILLISECONDS));
+    scheduledEvaluationRate =
+        Math.max(1, cfg.getInt(SCHEDULED_EVALUATION_RATE_KEY, SCHEDULED_EVALUATION_RATE_DEFAULT));
   }
 
   /** @return the number of threads to use for the plugin evaluation tasks. */
@@ -61,4 +106,46 @@ public class EvaluatorConfig extends CommonConfig {
   public long getExpireTimeRecheck() {
     return expireTimeRecheck;
   }
+
+  /**
+   * @return the maximum number of repositories waiting in the local buffer to be added to the
+   *     queue, 0 if repositories are added to the queue directly.
+   */
+  public int getBufferSize() {
+    return bufferSize;
+  }
+
+  /**
+   * @return the maximum number of repositories whose statistics are cached, 0 if statistics are
+   *     read on every evaluation.
+   */
+  public int getStatisticsCacheSize() {
+    return statisticsCacheSize;
+  }
+
+  /**
+   * @return the time without ref updates in a repository to wait for before evaluating it, 0 if
+   *     repositories are evaluated on every ref update.
+   */
+  public long getRefUpdateQuietPeriod() {
+    return refUpdateQuietPeriod;
+  }
+
+  /** @return the maximum number of evaluation tasks waiting for a thread. */
+  public int getEvaluationQueueCapacity() {
+    return evaluationQueueCapacity;
+  }
+
+  /**
+   * @return the interval between the scheduled evaluations of all the projects, 0 if projects are
+   *     only evaluated on events.
+   */
+  public long getScheduledEvaluationInterval() {
+    return scheduledEvaluationInterval;
+  }
+
+  /** @return the maximum number of projects queued for evaluation per second by a scheduled one. */
+  public int getScheduledEvaluationRate() {
+    return scheduledEvaluationRate;
+  }
 }
@@ -20,11 +20,11 @@ import com.google.gerrit.server.git.WorkQueue;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 import com.google.inject.Singleton;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
 
 @Singleton
-class EvaluatorExecutorProvider implements Provider<ExecutorService>, ShutdownListener {
-  private ExecutorService executor;
+class EvaluatorExecutorProvider implements Provider<ScheduledExecutorService>, ShutdownListener {
+  private ScheduledExecutorService executor;
 
   @Inject
   EvaluatorExecutorProvider(
@@ -39,7 +39,7 @@ class EvaluatorExecutorProvider implements Provider<ExecutorService>, ShutdownLi
   }
 
   @Override
-  public ExecutorService get() {
+  public ScheduledExecutorService get() {
     return executor;
   }
 }
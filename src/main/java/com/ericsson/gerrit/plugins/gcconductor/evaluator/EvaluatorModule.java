@@ -14,7 +14,10 @@
 
 package com.ericsson.gerrit.plugins.gcconductor.evaluator;
 
+import com.ericsson.gerrit.plugins.gcconductor.CommonConfig;
 import com.ericsson.gerrit.plugins.gcconductor.CommonModule;
+import com.ericsson.gerrit.plugins.gcconductor.Enqueuer;
+import com.ericsson.gerrit.plugins.gcconductor.RepositoryStatistics;
 import com.ericsson.gerrit.plugins.gcconductor.ShutdownListener;
 import com.google.gerrit.extensions.annotations.PluginName;
 import com.google.gerrit.extensions.events.GitReferenceUpdatedListener;
@@ -22,20 +25,36 @@ import com.google.gerrit.extensions.registration.DynamicSet;
 import com.google.gerrit.lifecycle.LifecycleModule;
 import com.google.gerrit.server.config.PluginConfig;
 import com.google.gerrit.server.config.PluginConfigFactory;
+import com.google.gerrit.server.git.WorkQueue;
 import com.google.gerrit.server.git.validators.UploadValidationListener;
+import com.google.inject.Inject;
 import com.google.inject.Provides;
+import com.google.inject.Singleton;
 import com.google.inject.internal.UniqueAnnotations;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
 import org.eclipse.jgit.transport.PostUploadHook;
 
 /** Configures bindings of the evaluator. */
 public class EvaluatorModule extends LifecycleModule {
+  private final String queueType;
+
+  @Inject
+  EvaluatorModule(PluginConfigFactory config, @PluginName String pluginName) {
+    this.queueType =
+        config.getFromGerritConfig(pluginName, true).getString(CommonConfig.QUEUE_TYPE_KEY);
+  }
+
   @Override
   protected void configure() {
-    install(new CommonModule(EvaluatorConfig.class));
+    install(new CommonModule(EvaluatorConfig.class, queueType));
     listener().to(OnPluginLoadUnload.class);
+    // registered after OnPluginLoadUnload to be stopped before the queue is shut down
+    listener().to(BufferedEnqueuer.class);
+    bind(Enqueuer.class).to(BufferedEnqueuer.class);
+    listener().to(CachedRepositoryStatistics.class);
+    bind(RepositoryStatistics.class).to(CachedRepositoryStatistics.class);
 
-    bind(ExecutorService.class)
+    bind(ScheduledExecutorService.class)
         .annotatedWith(EvaluatorExecutor.class)
         .toProvider(EvaluatorExecutorProvider.class);
     bind(ShutdownListener.class)
@@ -43,12 +62,22 @@ public class EvaluatorModule extends LifecycleModule {
         .to(EvaluatorExecutorProvider.class);
 
     bind(Evaluator.class);
+    listener().to(ScheduledEvaluator.class);
     DynamicSet.bind(binder(), UploadValidationListener.class).to(Evaluator.class);
     DynamicSet.bind(binder(), PostUploadHook.class).to(Evaluator.class);
     DynamicSet.bind(binder(), GitReferenceUpdatedListener.class).to(Evaluator.class);
     bind(EvaluatorConfig.class);
   }
 
+  @Provides
+  @Singleton
+  @BufferFlusher
+  ScheduledExecutorService provideBufferFlusher(
+      WorkQueue workQueue, @PluginName String pluginName) {
+    // shut down by BufferedEnqueuer once it added the buffered repositories a last time
+    return workQueue.createQueue(1, "[" + pluginName + " plugin buffer]");
+  }
+
   @Provides
   PluginConfig providePluginConfig(PluginConfigFactory config, @PluginName String pluginName) {
     return config.getFromGerritConfig(pluginName, true);
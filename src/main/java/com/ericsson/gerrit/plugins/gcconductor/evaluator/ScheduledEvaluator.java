@@ -0,0 +1,139 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.ericsson.gerrit.plugins.gcconductor.evaluator;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.extensions.events.LifecycleListener;
+import com.google.gerrit.server.project.ProjectCache;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.util.Iterator;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Periodically evaluates the repositories of all the projects known to Gerrit, including the ones
+ * that are only fetched from and are therefore never evaluated on ref updates.
+ *
+ * <p>Projects are evaluated on the evaluator executor at a limited rate, and only while no
+ * evaluation triggered by an event is waiting for a thread, so that scheduled evaluations do not
+ * delay the evaluations of the repositories being pushed to.
+ */
+@Singleton
+class ScheduledEvaluator implements LifecycleListener {
+  private static final Logger log = LoggerFactory.getLogger(ScheduledEvaluator.class);
+
+  private final ScheduledExecutorService executor;
+  private final EvaluationQueue evaluationQueue;
+  private final Evaluator evaluator;
+  private final ProjectCache projectCache;
+  private final long interval;
+  private final long evaluationPeriod;
+
+  private ScheduledFuture<?> schedule;
+  private ScheduledFuture<?> pass;
+  private Iterator<Project.NameKey> projects;
+  private int evaluated;
+  private long passStart;
+
+  @Inject
+  ScheduledEvaluator(
+      @EvaluatorExecutor ScheduledExecutorService executor,
+      EvaluationQueue evaluationQueue,
+      Evaluator evaluator,
+      ProjectCache projectCache,
+      EvaluatorConfig config) {
+    this.executor = executor;
+    this.evaluationQueue = evaluationQueue;
+    this.evaluator = evaluator;
+    this.projectCache = projectCache;
+    this.interval = config.getScheduledEvaluationInterval();
+    this.evaluationPeriod = SECONDS.toNanos(1) / config.getScheduledEvaluationRate();
+  }
+
+  @Override
+  public synchronized void start() {
+    if (interval > 0) {
+      schedule = executor.scheduleAtFixedRate(this::startPass, interval, interval, MILLISECONDS);
+    }
+  }
+
+  @Override
+  public synchronized void stop() {
+    if (schedule != null) {
+      schedule.cancel(false);
+      schedule = null;
+    }
+    endPass();
+  }
+
+  synchronized void startPass() {
+    if (pass != null) {
+      log.warn(
+          "Scheduled evaluation still running after {} projects, not starting a new one",
+          evaluated);
+      return;
+    }
+    try {
+      projects = projectCache.all().iterator();
+    } catch (RuntimeException e) {
+      // an exception would cancel the schedule
+      log.error("Failed to list the projects, scheduled evaluation skipped", e);
+      return;
+    }
+    evaluated = 0;
+    passStart = System.currentTimeMillis();
+    pass =
+        executor.scheduleAtFixedRate(
+            this::evaluateNext, evaluationPeriod, evaluationPeriod, NANOSECONDS);
+  }
+
+  synchronized void evaluateNext() {
+    if (pass == null || evaluationQueue.size() > 0) {
+      // evaluations triggered by events first
+      return;
+    }
+    if (!projects.hasNext()) {
+      log.info(
+          "Scheduled evaluation of {} projects done in {}ms",
+          evaluated,
+          System.currentTimeMillis() - passStart);
+      endPass();
+      return;
+    }
+    String projectName = projects.next().get();
+    try {
+      evaluator.evaluateProject(projectName);
+    } catch (RuntimeException e) {
+      // an exception would cancel the pass, which would then never end
+      log.error("Failed to evaluate project {}", projectName, e);
+    }
+    evaluated++;
+  }
+
+  private void endPass() {
+    if (pass != null) {
+      pass.cancel(false);
+      pass = null;
+      projects = null;
+    }
+  }
+}
@@ -0,0 +1,278 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.ericsson.gerrit.plugins.gcconductor.executor;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import com.ericsson.gerrit.plugins.gcconductor.CommonConfig;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.eclipse.jgit.errors.ConfigInvalidException;
+import org.eclipse.jgit.lib.ConfigConstants;
+import org.eclipse.jgit.util.SystemReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Records the on-disk state of the repositories found clean by a scheduled evaluation, so that the
+ * repositories whose state did not change are not evaluated again by the next one.
+ *
+ * <p>The state of a repository is made of the modification times of its pack directory, of its
+ * loose objects fan-out directories, of its packed-refs file and of its config file, which change
+ * when objects are added, packed or pruned or when its gc settings change. Only clean results are
+ * reused, a dirty repository is evaluated again until it is gc'ed. Loose objects become prunable
+ * without any change on disk, a clean result expires when the oldest loose object too recent to be
+ * pruned becomes prunable, and at the latest after the maximum age. The manifest is discarded when
+ * the dirtiness thresholds or the global gc.pruneExpire change.
+ */
+class EvaluationManifest {
+  private static final Logger log = LoggerFactory.getLogger(EvaluationManifest.class);
+
+  private static final int VERSION = 2;
+  // marks the repositories evaluated dirty or that failed to be evaluated
+  private static final Entry NOT_CLEAN = new Entry(null, 0);
+
+  private final Path file;
+  private final String settings;
+  private final long maxAge;
+  private final long now;
+  private final Map<String, Entry> recorded;
+  private final Map<String, Entry> evaluated = new ConcurrentHashMap<>();
+
+  private EvaluationManifest(
+      Path file, String settings, long maxAge, long now, Map<String, Entry> recorded) {
+    this.file = file;
+    this.settings = settings;
+    this.maxAge = maxAge;
+    this.now = now;
+    this.recorded = recorded;
+  }
+
+  /**
+   * Load the manifest recorded by the previous evaluation.
+   *
+   * @param file The file the manifest is recorded in.
+   * @param cfg The configuration of the dirtiness thresholds.
+   * @param maxAge The maximum time in milliseconds a clean result is reused for.
+   * @return the manifest, empty if not recorded yet, unreadable or recorded with other settings.
+   */
+  static EvaluationManifest load(Path file, CommonConfig cfg, long maxAge) {
+    String settings =
+        String.format(
+            "packed=%d,loose=%d,looseEvaluation=%s,pruneExpire=%s",
+            cfg.getPackedThreshold(),
+            cfg.getLooseThreshold(),
+            cfg.getLooseEvaluation(),
+            getGlobalPruneExpire());
+    long now = System.currentTimeMillis();
+    Map<String, Entry> recorded = Collections.emptyMap();
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+      if (in.readInt() == VERSION && in.readUTF().equals(settings)) {
+        int size = in.readInt();
+        recorded = new HashMap<>(size * 4 / 3 + 1);
+        for (int i = 0; i < size; i++) {
+          String repositoryPath = in.readUTF();
+          State state = new State(in.readLong(), in.readLong(), in.readLong(), in.readLong());
+          recorded.put(repositoryPath, new Entry(state, in.readLong()));
+        }
+      } else {
+        log.info("Evaluation manifest {} was recorded with other settings, it is discarded", file);
+      }
+    } catch (NoSuchFileException e) {
+      log.debug("No evaluation manifest recorded in {}", file);
+    } catch (IOException e) {
+      log.warn("Failed to read evaluation manifest {}, it is discarded", file, e);
+      recorded = Collections.emptyMap();
+    }
+    return new EvaluationManifest(file, settings, maxAge, now, recorded);
+  }
+
+  /**
+   * @return the gc.pruneExpire of the user and system git configurations, which applies to the
+   *     repositories that do not set their own.
+   */
+  private static String getGlobalPruneExpire() {
+    try {
+      return SystemReader.getInstance()
+          .getUserConfig()
+          .getString(
+              ConfigConstants.CONFIG_GC_SECTION, null, ConfigConstants.CONFIG_KEY_PRUNEEXPIRE);
+    } catch (IOException | ConfigInvalidException e) {
+      log.warn("Failed to read the global gc.pruneExpire, it is ignored", e);
+      return null;
+    }
+  }
+
+  /**
+   * Returns <code>true</code> if the repository was found clean in the specified state by an
+   * evaluation that did not expire yet. The clean result is then kept for the next evaluation.
+   *
+   * @param repositoryPath The path to the repository.
+   * @param state The current state of the repository.
+   * @return <code>true</code> if the repository does not need to be evaluated again.
+   */
+  boolean isUnchangedClean(String repositoryPath, State state) {
+    Entry entry = recorded.get(repositoryPath);
+    if (entry != null && state.equals(entry.state) && now < entry.expiresAt) {
+      evaluated.put(repositoryPath, entry);
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Record the result of the evaluation of a repository.
+   *
+   * @param repositoryPath The path to the repository.
+   * @param state The state of the repository before it was evaluated.
+   * @param clean Whether the repository was found clean.
+   * @param cleanUntil The time in milliseconds since the epoch the clean result expires, when loose
+   *     objects too recent to be pruned become prunable, {@link Long#MAX_VALUE} if not before the
+   *     maximum age.
+   */
+  void record(String repositoryPath, State state, boolean clean, long cleanUntil) {
+    evaluated.put(
+        repositoryPath, clean ? new Entry(state, Math.min(now + maxAge, cleanUntil)) : NOT_CLEAN);
+  }
+
+  /**
+   * Save the manifest for the next evaluation.
+   *
+   * @param complete Whether all the repositories were evaluated, the repositories that were not
+   *     found are then dropped from the manifest. Otherwise, the results recorded by the previous
+   *     evaluation are kept for the repositories not evaluated yet.
+   */
+  void save(boolean complete) {
+    Map<String, Entry> entries = new HashMap<>();
+    if (!complete) {
+      entries.putAll(recorded);
+    }
+    entries.putAll(evaluated);
+    entries.values().removeIf(entry -> entry == NOT_CLEAN);
+    Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+    try {
+      Files.createDirectories(file.toAbsolutePath().getParent());
+      try (DataOutputStream out =
+          new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+        out.writeInt(VERSION);
+        out.writeUTF(settings);
+        out.writeInt(entries.size());
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+          out.writeUTF(e.getKey());
+          State state = e.getValue().state;
+          out.writeLong(state.packDirectory);
+          out.writeLong(state.looseObjects);
+          out.writeLong(state.packedRefs);
+          out.writeLong(state.config);
+          out.writeLong(e.getValue().expiresAt);
+        }
+      }
+      Files.move(tmp, file, REPLACE_EXISTING, ATOMIC_MOVE);
+    } catch (IOException e) {
+      log.error("Failed to save evaluation manifest {}", file, e);
+    }
+  }
+
+  /** The on-disk state of a repository, which changes when its objects may have changed. */
+  static class State {
+    private final long packDirectory;
+    private final long looseObjects;
+    private final long packedRefs;
+    private final long config;
+
+    State(long packDirectory, long looseObjects, long packedRefs, long config) {
+      this.packDirectory = packDirectory;
+      this.looseObjects = looseObjects;
+      this.packedRefs = packedRefs;
+      this.config = config;
+    }
+
+    /**
+     * Read the state of a repository.
+     *
+     * @param repositoryPath The path to the repository.
+     * @return the state of the repository, read with one stat per existing fan-out directory.
+     */
+    static State read(String repositoryPath) {
+      File objects = new File(repositoryPath, "objects");
+      long looseObjects = 0;
+      String[] names = objects.list();
+      if (names != null) {
+        Arrays.sort(names);
+        for (String name : names) {
+          if (isFanOutDirectory(name)) {
+            looseObjects = 31 * looseObjects + name.hashCode();
+            looseObjects = 31 * looseObjects + new File(objects, name).lastModified();
+          }
+        }
+      }
+      return new State(
+          new File(objects, "pack").lastModified(),
+          looseObjects,
+          new File(repositoryPath, "packed-refs").lastModified(),
+          new File(repositoryPath, "config").lastModified());
+    }
+
+    private static boolean isFanOutDirectory(String name) {
+      return name.length() == 2
+          && Character.digit(name.charAt(0), 16) >= 0
+          && Character.digit(name.charAt(1), 16) >= 0;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof State)) {
+        return false;
+      }
+      State other = (State) obj;
+      return packDirectory == other.packDirectory
+          && looseObjects == other.looseObjects
+          && packedRefs == other.packedRefs
+          && config == other.config;
+    }
+
+    @Override
+    public int hashCode() {
+      return Long.hashCode(packDirectory)
+          ^ Long.hashCode(looseObjects)
+          ^ Long.hashCode(packedRefs)
+          ^ Long.hashCode(config);
+    }
+  }
+
+  private static class Entry {
+    private final State state;
+    private final long expiresAt;
+
+    private Entry(State state, long expiresAt) {
+      this.state = state;
+      this.expiresAt = expiresAt;
+    }
+  }
+}
@@ -17,6 +17,7 @@ package com.ericsson.gerrit.plugins.gcconductor.executor;
 import static java.time.ZoneId.systemDefault;
 
 import com.ericsson.gerrit.plugins.gcconductor.CommonConfig;
+import com.ericsson.gerrit.plugins.gcconductor.ScoreWeights;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Strings;
 import com.google.inject.Inject;
@@ -45,24 +46,48 @@ class ExecutorConfig extends CommonConfig {
 
   static final String DELAY_KEY = "delay";
   static final String EXECUTOR_KEY = "executors";
+  static final String POLL_INTERVAL_KEY = "pollInterval";
+  static final String PREFETCH_KEY = "prefetch";
   static final String PICK_OWN_HOST_KEY = "pickOwnHostOnly";
   static final String REPOS_PATH_KEY = "repositoriesPath";
   static final String INTERVAL_KEY = "interval";
   static final String START_TIME_KEY = "startTime";
+  static final String DISCOVERY_THREADS_KEY = "discoveryThreads";
+  static final String THREADS_KEY = "threads";
+  static final String THREADS_PER_FILESYSTEM_KEY = "threadsPerFilesystem";
+  static final String MANIFEST_PATH_KEY = "manifestPath";
+  static final String MANIFEST_MAX_AGE_KEY = "manifestMaxAge";
+  static final String SPREAD_WINDOW_KEY = "spreadWindow";
 
   static final String EMPTY = "";
   static final int DEFAULT_EXECUTORS = 2;
   static final int DEFAULT_DELAY = 0;
+  static final int DEFAULT_POLL_INTERVAL = 60;
+  static final int DEFAULT_PREFETCH = 1;
   static final String DEFAULT_REPOS_PATH = "/opt/gerrit/repos";
   static final long DEFAULT_INTERVAL = -1;
   static final long DEFAULT_INITIAL_DELAY = -1;
+  static final int DEFAULT_DISCOVERY_THREADS = 4;
+  static final int DEFAULT_THREADS = 1;
+  static final int DEFAULT_THREADS_PER_FILESYSTEM = 0;
+  static final String DEFAULT_MANIFEST_PATH = "/opt/gerrit/data/gc-conductor/manifest";
+  static final long DEFAULT_MANIFEST_MAX_AGE = TimeUnit.DAYS.toMillis(14);
+  static final long DEFAULT_SPREAD_WINDOW = 0;
 
   private final int delay;
   private final int executors;
+  private final int pollInterval;
+  private final int prefetch;
   private final boolean pickOwnHostOnly;
   private final String repositoriesPath;
   private final long interval;
   private final long initialDelay;
+  private final int discoveryThreads;
+  private final int threads;
+  private final int threadsPerFilesystem;
+  private final String manifestPath;
+  private final long manifestMaxAge;
+  private final long spreadWindow;
 
   @Inject
   ExecutorConfig(Config config) {
@@ -74,10 +99,21 @@ class ExecutorConfig extends CommonConfig {
         getString(config, DB_SECTION, null, DB_PASS_KEY, DEFAULT_DB_PASSWORD),
         config.getInt(EVALUATION_SECTION, PACKED_KEY, PACKED_DEFAULT),
         config.getInt(EVALUATION_SECTION, LOOSE_KEY, LOOSE_DEFAULT),
+        config.getEnum(EVALUATION_SECTION, null, LOOSE_EVALUATION_KEY, LOOSE_EVALUATION_DEFAULT),
+        new ScoreWeights(
+            config.getInt(EVALUATION_SECTION, PACK_WEIGHT_KEY, PACK_WEIGHT_DEFAULT),
+            config.getInt(EVALUATION_SECTION, SMALL_PACK_WEIGHT_KEY, SMALL_PACK_WEIGHT_DEFAULT),
+            config.getInt(EVALUATION_SECTION, LOOSE_OBJECT_WEIGHT_KEY, LOOSE_OBJECT_WEIGHT_DEFAULT),
+            config.getInt(EVALUATION_SECTION, LOOSE_REF_WEIGHT_KEY, LOOSE_REF_WEIGHT_DEFAULT),
+            config.getInt(EVALUATION_SECTION, GARBAGE_WEIGHT_KEY, GARBAGE_WEIGHT_DEFAULT),
+            config.getInt(EVALUATION_SECTION, AGE_WEIGHT_KEY, AGE_WEIGHT_DEFAULT)),
         config.getBoolean(
-            EVALUATION_SECTION, GC_FORCE_AGGRESSIVE_KEY, DEFAULT_GC_FORCE_AGGRESSIVE));
+            EVALUATION_SECTION, GC_FORCE_AGGRESSIVE_KEY, DEFAULT_GC_FORCE_AGGRESSIVE),
+        getString(config, DB_SECTION, null, QUEUE_PATH_KEY, DEFAULT_QUEUE_PATH));
     delay = config.getInt(CORE_SECTION, DELAY_KEY, DEFAULT_DELAY);
     executors = config.getInt(CORE_SECTION, EXECUTOR_KEY, DEFAULT_EXECUTORS);
+    pollInterval = config.getInt(CORE_SECTION, POLL_INTERVAL_KEY, DEFAULT_POLL_INTERVAL);
+    prefetch = config.getInt(CORE_SECTION, PREFETCH_KEY, DEFAULT_PREFETCH);
     pickOwnHostOnly = config.getBoolean(CORE_SECTION, PICK_OWN_HOST_KEY, true);
     repositoriesPath =
         getString(config, EVALUATION_SECTION, null, REPOS_PATH_KEY, DEFAULT_REPOS_PATH);
@@ -87,12 +123,32 @@ class ExecutorConfig extends CommonConfig {
             config.getString(EVALUATION_SECTION, null, START_TIME_KEY),
             ZonedDateTime.now(systemDefault()),
             interval);
+    discoveryThreads =
+        Math.max(
+            1, config.getInt(EVALUATION_SECTION, DISCOVERY_THREADS_KEY, DEFAULT_DISCOVERY_THREADS));
+    threads = Math.max(1, config.getInt(EVALUATION_SECTION, THREADS_KEY, DEFAULT_THREADS));
+    threadsPerFilesystem =
+        config.getInt(
+            EVALUATION_SECTION, THREADS_PER_FILESYSTEM_KEY, DEFAULT_THREADS_PER_FILESYSTEM);
+    manifestPath =
+        getString(config, EVALUATION_SECTION, null, MANIFEST_PATH_KEY, DEFAULT_MANIFEST_PATH);
+    manifestMaxAge =
+        duration(config, EVALUATION_SECTION, MANIFEST_MAX_AGE_KEY, DEFAULT_MANIFEST_MAX_AGE);
+    spreadWindow = duration(config, EVALUATION_SECTION, SPREAD_WINDOW_KEY, DEFAULT_SPREAD_WINDOW);
   }
 
   int getExecutors() {
     return executors;
   }
 
+  int getPollInterval() {
+    return pollInterval;
+  }
+
+  int getPrefetch() {
+    return prefetch;
+  }
+
   boolean isPickOwnHostOnly() {
     return pickOwnHostOnly;
   }
@@ -113,6 +169,30 @@ class ExecutorConfig extends CommonConfig {
     return interval;
   }
 
+  int getDiscoveryThreads() {
+    return discoveryThreads;
+  }
+
+  int getThreads() {
+    return threads;
+  }
+
+  int getThreadsPerFilesystem() {
+    return threadsPerFilesystem;
+  }
+
+  String getManifestPath() {
+    return manifestPath;
+  }
+
+  long getManifestMaxAge() {
+    return manifestMaxAge;
+  }
+
+  long getSpreadWindow() {
+    return spreadWindow;
+  }
+
   private long interval(Config rc, String section, String key) {
     try {
       return ConfigUtil.getTimeUnit(rc, section, key, DEFAULT_INTERVAL, TimeUnit.MILLISECONDS);
@@ -122,6 +202,15 @@ class ExecutorConfig extends CommonConfig {
     }
   }
 
+  private long duration(Config rc, String section, String key, long defaultValue) {
+    try {
+      return ConfigUtil.getTimeUnit(rc, section, key, defaultValue, TimeUnit.MILLISECONDS);
+    } catch (IllegalArgumentException e) {
+      log.debug("Invalid {}.{} setting. Using default value", section, key, e);
+      return defaultValue;
+    }
+  }
+
   @VisibleForTesting
   long initialDelay(String start, ZonedDateTime now, long interval) {
     if (start == null) {
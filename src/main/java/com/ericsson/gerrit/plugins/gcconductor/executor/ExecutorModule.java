@@ -14,8 +14,13 @@
 
 package com.ericsson.gerrit.plugins.gcconductor.executor;
 
+import com.ericsson.gerrit.plugins.gcconductor.CommonConfig;
 import com.ericsson.gerrit.plugins.gcconductor.CommonModule;
+import com.ericsson.gerrit.plugins.gcconductor.DirectEnqueuer;
+import com.ericsson.gerrit.plugins.gcconductor.DirectRepositoryStatistics;
+import com.ericsson.gerrit.plugins.gcconductor.Enqueuer;
 import com.ericsson.gerrit.plugins.gcconductor.Hostname;
+import com.ericsson.gerrit.plugins.gcconductor.RepositoryStatistics;
 import com.ericsson.gerrit.plugins.gcconductor.ShutdownListener;
 import com.google.inject.AbstractModule;
 import com.google.inject.Provides;
@@ -36,12 +41,20 @@ class ExecutorModule extends AbstractModule {
 
   @Override
   protected void configure() {
-    install(new CommonModule(ExecutorConfig.class));
+    install(
+        new CommonModule(
+            ExecutorConfig.class,
+            config.getString(ExecutorConfig.DB_SECTION, null, CommonConfig.QUEUE_TYPE_KEY)));
     bind(RuntimeShutdown.class);
     bind(Config.class).toInstance(config);
     bind(ExecutorConfig.class);
+    bind(Enqueuer.class).to(DirectEnqueuer.class);
+    bind(RepositoryStatistics.class).to(DirectRepositoryStatistics.class);
     install(new FactoryModuleBuilder().build(GcWorker.Factory.class));
     bind(ShutdownListener.class).annotatedWith(UniqueAnnotations.create()).to(GcExecutor.class);
+    bind(WorkerWakeUp.class);
+    bind(PrefetchBuffer.class);
+    bind(LeaseRenewer.class);
     bind(CancellableProgressMonitor.class);
     bind(GarbageCollector.class);
     bind(ScheduledEvaluator.class);
@@ -61,4 +74,18 @@ class ExecutorModule extends AbstractModule {
   int queuedForLongerThan(ExecutorConfig config) {
     return config.getDelay();
   }
+
+  @Provides
+  @Singleton
+  @PollInterval
+  int pollInterval(ExecutorConfig config) {
+    return config.getPollInterval();
+  }
+
+  @Provides
+  @Singleton
+  @Prefetch
+  int prefetch(ExecutorConfig config) {
+    return config.getPrefetch();
+  }
 }
@@ -17,7 +17,6 @@ package com.ericsson.gerrit.plugins.gcconductor.executor;
 import com.ericsson.gerrit.plugins.gcconductor.GcQueue;
 import com.ericsson.gerrit.plugins.gcconductor.GcQueueException;
 import com.ericsson.gerrit.plugins.gcconductor.Hostname;
-import com.ericsson.gerrit.plugins.gcconductor.RepositoryInfo;
 import com.ericsson.gerrit.plugins.gcconductor.ShutdownListener;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.inject.Guice;
@@ -47,6 +46,10 @@ class GcExecutor implements ShutdownListener {
 
   private final GcQueue queue;
 
+  private final PrefetchBuffer prefetchBuffer;
+
+  private final LeaseRenewer leaseRenewer;
+
   private final String hostname;
 
   @Inject
@@ -55,22 +58,25 @@ class GcExecutor implements ShutdownListener {
       ExecutorConfig config,
       GcWorker.Factory gcWorkerFactory,
       ScheduledEvaluator scheduledEvaluator,
+      WorkerWakeUp wakeUp,
+      PrefetchBuffer prefetchBuffer,
+      LeaseRenewer leaseRenewer,
       @Hostname String hostname) {
     this.hostname = hostname;
     this.queue = queue;
+    this.prefetchBuffer = prefetchBuffer;
+    this.leaseRenewer = leaseRenewer;
     unpickRepositories(queue, hostname);
+    queue.addListener(wakeUp);
     startExecutors(config, gcWorkerFactory, hostname);
+    leaseRenewer.start(hostname + "-");
     scheduleEvaluation(config, scheduledEvaluator);
   }
 
   private void unpickRepositories(GcQueue queue, String hostname) {
     try {
-      for (RepositoryInfo queuedRepo : queue.list()) {
-        String executor = queuedRepo.getExecutor();
-        if (executor != null && executor.startsWith(hostname)) {
-          queue.unpick(queuedRepo.getPath());
-        }
-      }
+      int unpicked = queue.unpickAll(hostname + "-");
+      log.debug("{} repositories assigned to {} executors were unpicked", unpicked, hostname);
     } catch (GcQueueException e) {
       log.error("Failed to clear assigned repositories {}", e.getMessage(), e);
     }
@@ -113,6 +119,8 @@ class GcExecutor implements ShutdownListener {
           Thread.currentThread().interrupt();
         }
       }
+      prefetchBuffer.clear();
+      leaseRenewer.stop();
       unpickRepositories(queue, hostname);
     }
     log.info("Executors shut down OK.");
@@ -32,9 +32,12 @@ class GcWorker extends Thread {
   private static final Logger log = LoggerFactory.getLogger(GcWorker.class);
 
   private final GcQueue queue;
+  private final PrefetchBuffer prefetchBuffer;
+  private final WorkerWakeUp wakeUp;
   private final GarbageCollector gc;
   private final Optional<String> queuedFrom;
   private final int queuedForLongerThan;
+  private final long waitTimeMs;
   private final String name;
   private final CancellableProgressMonitor cpm;
   private final Retryer<Boolean> retryer =
@@ -52,16 +55,25 @@ class GcWorker extends Thread {
   @Inject
   GcWorker(
       GcQueue queue,
+      PrefetchBuffer prefetchBuffer,
+      WorkerWakeUp wakeUp,
       GarbageCollector gc,
       CancellableProgressMonitor cpm,
       @QueuedFrom Optional<String> queuedFrom,
       @QueuedForLongerThan int queuedForLongerThan,
+      @PollInterval int pollInterval,
       @Assisted String name) {
     this.queue = queue;
+    this.prefetchBuffer = prefetchBuffer;
+    this.wakeUp = wakeUp;
     this.gc = gc;
     this.cpm = cpm;
     this.queuedFrom = queuedFrom;
     this.queuedForLongerThan = queuedForLongerThan;
+    // repositories queued with a delay become available without any notification
+    this.waitTimeMs =
+        TimeUnit.SECONDS.toMillis(
+            queuedForLongerThan > 0 ? Math.min(pollInterval, queuedForLongerThan) : pollInterval);
     this.name = name;
     setName(name);
   }
@@ -69,13 +81,14 @@ class GcWorker extends Thread {
   @Override
   public void run() {
     while (!cpm.isCancelled()) {
+      long generation = wakeUp.generation();
       RepositoryInfo repoInfo = pickRepository();
       if (null != repoInfo && null != repoInfo.getPath()) {
-        runGc(repoInfo.getPath(), repoInfo.isAggressive());
+        runGc(repoInfo.getPath(), repoInfo.getExecutor(), repoInfo.isAggressive());
       } else {
-        log.debug("No repository picked, going to sleep");
+        log.debug("No repository picked, waiting for queue changes");
         try {
-          Thread.sleep(5000);
+          wakeUp.await(generation, waitTimeMs);
         } catch (InterruptedException e) {
           log.debug("Gc task was interrupted while waiting to pick a repository");
           Thread.currentThread().interrupt();
@@ -87,7 +100,7 @@ class GcWorker extends Thread {
 
   private RepositoryInfo pickRepository() {
     try {
-      RepositoryInfo repoInfo = queue.pick(name, queuedForLongerThan, queuedFrom);
+      RepositoryInfo repoInfo = prefetchBuffer.pick(name, queuedForLongerThan, queuedFrom);
       if (repoInfo != null) {
         return repoInfo;
       }
@@ -97,7 +110,7 @@ class GcWorker extends Thread {
     return null;
   }
 
-  private void runGc(String repoPath, boolean aggressive) {
+  private void runGc(String repoPath, String executor, boolean aggressive) {
     try {
       log.info("Starting {} gc on repository {}", aggressive ? "aggressive" : "normal", repoPath);
       gc.setRepositoryPath(repoPath);
@@ -118,9 +131,9 @@ class GcWorker extends Thread {
     } finally {
       if (cpm.isCancelled()) {
         log.warn("Gc on repository {} was cancelled", repoPath);
-        unpickRepository(repoPath);
+        unpickRepository(repoPath, executor);
       } else {
-        removeRepoFromQueue(repoPath);
+        removeRepoFromQueue(repoPath, executor);
       }
     }
   }
@@ -130,19 +143,26 @@ class GcWorker extends Thread {
     this.interrupt();
   }
 
-  private void unpickRepository(String repoPath) {
+  // repositories picked by another executor or removed meanwhile are left alone
+  private void unpickRepository(String repoPath, String executor) {
     try {
-      queue.unpick(repoPath);
-      log.debug("Executor was removed for repository {}", repoPath);
+      if (queue.unpick(repoPath, executor)) {
+        log.debug("Executor was removed for repository {}", repoPath);
+      } else {
+        log.debug("Repository {} is no longer picked by executor {}", repoPath, executor);
+      }
     } catch (GcQueueException e) {
       log.error("Unable to remove executor for repository {}", repoPath, e);
     }
   }
 
-  private void removeRepoFromQueue(String repoPath) {
+  private void removeRepoFromQueue(String repoPath, String executor) {
     try {
-      queue.remove(repoPath);
-      log.debug("Repository {} was removed", repoPath);
+      if (queue.remove(repoPath, executor)) {
+        log.debug("Repository {} was removed", repoPath);
+      } else {
+        log.debug("Repository {} is no longer picked by executor {}", repoPath, executor);
+      }
     } catch (GcQueueException e) {
       log.error("Unable to remove repository {} from the queue", repoPath, e);
     }
@@ -0,0 +1,72 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.ericsson.gerrit.plugins.gcconductor.executor;
+
+import com.ericsson.gerrit.plugins.gcconductor.GcQueue;
+import com.ericsson.gerrit.plugins.gcconductor.GcQueueException;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Periodically renews the leases of the repositories picked by this executor, so repositories
+ * picked by a dead executor can be picked by the others once their lease expired.
+ */
+@Singleton
+class LeaseRenewer implements Runnable {
+  private static final Logger log = LoggerFactory.getLogger(LeaseRenewer.class);
+
+  static final long RENEW_INTERVAL_SECONDS = 60;
+
+  private final GcQueue queue;
+
+  private ScheduledThreadPoolExecutor scheduledExecutor;
+  private String executorPrefix;
+
+  @Inject
+  LeaseRenewer(GcQueue queue) {
+    this.queue = queue;
+  }
+
+  synchronized void start(String executorPrefix) {
+    this.executorPrefix = executorPrefix;
+    ThreadFactory threadFactory =
+        new ThreadFactoryBuilder().setNameFormat("LeaseRenewer-%d").setDaemon(true).build();
+    scheduledExecutor = new ScheduledThreadPoolExecutor(1, threadFactory);
+    scheduledExecutor.scheduleAtFixedRate(
+        this, RENEW_INTERVAL_SECONDS, RENEW_INTERVAL_SECONDS, TimeUnit.SECONDS);
+  }
+
+  synchronized void stop() {
+    if (scheduledExecutor != null) {
+      scheduledExecutor.shutdownNow();
+      scheduledExecutor = null;
+    }
+  }
+
+  @Override
+  public void run() {
+    try {
+      queue.renewLeases(executorPrefix);
+    } catch (GcQueueException e) {
+      log.error("Unable to renew leases of executors {}", executorPrefix, e);
+    }
+  }
+}
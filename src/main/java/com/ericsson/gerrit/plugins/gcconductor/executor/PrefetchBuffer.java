@@ -0,0 +1,80 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.ericsson.gerrit.plugins.gcconductor.executor;
+
+import com.ericsson.gerrit.plugins.gcconductor.GcQueue;
+import com.ericsson.gerrit.plugins.gcconductor.GcQueueException;
+import com.ericsson.gerrit.plugins.gcconductor.Hostname;
+import com.ericsson.gerrit.plugins.gcconductor.RepositoryInfo;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Optional;
+
+/**
+ * Local buffer of repositories picked from the queue in batches and drained by the {@link
+ * GcWorker}s of this executor.
+ *
+ * <p>Buffered repositories are assigned to the <code>hostname-prefetch</code> executor, so they are
+ * released along with the workers' ones when the executor starts or shuts down. When the prefetch
+ * size is 1, the buffer is bypassed and each worker picks its own repository. Workers only
+ * remove or unpick a buffered repository if it is still assigned to the prefetch executor, so a
+ * repository removed from the queue or picked by another executor meanwhile is left alone.
+ */
+@Singleton
+class PrefetchBuffer {
+  private final GcQueue queue;
+  private final int size;
+  private final String executor;
+  private final Deque<RepositoryInfo> buffer = new ArrayDeque<>();
+
+  @Inject
+  PrefetchBuffer(GcQueue queue, @Prefetch int size, @Hostname String hostname) {
+    this.queue = queue;
+    this.size = size;
+    this.executor = hostname + "-prefetch";
+  }
+
+  /**
+   * Pick a repository from the buffer, refilling the buffer from the queue when empty.
+   *
+   * @param worker The name of the worker picking the repository.
+   * @param queuedForLongerThan Only pick repositories that were in the queue for longer than
+   *     specified number of seconds.
+   * @param queuedFrom If specified, only pick repositories queued from the specified hostname.
+   * @return RepositoryInfo representing the repository if any, otherwise return <code>null</code>.
+   * @throws GcQueueException if an error occur while picking repositories from the queue.
+   */
+  RepositoryInfo pick(String worker, long queuedForLongerThan, Optional<String> queuedFrom)
+      throws GcQueueException {
+    if (size <= 1) {
+      return queue.pick(worker, queuedForLongerThan, queuedFrom);
+    }
+    synchronized (buffer) {
+      if (buffer.isEmpty()) {
+        buffer.addAll(queue.pickBatch(executor, size, queuedForLongerThan, queuedFrom));
+      }
+      return buffer.poll();
+    }
+  }
+
+  /** Drop the buffered repositories, they still have to be unpicked from the queue. */
+  void clear() {
+    synchronized (buffer) {
+      buffer.clear();
+    }
+  }
+}
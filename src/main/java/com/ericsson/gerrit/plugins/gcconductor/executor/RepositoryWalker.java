@@ -0,0 +1,195 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.ericsson.gerrit.plugins.gcconductor.executor;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import org.eclipse.jgit.lib.RepositoryCache.FileKey;
+import org.eclipse.jgit.util.FS;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Walks a directory tree with several threads and streams the git repositories found under it.
+ *
+ * <p>Repositories are passed to the consumer as soon as they are found, through a bounded queue
+ * that holds the walk back when the consumer does not keep up. Directories are walked depth first
+ * and the subdirectories of a repository are not walked, the walk only holds the directories
+ * waiting to be listed, not the repositories found.
+ */
+class RepositoryWalker {
+  private static final Logger log = LoggerFactory.getLogger(RepositoryWalker.class);
+
+  static final int FOUND_QUEUE_CAPACITY = 1000;
+
+  // compared by identity, marks the end of the walk in the found queue
+  private static final Path END = Paths.get("");
+  // compared by identity, stops a walking thread
+  private static final Directory STOP = new Directory(END, null, null);
+
+  private final Path root;
+  private final int threads;
+  private final ThreadFactory threadFactory =
+      new ThreadFactoryBuilder().setNameFormat("RepositoryWalker-%d").setDaemon(true).build();
+
+  /**
+   * Create a RepositoryWalker.
+   *
+   * @param root The directory to walk, it is not considered as a repository itself.
+   * @param threads The number of threads listing directories.
+   */
+  RepositoryWalker(Path root, int threads) {
+    this.root = root;
+    this.threads = threads;
+  }
+
+  /**
+   * Walk the directory tree and pass each repository found to the consumer, in the calling thread.
+   * Symbolic links are followed.
+   *
+   * @param consumer The consumer to pass the path of each repository to.
+   * @return the number of repositories passed to the consumer.
+   * @throws InterruptedException if the calling thread is interrupted, the walk is then stopped.
+   */
+  int walk(Consumer<String> consumer) throws InterruptedException {
+    Walk walk = new Walk();
+    ExecutorService pool = Executors.newFixedThreadPool(threads, threadFactory);
+    try {
+      walk.push(new Directory(root, fileKey(root), null));
+      for (int i = 0; i < threads; i++) {
+        pool.execute(walk::listDirectories);
+      }
+      int count = 0;
+      for (Path repository = walk.found.take(); repository != END; repository = walk.found.take()) {
+        if (Thread.interrupted()) {
+          throw new InterruptedException();
+        }
+        consumer.accept(repository.toString());
+        count++;
+      }
+      return count;
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  private class Walk {
+    private final BlockingDeque<Directory> directories = new LinkedBlockingDeque<>();
+    private final BlockingQueue<Path> found = new ArrayBlockingQueue<>(FOUND_QUEUE_CAPACITY);
+    // directories pushed and not completely listed yet
+    private final AtomicInteger pending = new AtomicInteger();
+
+    void push(Directory directory) {
+      pending.incrementAndGet();
+      directories.addFirst(directory);
+    }
+
+    void listDirectories() {
+      try {
+        for (Directory directory = directories.takeFirst();
+            directory != STOP;
+            directory = directories.takeFirst()) {
+          try {
+            list(directory);
+          } finally {
+            if (pending.decrementAndGet() == 0) {
+              end();
+            }
+          }
+        }
+      } catch (InterruptedException e) {
+        // walk was stopped
+      }
+    }
+
+    private void list(Directory directory) throws InterruptedException {
+      try (DirectoryStream<Path> children = Files.newDirectoryStream(directory.path)) {
+        for (Path child : children) {
+          if (!Files.isDirectory(child)) {
+            continue;
+          }
+          if (FileKey.isGitRepository(child.toFile(), FS.DETECTED)) {
+            found.put(child);
+            continue;
+          }
+          Object fileKey = fileKey(child);
+          if (Files.isSymbolicLink(child) && directory.isWithin(fileKey)) {
+            log.warn("Not following symbolic link {}, it points to a parent directory", child);
+            continue;
+          }
+          push(new Directory(child, fileKey, directory));
+        }
+      } catch (IOException | DirectoryIteratorException e) {
+        log.error("Error listing directory {}, it is skipped", directory.path, e);
+      }
+    }
+
+    private void end() throws InterruptedException {
+      for (int i = 0; i < threads; i++) {
+        directories.addLast(STOP);
+      }
+      found.put(END);
+    }
+  }
+
+  private static Object fileKey(Path directory) {
+    try {
+      return Files.readAttributes(directory, BasicFileAttributes.class).fileKey();
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  /** A directory to list, linked to its parent to detect symbolic links pointing to a parent. */
+  private static class Directory {
+    final Path path;
+    final Object fileKey;
+    final Directory parent;
+
+    Directory(Path path, Object fileKey, Directory parent) {
+      this.path = path;
+      this.fileKey = fileKey;
+      this.parent = parent;
+    }
+
+    boolean isWithin(Object key) {
+      if (key == null) {
+        return false;
+      }
+      for (Directory d = this; d != null; d = d.parent) {
+        if (Objects.equals(key, d.fileKey)) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+}
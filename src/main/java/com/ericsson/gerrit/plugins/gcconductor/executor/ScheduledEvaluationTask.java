@@ -15,24 +15,26 @@
 package com.ericsson.gerrit.plugins.gcconductor.executor;
 
 import com.ericsson.gerrit.plugins.gcconductor.EvaluationTask;
+import com.ericsson.gerrit.plugins.gcconductor.EvaluationTask.Result;
+import com.ericsson.gerrit.plugins.gcconductor.executor.EvaluationManifest.State;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
 import com.google.inject.ProvisionException;
 import com.google.inject.Singleton;
 import java.io.IOException;
-import java.nio.file.FileVisitOption;
-import java.nio.file.FileVisitResult;
+import java.nio.file.FileStore;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.SimpleFileVisitor;
-import java.nio.file.attribute.BasicFileAttributes;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.EnumSet;
-import java.util.SortedSet;
-import java.util.TreeSet;
-import org.eclipse.jgit.lib.RepositoryCache.FileKey;
-import org.eclipse.jgit.util.FS;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -40,64 +42,190 @@ import org.slf4j.LoggerFactory;
 class ScheduledEvaluationTask implements Runnable {
   private static final Logger log = LoggerFactory.getLogger(ScheduledEvaluationTask.class);
 
+  // fractional parts of the multiples of the golden ratio are evenly spread over [0, 1) however
+  // many of them are taken
+  private static final double GOLDEN_RATIO_FRACTION = 0.6180339887498949;
+
   private final EvaluationTask.Factory evaluationTaskFactory;
-  private final Path repositoriesPath;
+  private final ExecutorConfig config;
+  private final RepositoryWalker walker;
+  private final int threads;
+  private final int threadsPerFilesystem;
+  private final Path manifestPath;
+  private final long manifestMaxAge;
+  private final long spreadWindow;
+  private final ThreadFactory threadFactory =
+      new ThreadFactoryBuilder().setNameFormat("ScheduledEvaluation-%d").setDaemon(true).build();
 
   @Inject
   public ScheduledEvaluationTask(
       EvaluationTask.Factory evaluationTaskFactory, ExecutorConfig config) {
     this.evaluationTaskFactory = evaluationTaskFactory;
+    this.config = config;
     try {
-      repositoriesPath = Paths.get(config.getRepositoriesPath()).normalize().toRealPath();
+      walker =
+          new RepositoryWalker(
+              Paths.get(config.getRepositoriesPath()).normalize().toRealPath(),
+              config.getDiscoveryThreads());
     } catch (IOException e) {
       log.error("Failed to resolve repositoriesPath.", e);
       throw new ProvisionException("Failed to resolve repositoriesPath: " + e.getMessage());
     }
+    threads = config.getThreads();
+    threadsPerFilesystem = config.getThreadsPerFilesystem();
+    manifestMaxAge = config.getManifestMaxAge();
+    manifestPath = manifestMaxAge > 0 ? Paths.get(config.getManifestPath()) : null;
+    spreadWindow = config.getSpreadWindow();
   }
 
   @Override
   public void run() {
-    for (String repositoryPath : repositories()) {
-      if (Thread.currentThread().isInterrupted()) {
-        return;
-      }
-      evaluationTaskFactory.create(repositoryPath).run();
+    long start = System.currentTimeMillis();
+    Pass pass =
+        new Pass(
+            start,
+            manifestPath == null
+                ? null
+                : EvaluationManifest.load(manifestPath, config, manifestMaxAge));
+    boolean complete = false;
+    try {
+      // repositories are evaluated while the rest of the tree is being walked
+      int evaluated = walker.walk(pass::submit);
+      pass.awaitEvaluations();
+      complete = true;
+      long duration = Math.max(1, System.currentTimeMillis() - start);
+      log.info(
+          "Evaluated {} repositories, {} of them unchanged since their last evaluation, in {}ms ({} repositories/s)",
+          evaluated,
+          pass.unchanged.get(),
+          duration,
+          String.format("%.1f", evaluated * 1000.0 / duration));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      pass.stop(complete);
     }
   }
 
-  private Collection<String> repositories() {
-    ProjectVisitor visitor = new ProjectVisitor(repositoriesPath);
-    try {
-      Files.walkFileTree(
-          visitor.startFolder,
-          EnumSet.of(FileVisitOption.FOLLOW_LINKS),
-          Integer.MAX_VALUE,
-          visitor);
-    } catch (IOException e) {
-      log.error("Error walking repository tree {}", visitor.startFolder.toAbsolutePath(), e);
+  /**
+   * Returns the time before which a repository found dirty by a pass is not picked, so that the
+   * gc of the repositories found dirty is spread over the configured window instead of starting
+   * all at once when the pass ends.
+   *
+   * @param start The time the pass started at, in milliseconds since the epoch.
+   * @param index The position of the repository among the ones found dirty by the pass.
+   * @return the time in milliseconds since the epoch, 0 if gc is not spread.
+   */
+  @VisibleForTesting
+  long notBefore(long start, int index) {
+    if (spreadWindow <= 0) {
+      return 0;
     }
-    return Collections.unmodifiableSortedSet(visitor.found);
+    double fraction = index * GOLDEN_RATIO_FRACTION;
+    return start + (long) (spreadWindow * (fraction - Math.floor(fraction)));
   }
 
-  class ProjectVisitor extends SimpleFileVisitor<Path> {
-    private final SortedSet<String> found = new TreeSet<>();
-    private Path startFolder;
+  /**
+   * Evaluations of one pass, run by a pool of threads and bounded per filesystem. Repositories
+   * unchanged since they were found clean are skipped when the evaluation manifest is enabled.
+   */
+  private class Pass {
+    private final ExecutorService pool = Executors.newFixedThreadPool(threads, threadFactory);
+    // evaluations submitted and not completed are bounded so the walk is held back
+    private final Semaphore running = new Semaphore(threads);
+    private final Map<FileStore, Semaphore> runningPerFilesystem = new HashMap<>();
+    private final EvaluationManifest manifest;
+    private final AtomicInteger unchanged = new AtomicInteger();
+    // only the repositories added to the queue are spread over the window
+    private final AtomicInteger enqueued = new AtomicInteger();
+    private final LongSupplier notBefore;
+
+    Pass(long start, EvaluationManifest manifest) {
+      this.manifest = manifest;
+      notBefore = () -> notBefore(start, enqueued.getAndIncrement());
+    }
+
+    /**
+     * Submit the evaluation of a repository, waiting for a thread, and for the filesystem of the
+     * repository if capped, to be available. Called from the walking thread only.
+     */
+    void submit(String repositoryPath) {
+      Semaphore filesystem = filesystemPermits(repositoryPath);
+      try {
+        running.acquire();
+        try {
+          if (filesystem != null) {
+            filesystem.acquire();
+          }
+        } catch (InterruptedException e) {
+          running.release();
+          throw e;
+        }
+      } catch (InterruptedException e) {
+        // the walk stops on the next repository or while waiting for the evaluations
+        Thread.currentThread().interrupt();
+        return;
+      }
+      pool.execute(
+          () -> {
+            try {
+              evaluate(repositoryPath);
+            } catch (RuntimeException e) {
+              log.error("Failed to evaluate repository {}", repositoryPath, e);
+            } finally {
+              if (filesystem != null) {
+                filesystem.release();
+              }
+              running.release();
+            }
+          });
+    }
 
-    private ProjectVisitor(Path startFolder) {
-      this.startFolder = startFolder;
+    private void evaluate(String repositoryPath) {
+      if (manifest == null) {
+        evaluationTaskFactory.create(repositoryPath).evaluate(notBefore);
+        return;
+      }
+      // read before the evaluation so that changes made while evaluating are not missed
+      State state = State.read(repositoryPath);
+      if (manifest.isUnchangedClean(repositoryPath, state)) {
+        unchanged.incrementAndGet();
+        return;
+      }
+      EvaluationTask task = evaluationTaskFactory.create(repositoryPath);
+      Result result = task.evaluate(notBefore);
+      manifest.record(repositoryPath, state, result == Result.CLEAN, task.getCleanUntil());
     }
 
-    @Override
-    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
-      if (!dir.equals(startFolder) && isRepo(dir)) {
-        found.add(dir.toString());
-        return FileVisitResult.SKIP_SUBTREE;
+    private Semaphore filesystemPermits(String repositoryPath) {
+      if (threadsPerFilesystem <= 0 || threadsPerFilesystem >= threads) {
+        return null;
+      }
+      try {
+        return runningPerFilesystem.computeIfAbsent(
+            Files.getFileStore(Paths.get(repositoryPath)),
+            k -> new Semaphore(threadsPerFilesystem));
+      } catch (IOException e) {
+        log.warn("Failed to get the filesystem of {}, it is not capped", repositoryPath, e);
+        return null;
       }
-      return FileVisitResult.CONTINUE;
     }
 
-    private boolean isRepo(Path p) {
-      return FileKey.isGitRepository(p.toFile(), FS.DETECTED);
+    void awaitEvaluations() throws InterruptedException {
+      running.acquire(threads);
+    }
+
+    /**
+     * Stop the pass, interrupting the running evaluations if it was interrupted, and save the
+     * evaluation manifest.
+     *
+     * @param complete Whether all the repositories were evaluated.
+     */
+    void stop(boolean complete) {
+      pool.shutdownNow();
+      if (manifest != null) {
+        manifest.save(complete);
+      }
     }
   }
 }
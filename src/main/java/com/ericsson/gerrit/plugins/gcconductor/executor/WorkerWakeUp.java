@@ -0,0 +1,56 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.ericsson.gerrit.plugins.gcconductor.executor;
+
+import com.ericsson.gerrit.plugins.gcconductor.GcQueueListener;
+import com.google.inject.Singleton;
+
+/**
+ * Wakes up idle {@link GcWorker}s when the queue notifies that repositories may be available to
+ * pick.
+ *
+ * <p>Workers read the current generation before picking and wait for it to change, this way a
+ * notification received between an empty pick and the wait is not lost.
+ */
+@Singleton
+class WorkerWakeUp implements GcQueueListener {
+  private long generation;
+
+  @Override
+  public synchronized void onQueueChanged() {
+    generation++;
+    notifyAll();
+  }
+
+  synchronized long generation() {
+    return generation;
+  }
+
+  /**
+   * Wait until the queue changed since the specified generation or the timeout elapsed.
+   *
+   * @param seen The generation read before the last pick.
+   * @param timeoutMs The maximum time to wait in milliseconds.
+   * @throws InterruptedException if the current thread is interrupted while waiting.
+   */
+  synchronized void await(long seen, long timeoutMs) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + timeoutMs;
+    long remaining = timeoutMs;
+    while (generation == seen && remaining > 0) {
+      wait(remaining);
+      remaining = deadline - System.currentTimeMillis();
+    }
+  }
+}
@@ -0,0 +1,205 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.ericsson.gerrit.plugins.gcconductor.filequeue;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A change of the file queue as recorded in the journal.
+ *
+ * <p>Every change uses the same fields, their meaning depends on the type of change.
+ */
+class Change {
+
+  enum Type {
+    /** Add repository {@code key} queued from {@code value}. */
+    ADD,
+    /** Set repository {@code key} as aggressive. */
+    AGGRESSIVE,
+    /** Assign repository {@code key} to executor {@code value} until {@code time}. */
+    ASSIGN,
+    /** Extend the lease of the executors whose name starts with {@code key} until {@code time}. */
+    RENEW,
+    /** Clear the executor of repository {@code key}. */
+    UNASSIGN,
+    /** Clear the executor of repositories picked by executors starting with {@code key}. */
+    UNASSIGN_ALL,
+    /** Remove repository {@code key}. */
+    REMOVE,
+    /** Set queuedFrom of all unassigned repositories to {@code value}. */
+    QUEUED_FROM,
+    /** Move repository {@code key} to position {@code sequence}. */
+    SEQUENCE,
+    /** Set the score of repository {@code key} to {@code sequence}. */
+    SCORE,
+    /** Do not pick repository {@code key} before {@code time}, 0 to pick it right away. */
+    NOT_BEFORE
+  }
+
+  private final Type type;
+  private final String key;
+  private final String value;
+  private final long sequence;
+  private final long time;
+  private final boolean flag;
+
+  private Change(Type type, String key, String value, long sequence, long time, boolean flag) {
+    this.type = type;
+    this.key = key;
+    this.value = value;
+    this.sequence = sequence;
+    this.time = time;
+    this.flag = flag;
+  }
+
+  static Change add(
+      String repository, String queuedFrom, boolean aggressive, long sequence, long queuedAt) {
+    return new Change(Type.ADD, repository, queuedFrom, sequence, queuedAt, aggressive);
+  }
+
+  static Change aggressive(String repository) {
+    return new Change(Type.AGGRESSIVE, repository, "", 0, 0, true);
+  }
+
+  static Change assign(String repository, String executor, long leaseExpiry) {
+    return new Change(Type.ASSIGN, repository, executor, 0, leaseExpiry, false);
+  }
+
+  static Change renew(String executorPrefix, long leaseExpiry) {
+    return new Change(Type.RENEW, executorPrefix, "", 0, leaseExpiry, false);
+  }
+
+  static Change unassign(String repository) {
+    return new Change(Type.UNASSIGN, repository, "", 0, 0, false);
+  }
+
+  static Change unassignAll(String executorPrefix) {
+    return new Change(Type.UNASSIGN_ALL, executorPrefix, "", 0, 0, false);
+  }
+
+  static Change remove(String repository) {
+    return new Change(Type.REMOVE, repository, "", 0, 0, false);
+  }
+
+  static Change queuedFrom(String queuedFrom) {
+    return new Change(Type.QUEUED_FROM, "", queuedFrom, 0, 0, false);
+  }
+
+  static Change sequence(String repository, long sequence) {
+    return new Change(Type.SEQUENCE, repository, "", sequence, 0, false);
+  }
+
+  static Change score(String repository, long score) {
+    return new Change(Type.SCORE, repository, "", score, 0, false);
+  }
+
+  static Change notBefore(String repository, long notBefore) {
+    return new Change(Type.NOT_BEFORE, repository, "", 0, notBefore, false);
+  }
+
+  void applyTo(QueueState state) {
+    QueueEntry entry;
+    switch (type) {
+      case ADD:
+        state.add(new QueueEntry(key, sequence, time, value, flag));
+        break;
+      case AGGRESSIVE:
+        entry = state.get(key);
+        if (entry != null) {
+          entry.aggressive = true;
+        }
+        break;
+      case ASSIGN:
+        entry = state.get(key);
+        if (entry != null) {
+          entry.executor = value;
+          entry.leaseExpiry = time;
+        }
+        break;
+      case RENEW:
+        for (QueueEntry e : state.entries()) {
+          if (e.isPickedBy(key)) {
+            e.leaseExpiry = time;
+          }
+        }
+        break;
+      case UNASSIGN:
+        entry = state.get(key);
+        if (entry != null) {
+          entry.executor = null;
+          entry.leaseExpiry = 0;
+        }
+        break;
+      case UNASSIGN_ALL:
+        for (QueueEntry e : state.entries()) {
+          if (e.isPickedBy(key)) {
+            e.executor = null;
+            e.leaseExpiry = 0;
+          }
+        }
+        break;
+      case REMOVE:
+        state.remove(key);
+        break;
+      case QUEUED_FROM:
+        for (QueueEntry e : state.entries()) {
+          if (e.executor == null) {
+            e.queuedFrom = value;
+          }
+        }
+        break;
+      case SEQUENCE:
+        state.setSequence(key, sequence);
+        break;
+      case SCORE:
+        entry = state.get(key);
+        if (entry != null) {
+          entry.score = sequence;
+        }
+        break;
+      case NOT_BEFORE:
+        entry = state.get(key);
+        if (entry != null) {
+          entry.notBefore = time;
+        }
+        break;
+    }
+  }
+
+  void writeTo(DataOutput out) throws IOException {
+    out.writeByte(type.ordinal());
+    out.writeUTF(key);
+    out.writeUTF(value);
+    out.writeLong(sequence);
+    out.writeLong(time);
+    out.writeBoolean(flag);
+  }
+
+  static Change readFrom(DataInput in) throws IOException {
+    int ordinal = in.readUnsignedByte();
+    if (ordinal >= Type.values().length) {
+      throw new IOException("Unknown change type " + ordinal);
+    }
+    return new Change(
+        Type.values()[ordinal],
+        in.readUTF(),
+        in.readUTF(),
+        in.readLong(),
+        in.readLong(),
+        in.readBoolean());
+  }
+}
@@ -0,0 +1,513 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.ericsson.gerrit.plugins.gcconductor.filequeue;
+
+import com.ericsson.gerrit.plugins.gcconductor.CommonConfig;
+import com.ericsson.gerrit.plugins.gcconductor.GcQueue;
+import com.ericsson.gerrit.plugins.gcconductor.GcQueueException;
+import com.ericsson.gerrit.plugins.gcconductor.GcQueueListener;
+import com.ericsson.gerrit.plugins.gcconductor.GcRequest;
+import com.ericsson.gerrit.plugins.gcconductor.QueueFilter;
+import com.ericsson.gerrit.plugins.gcconductor.RepositoryInfo;
+import com.ericsson.gerrit.plugins.gcconductor.ShutdownListener;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.io.IOException;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Queue stored in a journal on the local disk, for sites running the plugin and the executor on
+ * the same host without a PostgreSQL server.
+ *
+ * <p>Every process keeps the queue in memory and applies the changes appended to the journal by
+ * the other processes before each operation. Operations are serialized by a file lock, so the
+ * directory holding the queue must be on a local file system.
+ */
+@Singleton
+public class FileQueue implements GcQueue, ShutdownListener {
+  private static final Logger log = LoggerFactory.getLogger(FileQueue.class);
+
+  static final long LEASE_DURATION_MS = TimeUnit.MINUTES.toMillis(5);
+
+  // entries are iterated in queue order, sorting them by score keeps queue order for equal scores
+  private static final Comparator<QueueEntry> BY_DESCENDING_SCORE =
+      Comparator.comparingLong((QueueEntry e) -> e.score).reversed();
+
+  // file locks are held by the whole JVM, queues opened on the same directory must also be
+  // serialized within the JVM
+  private static final ConcurrentMap<Path, ReentrantLock> PROCESS_LOCKS =
+      new ConcurrentHashMap<>();
+
+  private final Journal journal;
+  private final ReentrantLock processLock;
+  private final LongSupplier clock;
+  private JournalWatcher watcher;
+
+  @Inject
+  FileQueue(CommonConfig config) throws IOException {
+    this(Paths.get(config.getQueuePath()), System::currentTimeMillis);
+  }
+
+  @VisibleForTesting
+  public FileQueue(Path directory, LongSupplier clock) throws IOException {
+    this.journal = new Journal(directory);
+    this.processLock =
+        PROCESS_LOCKS.computeIfAbsent(
+            directory.toAbsolutePath().normalize(), d -> new ReentrantLock());
+    this.clock = clock;
+    processLock.lock();
+    try {
+      FileLock lock = journal.lock();
+      try {
+        journal.catchUp();
+      } finally {
+        lock.release();
+      }
+    } catch (IOException e) {
+      journal.close();
+      throw e;
+    } finally {
+      processLock.unlock();
+    }
+  }
+
+  @Override
+  public boolean add(
+      String repository, String queuedFrom, boolean isAggressive, long score, long notBefore)
+      throws GcQueueException {
+    // null if the queue was not changed
+    Boolean added =
+        execute(
+            "Failed to add repository " + repository,
+            () ->
+                addEntry(
+                    repository, queuedFrom, new GcRequest(isAggressive, score), notBefore));
+    if (added == null) {
+      return false;
+    }
+    // repository was either added or upgraded
+    notifyListeners();
+    return added;
+  }
+
+  @Override
+  public int addAll(Map<String, GcRequest> repositories, String queuedFrom)
+      throws GcQueueException {
+    if (repositories.isEmpty()) {
+      return 0;
+    }
+    // number of added repositories and number of changed repositories
+    int[] counts =
+        execute(
+            "Failed to add " + repositories.size() + " repositories",
+            () -> {
+              int[] result = new int[2];
+              for (Map.Entry<String, GcRequest> repository : repositories.entrySet()) {
+                Boolean added =
+                    addEntry(repository.getKey(), queuedFrom, repository.getValue(), 0);
+                if (added != null) {
+                  result[0] += added ? 1 : 0;
+                  result[1]++;
+                }
+              }
+              return result;
+            });
+    if (counts[1] > 0) {
+      notifyListeners();
+    }
+    return counts[0];
+  }
+
+  @Override
+  public RepositoryInfo pick(String executor, long queuedForLongerThan, Optional<String> queuedFrom)
+      throws GcQueueException {
+    return execute(
+        "Failed to pick repository",
+        () -> {
+          long now = clock.getAsLong();
+          QueueEntry owned = null;
+          QueueEntry expired = null;
+          QueueEntry unassigned = null;
+          for (QueueEntry entry : journal.state().entries()) {
+            if (!isPickable(entry, now, queuedForLongerThan, queuedFrom)) {
+              continue;
+            }
+            if (executor.equals(entry.executor)) {
+              owned = entry;
+              break;
+            }
+            // the first of the entries with the highest score
+            if (isLeaseExpired(entry, now)) {
+              if (expired == null || entry.score > expired.score) {
+                expired = entry;
+              }
+            } else if (entry.isUnassigned()) {
+              if (unassigned == null || entry.score > unassigned.score) {
+                unassigned = entry;
+              }
+            }
+          }
+          QueueEntry picked = owned != null ? owned : expired != null ? expired : unassigned;
+          if (picked == null) {
+            return null;
+          }
+          journal.append(Change.assign(picked.path, executor, now + LEASE_DURATION_MS));
+          return journal.state().get(picked.path).toRepositoryInfo();
+        });
+  }
+
+  @Override
+  public List<RepositoryInfo> pickBatch(
+      String executor, int size, long queuedForLongerThan, Optional<String> queuedFrom)
+      throws GcQueueException {
+    return execute(
+        "Failed to pick repositories",
+        () -> {
+          long now = clock.getAsLong();
+          List<QueueEntry> candidates = new ArrayList<>();
+          for (QueueEntry entry : journal.state().entries()) {
+            if (isPickable(entry, now, queuedForLongerThan, queuedFrom)
+                && (entry.isUnassigned() || isLeaseExpired(entry, now))) {
+              candidates.add(entry);
+            }
+          }
+          // same precedence as pick, the entries already picked by the executor being excluded
+          candidates.sort(
+              Comparator.comparing((QueueEntry e) -> !isLeaseExpired(e, now))
+                  .thenComparing(BY_DESCENDING_SCORE));
+          List<RepositoryInfo> picked = new ArrayList<>(Math.min(size, candidates.size()));
+          for (QueueEntry candidate : candidates.subList(0, Math.min(size, candidates.size()))) {
+            journal.append(Change.assign(candidate.path, executor, now + LEASE_DURATION_MS));
+            picked.add(journal.state().get(candidate.path).toRepositoryInfo());
+          }
+          return picked;
+        });
+  }
+
+  @Override
+  public void renewLeases(String executorPrefix) throws GcQueueException {
+    execute(
+        "Failed to renew leases of executors " + executorPrefix,
+        () -> {
+          if (countPickedBy(executorPrefix) > 0) {
+            journal.append(Change.renew(executorPrefix, clock.getAsLong() + LEASE_DURATION_MS));
+          }
+          return null;
+        });
+  }
+
+  @Override
+  public void unpick(String repository) throws GcQueueException {
+    unpickIf(repository, entry -> true);
+  }
+
+  @Override
+  public boolean unpick(String repository, String executor) throws GcQueueException {
+    return unpickIf(repository, entry -> executor.equals(entry.executor));
+  }
+
+  private boolean unpickIf(String repository, Predicate<QueueEntry> condition)
+      throws GcQueueException {
+    boolean unpicked =
+        execute(
+            "Failed to unpick repository " + repository,
+            () -> {
+              QueueEntry entry = journal.state().get(repository);
+              if (entry == null || !condition.test(entry)) {
+                return false;
+              }
+              journal.append(Change.unassign(repository));
+              return true;
+            });
+    if (unpicked) {
+      notifyListeners();
+    }
+    return unpicked;
+  }
+
+  @Override
+  public int unpickAll(String executorPrefix) throws GcQueueException {
+    int unpicked =
+        execute(
+            "Failed to unpick repositories of executors " + executorPrefix,
+            () -> {
+              int count = countPickedBy(executorPrefix);
+              if (count > 0) {
+                journal.append(Change.unassignAll(executorPrefix));
+              }
+              return count;
+            });
+    if (unpicked > 0) {
+      notifyListeners();
+    }
+    return unpicked;
+  }
+
+  @Override
+  public void remove(String repository) throws GcQueueException {
+    removeIf(repository, entry -> true);
+  }
+
+  @Override
+  public boolean remove(String repository, String executor) throws GcQueueException {
+    return removeIf(repository, entry -> executor.equals(entry.executor));
+  }
+
+  private boolean removeIf(String repository, Predicate<QueueEntry> condition)
+      throws GcQueueException {
+    return execute(
+        "Failed to remove repository " + repository,
+        () -> {
+          QueueEntry entry = journal.state().get(repository);
+          if (entry == null || !condition.test(entry)) {
+            return false;
+          }
+          journal.append(Change.remove(repository));
+          return true;
+        });
+  }
+
+  @Override
+  public boolean contains(String repository) throws GcQueueException {
+    return execute(
+        "Failed to check if queue contains repository " + repository,
+        () -> journal.state().get(repository) != null);
+  }
+
+  @Override
+  public void resetQueuedFrom(String queuedFrom) throws GcQueueException {
+    execute(
+        "Failed to reset queuedFrom",
+        () -> {
+          journal.append(Change.queuedFrom(queuedFrom));
+          return null;
+        });
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The queue is held in memory, the matching repositories are copied before being passed to
+   * the consumer so that other processes are not blocked by a slow consumer.
+   */
+  @Override
+  public int list(QueueFilter filter, Consumer<RepositoryInfo> consumer) throws GcQueueException {
+    List<RepositoryInfo> repositories =
+        execute(
+            "Failed to list repositories ",
+            () -> {
+              List<RepositoryInfo> matching = new ArrayList<>();
+              int skipped = 0;
+              for (QueueEntry entry : journal.state().entries()) {
+                if (filter.getLimit() > 0 && matching.size() >= filter.getLimit()) {
+                  break;
+                }
+                if (matches(entry, filter)) {
+                  if (skipped < filter.getOffset()) {
+                    skipped++;
+                  } else {
+                    matching.add(entry.toRepositoryInfo());
+                  }
+                }
+              }
+              return matching;
+            });
+    repositories.forEach(consumer);
+    return repositories.size();
+  }
+
+  @Override
+  public void bumpToFirst(String repository) throws GcQueueException {
+    boolean bumped =
+        execute(
+            "Failed to update repository priority ",
+            () -> {
+              if (journal.state().get(repository) == null) {
+                return false;
+              }
+              journal.append(Change.sequence(repository, journal.state().firstSequence() - 1));
+              long highestScore = highestScore();
+              if (journal.state().get(repository).score < highestScore) {
+                journal.append(Change.score(repository, highestScore));
+              }
+              return true;
+            });
+    if (bumped) {
+      notifyListeners();
+    }
+  }
+
+  @Override
+  public synchronized void addListener(GcQueueListener listener) {
+    if (watcher == null) {
+      watcher = new JournalWatcher(journal);
+      watcher.addListener(listener);
+      watcher.start();
+      return;
+    }
+    watcher.addListener(listener);
+  }
+
+  @Override
+  public synchronized void onShutdown() {
+    if (watcher != null) {
+      watcher.shutdown();
+      watcher = null;
+    }
+    processLock.lock();
+    try {
+      journal.close();
+    } catch (IOException e) {
+      log.warn("Failed to close queue journal {}", journal.path(), e);
+    } finally {
+      processLock.unlock();
+    }
+  }
+
+  private synchronized void notifyListeners() {
+    if (watcher != null) {
+      watcher.notifyListeners();
+    }
+  }
+
+  /**
+   * Appends the change adding the repository to the journal, if any.
+   *
+   * @return <code>true</code> if the repository was added, <code>false</code> if it was upgraded to
+   *     aggressive, to a higher score or to an earlier time to pick it at and <code>null</code> if
+   *     the queue was not changed.
+   */
+  private Boolean addEntry(
+      String repository, String queuedFrom, GcRequest request, long notBefore)
+      throws IOException {
+    QueueEntry entry = journal.state().get(repository);
+    // a time already past is the same as no time at all
+    if (notBefore <= clock.getAsLong()) {
+      notBefore = 0;
+    }
+    if (entry == null) {
+      journal.append(
+          Change.add(
+              repository,
+              queuedFrom,
+              request.isAggressive(),
+              journal.state().nextSequence(),
+              clock.getAsLong()));
+      if (request.getScore() != 0) {
+        journal.append(Change.score(repository, request.getScore()));
+      }
+      if (notBefore != 0) {
+        journal.append(Change.notBefore(repository, notBefore));
+      }
+      return true;
+    }
+    if (!entry.isUnassigned()) {
+      return null;
+    }
+    Boolean upgraded = null;
+    if (request.isAggressive() && !entry.aggressive) {
+      journal.append(Change.aggressive(repository));
+      upgraded = false;
+    }
+    if (request.getScore() > entry.score) {
+      journal.append(Change.score(repository, request.getScore()));
+      upgraded = false;
+    }
+    if (notBefore < entry.notBefore) {
+      journal.append(Change.notBefore(repository, notBefore));
+      upgraded = false;
+    }
+    return upgraded;
+  }
+
+  private long highestScore() {
+    long highest = Long.MIN_VALUE;
+    for (QueueEntry entry : journal.state().entries()) {
+      highest = Math.max(highest, entry.score);
+    }
+    return highest;
+  }
+
+  private int countPickedBy(String executorPrefix) {
+    int count = 0;
+    for (QueueEntry entry : journal.state().entries()) {
+      if (entry.isPickedBy(executorPrefix)) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private static boolean isPickable(
+      QueueEntry entry, long now, long queuedForLongerThan, Optional<String> queuedFrom) {
+    return entry.queuedAt <= now - TimeUnit.SECONDS.toMillis(queuedForLongerThan)
+        && entry.notBefore <= now
+        && (!queuedFrom.isPresent() || queuedFrom.get().startsWith(entry.queuedFrom));
+  }
+
+  private static boolean isLeaseExpired(QueueEntry entry, long now) {
+    return !entry.isUnassigned() && entry.leaseExpiry < now;
+  }
+
+  private static boolean matches(QueueEntry entry, QueueFilter filter) {
+    return filter.getExecutorPrefix().map(entry::isPickedBy).orElse(true)
+        && filter.getQueuedFrom().map(h -> h.equals(entry.queuedFrom)).orElse(true)
+        && filter.getAggressive().map(a -> a == entry.aggressive).orElse(true)
+        && filter.getPathPrefix().map(entry.path::startsWith).orElse(true);
+  }
+
+  private <T> T execute(String failureMessage, Operation<T> operation) throws GcQueueException {
+    processLock.lock();
+    try {
+      FileLock lock = journal.lock();
+      try {
+        journal.catchUp();
+        T result = operation.run();
+        journal.commit();
+        return result;
+      } finally {
+        lock.release();
+      }
+    } catch (IOException e) {
+      // changes may have been partially written, read the journal again on the next operation
+      journal.reset();
+      throw new GcQueueException(failureMessage, e);
+    } finally {
+      processLock.unlock();
+    }
+  }
+
+  @FunctionalInterface
+  private interface Operation<T> {
+    T run() throws IOException;
+  }
+}
@@ -0,0 +1,38 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.ericsson.gerrit.plugins.gcconductor.filequeue;
+
+import com.ericsson.gerrit.plugins.gcconductor.CommonConfig;
+import com.ericsson.gerrit.plugins.gcconductor.GcQueue;
+import com.ericsson.gerrit.plugins.gcconductor.ShutdownListener;
+import com.google.inject.AbstractModule;
+import com.google.inject.internal.UniqueAnnotations;
+
+/** Configures bindings of the file queue implementation. */
+public class FileQueueModule extends AbstractModule {
+
+  private Class<? extends CommonConfig> commonConfig;
+
+  public FileQueueModule(Class<? extends CommonConfig> commonConfig) {
+    this.commonConfig = commonConfig;
+  }
+
+  @Override
+  protected void configure() {
+    bind(CommonConfig.class).to(commonConfig);
+    bind(GcQueue.class).to(FileQueue.class);
+    bind(ShutdownListener.class).annotatedWith(UniqueAnnotations.create()).to(FileQueue.class);
+  }
+}
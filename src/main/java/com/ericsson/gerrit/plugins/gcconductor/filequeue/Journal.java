@@ -0,0 +1,298 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.ericsson.gerrit.plugins.gcconductor.filequeue;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only log of the changes of the file queue, shared by all the processes of the host.
+ *
+ * <p>Each change is stored as a length-prefixed record followed by its CRC32, and is forced to
+ * disk before the operation returns. A record partially written by a process that crashed is
+ * detected by the next process reading the journal and truncated. The journal is compacted by
+ * writing the current state to a new file that atomically replaces the old one; the lock file
+ * holds a generation number incremented on every compaction so that other processes know they
+ * have to read the journal again from the beginning.
+ *
+ * <p>All methods but {@link #size()} must be called while holding the lock returned by {@link
+ * #lock()}.
+ */
+class Journal implements AutoCloseable {
+  private static final Logger log = LoggerFactory.getLogger(Journal.class);
+
+  static final String JOURNAL_FILE = "queue.journal";
+  private static final String COMPACTED_FILE = "queue.journal.tmp";
+  private static final String LOCK_FILE = "queue.lock";
+
+  private static final int MAGIC = 0x67634a31;
+  private static final int HEADER_SIZE = Integer.BYTES;
+  private static final int RECORD_OVERHEAD = 2 * Integer.BYTES;
+  private static final int COMPACTION_MIN_RECORDS = 10_000;
+
+  private final Path journalPath;
+  private final Path compactedPath;
+  private final FileChannel lockChannel;
+  private final QueueState state = new QueueState();
+
+  private FileChannel journal;
+  private long generation = -1;
+  private long position;
+  private long records;
+  private boolean dirty;
+  private volatile long writtenSize = -1;
+
+  Journal(Path directory) throws IOException {
+    Files.createDirectories(directory);
+    journalPath = directory.resolve(JOURNAL_FILE);
+    compactedPath = directory.resolve(COMPACTED_FILE);
+    lockChannel = FileChannel.open(directory.resolve(LOCK_FILE), READ, WRITE, CREATE);
+  }
+
+  FileLock lock() throws IOException {
+    return lockChannel.lock();
+  }
+
+  QueueState state() {
+    return state;
+  }
+
+  /** Apply to the state the changes appended to the journal by other processes. */
+  void catchUp() throws IOException {
+    long currentGeneration = readGeneration();
+    if (journal == null || currentGeneration != generation) {
+      open(currentGeneration);
+    }
+    long size = journal.size();
+    if (size > position) {
+      replay(size);
+    }
+  }
+
+  /** Write the change to the journal and apply it to the state. */
+  void append(Change change) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      change.writeTo(out);
+    }
+    byte[] payload = bytes.toByteArray();
+    CRC32 crc = new CRC32();
+    crc.update(payload);
+    ByteBuffer record = ByteBuffer.allocate(payload.length + RECORD_OVERHEAD);
+    record.putInt(payload.length).put(payload).putInt((int) crc.getValue()).flip();
+    // set before writing so that the watcher never takes this change for one of another process
+    writtenSize = position + record.limit();
+    writeFully(journal, record, position);
+    position += record.limit();
+    records++;
+    dirty = true;
+    change.applyTo(state);
+  }
+
+  /** Force the appended changes to disk and compact the journal if needed. */
+  void commit() throws IOException {
+    if (dirty) {
+      journal.force(false);
+      dirty = false;
+      if (records > COMPACTION_MIN_RECORDS && records > 2L * state.size()) {
+        compact();
+      }
+    }
+  }
+
+  /** Discard the state, it is rebuilt from the journal on the next {@link #catchUp()}. */
+  void reset() {
+    generation = -1;
+    writtenSize = -1;
+  }
+
+  /**
+   * Returns the size of the journal once the last change written by this process is on disk, -1
+   * if unknown. Can be called without holding the lock.
+   */
+  long size() {
+    return writtenSize;
+  }
+
+  Path path() {
+    return journalPath;
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      if (journal != null) {
+        journal.close();
+      }
+    } finally {
+      lockChannel.close();
+    }
+  }
+
+  private void open(long currentGeneration) throws IOException {
+    if (journal != null) {
+      journal.close();
+    }
+    journal = FileChannel.open(journalPath, READ, WRITE, CREATE);
+    if (journal.size() < HEADER_SIZE) {
+      writeHeader(journal);
+    } else {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+      readFully(journal, header, 0);
+      if (header.getInt(0) != MAGIC) {
+        throw new IOException(journalPath + " is not a gc-conductor queue journal");
+      }
+    }
+    generation = currentGeneration;
+    position = HEADER_SIZE;
+    records = 0;
+    state.clear();
+  }
+
+  private void replay(long size) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate((int) (size - position));
+    readFully(journal, buffer, position);
+    buffer.flip();
+    CRC32 crc = new CRC32();
+    while (buffer.remaining() >= RECORD_OVERHEAD) {
+      int length = buffer.getInt(buffer.position());
+      if (length < 0 || buffer.remaining() < length + RECORD_OVERHEAD) {
+        break;
+      }
+      byte[] payload = new byte[length];
+      buffer.position(buffer.position() + Integer.BYTES);
+      buffer.get(payload);
+      int checksum = buffer.getInt();
+      crc.reset();
+      crc.update(payload);
+      if ((int) crc.getValue() != checksum) {
+        break;
+      }
+      Change.readFrom(new DataInputStream(new ByteArrayInputStream(payload))).applyTo(state);
+      position += length + RECORD_OVERHEAD;
+      records++;
+    }
+    if (position < size) {
+      log.warn(
+          "Discarding {} bytes of incomplete changes at the end of {}",
+          size - position,
+          journalPath);
+      journal.truncate(position);
+      journal.force(false);
+    }
+  }
+
+  private void compact() throws IOException {
+    long start = System.currentTimeMillis();
+    try (FileChannel compacted =
+        FileChannel.open(compactedPath, READ, WRITE, CREATE, TRUNCATE_EXISTING)) {
+      writeHeader(compacted);
+      journal.close();
+      journal = compacted;
+      position = HEADER_SIZE;
+      records = 0;
+      // re-appending the state to itself is idempotent, only the file is rebuilt
+      for (QueueEntry entry : state.entries().toArray(new QueueEntry[0])) {
+        append(
+            Change.add(
+                entry.path, entry.queuedFrom, entry.aggressive, entry.sequence, entry.queuedAt));
+        if (entry.score != 0) {
+          append(Change.score(entry.path, entry.score));
+        }
+        if (entry.notBefore != 0) {
+          append(Change.notBefore(entry.path, entry.notBefore));
+        }
+        if (entry.executor != null) {
+          append(Change.assign(entry.path, entry.executor, entry.leaseExpiry));
+        }
+      }
+      compacted.force(false);
+      // other processes must read the journal again even if this process dies before the
+      // compacted journal replaces the old one
+      writeGeneration(generation + 1);
+      writtenSize = position;
+      Files.move(compactedPath, journalPath, ATOMIC_MOVE, REPLACE_EXISTING);
+    } finally {
+      journal = null;
+      dirty = false;
+    }
+    open(generation + 1);
+    replay(journal.size());
+    log.debug(
+        "Compacted {} to {} repositories in {}ms",
+        journalPath,
+        state.size(),
+        System.currentTimeMillis() - start);
+  }
+
+  private long readGeneration() throws IOException {
+    if (lockChannel.size() < Long.BYTES) {
+      return 0;
+    }
+    ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+    readFully(lockChannel, buffer, 0);
+    return buffer.getLong(0);
+  }
+
+  private void writeGeneration(long newGeneration) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+    buffer.putLong(newGeneration).flip();
+    writeFully(lockChannel, buffer, 0);
+    lockChannel.force(false);
+  }
+
+  private static void writeHeader(FileChannel channel) throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    header.putInt(MAGIC).flip();
+    channel.truncate(0);
+    writeFully(channel, header, 0);
+    channel.force(false);
+  }
+
+  private static void readFully(FileChannel channel, ByteBuffer buffer, long position)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      int read = channel.read(buffer, position + buffer.position());
+      if (read < 0) {
+        throw new IOException("Unexpected end of file");
+      }
+    }
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer buffer, long position)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer, position + buffer.position());
+    }
+  }
+}
@@ -0,0 +1,120 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.ericsson.gerrit.plugins.gcconductor.filequeue;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import com.ericsson.gerrit.plugins.gcconductor.GcQueueListener;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Watches the journal for changes made by other processes of the host and dispatches them to the
+ * registered {@link GcQueueListener}s.
+ */
+class JournalWatcher extends Thread {
+  private static final Logger log = LoggerFactory.getLogger(JournalWatcher.class);
+
+  private static final long WATCH_TIMEOUT_MS = 10_000;
+
+  private final Journal journal;
+  private final List<GcQueueListener> listeners = new CopyOnWriteArrayList<>();
+
+  private volatile boolean stopped;
+  private volatile WatchService watchService;
+
+  JournalWatcher(Journal journal) {
+    this.journal = journal;
+    setName("gc-conductor-queue-watcher");
+    setDaemon(true);
+  }
+
+  void addListener(GcQueueListener listener) {
+    listeners.add(listener);
+  }
+
+  @Override
+  public void run() {
+    Path journalPath = journal.path();
+    try (WatchService service = journalPath.getFileSystem().newWatchService()) {
+      watchService = service;
+      journalPath.getParent().register(service, ENTRY_CREATE, ENTRY_MODIFY);
+      // changes may have been missed while not watching
+      notifyListeners();
+      while (!stopped) {
+        WatchKey key = service.poll(WATCH_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        if (key != null) {
+          boolean journalChanged = false;
+          for (WatchEvent<?> event : key.pollEvents()) {
+            journalChanged |=
+                event.kind() == OVERFLOW || journalPath.getFileName().equals(event.context());
+          }
+          key.reset();
+          if (journalChanged && isChangedByOtherProcess(journalPath)) {
+            notifyListeners();
+          }
+        }
+      }
+    } catch (IOException e) {
+      log.error("Failed to watch queue changes, falling back to polling", e);
+    } catch (InterruptedException | ClosedWatchServiceException e) {
+      if (!stopped) {
+        log.error("Queue changes watcher was interrupted", e);
+      }
+    } finally {
+      watchService = null;
+    }
+  }
+
+  void shutdown() {
+    stopped = true;
+    interrupt();
+    WatchService service = watchService;
+    if (service != null) {
+      try {
+        service.close();
+      } catch (IOException e) {
+        log.debug("Failed to close queue changes watcher", e);
+      }
+    }
+  }
+
+  void notifyListeners() {
+    for (GcQueueListener listener : listeners) {
+      listener.onQueueChanged();
+    }
+  }
+
+  private boolean isChangedByOtherProcess(Path journalPath) {
+    try {
+      // changes of this process were already notified
+      return Files.size(journalPath) != journal.size();
+    } catch (IOException e) {
+      return true;
+    }
+  }
+}
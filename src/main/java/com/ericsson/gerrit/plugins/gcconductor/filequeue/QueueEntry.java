@@ -0,0 +1,53 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.ericsson.gerrit.plugins.gcconductor.filequeue;
+
+import com.ericsson.gerrit.plugins.gcconductor.RepositoryInfo;
+import java.sql.Timestamp;
+
+/** A repository of the file queue. */
+class QueueEntry {
+  final String path;
+  final long queuedAt;
+  long sequence;
+  String queuedFrom;
+  boolean aggressive;
+  long score;
+  String executor;
+  long leaseExpiry;
+  // time before which the repository is not picked, 0 if it can be picked right away
+  long notBefore;
+
+  QueueEntry(String path, long sequence, long queuedAt, String queuedFrom, boolean aggressive) {
+    this.path = path;
+    this.sequence = sequence;
+    this.queuedAt = queuedAt;
+    this.queuedFrom = queuedFrom;
+    this.aggressive = aggressive;
+  }
+
+  boolean isUnassigned() {
+    return executor == null || executor.isEmpty();
+  }
+
+  boolean isPickedBy(String executorPrefix) {
+    return executor != null && executor.startsWith(executorPrefix);
+  }
+
+  RepositoryInfo toRepositoryInfo() {
+    return new RepositoryInfo(
+        path, new Timestamp(queuedAt), executor, queuedFrom, aggressive, score);
+  }
+}
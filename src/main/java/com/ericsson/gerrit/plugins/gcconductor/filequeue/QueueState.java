@@ -0,0 +1,78 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.ericsson.gerrit.plugins.gcconductor.filequeue;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/** In memory state of the file queue, rebuilt from the journal. */
+class QueueState {
+  private final Map<String, QueueEntry> byPath = new HashMap<>();
+  private final TreeMap<Long, QueueEntry> bySequence = new TreeMap<>();
+  private long lastSequence;
+
+  QueueEntry get(String path) {
+    return byPath.get(path);
+  }
+
+  /** @return the repositories ordered from the first to the last to pick. */
+  Collection<QueueEntry> entries() {
+    return bySequence.values();
+  }
+
+  int size() {
+    return byPath.size();
+  }
+
+  long nextSequence() {
+    return lastSequence + 1;
+  }
+
+  long firstSequence() {
+    return bySequence.isEmpty() ? nextSequence() : bySequence.firstKey();
+  }
+
+  void clear() {
+    byPath.clear();
+    bySequence.clear();
+    lastSequence = 0;
+  }
+
+  void add(QueueEntry entry) {
+    remove(entry.path);
+    byPath.put(entry.path, entry);
+    bySequence.put(entry.sequence, entry);
+    lastSequence = Math.max(lastSequence, entry.sequence);
+  }
+
+  void remove(String path) {
+    QueueEntry entry = byPath.remove(path);
+    if (entry != null) {
+      bySequence.remove(entry.sequence);
+    }
+  }
+
+  void setSequence(String path, long sequence) {
+    QueueEntry entry = byPath.get(path);
+    if (entry != null) {
+      bySequence.remove(entry.sequence);
+      entry.sequence = sequence;
+      bySequence.put(sequence, entry);
+      lastSequence = Math.max(lastSequence, sequence);
+    }
+  }
+}
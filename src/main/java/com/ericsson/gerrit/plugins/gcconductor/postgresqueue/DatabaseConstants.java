@@ -16,9 +16,15 @@ package com.ericsson.gerrit.plugins.gcconductor.postgresqueue;
 
 import static java.lang.String.format;
 
+import com.ericsson.gerrit.plugins.gcconductor.GcRequest;
+import com.ericsson.gerrit.plugins.gcconductor.QueueFilter;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import org.apache.commons.dbcp.BasicDataSource;
 
@@ -34,6 +40,34 @@ final class DatabaseConstants {
   static final String QUEUED_AT = "queued_at";
   static final String HOSTNAME = "hostname";
   static final String AGGRESSIVE = "aggressive";
+  static final String SCORE = "score";
+  private static final String LEASE_EXPIRY = "lease_expiry";
+  private static final String NOT_BEFORE = "not_before";
+
+  static final long LEASE_DURATION_SECONDS = 300;
+  private static final String NEW_LEASE =
+      "localtimestamp + " + LEASE_DURATION_SECONDS + " * interval '1 second'";
+  private static final String LEASE_EXPIRED = LEASE_EXPIRY + " < localtimestamp";
+
+  private static final String UNASSIGNED = "(" + EXECUTOR + " IS NULL OR " + EXECUTOR + "='')";
+  // A null not_before is due right away. The expression is a key of the pick index so that picks
+  // skip the repositories not due yet without reading them from the table.
+  private static final String DUE_AT = "COALESCE(" + NOT_BEFORE + ", '-infinity'::timestamp)";
+  private static final String READY = UNASSIGNED + " AND " + DUE_AT + " <= localtimestamp";
+  // Repositories are picked by descending score, then in queue order.
+  private static final String PICK_ORDER = SCORE + " DESC, " + SEQUENCE;
+  private static final String READY_INDEX = REPOSITORIES_TABLE + "_unassigned_due_idx";
+  private static final String OLD_UNASSIGNED_INDEX = REPOSITORIES_TABLE + "_unassigned_idx";
+  private static final String OLD_UNASSIGNED_SCORE_INDEX =
+      REPOSITORIES_TABLE + "_unassigned_score_idx";
+  private static final String EXECUTOR_INDEX = REPOSITORIES_TABLE + "_executor_idx";
+  private static final String LEASE_EXPIRY_INDEX = REPOSITORIES_TABLE + "_lease_expiry_idx";
+  private static final String OLD_READY_SCORE_INDEX = REPOSITORIES_TABLE + "_ready_score_idx";
+  private static final String OLD_NOT_BEFORE_INDEX = REPOSITORIES_TABLE + "_not_before_idx";
+
+  private static final String QUEUE_CHANNEL = "gc_conductor_queue";
+  static final String LISTEN_QUEUE = "LISTEN " + QUEUE_CHANNEL;
+  static final String NOTIFY_QUEUE = "NOTIFY " + QUEUE_CHANNEL;
 
   static final String CREATE_OR_UPDATE_SCHEMA =
       "DO"
@@ -53,7 +87,9 @@ final class DatabaseConstants {
           + HOSTNAME
           + " VARCHAR(255) NOT NULL, "
           + AGGRESSIVE
-          + " BOOLEAN NOT NULL"
+          + " BOOLEAN NOT NULL, "
+          + SCORE
+          + " BIGINT NOT NULL DEFAULT 0"
           + ");"
           // This section is temporary to support migrating live, next version will
           // drop the executor tables, only drop the foreign key for now.
@@ -79,17 +115,227 @@ final class DatabaseConstants {
           + REPOSITORIES_TABLE
           + ".';"
           + " END;"
+          + " BEGIN ALTER TABLE "
+          + REPOSITORIES_TABLE
+          + " ADD COLUMN "
+          + LEASE_EXPIRY
+          + " TIMESTAMP WITHOUT TIME ZONE;"
+          + " EXCEPTION WHEN duplicate_column THEN RAISE NOTICE 'column "
+          + LEASE_EXPIRY
+          + " already exists in "
+          + REPOSITORIES_TABLE
+          + ".';"
+          + " END;"
+          // repositories assigned before leases existed, or by executors not renewing them yet,
+          // get a lease so that they are picked again if their executor is gone
+          + " UPDATE "
+          + REPOSITORIES_TABLE
+          + " SET "
+          + LEASE_EXPIRY
+          + "="
+          + NEW_LEASE
+          + " WHERE "
+          + EXECUTOR
+          + " IS NOT NULL AND "
+          + EXECUTOR
+          + "<>'' AND "
+          + LEASE_EXPIRY
+          + " IS NULL;"
+          + " BEGIN ALTER TABLE "
+          + REPOSITORIES_TABLE
+          + " ADD COLUMN "
+          + SCORE
+          + " BIGINT NOT NULL DEFAULT 0;"
+          + " EXCEPTION WHEN duplicate_column THEN RAISE NOTICE 'column "
+          + SCORE
+          + " already exists in "
+          + REPOSITORIES_TABLE
+          + ".';"
+          + " END;"
+          + " BEGIN ALTER TABLE "
+          + REPOSITORIES_TABLE
+          + " ADD COLUMN "
+          + NOT_BEFORE
+          + " TIMESTAMP WITHOUT TIME ZONE;"
+          + " EXCEPTION WHEN duplicate_column THEN RAISE NOTICE 'column "
+          + NOT_BEFORE
+          + " already exists in "
+          + REPOSITORIES_TABLE
+          + ".';"
+          + " END;"
+          // unassigned repositories used to be picked in queue order only, then regardless of
+          // the time they are not to be picked before, then only once that time was cleared
+          + " DROP INDEX IF EXISTS "
+          + OLD_UNASSIGNED_INDEX
+          + ";"
+          + " DROP INDEX IF EXISTS "
+          + OLD_UNASSIGNED_SCORE_INDEX
+          + ";"
+          + " DROP INDEX IF EXISTS "
+          + OLD_READY_SCORE_INDEX
+          + ";"
+          + " DROP INDEX IF EXISTS "
+          + OLD_NOT_BEFORE_INDEX
+          + ";"
+          + " CREATE INDEX IF NOT EXISTS "
+          + READY_INDEX
+          + " ON "
+          + REPOSITORIES_TABLE
+          + " ("
+          + PICK_ORDER
+          + ", ("
+          + DUE_AT
+          + ")) WHERE "
+          + UNASSIGNED
+          + ";"
+          + " CREATE INDEX IF NOT EXISTS "
+          + EXECUTOR_INDEX
+          + " ON "
+          + REPOSITORIES_TABLE
+          + " ("
+          + EXECUTOR
+          + ", "
+          + SEQUENCE
+          + ");"
+          + " CREATE INDEX IF NOT EXISTS "
+          + LEASE_EXPIRY_INDEX
+          + " ON "
+          + REPOSITORIES_TABLE
+          + " ("
+          + LEASE_EXPIRY
+          + ") WHERE "
+          + LEASE_EXPIRY
+          + " IS NOT NULL;"
           + " END "
           + " $$";
 
   private static final String SELECT_REPOSITORIES = "SELECT * FROM " + REPOSITORIES_TABLE;
 
-  static final String SELECT_REPOSITORIES_ORDERED = SELECT_REPOSITORIES + " ORDER BY " + SEQUENCE;
+  static final String DATABASE_EXISTS = "SELECT 1 from pg_database WHERE datname=?";
+
+  static final String SELECT_REPOSITORY = SELECT_REPOSITORIES + " WHERE " + REPOSITORY + "=?";
+
+  // An already queued repository is only upgraded to aggressive, raised to a higher score or made
+  // pickable earlier if not picked yet, a null not_before being the earliest. A row is returned if
+  // the repository was inserted or upgraded, xmax is 0 only for inserted rows.
+  private static final String UPGRADE_REPOSITORY =
+      format(
+          " ON CONFLICT (%2$s) DO UPDATE SET %3$s=(%1$s.%3$s OR EXCLUDED.%3$s),"
+              + " %4$s=GREATEST(%1$s.%4$s, EXCLUDED.%4$s),"
+              + " %6$s=CASE WHEN %1$s.%6$s IS NULL OR EXCLUDED.%6$s IS NULL THEN NULL"
+              + " ELSE LEAST(%1$s.%6$s, EXCLUDED.%6$s) END"
+              + " WHERE (%1$s.%5$s IS NULL OR %1$s.%5$s='')"
+              + " AND ((%1$s.%3$s=false AND EXCLUDED.%3$s) OR EXCLUDED.%4$s > %1$s.%4$s"
+              + " OR %1$s.%6$s > EXCLUDED.%6$s"
+              + " OR (%1$s.%6$s IS NOT NULL AND EXCLUDED.%6$s IS NULL))"
+              + " RETURNING (xmax = 0) AS inserted",
+          REPOSITORIES_TABLE, REPOSITORY, AGGRESSIVE, SCORE, EXECUTOR, NOT_BEFORE);
+
+  // not_before is computed from a delay in milliseconds, null to pick the repository right away,
+  // so that it does not depend on the clock and time zone of the host adding the repository.
+  static final String UPSERT_REPOSITORY =
+      format(
+              "INSERT INTO %1$s (%2$s,%3$s,%4$s,%5$s,%6$s)"
+                  + " VALUES (?,?,?,?,localtimestamp + ?::bigint * interval '1 millisecond')",
+              REPOSITORIES_TABLE, REPOSITORY, HOSTNAME, AGGRESSIVE, SCORE, NOT_BEFORE)
+          + UPGRADE_REPOSITORY;
+
+  // Same as UPSERT_REPOSITORY for all the repositories of the arrays, inserted in array order.
+  static final String UPSERT_REPOSITORIES =
+      format(
+              "INSERT INTO %1$s (%2$s,%3$s,%4$s,%5$s) SELECT r, ?, a, s"
+                  + " FROM unnest(?::varchar[], ?::boolean[], ?::bigint[])"
+                  + " WITH ORDINALITY AS t(r, a, s, o) ORDER BY o",
+              REPOSITORIES_TABLE, REPOSITORY, HOSTNAME, AGGRESSIVE, SCORE)
+          + UPGRADE_REPOSITORY;
+
+  static final String DELETE_REPOSITORY =
+      "DELETE FROM " + REPOSITORIES_TABLE + " WHERE " + REPOSITORY + "=?";
+
+  static final String DELETE_PICKED_REPOSITORY =
+      format("DELETE FROM %s WHERE %s=? AND %s=?", REPOSITORIES_TABLE, REPOSITORY, EXECUTOR);
+
+  private static final String PICKABLE =
+      format("%s < localtimestamp - ? * interval '1 second'", QUEUED_AT);
+  private static final String QUEUED_FROM_FILTER = format(" AND ? LIKE %s||'%%'", HOSTNAME);
+
+  // A repository already assigned to the executor is returned first. Otherwise, the repository with
+  // an expired lease or unassigned with the highest score that is not being picked by another
+  // executor is assigned.
+  private static final String UPDATE_EXECUTOR =
+      "UPDATE %1$s SET %2$s=?, %3$s=%4$s WHERE %5$s=COALESCE("
+          + "(SELECT %5$s FROM %1$s WHERE %2$s=? AND %6$s ORDER BY %7$s LIMIT 1),"
+          + "(SELECT %5$s FROM %1$s WHERE %8$s AND %6$s ORDER BY %7$s LIMIT 1"
+          + " FOR UPDATE SKIP LOCKED),"
+          + "(SELECT %5$s FROM %1$s WHERE %9$s AND %6$s ORDER BY %7$s LIMIT 1"
+          + " FOR UPDATE SKIP LOCKED)) RETURNING *";
+
+  // Same precedence as UPDATE_EXECUTOR, except that the repositories already assigned to the
+  // executor are not returned again since it is still processing them: the repositories with an
+  // expired lease come first, then the unassigned ones.
+  private static final String UPDATE_EXECUTOR_BATCH =
+      "WITH expired AS (SELECT %5$s, %10$s, 0 AS precedence FROM %1$s WHERE %8$s AND %6$s"
+          + " ORDER BY %7$s LIMIT ? FOR UPDATE SKIP LOCKED),"
+          + " unassigned AS (SELECT %5$s, %10$s, 1 AS precedence FROM %1$s WHERE %9$s AND %6$s"
+          + " ORDER BY %7$s LIMIT ? FOR UPDATE SKIP LOCKED),"
+          + " candidates AS (SELECT * FROM expired UNION ALL SELECT * FROM unassigned"
+          + " ORDER BY precedence, %7$s LIMIT ?),"
+          + " picked AS (UPDATE %1$s SET %2$s=?, %3$s=%4$s FROM candidates"
+          + " WHERE %1$s.%5$s=candidates.%5$s RETURNING %1$s.*, candidates.precedence)"
+          + " SELECT * FROM picked ORDER BY precedence, %7$s";
+
+  private static final String UPDATE_EXECUTOR_ANY_HOST = updateExecutorQuery(UPDATE_EXECUTOR, "");
+  private static final String UPDATE_EXECUTOR_QUEUED_FROM =
+      updateExecutorQuery(UPDATE_EXECUTOR, QUEUED_FROM_FILTER);
+  private static final String UPDATE_EXECUTOR_BATCH_ANY_HOST =
+      updateExecutorQuery(UPDATE_EXECUTOR_BATCH, "");
+  private static final String UPDATE_EXECUTOR_BATCH_QUEUED_FROM =
+      updateExecutorQuery(UPDATE_EXECUTOR_BATCH, QUEUED_FROM_FILTER);
+
+  static final String RENEW_LEASES =
+      format(
+          "UPDATE %s SET %s=%s WHERE %s LIKE ?",
+          REPOSITORIES_TABLE, LEASE_EXPIRY, NEW_LEASE, EXECUTOR);
+
+  static final String UPDATE_QUEUED_FROM =
+      format("UPDATE %s SET %s=? WHERE %s is NULL", REPOSITORIES_TABLE, HOSTNAME, EXECUTOR);
+
+  static final String CLEAR_EXECUTOR =
+      format(
+          "UPDATE %s SET %s=NULL, %s=NULL WHERE %s=?",
+          REPOSITORIES_TABLE, EXECUTOR, LEASE_EXPIRY, REPOSITORY);
+
+  static final String CLEAR_PICKED_EXECUTOR =
+      format(
+          "UPDATE %s SET %s=NULL, %s=NULL WHERE %s=? AND %s=?",
+          REPOSITORIES_TABLE, EXECUTOR, LEASE_EXPIRY, REPOSITORY, EXECUTOR);
+
+  static final String CLEAR_EXECUTORS =
+      format(
+          "UPDATE %s SET %s=NULL, %s=NULL WHERE %s LIKE ?",
+          REPOSITORIES_TABLE, EXECUTOR, LEASE_EXPIRY, EXECUTOR);
+
+  static final String BUMP_REPOSITORY =
+      format(
+          "UPDATE %1$s SET %2$s=(SELECT min(%2$s) FROM %1$s) -1, %3$s=(SELECT max(%3$s) FROM %1$s)"
+              + " WHERE %4$s=?",
+          REPOSITORIES_TABLE, SEQUENCE, SCORE, REPOSITORY);
 
   private DatabaseConstants() {}
 
-  static final String databaseExists(String name) {
-    return "SELECT 1 from pg_database WHERE datname='" + name + "'";
+  private static String updateExecutorQuery(String query, String queuedFromFilter) {
+    return format(
+        query,
+        REPOSITORIES_TABLE,
+        EXECUTOR,
+        LEASE_EXPIRY,
+        NEW_LEASE,
+        REPOSITORY,
+        PICKABLE + queuedFromFilter,
+        PICK_ORDER,
+        LEASE_EXPIRED,
+        READY,
+        SCORE + ", " + SEQUENCE);
   }
 
   static final String createDatabase(String name) {
@@ -100,62 +346,131 @@ final class DatabaseConstants {
     return "DROP DATABASE " + name;
   }
 
-  static final String select(String repository) {
-    return SELECT_REPOSITORIES + " WHERE " + REPOSITORY + "='" + repository + "'";
-  }
-
-  static final String insert(String repository, String hostname, boolean isAggressive) {
-    return format(
-        "INSERT INTO %s (%s,%s,%s) SELECT '%s','%s','%b' WHERE NOT EXISTS (%s)",
-        REPOSITORIES_TABLE,
-        REPOSITORY,
-        HOSTNAME,
-        AGGRESSIVE,
-        repository,
-        hostname,
-        isAggressive,
-        select(repository));
+  static PreparedStatement updateExecutor(
+      Connection conn, String executor, long queuedForLongerThan, Optional<String> queuedFrom)
+      throws SQLException {
+    List<Object> parameters = new ArrayList<>();
+    parameters.add(executor);
+    parameters.add(executor);
+    // the pickable filter is repeated in each of the 3 candidate sub-queries
+    for (int i = 0; i < 3; i++) {
+      parameters.add(queuedForLongerThan);
+      queuedFrom.ifPresent(parameters::add);
+    }
+    return prepare(
+        conn,
+        queuedFrom.isPresent() ? UPDATE_EXECUTOR_QUEUED_FROM : UPDATE_EXECUTOR_ANY_HOST,
+        parameters.toArray());
   }
 
-  static final String delete(String repository) {
-    return "DELETE FROM " + REPOSITORIES_TABLE + " WHERE " + REPOSITORY + "='" + repository + "'";
+  static PreparedStatement updateExecutorBatch(
+      Connection conn,
+      String executor,
+      int size,
+      long queuedForLongerThan,
+      Optional<String> queuedFrom)
+      throws SQLException {
+    List<Object> parameters = new ArrayList<>();
+    // the pickable filter is repeated in the expired and unassigned sub-queries
+    for (int i = 0; i < 2; i++) {
+      parameters.add(queuedForLongerThan);
+      queuedFrom.ifPresent(parameters::add);
+      parameters.add(size);
+    }
+    parameters.add(size);
+    parameters.add(executor);
+    return prepare(
+        conn,
+        queuedFrom.isPresent() ? UPDATE_EXECUTOR_BATCH_QUEUED_FROM : UPDATE_EXECUTOR_BATCH_ANY_HOST,
+        parameters.toArray());
   }
 
-  static final String updateExecutor(
-      String executor, long queuedForLongerThan, Optional<String> queuedFrom) {
-    return format(
-        "UPDATE %s SET %s='%s' WHERE %s IN (SELECT %s FROM %s WHERE (%s is null OR %s='' OR %s='%s') AND age(localtimestamp, queued_at) > '%s' %s ORDER BY %s LIMIT 1 FOR UPDATE OF %s) RETURNING *",
-        REPOSITORIES_TABLE,
-        EXECUTOR,
-        executor,
-        REPOSITORY,
-        REPOSITORY,
-        REPOSITORIES_TABLE,
-        EXECUTOR,
-        EXECUTOR,
-        EXECUTOR,
-        executor,
-        queuedForLongerThan,
-        (queuedFrom.isPresent() ? " AND '" + queuedFrom.get() + "' LIKE hostname||'%'" : ""),
-        SEQUENCE,
-        REPOSITORIES_TABLE);
+  static PreparedStatement upsertRepositories(
+      Connection conn, Map<String, GcRequest> repositories, String queuedFrom)
+      throws SQLException {
+    String[] paths = new String[repositories.size()];
+    Boolean[] aggressive = new Boolean[repositories.size()];
+    Long[] scores = new Long[repositories.size()];
+    int i = 0;
+    for (Map.Entry<String, GcRequest> repository : repositories.entrySet()) {
+      paths[i] = repository.getKey();
+      aggressive[i] = repository.getValue().isAggressive();
+      scores[i] = repository.getValue().getScore();
+      i++;
+    }
+    return prepare(
+        conn,
+        UPSERT_REPOSITORIES,
+        queuedFrom,
+        conn.createArrayOf("varchar", paths),
+        conn.createArrayOf("boolean", aggressive),
+        conn.createArrayOf("bigint", scores));
   }
 
-  static final String updateQueuedFrom(String hostname) {
-    return format(
-        "UPDATE %s SET %s='%s' WHERE %s is NULL", REPOSITORIES_TABLE, HOSTNAME, hostname, EXECUTOR);
+  static PreparedStatement selectRepositories(Connection conn, QueueFilter filter)
+      throws SQLException {
+    List<String> conditions = new ArrayList<>();
+    List<Object> parameters = new ArrayList<>();
+    filter
+        .getExecutorPrefix()
+        .ifPresent(
+            p -> {
+              conditions.add(EXECUTOR + " LIKE ?");
+              parameters.add(likePrefix(p));
+            });
+    filter
+        .getQueuedFrom()
+        .ifPresent(
+            h -> {
+              conditions.add(HOSTNAME + "=?");
+              parameters.add(h);
+            });
+    filter
+        .getAggressive()
+        .ifPresent(
+            a -> {
+              conditions.add(AGGRESSIVE + "=?");
+              parameters.add(a);
+            });
+    filter
+        .getPathPrefix()
+        .ifPresent(
+            p -> {
+              conditions.add(REPOSITORY + " LIKE ?");
+              parameters.add(likePrefix(p));
+            });
+    StringBuilder query = new StringBuilder(SELECT_REPOSITORIES);
+    if (!conditions.isEmpty()) {
+      query.append(" WHERE ").append(String.join(" AND ", conditions));
+    }
+    query.append(" ORDER BY ").append(SEQUENCE);
+    if (filter.getLimit() > 0) {
+      query.append(" LIMIT ?");
+      parameters.add(filter.getLimit());
+    }
+    if (filter.getOffset() > 0) {
+      query.append(" OFFSET ?");
+      parameters.add(filter.getOffset());
+    }
+    return prepare(conn, query.toString(), parameters.toArray());
   }
 
-  static final String clearExecutor(String repository) {
-    return format(
-        "UPDATE %s SET %s=NULL WHERE %s='%s'",
-        REPOSITORIES_TABLE, EXECUTOR, REPOSITORY, repository);
+  static String likePrefix(String prefix) {
+    return prefix.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
   }
 
-  static final String bumpRepository(String repository) {
-    return format(
-        "UPDATE %s SET %s=(SELECT min(%s) FROM %s) -1 WHERE %s='%s'",
-        REPOSITORIES_TABLE, SEQUENCE, SEQUENCE, REPOSITORIES_TABLE, REPOSITORY, repository);
+  static PreparedStatement prepare(Connection conn, String query, Object... parameters)
+      throws SQLException {
+    PreparedStatement stat = conn.prepareStatement(query);
+    try {
+      for (int i = 0; i < parameters.length; i++) {
+        stat.setObject(i + 1, parameters[i]);
+      }
+      return stat;
+    } catch (SQLException e) {
+      stat.close();
+      throw e;
+    }
   }
 
   static boolean executeStatement(BasicDataSource ds, String query) throws SQLException {
@@ -164,4 +479,30 @@ final class DatabaseConstants {
       return stat.execute(query);
     }
   }
+
+  static int executeUpdate(BasicDataSource ds, String query, Object... parameters)
+      throws SQLException {
+    try (Connection conn = ds.getConnection();
+        PreparedStatement stat = prepare(conn, query, parameters)) {
+      return stat.executeUpdate();
+    }
+  }
+
+  static int executeUpdateAndNotify(BasicDataSource ds, String query, Object... parameters)
+      throws SQLException {
+    try (Connection conn = ds.getConnection();
+        PreparedStatement stat = prepare(conn, query, parameters)) {
+      int updated = stat.executeUpdate();
+      if (updated > 0) {
+        notifyQueueChanged(conn);
+      }
+      return updated;
+    }
+  }
+
+  static void notifyQueueChanged(Connection conn) throws SQLException {
+    try (Statement stat = conn.createStatement()) {
+      stat.execute(NOTIFY_QUEUE);
+    }
+  }
 }
@@ -0,0 +1,123 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.ericsson.gerrit.plugins.gcconductor.postgresqueue;
+
+import static com.ericsson.gerrit.plugins.gcconductor.postgresqueue.DatabaseConstants.LISTEN_QUEUE;
+
+import com.ericsson.gerrit.plugins.gcconductor.GcQueueListener;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.apache.commons.dbcp.BasicDataSource;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Holds a dedicated connection listening to queue notifications and dispatches them to the
+ * registered {@link GcQueueListener}s.
+ */
+class NotificationListener extends Thread {
+  private static final Logger log = LoggerFactory.getLogger(NotificationListener.class);
+
+  private static final int NOTIFICATION_TIMEOUT_MS = 10_000;
+  private static final long RECONNECT_DELAY_MS = 5_000;
+
+  private final BasicDataSource dataSource;
+  private final List<GcQueueListener> listeners = new CopyOnWriteArrayList<>();
+
+  private volatile boolean stopped;
+  private volatile Connection connection;
+
+  NotificationListener(BasicDataSource dataSource) {
+    this.dataSource = dataSource;
+    setName("gc-conductor-queue-listener");
+    setDaemon(true);
+  }
+
+  void addListener(GcQueueListener listener) {
+    listeners.add(listener);
+  }
+
+  @Override
+  public void run() {
+    while (!stopped) {
+      try (Connection conn = connect();
+          Statement stat = conn.createStatement()) {
+        connection = conn;
+        stat.execute(LISTEN_QUEUE);
+        PGConnection pgConnection = conn.unwrap(PGConnection.class);
+        // changes may have been missed while not listening
+        notifyListeners();
+        while (!stopped) {
+          PGNotification[] notifications = pgConnection.getNotifications(NOTIFICATION_TIMEOUT_MS);
+          if (notifications != null && notifications.length > 0) {
+            notifyListeners();
+          }
+        }
+      } catch (SQLException e) {
+        if (!stopped) {
+          log.error(
+              "Failed to listen to queue notifications, retrying in {}ms", RECONNECT_DELAY_MS, e);
+          waitBeforeReconnecting();
+        }
+      } finally {
+        connection = null;
+      }
+    }
+  }
+
+  void shutdown() {
+    stopped = true;
+    interrupt();
+    Connection conn = connection;
+    if (conn != null) {
+      try {
+        conn.close();
+      } catch (SQLException e) {
+        log.debug("Failed to close queue notifications connection", e);
+      }
+    }
+  }
+
+  private Connection connect() throws SQLException {
+    try {
+      Class.forName(dataSource.getDriverClassName());
+    } catch (ClassNotFoundException e) {
+      throw new SQLException("Unable to load database driver", e);
+    }
+    return DriverManager.getConnection(
+        dataSource.getUrl(), dataSource.getUsername(), dataSource.getPassword());
+  }
+
+  private void notifyListeners() {
+    for (GcQueueListener listener : listeners) {
+      listener.onQueueChanged();
+    }
+  }
+
+  private void waitBeforeReconnecting() {
+    try {
+      Thread.sleep(RECONNECT_DELAY_MS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      stopped = true;
+    }
+  }
+}
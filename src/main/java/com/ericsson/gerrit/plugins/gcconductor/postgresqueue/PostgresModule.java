@@ -14,10 +14,11 @@
 
 package com.ericsson.gerrit.plugins.gcconductor.postgresqueue;
 
+import static com.ericsson.gerrit.plugins.gcconductor.postgresqueue.DatabaseConstants.DATABASE_EXISTS;
 import static com.ericsson.gerrit.plugins.gcconductor.postgresqueue.DatabaseConstants.DRIVER;
 import static com.ericsson.gerrit.plugins.gcconductor.postgresqueue.DatabaseConstants.createDatabase;
-import static com.ericsson.gerrit.plugins.gcconductor.postgresqueue.DatabaseConstants.databaseExists;
 import static com.ericsson.gerrit.plugins.gcconductor.postgresqueue.DatabaseConstants.executeStatement;
+import static com.ericsson.gerrit.plugins.gcconductor.postgresqueue.DatabaseConstants.prepare;
 
 import com.ericsson.gerrit.plugins.gcconductor.CommonConfig;
 import com.ericsson.gerrit.plugins.gcconductor.GcQueue;
@@ -29,15 +30,16 @@ import com.google.inject.Provides;
 import com.google.inject.Singleton;
 import com.google.inject.internal.UniqueAnnotations;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import org.apache.commons.dbcp.BasicDataSource;
 
 /** Configures bindings of the Postgres queue implementation. */
 public class PostgresModule extends AbstractModule {
 
   private static final long EVICT_IDLE_TIME_MS = 1000L * 60;
+  private static final int MAX_OPEN_PREPARED_STATEMENTS = 32;
   private Class<? extends CommonConfig> commonConfig;
 
   public PostgresModule(Class<? extends CommonConfig> commonConfig) {
@@ -51,6 +53,9 @@ public class PostgresModule extends AbstractModule {
     bind(ShutdownListener.class)
         .annotatedWith(UniqueAnnotations.create())
         .to(DatabaseAccessCleanUp.class);
+    bind(ShutdownListener.class)
+        .annotatedWith(UniqueAnnotations.create())
+        .to(PostgresQueue.class);
   }
 
   /**
@@ -65,8 +70,8 @@ public class PostgresModule extends AbstractModule {
   BasicDataSource provideGcDatabaseAccess(CommonConfig cfg) throws SQLException {
     BasicDataSource adminDataSource = createDataSource(cfg);
     try (Connection conn = adminDataSource.getConnection();
-        Statement stat = conn.createStatement();
-        ResultSet resultSet = stat.executeQuery(databaseExists(cfg.getDatabaseName()))) {
+        PreparedStatement stat = prepare(conn, DATABASE_EXISTS, cfg.getDatabaseName());
+        ResultSet resultSet = stat.executeQuery()) {
       if (!resultSet.next()) {
         executeStatement(adminDataSource, createDatabase(cfg.getDatabaseName()));
       }
@@ -84,6 +89,12 @@ public class PostgresModule extends AbstractModule {
     ds.setPassword(cfg.getPassword());
     ds.setMinEvictableIdleTimeMillis(EVICT_IDLE_TIME_MS);
     ds.setTimeBetweenEvictionRunsMillis(EVICT_IDLE_TIME_MS / 2);
+    // Reuse prepared statements of pooled connections and make the driver use server-side prepared
+    // statements from the first execution, queue operations are then parsed and planned only once
+    // per connection.
+    ds.setPoolPreparedStatements(true);
+    ds.setMaxOpenPreparedStatements(MAX_OPEN_PREPARED_STATEMENTS);
+    ds.addConnectionProperty("prepareThreshold", "1");
     return ds;
   }
 
@@ -15,39 +15,60 @@
 package com.ericsson.gerrit.plugins.gcconductor.postgresqueue;
 
 import static com.ericsson.gerrit.plugins.gcconductor.postgresqueue.DatabaseConstants.AGGRESSIVE;
+import static com.ericsson.gerrit.plugins.gcconductor.postgresqueue.DatabaseConstants.BUMP_REPOSITORY;
+import static com.ericsson.gerrit.plugins.gcconductor.postgresqueue.DatabaseConstants.CLEAR_EXECUTOR;
+import static com.ericsson.gerrit.plugins.gcconductor.postgresqueue.DatabaseConstants.CLEAR_EXECUTORS;
+import static com.ericsson.gerrit.plugins.gcconductor.postgresqueue.DatabaseConstants.CLEAR_PICKED_EXECUTOR;
 import static com.ericsson.gerrit.plugins.gcconductor.postgresqueue.DatabaseConstants.CREATE_OR_UPDATE_SCHEMA;
+import static com.ericsson.gerrit.plugins.gcconductor.postgresqueue.DatabaseConstants.DELETE_PICKED_REPOSITORY;
+import static com.ericsson.gerrit.plugins.gcconductor.postgresqueue.DatabaseConstants.DELETE_REPOSITORY;
 import static com.ericsson.gerrit.plugins.gcconductor.postgresqueue.DatabaseConstants.EXECUTOR;
 import static com.ericsson.gerrit.plugins.gcconductor.postgresqueue.DatabaseConstants.HOSTNAME;
 import static com.ericsson.gerrit.plugins.gcconductor.postgresqueue.DatabaseConstants.QUEUED_AT;
+import static com.ericsson.gerrit.plugins.gcconductor.postgresqueue.DatabaseConstants.RENEW_LEASES;
 import static com.ericsson.gerrit.plugins.gcconductor.postgresqueue.DatabaseConstants.REPOSITORY;
-import static com.ericsson.gerrit.plugins.gcconductor.postgresqueue.DatabaseConstants.SELECT_REPOSITORIES_ORDERED;
-import static com.ericsson.gerrit.plugins.gcconductor.postgresqueue.DatabaseConstants.bumpRepository;
-import static com.ericsson.gerrit.plugins.gcconductor.postgresqueue.DatabaseConstants.clearExecutor;
-import static com.ericsson.gerrit.plugins.gcconductor.postgresqueue.DatabaseConstants.delete;
+import static com.ericsson.gerrit.plugins.gcconductor.postgresqueue.DatabaseConstants.SCORE;
+import static com.ericsson.gerrit.plugins.gcconductor.postgresqueue.DatabaseConstants.SELECT_REPOSITORY;
+import static com.ericsson.gerrit.plugins.gcconductor.postgresqueue.DatabaseConstants.UPDATE_QUEUED_FROM;
+import static com.ericsson.gerrit.plugins.gcconductor.postgresqueue.DatabaseConstants.UPSERT_REPOSITORY;
 import static com.ericsson.gerrit.plugins.gcconductor.postgresqueue.DatabaseConstants.executeStatement;
-import static com.ericsson.gerrit.plugins.gcconductor.postgresqueue.DatabaseConstants.insert;
-import static com.ericsson.gerrit.plugins.gcconductor.postgresqueue.DatabaseConstants.select;
+import static com.ericsson.gerrit.plugins.gcconductor.postgresqueue.DatabaseConstants.executeUpdate;
+import static com.ericsson.gerrit.plugins.gcconductor.postgresqueue.DatabaseConstants.executeUpdateAndNotify;
+import static com.ericsson.gerrit.plugins.gcconductor.postgresqueue.DatabaseConstants.likePrefix;
+import static com.ericsson.gerrit.plugins.gcconductor.postgresqueue.DatabaseConstants.notifyQueueChanged;
+import static com.ericsson.gerrit.plugins.gcconductor.postgresqueue.DatabaseConstants.prepare;
+import static com.ericsson.gerrit.plugins.gcconductor.postgresqueue.DatabaseConstants.selectRepositories;
 import static com.ericsson.gerrit.plugins.gcconductor.postgresqueue.DatabaseConstants.updateExecutor;
-import static com.ericsson.gerrit.plugins.gcconductor.postgresqueue.DatabaseConstants.updateQueuedFrom;
+import static com.ericsson.gerrit.plugins.gcconductor.postgresqueue.DatabaseConstants.updateExecutorBatch;
+import static com.ericsson.gerrit.plugins.gcconductor.postgresqueue.DatabaseConstants.upsertRepositories;
 
 import com.ericsson.gerrit.plugins.gcconductor.GcQueue;
 import com.ericsson.gerrit.plugins.gcconductor.GcQueueException;
+import com.ericsson.gerrit.plugins.gcconductor.GcQueueListener;
+import com.ericsson.gerrit.plugins.gcconductor.GcRequest;
+import com.ericsson.gerrit.plugins.gcconductor.QueueFilter;
 import com.ericsson.gerrit.plugins.gcconductor.RepositoryInfo;
+import com.ericsson.gerrit.plugins.gcconductor.ShutdownListener;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 import org.apache.commons.dbcp.BasicDataSource;
 
 @Singleton
-public class PostgresQueue implements GcQueue {
+public class PostgresQueue implements GcQueue, ShutdownListener {
+
+  private static final int LIST_FETCH_SIZE = 100;
 
   private final BasicDataSource dataSource;
+  private NotificationListener notificationListener;
 
   @Inject
   public PostgresQueue(BasicDataSource dataSource) throws SQLException {
@@ -56,15 +77,56 @@ public class PostgresQueue implements GcQueue {
   }
 
   @Override
-  public void add(String repository, String queuedFrom, boolean isAggressive)
+  public boolean add(
+      String repository, String queuedFrom, boolean isAggressive, long score, long notBefore)
       throws GcQueueException {
-    try {
-      executeStatement(dataSource, insert(repository, queuedFrom, isAggressive));
+    long delay = notBefore - System.currentTimeMillis();
+    try (Connection conn = dataSource.getConnection();
+        PreparedStatement stat =
+            prepare(
+                conn,
+                UPSERT_REPOSITORY,
+                repository,
+                queuedFrom,
+                isAggressive,
+                score,
+                delay > 0 ? delay : null);
+        ResultSet resultSet = stat.executeQuery()) {
+      if (resultSet.next()) {
+        // repository was either added or upgraded
+        notifyQueueChanged(conn);
+        return resultSet.getBoolean(1);
+      }
+      return false;
     } catch (SQLException e) {
-      if (!"23505".equals(e.getSQLState())) {
-        // UNIQUE CONSTRAINT violation means repository is already in the queue
-        throw new GcQueueException("Failed to add repository " + repository, e);
+      throw new GcQueueException("Failed to add repository " + repository, e);
+    }
+  }
+
+  @Override
+  public int addAll(Map<String, GcRequest> repositories, String queuedFrom)
+      throws GcQueueException {
+    if (repositories.isEmpty()) {
+      return 0;
+    }
+    try (Connection conn = dataSource.getConnection();
+        PreparedStatement stat = upsertRepositories(conn, repositories, queuedFrom);
+        ResultSet resultSet = stat.executeQuery()) {
+      int added = 0;
+      boolean changed = false;
+      while (resultSet.next()) {
+        // repository was either added or upgraded
+        changed = true;
+        if (resultSet.getBoolean(1)) {
+          added++;
+        }
       }
+      if (changed) {
+        notifyQueueChanged(conn);
+      }
+      return added;
+    } catch (SQLException e) {
+      throw new GcQueueException("Failed to add " + repositories.size() + " repositories", e);
     }
   }
 
@@ -72,9 +134,8 @@ public class PostgresQueue implements GcQueue {
   public RepositoryInfo pick(String executor, long queuedForLongerThan, Optional<String> queuedFrom)
       throws GcQueueException {
     try (Connection conn = dataSource.getConnection();
-        Statement stat = conn.createStatement();
-        ResultSet resultSet =
-            stat.executeQuery(updateExecutor(executor, queuedForLongerThan, queuedFrom))) {
+        PreparedStatement stat = updateExecutor(conn, executor, queuedForLongerThan, queuedFrom);
+        ResultSet resultSet = stat.executeQuery()) {
       if (resultSet.next()) {
         return toRepositoryInfo(resultSet);
       }
@@ -84,19 +145,73 @@ public class PostgresQueue implements GcQueue {
     return null;
   }
 
+  @Override
+  public List<RepositoryInfo> pickBatch(
+      String executor, int size, long queuedForLongerThan, Optional<String> queuedFrom)
+      throws GcQueueException {
+    try (Connection conn = dataSource.getConnection();
+        PreparedStatement stat =
+            updateExecutorBatch(conn, executor, size, queuedForLongerThan, queuedFrom);
+        ResultSet resultSet = stat.executeQuery()) {
+      List<RepositoryInfo> repositories = new ArrayList<>();
+      while (resultSet.next()) {
+        repositories.add(toRepositoryInfo(resultSet));
+      }
+      return repositories;
+    } catch (SQLException e) {
+      throw new GcQueueException("Failed to pick repositories", e);
+    }
+  }
+
+  @Override
+  public void renewLeases(String executorPrefix) throws GcQueueException {
+    try {
+      executeUpdate(dataSource, RENEW_LEASES, likePrefix(executorPrefix));
+    } catch (SQLException e) {
+      throw new GcQueueException("Failed to renew leases of executors " + executorPrefix, e);
+    }
+  }
+
   @Override
   public void unpick(String repository) throws GcQueueException {
     try {
-      executeStatement(dataSource, clearExecutor(repository));
+      executeUpdateAndNotify(dataSource, CLEAR_EXECUTOR, repository);
     } catch (SQLException e) {
       throw new GcQueueException("Failed to unpick repository " + repository, e);
     }
   }
 
+  @Override
+  public boolean unpick(String repository, String executor) throws GcQueueException {
+    try {
+      return executeUpdateAndNotify(dataSource, CLEAR_PICKED_EXECUTOR, repository, executor) > 0;
+    } catch (SQLException e) {
+      throw new GcQueueException("Failed to unpick repository " + repository, e);
+    }
+  }
+
+  @Override
+  public int unpickAll(String executorPrefix) throws GcQueueException {
+    try {
+      return executeUpdateAndNotify(dataSource, CLEAR_EXECUTORS, likePrefix(executorPrefix));
+    } catch (SQLException e) {
+      throw new GcQueueException("Failed to unpick repositories of executors " + executorPrefix, e);
+    }
+  }
+
   @Override
   public void remove(String repository) throws GcQueueException {
     try {
-      executeStatement(dataSource, delete(repository));
+      executeUpdate(dataSource, DELETE_REPOSITORY, repository);
+    } catch (SQLException e) {
+      throw new GcQueueException("Failed to remove repository " + repository, e);
+    }
+  }
+
+  @Override
+  public boolean remove(String repository, String executor) throws GcQueueException {
+    try {
+      return executeUpdate(dataSource, DELETE_PICKED_REPOSITORY, repository, executor) > 0;
     } catch (SQLException e) {
       throw new GcQueueException("Failed to remove repository " + repository, e);
     }
@@ -105,8 +220,8 @@ public class PostgresQueue implements GcQueue {
   @Override
   public boolean contains(String repository) throws GcQueueException {
     try (Connection conn = dataSource.getConnection();
-        Statement stat = conn.createStatement();
-        ResultSet resultSet = stat.executeQuery(select(repository))) {
+        PreparedStatement stat = prepare(conn, SELECT_REPOSITORY, repository);
+        ResultSet resultSet = stat.executeQuery()) {
       if (resultSet.next()) {
         return true;
       }
@@ -119,22 +234,32 @@ public class PostgresQueue implements GcQueue {
   @Override
   public void resetQueuedFrom(String queuedFrom) throws GcQueueException {
     try {
-      executeStatement(dataSource, updateQueuedFrom(queuedFrom));
+      executeUpdate(dataSource, UPDATE_QUEUED_FROM, queuedFrom);
     } catch (SQLException e) {
       throw new GcQueueException("Failed to reset queuedFrom", e);
     }
   }
 
   @Override
-  public List<RepositoryInfo> list() throws GcQueueException {
-    try (Connection conn = dataSource.getConnection();
-        Statement stat = conn.createStatement();
-        ResultSet resultSet = stat.executeQuery(SELECT_REPOSITORIES_ORDERED)) {
-      List<RepositoryInfo> repositories = new ArrayList<>();
-      while (resultSet.next()) {
-        repositories.add(toRepositoryInfo(resultSet));
+  public int list(QueueFilter filter, Consumer<RepositoryInfo> consumer) throws GcQueueException {
+    try (Connection conn = dataSource.getConnection()) {
+      // The driver only fetches rows by batches using a cursor when not in auto-commit mode,
+      // otherwise the whole result set is loaded in memory.
+      conn.setAutoCommit(false);
+      try (PreparedStatement stat = selectRepositories(conn, filter)) {
+        stat.setFetchSize(LIST_FETCH_SIZE);
+        int count = 0;
+        try (ResultSet resultSet = stat.executeQuery()) {
+          while (resultSet.next()) {
+            consumer.accept(toRepositoryInfo(resultSet));
+            count++;
+          }
+        }
+        return count;
+      } finally {
+        conn.rollback();
+        conn.setAutoCommit(true);
       }
-      return repositories;
     } catch (SQLException e) {
       throw new GcQueueException("Failed to list repositories ", e);
     }
@@ -143,23 +268,44 @@ public class PostgresQueue implements GcQueue {
   @Override
   public void bumpToFirst(String repository) throws GcQueueException {
     try {
-      executeStatement(dataSource, bumpRepository(repository));
+      executeUpdateAndNotify(dataSource, BUMP_REPOSITORY, repository);
     } catch (SQLException e) {
       throw new GcQueueException("Failed to update repository priority ", e);
     }
   }
 
+  @Override
+  public synchronized void addListener(GcQueueListener listener) {
+    if (notificationListener == null) {
+      notificationListener = new NotificationListener(dataSource);
+      notificationListener.addListener(listener);
+      notificationListener.start();
+      return;
+    }
+    notificationListener.addListener(listener);
+  }
+
+  @Override
+  public synchronized void onShutdown() {
+    if (notificationListener != null) {
+      notificationListener.shutdown();
+      notificationListener = null;
+    }
+  }
+
   private RepositoryInfo toRepositoryInfo(ResultSet resultSet) throws SQLException {
     int repositoryColumn = resultSet.findColumn(REPOSITORY);
     int queuedAtColumn = resultSet.findColumn(QUEUED_AT);
     int executorColumn = resultSet.findColumn(EXECUTOR);
     int hostnameColumn = resultSet.findColumn(HOSTNAME);
     int aggressiveColumn = resultSet.findColumn(AGGRESSIVE);
+    int scoreColumn = resultSet.findColumn(SCORE);
     return new RepositoryInfo(
         resultSet.getString(repositoryColumn),
         resultSet.getTimestamp(queuedAtColumn),
         resultSet.getString(executorColumn),
         resultSet.getString(hostnameColumn),
-        resultSet.getBoolean(aggressiveColumn));
+        resultSet.getBoolean(aggressiveColumn),
+        resultSet.getLong(scoreColumn));
   }
 }
@@ -0,0 +1,725 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.ericsson.gerrit.plugins.gcconductor;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.util.stream.Collectors.toList;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Tests every {@link GcQueue} implementation must pass. */
+public abstract class AbstractGcQueueTest {
+
+  protected GcQueue queue;
+
+  /** @return the queue to test, may contain repositories of a previous test. */
+  protected abstract GcQueue createQueue() throws Exception;
+
+  /** Make the leases of all the picked repositories expire. */
+  protected abstract void expireLeases() throws Exception;
+
+  @Before
+  public void setUpQueue() throws Exception {
+    queue = createQueue();
+    emptyQueue();
+  }
+
+  @Test
+  public void testAddContainsAndRemove() throws Exception {
+    String repoPath = "/some/path/to/some/repository";
+    String hostname = "someHostname";
+
+    assertThat(queue.list()).isEmpty();
+    assertThat(queue.contains(repoPath)).isFalse();
+
+    assertThat(queue.add(repoPath, hostname, true)).isTrue();
+    assertThat(queue.list().size()).isEqualTo(1);
+    assertThat(queue.contains(repoPath)).isTrue();
+
+    assertThat(queue.add(repoPath, hostname, true)).isFalse();
+    assertThat(queue.list().size()).isEqualTo(1);
+    assertThat(queue.contains(repoPath)).isTrue();
+
+    String repoPath2 = "/some/path/to/some/repository2";
+    String hostname2 = "someHostname2";
+
+    queue.add(repoPath2, hostname2, true);
+    assertThat(queue.list().size()).isEqualTo(2);
+    assertThat(queue.contains(repoPath)).isTrue();
+    assertThat(queue.contains(repoPath2)).isTrue();
+
+    queue.remove(repoPath2);
+    assertThat(queue.list().size()).isEqualTo(1);
+    assertThat(queue.contains(repoPath)).isTrue();
+    assertThat(queue.contains(repoPath2)).isFalse();
+
+    queue.remove(repoPath);
+    assertThat(queue.list().size()).isEqualTo(0);
+    assertThat(queue.contains(repoPath)).isFalse();
+
+    queue.remove(repoPath);
+    assertThat(queue.list().size()).isEqualTo(0);
+    assertThat(queue.contains(repoPath)).isFalse();
+  }
+
+  @Test
+  public void testRepositoryWithQuotes() throws Exception {
+    String repoPath = "/some/path/to/some/repo'sitory";
+    String hostname = "some'Hostname";
+    String executor = "some'Executor";
+
+    queue.add(repoPath, hostname, false);
+    assertThat(queue.contains(repoPath)).isTrue();
+    assertThat(queue.list().get(0).getQueuedFrom()).isEqualTo(hostname);
+
+    RepositoryInfo picked = queue.pick(executor, 0, Optional.of(hostname));
+    assertThat(picked.getPath()).isEqualTo(repoPath);
+    assertThat(picked.getExecutor()).isEqualTo(executor);
+
+    queue.unpick(repoPath);
+    queue.bumpToFirst(repoPath);
+    queue.remove(repoPath);
+    assertThat(queue.contains(repoPath)).isFalse();
+  }
+
+  @Test
+  public void testAddUpgradesToAggressive() throws Exception {
+    String repoPath = "/some/path/to/some/repository";
+    String hostname = "someHostname";
+
+    assertThat(queue.add(repoPath, hostname, false)).isTrue();
+    assertThat(queue.list().get(0).isAggressive()).isFalse();
+
+    // adding as non-aggressive does not change anything
+    assertThat(queue.add(repoPath, hostname, false)).isFalse();
+    assertThat(queue.list().get(0).isAggressive()).isFalse();
+
+    // adding as aggressive upgrades the repository
+    assertThat(queue.add(repoPath, hostname, true)).isFalse();
+    assertThat(queue.list().get(0).isAggressive()).isTrue();
+
+    // adding as non-aggressive does not downgrade the repository
+    assertThat(queue.add(repoPath, hostname, false)).isFalse();
+    assertThat(queue.list().get(0).isAggressive()).isTrue();
+  }
+
+  @Test
+  public void testAddDoesNotUpgradePickedRepository() throws Exception {
+    String repoPath = "/some/path/to/some/repository";
+    String hostname = "someHostname";
+
+    queue.add(repoPath, hostname, false);
+    queue.pick("someExecutor", 0, Optional.empty());
+    assertThat(queue.add(repoPath, hostname, true)).isFalse();
+    assertThat(queue.list().get(0).isAggressive()).isFalse();
+  }
+
+  @Test
+  public void testAddKeepsHighestScore() throws Exception {
+    String repoPath = "/some/path/to/some/repository";
+    String hostname = "someHostname";
+
+    assertThat(queue.add(repoPath, hostname, false, 10)).isTrue();
+    assertThat(queue.list().get(0).getScore()).isEqualTo(10);
+
+    // adding with a lower score does not change anything
+    assertThat(queue.add(repoPath, hostname, false, 5)).isFalse();
+    assertThat(queue.list().get(0).getScore()).isEqualTo(10);
+
+    // adding with a higher score raises the score
+    assertThat(queue.add(repoPath, hostname, false, 20)).isFalse();
+    assertThat(queue.list().get(0).getScore()).isEqualTo(20);
+
+    // picked repository score is not raised
+    queue.pick("someExecutor", 0, Optional.empty());
+    assertThat(queue.add(repoPath, hostname, true, 30)).isFalse();
+    assertThat(queue.list().get(0).getScore()).isEqualTo(20);
+    assertThat(queue.list().get(0).isAggressive()).isFalse();
+  }
+
+  @Test
+  public void testAddAll() throws Exception {
+    String hostname = "someHostname";
+    queue.add("/repo2", hostname, false);
+    queue.add("/repo3", hostname, false);
+    queue.pick("someExecutor", 0, Optional.empty());
+
+    Map<String, GcRequest> repositories = new LinkedHashMap<>();
+    repositories.put("/repo1", new GcRequest(false, 0));
+    repositories.put("/repo2", new GcRequest(true, 0));
+    repositories.put("/repo3", new GcRequest(true, 0));
+    repositories.put("/repo'4", new GcRequest(true, 5));
+    assertThat(queue.addAll(repositories, hostname)).isEqualTo(2);
+
+    List<RepositoryInfo> list = queue.list();
+    assertThat(list.stream().map(RepositoryInfo::getPath).collect(toList()))
+        .containsExactly("/repo2", "/repo3", "/repo1", "/repo'4")
+        .inOrder();
+    // picked repository is not upgraded to aggressive
+    assertThat(list.get(0).isAggressive()).isFalse();
+    assertThat(list.get(1).isAggressive()).isTrue();
+    assertThat(list.get(2).isAggressive()).isFalse();
+    assertThat(list.get(3).isAggressive()).isTrue();
+    assertThat(list.get(3).getQueuedFrom()).isEqualTo(hostname);
+    assertThat(list.get(3).getScore()).isEqualTo(5);
+
+    assertThat(queue.addAll(repositories, hostname)).isEqualTo(0);
+    assertThat(queue.addAll(new LinkedHashMap<>(), hostname)).isEqualTo(0);
+    assertThat(queue.list().size()).isEqualTo(4);
+  }
+
+  @Test
+  public void testList() throws Exception {
+    String repoPath = "/some/path/to/some/repository.git";
+    String repoPath2 = "/some/path/to/some/repository2.git";
+    String hostname = "hostname";
+    String executor = "hostname-1";
+
+    assertThat(queue.list()).isEmpty();
+    Timestamp before = new Timestamp(System.currentTimeMillis());
+    queue.add(repoPath, hostname, true);
+    queue.add(repoPath2, hostname, true);
+    queue.pick(executor, 0, Optional.empty());
+
+    assertThat(queue.list().size()).isEqualTo(2);
+
+    assertThat(queue.list().get(0).getPath()).isEqualTo(repoPath);
+    assertThat(queue.list().get(0).getExecutor()).isEqualTo(executor);
+    assertThat(queue.list().get(0).getQueuedAt()).isAtLeast(before);
+    assertTimestampDiff(queue.list().get(0).getQueuedAt());
+    assertThat(queue.list().get(0).getQueuedFrom()).isEqualTo(hostname);
+
+    assertThat(queue.list().get(1).getPath()).isEqualTo(repoPath2);
+    assertThat(queue.list().get(1).getExecutor()).isNull();
+    assertThat(queue.list().get(1).getQueuedAt()).isAtLeast(queue.list().get(0).getQueuedAt());
+    assertTimestampDiff(queue.list().get(1).getQueuedAt());
+    assertThat(queue.list().get(1).getQueuedFrom()).isEqualTo(hostname);
+  }
+
+  @Test
+  public void testListWithFilter() throws Exception {
+    queue.add("/repos/a/repo1.git", "host1", true);
+    queue.add("/repos/a/repo2.git", "host2", false);
+    queue.add("/repos/b/repo3.git", "host1", false);
+    queue.add("/repos/a_b/repo4.git", "host1", false);
+    queue.pick("host1-0", 0, Optional.empty());
+
+    assertThat(listPaths(QueueFilter.builder().executorPrefix("host1-").build()))
+        .containsExactly("/repos/a/repo1.git");
+    assertThat(listPaths(QueueFilter.builder().queuedFrom("host1").build()))
+        .containsExactly("/repos/a/repo1.git", "/repos/b/repo3.git", "/repos/a_b/repo4.git")
+        .inOrder();
+    assertThat(listPaths(QueueFilter.builder().aggressive(false).build()))
+        .containsExactly("/repos/a/repo2.git", "/repos/b/repo3.git", "/repos/a_b/repo4.git")
+        .inOrder();
+    assertThat(listPaths(QueueFilter.builder().pathPrefix("/repos/a_").build()))
+        .containsExactly("/repos/a_b/repo4.git");
+    QueueFilter combined =
+        QueueFilter.builder().queuedFrom("host1").aggressive(false).pathPrefix("/repos/a").build();
+    assertThat(listPaths(combined)).containsExactly("/repos/a_b/repo4.git");
+  }
+
+  @Test
+  public void testListWithLimitAndOffset() throws Exception {
+    for (int i = 0; i < 5; i++) {
+      queue.add("/repo" + i, "someHostname", false);
+    }
+
+    assertThat(listPaths(QueueFilter.builder().limit(2).build()))
+        .containsExactly("/repo0", "/repo1")
+        .inOrder();
+    assertThat(listPaths(QueueFilter.builder().limit(2).offset(2).build()))
+        .containsExactly("/repo2", "/repo3")
+        .inOrder();
+    assertThat(listPaths(QueueFilter.builder().offset(4).build())).containsExactly("/repo4");
+    assertThat(listPaths(QueueFilter.builder().offset(5).build())).isEmpty();
+  }
+
+  @Test
+  public void testListReturnsNumberOfRepositories() throws Exception {
+    queue.add("/repo1", "someHostname", false);
+    queue.add("/repo2", "someHostname", false);
+    List<RepositoryInfo> repositories = new ArrayList<>();
+    assertThat(queue.list(QueueFilter.all(), repositories::add)).isEqualTo(2);
+    assertThat(repositories).hasSize(2);
+  }
+
+  @Test
+  public void testPick() throws Exception {
+    String repoPath = "/some/path/to/some/repository";
+    String hostname = "someHostname";
+    String executor = "someExecutor";
+    String executor2 = "someExecutor2";
+
+    // queue is empty nothing to pick
+    assertThat(queue.list()).isEmpty();
+    assertThat(queue.pick(executor, 0, Optional.empty())).isNull();
+
+    // queue contains 1 repository, should pick that one
+    queue.add(repoPath, hostname, true);
+    RepositoryInfo picked = queue.pick(executor, 0, Optional.empty());
+    assertThat(picked).isNotNull();
+    assertThat(picked.getPath()).isEqualTo(repoPath);
+    assertThat(picked.getExecutor()).isEqualTo(executor);
+
+    // queue contains 1 already picked repository, should pick same one
+    picked = queue.pick(executor, 0, Optional.empty());
+    assertThat(picked).isNotNull();
+    assertThat(picked.getPath()).isEqualTo(repoPath);
+    assertThat(picked.getExecutor()).isEqualTo(executor);
+
+    // queue contains 1 already picked repository, nothing to pick for other
+    // executors
+    assertThat(queue.pick(executor2, 0, Optional.empty())).isNull();
+  }
+
+  @Test
+  public void testPickRepositoriesInOrder() throws Exception {
+    String repositoryFormat = "my/path%s.git";
+    for (int i = 0; i < 100; i++) {
+      queue.add(String.format(repositoryFormat, i), "someHostname", true);
+    }
+    for (int i = 0; i < 100; i++) {
+      String pickedRepo = queue.pick("someExecutor", 0, Optional.empty()).getPath();
+      assertThat(pickedRepo).isEqualTo(String.format(repositoryFormat, i));
+      queue.remove(pickedRepo);
+    }
+  }
+
+  @Test
+  public void testPickRepositoriesByScore() throws Exception {
+    String hostname = "someHostname";
+    queue.add("/repo1", hostname, false, 5);
+    queue.add("/repo2", hostname, false, 20);
+    queue.add("/repo3", hostname, false, 5);
+    queue.add("/repo4", hostname, false, 10);
+
+    // highest score first, queue order for the same score
+    for (String expected : new String[] {"/repo2", "/repo4", "/repo1", "/repo3"}) {
+      RepositoryInfo picked = queue.pick("someExecutor", 0, Optional.empty());
+      assertThat(picked.getPath()).isEqualTo(expected);
+      queue.remove(picked.getPath());
+    }
+  }
+
+  @Test
+  public void testConcurrentPicksAssignDifferentRepositories() throws Exception {
+    String repositoryFormat = "my/path%s.git";
+    int executors = 10;
+    for (int i = 0; i < executors; i++) {
+      queue.add(String.format(repositoryFormat, i), "someHostname", true);
+    }
+    ExecutorService pool = Executors.newFixedThreadPool(executors);
+    try {
+      List<Future<RepositoryInfo>> picks = new ArrayList<>();
+      for (int i = 0; i < executors; i++) {
+        String executor = "someExecutor-" + i;
+        Callable<RepositoryInfo> pick = () -> queue.pick(executor, 0, Optional.empty());
+        picks.add(pool.submit(pick));
+      }
+      List<String> picked = new ArrayList<>();
+      for (Future<RepositoryInfo> pick : picks) {
+        RepositoryInfo repoInfo = pick.get();
+        if (repoInfo != null) {
+          picked.add(repoInfo.getPath());
+        }
+      }
+      assertThat(picked).containsNoDuplicates();
+      for (RepositoryInfo repoInfo : queue.list()) {
+        assertThat(repoInfo.getExecutor() == null || picked.contains(repoInfo.getPath()))
+            .isTrue();
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void testPickBatch() throws Exception {
+    String repositoryFormat = "my/path%s.git";
+    String executor = "someExecutor";
+    for (int i = 0; i < 5; i++) {
+      queue.add(String.format(repositoryFormat, i), "someHostname", true);
+    }
+    queue.pick("otherExecutor", 0, Optional.empty());
+
+    // already picked repositories are not part of the batch
+    List<RepositoryInfo> picked = queue.pickBatch(executor, 3, 0, Optional.empty());
+    assertThat(picked).hasSize(3);
+    for (int i = 0; i < 3; i++) {
+      assertThat(picked.get(i).getPath()).isEqualTo(String.format(repositoryFormat, i + 1));
+      assertThat(picked.get(i).getExecutor()).isEqualTo(executor);
+    }
+
+    // only one repository left to pick
+    picked = queue.pickBatch(executor, 3, 0, Optional.empty());
+    assertThat(picked).hasSize(1);
+    assertThat(picked.get(0).getPath()).isEqualTo(String.format(repositoryFormat, 4));
+
+    assertThat(queue.pickBatch(executor, 3, 0, Optional.empty())).isEmpty();
+  }
+
+  @Test
+  public void testPickBatchByScore() throws Exception {
+    String hostname = "someHostname";
+    queue.add("/repo1", hostname, false, 5);
+    queue.add("/repo2", hostname, false, 20);
+    queue.add("/repo3", hostname, false, 5);
+    queue.add("/repo4", hostname, false, 10);
+
+    List<RepositoryInfo> picked = queue.pickBatch("someExecutor", 3, 0, Optional.empty());
+    assertThat(picked.stream().map(RepositoryInfo::getPath).collect(toList()))
+        .containsExactly("/repo2", "/repo4", "/repo1")
+        .inOrder();
+    assertThat(picked.get(0).getScore()).isEqualTo(20);
+  }
+
+  @Test
+  public void testPickBatchQueuedFrom() throws Exception {
+    queue.add("/some/path/to/some/repository", "hostname", true);
+    assertThat(queue.pickBatch("executor", 10, 0, Optional.of("otherHostname"))).isEmpty();
+    assertThat(queue.pickBatch("executor", 10, 0, Optional.of("hostname"))).hasSize(1);
+  }
+
+  @Test
+  public void testPickRepositoryWithExpiredLease() throws Exception {
+    String repoPath = "/some/path/to/some/repository";
+    String hostname = "someHostname";
+    String deadExecutor = "deadHost-0";
+    String executor = "someExecutor";
+
+    queue.add(repoPath, hostname, true);
+    queue.pick(deadExecutor, 0, Optional.empty());
+
+    // lease is still valid, nothing to pick
+    assertThat(queue.pick(executor, 0, Optional.empty())).isNull();
+    assertThat(queue.pickBatch(executor, 10, 0, Optional.empty())).isEmpty();
+
+    // lease expired, repository is free to pick
+    expireLeases();
+    RepositoryInfo picked = queue.pick(executor, 0, Optional.empty());
+    assertThat(picked.getPath()).isEqualTo(repoPath);
+    assertThat(picked.getExecutor()).isEqualTo(executor);
+
+    // lease was renewed by the pick
+    assertThat(queue.pick(deadExecutor, 0, Optional.empty())).isNull();
+
+    expireLeases();
+    List<RepositoryInfo> batch = queue.pickBatch(deadExecutor, 10, 0, Optional.empty());
+    assertThat(batch).hasSize(1);
+    assertThat(batch.get(0).getExecutor()).isEqualTo(deadExecutor);
+  }
+
+  @Test
+  public void testPickBatchRepositoriesWithExpiredLeaseFirst() throws Exception {
+    String hostname = "someHostname";
+    queue.add("/expired", hostname, false, 5);
+    queue.pick("deadHost-0", 0, Optional.empty());
+    queue.add("/repo1", hostname, false, 20);
+    queue.add("/repo2", hostname, false, 10);
+    expireLeases();
+
+    List<RepositoryInfo> picked = queue.pickBatch("someExecutor", 2, 0, Optional.empty());
+    assertThat(picked.stream().map(RepositoryInfo::getPath).collect(toList()))
+        .containsExactly("/expired", "/repo1")
+        .inOrder();
+  }
+
+  @Test
+  public void testRenewLeases() throws Exception {
+    String repoPath = "/some/path/to/some/repository";
+    String repoPath2 = "/some/path/to/some/repository2";
+    String hostname = "someHostname";
+
+    queue.add(repoPath, hostname, true);
+    queue.add(repoPath2, hostname, true);
+    queue.pick("host_1-0", 0, Optional.empty());
+    queue.pick("hostA1-0", 0, Optional.empty());
+    expireLeases();
+
+    // only leases of host_1 executors are renewed, '_' is not a wildcard
+    queue.renewLeases("host_1-");
+    RepositoryInfo picked = queue.pick("someExecutor", 0, Optional.empty());
+    assertThat(picked.getPath()).isEqualTo(repoPath2);
+    assertThat(queue.pick("otherExecutor", 0, Optional.empty())).isNull();
+  }
+
+  @Test
+  public void testPickInQueueForLongerThan() throws Exception {
+    String repoPath = "/some/path/to/some/repository";
+    String hostname = "someHostname";
+    String executor = "someExecutor";
+
+    // pick repository older than 10 seconds, nothing to pick
+    queue.add(repoPath, hostname, true);
+    assertThat(queue.pick(executor, 10, Optional.empty())).isNull();
+    assertThat(queue.list().get(0).getExecutor()).isNull();
+
+    // make 2 seconds elapse and pick repository older than 1 second, should pick one
+    TimeUnit.SECONDS.sleep((2));
+    RepositoryInfo picked = queue.pick(executor, 1, Optional.empty());
+    assertThat(picked.getPath()).isEqualTo(repoPath);
+    assertThat(picked.getExecutor()).isEqualTo(executor);
+  }
+
+  @Test
+  public void testPickNotBefore() throws Exception {
+    String hostname = "someHostname";
+    String executor = "someExecutor";
+    long inOneHour = System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1);
+
+    // repository not to be picked for an hour is skipped despite its higher score
+    assertThat(queue.add("/deferred", hostname, false, 20, inOneHour)).isTrue();
+    queue.add("/ready", hostname, false, 10);
+    assertThat(queue.pick(executor, 0, Optional.empty()).getPath()).isEqualTo("/ready");
+    assertThat(queue.pick("otherExecutor", 0, Optional.empty())).isNull();
+    assertThat(queue.pickBatch("otherExecutor", 10, 0, Optional.empty())).isEmpty();
+    assertThat(queue.contains("/deferred")).isTrue();
+
+    // repository is picked once its time has come
+    queue.add("/soon", hostname, false, 0, System.currentTimeMillis() + 1000);
+    assertThat(queue.pickBatch("otherExecutor", 10, 0, Optional.empty())).isEmpty();
+    TimeUnit.SECONDS.sleep(2);
+    assertThat(queue.pick("otherExecutor", 0, Optional.empty()).getPath()).isEqualTo("/soon");
+  }
+
+  @Test
+  public void testAddMakesRepositoryPickableEarlier() throws Exception {
+    String repoPath = "/some/path/to/some/repository";
+    String hostname = "someHostname";
+    String executor = "someExecutor";
+    long inOneHour = System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1);
+
+    assertThat(queue.add(repoPath, hostname, false, 0, inOneHour)).isTrue();
+
+    // adding with a later time does not delay it further, adding without a time makes it pickable
+    assertThat(queue.add(repoPath, hostname, false, 0, inOneHour * 2)).isFalse();
+    assertThat(queue.pick(executor, 0, Optional.empty())).isNull();
+    assertThat(queue.add(repoPath, hostname, false)).isFalse();
+    assertThat(queue.pick(executor, 0, Optional.empty()).getPath()).isEqualTo(repoPath);
+  }
+
+  @Test
+  public void testPickQueuedFrom() throws Exception {
+    String repoPath = "/some/path/to/some/repository";
+    String hostname = "hostname";
+    String otherHostname = "otherHostname";
+    String executor = "hostname-1";
+
+    // pick repository queued from otherHostname, nothing to pick
+    queue.add(repoPath, hostname, true);
+    assertThat(queue.pick(executor, 0, Optional.of(otherHostname))).isNull();
+    assertThat(queue.list().get(0).getExecutor()).isNull();
+
+    // pick repository queued from hostname, should pick one
+    RepositoryInfo picked = queue.pick(executor, 0, Optional.of(hostname));
+    assertThat(picked.getPath()).isEqualTo(repoPath);
+    assertThat(picked.getExecutor()).isEqualTo(executor);
+  }
+
+  @Test
+  public void testUnpick() throws Exception {
+    String repoPath = "/some/path/to/some/repository";
+    String hostname = "someHostname";
+    String executor = "someExecutor";
+
+    // queue contains 1 repository, should pick that one
+    queue.add(repoPath, hostname, true);
+    RepositoryInfo picked = queue.pick(executor, 0, Optional.empty());
+    assertThat(picked.getPath()).isEqualTo(repoPath);
+    assertThat(picked.getExecutor()).isEqualTo(executor);
+
+    queue.unpick(repoPath);
+    // unpick repo so should pick that one again
+    queue.unpick(repoPath);
+    picked = queue.pick(executor, 0, Optional.empty());
+    assertThat(picked.getPath()).isEqualTo(repoPath);
+    assertThat(picked.getExecutor()).isEqualTo(executor);
+  }
+
+  @Test
+  public void testUnpickAndRemoveOnlyIfPickedByExecutor() throws Exception {
+    String repoPath = "/some/path/to/some/repository";
+    String hostname = "someHostname";
+    String deadExecutor = "deadHost-0";
+    String executor = "someExecutor";
+
+    queue.add(repoPath, hostname, true);
+    queue.pick(deadExecutor, 0, Optional.empty());
+    expireLeases();
+    queue.pick(executor, 0, Optional.empty());
+
+    // repository was picked by another executor meanwhile
+    assertThat(queue.unpick(repoPath, deadExecutor)).isFalse();
+    assertThat(queue.remove(repoPath, deadExecutor)).isFalse();
+    assertThat(queue.list().get(0).getExecutor()).isEqualTo(executor);
+
+    assertThat(queue.unpick(repoPath, executor)).isTrue();
+    assertThat(queue.list().get(0).getExecutor()).isNull();
+
+    queue.pick(executor, 0, Optional.empty());
+    assertThat(queue.remove(repoPath, executor)).isTrue();
+    assertThat(queue.contains(repoPath)).isFalse();
+
+    // repository was removed meanwhile
+    assertThat(queue.unpick(repoPath, executor)).isFalse();
+    assertThat(queue.remove(repoPath, executor)).isFalse();
+  }
+
+  @Test
+  public void testUnpickAll() throws Exception {
+    String hostname = "someHostname";
+    queue.add("/repo1", hostname, false);
+    queue.add("/repo2", hostname, false);
+    queue.add("/repo3", hostname, false);
+    queue.add("/repo4", hostname, false);
+    queue.pick("host_1-0", 0, Optional.empty());
+    queue.pick("host_1-1", 0, Optional.empty());
+    queue.pick("hostA1-0", 0, Optional.empty());
+
+    assertThat(queue.unpickAll("host_1-")).isEqualTo(2);
+
+    List<RepositoryInfo> repositories = queue.list();
+    assertThat(repositories.get(0).getExecutor()).isNull();
+    assertThat(repositories.get(1).getExecutor()).isNull();
+    assertThat(repositories.get(2).getExecutor()).isEqualTo("hostA1-0");
+    assertThat(repositories.get(3).getExecutor()).isNull();
+    assertThat(queue.unpickAll("host_1-")).isEqualTo(0);
+  }
+
+  @Test
+  public void testResetQueuedFrom() throws Exception {
+    String repoPath = "/some/path/to/some/repository";
+    String repoPath2 = "/some/path/to/some/repository2";
+    String hostname = "hostname";
+    String otherHostname = "otherHostname";
+
+    queue.add(repoPath, hostname, true);
+    queue.add(repoPath2, hostname, true);
+    assertThat(queue.list().get(0).getQueuedFrom()).isEqualTo(hostname);
+    assertThat(queue.list().get(1).getQueuedFrom()).isEqualTo(hostname);
+
+    queue.resetQueuedFrom(otherHostname);
+    assertThat(queue.list().get(0).getQueuedFrom()).isEqualTo(otherHostname);
+    assertThat(queue.list().get(1).getQueuedFrom()).isEqualTo(otherHostname);
+  }
+
+  @Test
+  public void testBumpToFirst() throws Exception {
+    String repoPath = "/some/path/to/some/repository";
+    String repoPath2 = "/some/path/to/some/repository2";
+    String repoPath3 = "/some/path/to/some/repository3";
+    String hostname = "hostname";
+
+    // Queue contains 1 repository, bumping should have no effect
+    queue.add(repoPath, hostname, true);
+    assertThat(queue.list().get(0).getPath()).isEqualTo(repoPath);
+    queue.bumpToFirst(repoPath);
+    assertThat(queue.list().get(0).getPath()).isEqualTo(repoPath);
+
+    // Queue has 3 repositories, should be able to change their order
+    queue.add(repoPath2, hostname, true);
+    queue.add(repoPath3, hostname, true);
+    assertThat(queue.list().get(1).getPath()).isEqualTo(repoPath2);
+    assertThat(queue.list().get(2).getPath()).isEqualTo(repoPath3);
+
+    // repoPath3 should be first, all other repositories should be shifted down
+    queue.bumpToFirst(repoPath3);
+    assertThat(queue.list().get(0).getPath()).isEqualTo(repoPath3);
+    assertThat(queue.list().get(1).getPath()).isEqualTo(repoPath);
+    assertThat(queue.list().get(2).getPath()).isEqualTo(repoPath2);
+
+    // Bumping a repository that is already first priority should have no effect
+    queue.bumpToFirst(repoPath3);
+    assertThat(queue.list().get(0).getPath()).isEqualTo(repoPath3);
+    assertThat(queue.list().get(1).getPath()).isEqualTo(repoPath);
+    assertThat(queue.list().get(2).getPath()).isEqualTo(repoPath2);
+  }
+
+  @Test
+  public void testBumpToFirstRaisesScore() throws Exception {
+    String hostname = "hostname";
+    queue.add("/repo1", hostname, false, 20);
+    queue.add("/repo2", hostname, false, 5);
+
+    queue.bumpToFirst("/repo2");
+    assertThat(queue.list().get(0).getScore()).isEqualTo(20);
+    assertThat(queue.pick("someExecutor", 0, Optional.empty()).getPath()).isEqualTo("/repo2");
+  }
+
+  @Test
+  public void testListenersAreNotifiedWhenQueueChanges() throws Exception {
+    String repoPath = "/some/path/to/some/repository";
+    String hostname = "hostname";
+    Semaphore notifications = new Semaphore(0);
+    queue.addListener(notifications::release);
+
+    // a notification is sent once listening in case changes were missed
+    assertThat(notifications.tryAcquire(10, TimeUnit.SECONDS)).isTrue();
+
+    queue.add(repoPath, hostname, false);
+    assertThat(notifications.tryAcquire(10, TimeUnit.SECONDS)).isTrue();
+
+    queue.pick("executor", 0, Optional.empty());
+    queue.unpick(repoPath);
+    assertThat(notifications.tryAcquire(10, TimeUnit.SECONDS)).isTrue();
+
+    queue.bumpToFirst(repoPath);
+    assertThat(notifications.tryAcquire(10, TimeUnit.SECONDS)).isTrue();
+
+    // adding an already queued repository does not change the queue
+    notifications.drainPermits();
+    queue.add(repoPath, hostname, false);
+    queue.remove(repoPath);
+    assertThat(notifications.tryAcquire(1, TimeUnit.SECONDS)).isFalse();
+  }
+
+  private void assertTimestampDiff(Timestamp actual) {
+    long timestampDiff = Math.abs(actual.getTime() - System.currentTimeMillis());
+    assertThat(timestampDiff).isAtMost(TimeUnit.SECONDS.toMillis(1));
+  }
+
+  private List<String> listPaths(QueueFilter filter) throws GcQueueException {
+    List<String> paths = new ArrayList<>();
+    queue.list(filter, r -> paths.add(r.getPath()));
+    return paths;
+  }
+
+  private void emptyQueue() throws Exception {
+    queue.list().stream().map(RepositoryInfo::getPath).forEach(this::doEmptyQueue);
+    assertThat(queue.list()).isEmpty();
+  }
+
+  private void doEmptyQueue(String repository) {
+    try {
+      queue.remove(repository);
+    } catch (GcQueueException e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
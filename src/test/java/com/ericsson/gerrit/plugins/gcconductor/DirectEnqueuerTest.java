@@ -0,0 +1,70 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.ericsson.gerrit.plugins.gcconductor;
+
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class DirectEnqueuerTest {
+
+  private static final String REPOSITORY = "/some/repository";
+  private static final String HOSTNAME = "hostname";
+
+  @Mock private GcQueue queue;
+
+  private DirectEnqueuer enqueuer;
+
+  @Before
+  public void setUp() {
+    enqueuer = new DirectEnqueuer(queue);
+  }
+
+  @Test
+  public void repositoryShouldBeAddedToTheQueue() throws Exception {
+    enqueuer.enqueue(REPOSITORY, HOSTNAME, true, 5);
+    verify(queue).add(REPOSITORY, HOSTNAME, true, 5, 0);
+  }
+
+  @Test
+  public void repositoryShouldBeAddedToTheQueueNotBeforeTime() throws Exception {
+    enqueuer.enqueue(REPOSITORY, HOSTNAME, true, 5, 1234);
+    verify(queue).add(REPOSITORY, HOSTNAME, true, 5, 1234);
+  }
+
+  @Test
+  public void repositoryAlreadyInQueueShouldBeAddedWithoutCheckingQueue() throws Exception {
+    when(queue.add(REPOSITORY, HOSTNAME, false, 5, 0)).thenReturn(false);
+    enqueuer.enqueue(REPOSITORY, HOSTNAME, false, 5);
+    verify(queue).add(REPOSITORY, HOSTNAME, false, 5, 0);
+    verify(queue, never()).contains(REPOSITORY);
+  }
+
+  @Test
+  public void queueThrowsErrorInsertingRepository() throws Exception {
+    doThrow(new GcQueueException("some message", new Throwable()))
+        .when(queue)
+        .add(REPOSITORY, HOSTNAME, false, 5, 0);
+    enqueuer.enqueue(REPOSITORY, HOSTNAME, false, 5);
+  }
+}
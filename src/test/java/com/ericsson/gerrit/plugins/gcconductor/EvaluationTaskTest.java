@@ -15,22 +15,33 @@
 package com.ericsson.gerrit.plugins.gcconductor;
 
 import static com.google.common.truth.Truth.assertThat;
-import static org.mockito.Mockito.doThrow;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.ericsson.gerrit.plugins.gcconductor.CommonConfig.LooseEvaluation;
+import com.ericsson.gerrit.plugins.gcconductor.EvaluationTask.LooseObjectCounts;
+import com.ericsson.gerrit.plugins.gcconductor.EvaluationTask.ReachabilityCheck;
+import com.ericsson.gerrit.plugins.gcconductor.EvaluationTask.Result;
 import com.ericsson.gerrit.plugins.gcconductor.evaluator.EvaluatorConfig;
+import com.google.common.collect.Range;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.ResetCommand.ResetType;
 import org.eclipse.jgit.internal.storage.file.FileRepository;
+import org.eclipse.jgit.lib.ConfigConstants;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -45,82 +56,127 @@ public class EvaluationTaskTest {
   @Rule public TemporaryFolder dir = new TemporaryFolder();
 
   private static final String SOME_HOSTNAME = "hostname";
+  private static final ScoreWeights WEIGHTS = new ScoreWeights(10, 10, 1, 1, 10, 10);
 
   @Mock private EvaluatorConfig cfg;
-  @Mock private GcQueue queue;
+  @Mock private Enqueuer enqueuer;
 
+  private final RepositoryStatistics statistics = new DirectRepositoryStatistics();
+  private LooseObjectScanner scanner;
   private EvaluationTask task;
   private Repository repository;
   private String repositoryPath;
 
   @Before
   public void setUp() throws Exception {
+    scanner = new LooseObjectScanner(2);
     repository = createRepository("someRepo.git");
     repositoryPath = repository.getDirectory().getAbsolutePath();
-    task = new EvaluationTask(cfg, queue, SOME_HOSTNAME, repositoryPath);
+    task = new EvaluationTask(cfg, enqueuer, statistics, scanner, SOME_HOSTNAME, repositoryPath);
+  }
+
+  @After
+  public void tearDown() {
+    scanner.onShutdown();
   }
 
   @Test
   public void dirtyRepositoryObjectsShouldBeAddedToTheQueue() throws Exception {
     when(cfg.getPackedThreshold()).thenReturn(1);
+    when(cfg.getScoreWeights()).thenReturn(WEIGHTS);
     addFileTo(repository);
-    when(queue.contains(repositoryPath)).thenReturn(false);
-    task = new EvaluationTask(cfg, queue, SOME_HOSTNAME, repositoryPath);
-    task.run();
-    verify(queue).add(repositoryPath, SOME_HOSTNAME, false);
+    task = new EvaluationTask(cfg, enqueuer, statistics, scanner, SOME_HOSTNAME, repositoryPath);
+    assertThat(task.evaluate()).isEqualTo(Result.DIRTY);
+    verify(enqueuer)
+        .enqueue(eq(repositoryPath), eq(SOME_HOSTNAME), eq(false), anyLong(), eq(0L));
   }
 
   @Test
   public void dirtyRepositoryPacksShouldBeAddedToTheQueue() throws Exception {
     when(cfg.getPackedThreshold()).thenReturn(1);
-    when(queue.contains(repositoryPath)).thenReturn(false);
+    when(cfg.getScoreWeights()).thenReturn(WEIGHTS);
     addFileTo(repository);
     gc(repository);
-    task = new EvaluationTask(cfg, queue, SOME_HOSTNAME, repositoryPath);
+    task = new EvaluationTask(cfg, enqueuer, statistics, scanner, SOME_HOSTNAME, repositoryPath);
     task.run();
-    verify(queue).add(repositoryPath, SOME_HOSTNAME, false);
+    verify(enqueuer)
+        .enqueue(eq(repositoryPath), eq(SOME_HOSTNAME), eq(false), anyLong(), eq(0L));
   }
 
   @Test
-  public void repositoryShouldNotBeAddedIfAlreadyInQueue() throws Exception {
-    when(queue.contains(repositoryPath)).thenReturn(true);
+  public void dirtyRepositoryShouldBeAddedWithWeightedScore() throws Exception {
+    when(cfg.getPackedThreshold()).thenReturn(1);
+    when(cfg.getScoreWeights()).thenReturn(new ScoreWeights(7, 0, 0, 0, 0, 0));
+    addFileTo(repository);
+    gc(repository);
+    task = new EvaluationTask(cfg, enqueuer, statistics, scanner, SOME_HOSTNAME, repositoryPath);
     task.run();
-    verify(queue, never()).add(repositoryPath, SOME_HOSTNAME, false);
+    // one pack file left by gc
+    verify(enqueuer).enqueue(repositoryPath, SOME_HOSTNAME, false, 7, 0);
   }
 
   @Test
-  public void cleanRepositoryShouldNotBeAddedToQueue() throws Exception {
+  public void dirtyRepositoryShouldBeAddedNotToBePickedBeforeTime() throws Exception {
+    when(cfg.getPackedThreshold()).thenReturn(1);
+    when(cfg.getScoreWeights()).thenReturn(new ScoreWeights(7, 0, 0, 0, 0, 0));
+    addFileTo(repository);
+    gc(repository);
+    task = new EvaluationTask(cfg, enqueuer, statistics, scanner, SOME_HOSTNAME, repositoryPath);
+    assertThat(task.evaluate(() -> 1234)).isEqualTo(Result.DIRTY);
+    verify(enqueuer).enqueue(repositoryPath, SOME_HOSTNAME, false, 7, 1234);
+  }
+
+  @Test
+  public void dirtyRepositoryObjectsShouldBeAddedToTheQueueWhenSampling() throws Exception {
     when(cfg.getLooseThreshold()).thenReturn(1);
     when(cfg.getPackedThreshold()).thenReturn(1);
-    when(queue.contains(repositoryPath)).thenReturn(false);
+    when(cfg.getLooseEvaluation()).thenReturn(LooseEvaluation.SAMPLING);
+    when(cfg.getScoreWeights()).thenReturn(WEIGHTS);
+    addFileTo(repository);
     task.run();
-    verify(queue, never()).add(repositoryPath, SOME_HOSTNAME, false);
+    verify(enqueuer)
+        .enqueue(eq(repositoryPath), eq(SOME_HOSTNAME), eq(false), anyLong(), eq(0L));
   }
 
   @Test
-  public void queueThrowsErrorCheckingIfRepositoryExists() throws Exception {
-    doThrow(new GcQueueException("some message", new Throwable()))
-        .when(queue)
-        .contains(repositoryPath);
-    task.run();
-    verify(queue, never()).add(repositoryPath, SOME_HOSTNAME, false);
+  public void estimateShouldDecideWhenThresholdIsOutsideOfConfidenceInterval() {
+    assertThat(EvaluationTask.estimateDirtiness(10000, 1250, 1250, 400)).hasValue(true);
+    assertThat(EvaluationTask.estimateDirtiness(10000, 1250, 0, 400)).hasValue(false);
+    assertThat(EvaluationTask.estimateDirtiness(5000, 600, 10, 400)).hasValue(false);
   }
 
   @Test
-  public void queueThrowsErrorInsertingRepository() throws Exception {
-    when(queue.contains(repositoryPath)).thenReturn(false);
-    doThrow(new GcQueueException("some message", new Throwable()))
-        .when(queue)
-        .add(repositoryPath, SOME_HOSTNAME, false);
-    task.run();
+  public void estimateShouldNotDecideWhenThresholdIsInsideOfConfidenceInterval() {
+    assertThat(EvaluationTask.estimateDirtiness(10000, 1250, 50, 400)).isEmpty();
+    assertThat(EvaluationTask.estimateDirtiness(400, 50, 50, 400)).isEmpty();
+  }
+
+  @Test
+  public void estimateShouldNotDecideWithoutSampledObjects() {
+    assertThat(EvaluationTask.estimateDirtiness(10000, 0, 0, 400)).isEmpty();
+  }
+
+  @Test
+  public void estimateShouldBeExactWhenAllObjectsAreSampled() {
+    assertThat(EvaluationTask.estimateDirtiness(2, 2, 2, 1)).hasValue(true);
+    assertThat(EvaluationTask.estimateDirtiness(2, 2, 0, 1)).hasValue(false);
+  }
+
+  @Test
+  public void cleanRepositoryShouldNotBeAddedToQueue() throws Exception {
+    when(cfg.getLooseThreshold()).thenReturn(1);
+    when(cfg.getPackedThreshold()).thenReturn(1);
+    assertThat(task.evaluate()).isEqualTo(Result.CLEAN);
+    verify(enqueuer, never())
+        .enqueue(anyString(), anyString(), anyBoolean(), anyLong(), anyLong());
   }
 
   @Test
   public void repositoryNoLongerExist() throws Exception {
-    when(queue.contains(repositoryPath)).thenReturn(false);
     dir.delete();
-    task.run();
-    verify(queue, never()).add(repositoryPath, SOME_HOSTNAME, true);
+    assertThat(task.evaluate()).isEqualTo(Result.FAILED);
+    verify(enqueuer, never())
+        .enqueue(anyString(), anyString(), anyBoolean(), anyLong(), anyLong());
   }
 
   @Test
@@ -132,7 +188,7 @@ public class EvaluationTaskTest {
   public void noUnreferencedObjects() throws Exception {
     addFileTo(repository);
     FileRepository fileRepository = (FileRepository) repository;
-    assertThat(task.getUnreferencedLooseObjectsCount(fileRepository)).isEqualTo(0);
+    assertThat(countLooseObjects(fileRepository).unreferenced).isEqualTo(0);
   }
 
   @Test
@@ -144,7 +200,118 @@ public class EvaluationTaskTest {
     }
     FileRepository fileRepository = (FileRepository) repository;
     removeReflog(fileRepository.getDirectory());
-    assertThat(task.getUnreferencedLooseObjectsCount(fileRepository)).isEqualTo(1);
+    assertThat(countLooseObjects(fileRepository).unreferenced).isEqualTo(1);
+    assertThat(task.getReachabilityCheck()).isEqualTo(ReachabilityCheck.OBJECT_WALK);
+  }
+
+  @Test
+  public void unreferencedObjectsShouldBeCountedUsingBitmapIndex() throws Exception {
+    try (Git git = new Git(repository)) {
+      RevCommit initialCommit = git.commit().setMessage("initial commit").call();
+      gc(repository);
+      addFileTo(repository);
+      git.reset().setMode(ResetType.HARD).setRef(initialCommit.getName()).call();
+      git.commit().setMessage("commit not covered by the bitmap index").call();
+    }
+    FileRepository fileRepository = (FileRepository) repository;
+    removeReflog(fileRepository.getDirectory());
+    assertThat(countLooseObjects(fileRepository).unreferenced).isEqualTo(1);
+    assertThat(task.getReachabilityCheck()).isEqualTo(ReachabilityCheck.BITMAP);
+  }
+
+  @Test
+  public void unreferencedObjectsNewerThanPruneExpiryShouldNotBeReclaimable() throws Exception {
+    RevCommit unreferenced = createUnreferencedCommit();
+    FileRepository fileRepository = (FileRepository) repository;
+    long now = System.currentTimeMillis();
+    looseObjectFile(unreferenced).setLastModified(now - TimeUnit.DAYS.toMillis(1));
+
+    LooseObjectCounts counts =
+        task.countLooseObjects(fileRepository, now - TimeUnit.DAYS.toMillis(14));
+    assertThat(counts.unreferenced).isEqualTo(1);
+    assertThat(counts.unreferencedFresh).isEqualTo(1);
+    assertThat(counts.reclaimable()).isEqualTo(counts.total - 1);
+    // the repository may become dirty once the fresh object is prunable, 13 days from now
+    long prunableAt = now + TimeUnit.DAYS.toMillis(13);
+    assertThat(task.getCleanUntil()).isAtLeast(prunableAt - TimeUnit.MINUTES.toMillis(1));
+    assertThat(task.getCleanUntil()).isAtMost(prunableAt + TimeUnit.MINUTES.toMillis(1));
+  }
+
+  @Test
+  public void unreferencedObjectsOlderThanPruneExpiryShouldBeReclaimable() throws Exception {
+    RevCommit unreferenced = createUnreferencedCommit();
+    FileRepository fileRepository = (FileRepository) repository;
+    long now = System.currentTimeMillis();
+    looseObjectFile(unreferenced).setLastModified(now - TimeUnit.DAYS.toMillis(20));
+
+    LooseObjectCounts counts =
+        task.countLooseObjects(fileRepository, now - TimeUnit.DAYS.toMillis(14));
+    assertThat(counts.unreferenced).isEqualTo(1);
+    assertThat(counts.unreferencedFresh).isEqualTo(0);
+    assertThat(counts.reclaimable()).isEqualTo(counts.total);
+  }
+
+  @Test
+  public void referencedObjectsShouldAlwaysBeReclaimable() throws Exception {
+    addFileTo(repository);
+    FileRepository fileRepository = (FileRepository) repository;
+
+    LooseObjectCounts counts =
+        task.countLooseObjects(fileRepository, LooseObjectScanner.NONE_PRUNABLE);
+    assertThat(counts.total).isGreaterThan(0);
+    assertThat(counts.reclaimable()).isEqualTo(counts.total);
+    assertThat(task.getCleanUntil()).isEqualTo(Long.MAX_VALUE);
+  }
+
+  @Test
+  public void prunableBeforeShouldDefaultToTwoWeeksAgo() {
+    long twoWeeksAgo = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(14);
+    assertThat(EvaluationTask.getPrunableBefore(repository))
+        .isIn(Range.closed(twoWeeksAgo - 60_000, twoWeeksAgo + 60_000));
+  }
+
+  @Test
+  public void prunableBeforeShouldFollowPruneExpire() {
+    setPruneExpire("now");
+    assertThat(EvaluationTask.getPrunableBefore(repository))
+        .isEqualTo(LooseObjectScanner.ALL_PRUNABLE);
+    setPruneExpire("never");
+    assertThat(EvaluationTask.getPrunableBefore(repository))
+        .isEqualTo(LooseObjectScanner.NONE_PRUNABLE);
+    setPruneExpire("invalid");
+    assertThat(EvaluationTask.getPrunableBefore(repository))
+        .isEqualTo(LooseObjectScanner.NONE_PRUNABLE);
+  }
+
+  private LooseObjectCounts countLooseObjects(FileRepository fileRepository) throws IOException {
+    return task.countLooseObjects(fileRepository, LooseObjectScanner.ALL_PRUNABLE);
+  }
+
+  private RevCommit createUnreferencedCommit() throws Exception {
+    RevCommit unreferenced;
+    try (Git git = new Git(repository)) {
+      RevCommit initialCommit = git.commit().setMessage("initial commit").call();
+      unreferenced = git.commit().setMessage("unreferenced commit").call();
+      git.reset().setMode(ResetType.HARD).setRef(initialCommit.getName()).call();
+    }
+    removeReflog(repository.getDirectory());
+    return unreferenced;
+  }
+
+  private File looseObjectFile(RevCommit commit) {
+    String name = commit.name();
+    File objects = ((FileRepository) repository).getObjectsDirectory();
+    return new File(new File(objects, name.substring(0, 2)), name.substring(2));
+  }
+
+  private void setPruneExpire(String pruneExpire) {
+    repository
+        .getConfig()
+        .setString(
+            ConfigConstants.CONFIG_GC_SECTION,
+            null,
+            ConfigConstants.CONFIG_KEY_PRUNEEXPIRE,
+            pruneExpire);
   }
 
   private void removeReflog(File directory) throws IOException {
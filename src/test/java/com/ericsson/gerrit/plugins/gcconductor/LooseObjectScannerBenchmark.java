@@ -0,0 +1,153 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.ericsson.gerrit.plugins.gcconductor;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Ignore;
+import org.junit.Test;
+
+/**
+ * Compares the time to list the loose objects of a synthetic repository with 500k loose objects,
+ * and the heap retained by the listed ids, with the sequential scan of File objects into a
+ * HashSet the evaluation used to do, and with the scanner using one or several threads.
+ *
+ * <p>Ignored by default since it only reports timings, remove the annotation to run it. Set the
+ * <code>benchmark.objectsDirectory</code> system property to an empty directory on the file system
+ * to measure, e.g. on NFS, the temporary directory is used otherwise.
+ */
+@Ignore
+public class LooseObjectScannerBenchmark {
+  private static final int LOOSE_OBJECTS = 500_000;
+  private static final int ITERATIONS = 5;
+
+  private static Path objects;
+
+  @BeforeClass
+  public static void createLooseObjects() throws Exception {
+    String directory = System.getProperty("benchmark.objectsDirectory");
+    objects =
+        directory != null
+            ? Files.createTempDirectory(new File(directory).toPath(), "objects")
+            : Files.createTempDirectory("objects");
+    ObjectInserter.Formatter formatter = new ObjectInserter.Formatter();
+    for (int i = 0; i < LOOSE_OBJECTS; i++) {
+      String name = formatter.idFor(Constants.OBJ_BLOB, Integer.toString(i).getBytes(UTF_8)).name();
+      Path fanout = objects.resolve(name.substring(0, 2));
+      if (!Files.isDirectory(fanout)) {
+        Files.createDirectory(fanout);
+      }
+      // only the names of the loose objects are read by the scan
+      Files.createFile(fanout.resolve(name.substring(2)));
+    }
+  }
+
+  @AfterClass
+  public static void deleteLooseObjects() throws Exception {
+    MoreFiles.deleteRecursively(objects, RecursiveDeleteOption.ALLOW_INSECURE);
+  }
+
+  @Test
+  public void compareScans() {
+    run("listFiles", objectsDirectory -> scanWithListFiles(objectsDirectory).size());
+    LooseObjectScanner sequential = new LooseObjectScanner(1);
+    LooseObjectScanner parallel = new LooseObjectScanner(LooseObjectScanner.DEFAULT_PARALLELISM);
+    try {
+      run("scanner, 1 thread", objectsDirectory -> sequential.scan(objectsDirectory).size());
+      run(
+          "scanner, " + LooseObjectScanner.DEFAULT_PARALLELISM + " threads",
+          objectsDirectory -> parallel.scan(objectsDirectory).size());
+    } finally {
+      sequential.onShutdown();
+      parallel.onShutdown();
+    }
+  }
+
+  private static void run(String name, ToIntFunction<File> scan) {
+    // warm up
+    scan.applyAsInt(objects.toFile());
+    long start = System.nanoTime();
+    for (int i = 0; i < ITERATIONS; i++) {
+      if (scan.applyAsInt(objects.toFile()) != LOOSE_OBJECTS) {
+        throw new IllegalStateException(name + " did not find all the loose objects");
+      }
+    }
+    long elapsed = System.nanoTime() - start;
+    System.out.printf(
+        "%s: %d ms per scan%n", name, TimeUnit.NANOSECONDS.toMillis(elapsed) / ITERATIONS);
+  }
+
+  @Test
+  public void compareCandidateSetsHeap() {
+    LooseObjectScanner scanner = new LooseObjectScanner(1);
+    try {
+      long hashSet = retainedHeap(() -> scanWithListFiles(objects.toFile()));
+      long objectIdSet = retainedHeap(() -> scanner.scan(objects.toFile()));
+      System.out.printf(
+          "HashSet<ObjectId>: %d MiB, ObjectIdSet: %d MiB%n", hashSet >> 20, objectIdSet >> 20);
+    } finally {
+      scanner.onShutdown();
+    }
+  }
+
+  private static long retainedHeap(Supplier<Object> scan) {
+    Runtime runtime = Runtime.getRuntime();
+    System.gc();
+    long before = runtime.totalMemory() - runtime.freeMemory();
+    Object ids = scan.get();
+    System.gc();
+    long retained = runtime.totalMemory() - runtime.freeMemory() - before;
+    // keep the ids reachable until measured
+    if (ids == null) {
+      throw new IllegalStateException();
+    }
+    return retained;
+  }
+
+  private static Set<ObjectId> scanWithListFiles(File objectsDirectory) {
+    Set<ObjectId> ids = new HashSet<>();
+    for (String dir : objectsDirectory.list()) {
+      if (dir.length() != 2) {
+        continue;
+      }
+      File[] entries = new File(objectsDirectory, dir).listFiles();
+      if (entries == null) {
+        continue;
+      }
+      for (File f : entries) {
+        String fileName = f.getName();
+        if (fileName.length() == Constants.OBJECT_ID_STRING_LENGTH - 2) {
+          ids.add(ObjectId.fromString(dir + fileName));
+        }
+      }
+    }
+    return ids;
+  }
+}
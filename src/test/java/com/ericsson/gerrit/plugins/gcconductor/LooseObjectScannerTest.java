@@ -0,0 +1,173 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.ericsson.gerrit.plugins.gcconductor;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.ericsson.gerrit.plugins.gcconductor.LooseObjectScanner.LooseObjects;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class LooseObjectScannerTest {
+
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private LooseObjectScanner scanner;
+  private Path objects;
+
+  @Before
+  public void setUp() throws Exception {
+    scanner = new LooseObjectScanner(4);
+    objects = tempFolder.newFolder("objects").toPath();
+  }
+
+  @After
+  public void tearDown() {
+    scanner.onShutdown();
+  }
+
+  @Test
+  public void emptyObjectsDirectoryShouldHaveNoLooseObjects() {
+    assertThat(scanner.scan(objects.toFile()).isEmpty()).isTrue();
+  }
+
+  @Test
+  public void missingObjectsDirectoryShouldHaveNoLooseObjects() {
+    assertThat(scanner.scan(new File(objects.toFile(), "missing")).isEmpty()).isTrue();
+  }
+
+  @Test
+  public void allFanOutDirectoriesShouldBeScanned() throws Exception {
+    Set<ObjectId> expected = new HashSet<>();
+    for (int i = 0; i < 256; i++) {
+      for (int j = 0; j < 3; j++) {
+        byte[] raw = new byte[20];
+        raw[0] = (byte) i;
+        raw[19] = (byte) j;
+        ObjectId id = ObjectId.fromRaw(raw);
+        createLooseObject(id);
+        expected.add(id);
+      }
+    }
+    assertThat(scan(scanner)).containsExactlyElementsIn(expected);
+  }
+
+  @Test
+  public void filesThatAreNotLooseObjectsShouldBeIgnored() throws Exception {
+    ObjectId id = ObjectId.fromString("0123456789abcdef0123456789abcdef01234567");
+    createLooseObject(id);
+    Files.createDirectories(objects.resolve("pack"));
+    Files.createFile(objects.resolve("pack/pack-0123456789abcdef0123456789abcdef01234567.pack"));
+    Files.createDirectories(objects.resolve("info"));
+    Files.createFile(objects.resolve("info/alternates"));
+    Files.createFile(objects.resolve("01/tmp_obj_123"));
+    Files.createFile(objects.resolve("01/zz3456789abcdef0123456789abcdef01234567"));
+
+    assertThat(scan(scanner)).containsExactly(id);
+  }
+
+  @Test
+  public void sequentialAndParallelScansShouldFindTheSameObjects() throws Exception {
+    ObjectInserter.Formatter formatter = new ObjectInserter.Formatter();
+    for (int i = 0; i < 1000; i++) {
+      createLooseObject(formatter.idFor(Constants.OBJ_BLOB, Integer.toString(i).getBytes(UTF_8)));
+    }
+    LooseObjectScanner sequential = new LooseObjectScanner(1);
+    try {
+      assertThat(scan(scanner)).containsExactlyElementsIn(scan(sequential));
+    } finally {
+      sequential.onShutdown();
+    }
+  }
+
+  @Test
+  public void objectsModifiedAfterPruneExpiryShouldBeFresh() throws Exception {
+    long now = System.currentTimeMillis();
+    ObjectId old = ObjectId.fromString("0123456789abcdef0123456789abcdef01234567");
+    ObjectId recent = ObjectId.fromString("fedcba9876543210fedcba9876543210fedcba98");
+    createLooseObject(old).toFile().setLastModified(now - TimeUnit.DAYS.toMillis(20));
+    File recentFile = createLooseObject(recent).toFile();
+    recentFile.setLastModified(now - TimeUnit.DAYS.toMillis(1));
+
+    LooseObjects looseObjects = scanner.scan(objects.toFile(), now - TimeUnit.DAYS.toMillis(14));
+    assertThat(toSet(looseObjects.all())).containsExactly(old, recent);
+    assertThat(toSet(looseObjects.fresh())).containsExactly(recent);
+    assertThat(looseObjects.oldestFresh()).isEqualTo(recentFile.lastModified());
+  }
+
+  @Test
+  public void noObjectShouldBeFreshWhenAllArePrunable() throws Exception {
+    ObjectId id = ObjectId.fromString("0123456789abcdef0123456789abcdef01234567");
+    createLooseObject(id);
+
+    LooseObjects looseObjects = scanner.scan(objects.toFile(), LooseObjectScanner.ALL_PRUNABLE);
+    assertThat(toSet(looseObjects.all())).containsExactly(id);
+    assertThat(looseObjects.fresh().isEmpty()).isTrue();
+  }
+
+  @Test
+  public void allObjectsShouldBeFreshWhenNoneArePrunable() throws Exception {
+    ObjectId id = ObjectId.fromString("0123456789abcdef0123456789abcdef01234567");
+    createLooseObject(id).toFile().setLastModified(0);
+
+    LooseObjects looseObjects = scanner.scan(objects.toFile(), LooseObjectScanner.NONE_PRUNABLE);
+    assertThat(toSet(looseObjects.all())).containsExactly(id);
+    assertThat(toSet(looseObjects.fresh())).containsExactly(id);
+    assertThat(looseObjects.oldestFresh()).isEqualTo(Long.MAX_VALUE);
+  }
+
+  @Test
+  public void onlySpecifiedFanOutDirectoriesShouldBeScanned() throws Exception {
+    ObjectId scanned = ObjectId.fromString("0123456789abcdef0123456789abcdef01234567");
+    createLooseObject(scanned);
+    createLooseObject(ObjectId.fromString("fedcba9876543210fedcba9876543210fedcba98"));
+
+    LooseObjects looseObjects =
+        scanner.scan(objects.toFile(), new String[] {"01", "02"}, LooseObjectScanner.ALL_PRUNABLE);
+    assertThat(toSet(looseObjects.all())).containsExactly(scanned);
+  }
+
+  private Set<ObjectId> scan(LooseObjectScanner looseObjectScanner) {
+    Set<ObjectId> ids = new HashSet<>();
+    looseObjectScanner.scan(objects.toFile()).forEach(ids::add);
+    return ids;
+  }
+
+  private static Set<ObjectId> toSet(ObjectIdSet objectIdSet) {
+    Set<ObjectId> ids = new HashSet<>();
+    objectIdSet.forEach(ids::add);
+    return ids;
+  }
+
+  private Path createLooseObject(ObjectId id) throws Exception {
+    String name = id.name();
+    Path dir = objects.resolve(name.substring(0, 2));
+    Files.createDirectories(dir);
+    return Files.createFile(dir.resolve(name.substring(2)));
+  }
+}
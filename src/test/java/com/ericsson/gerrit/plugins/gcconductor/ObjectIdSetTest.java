@@ -0,0 +1,136 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.ericsson.gerrit.plugins.gcconductor;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ObjectIdSetTest {
+  private static final ObjectId ID =
+      ObjectId.fromString("0123456789abcdef0123456789abcdef01234567");
+
+  private ObjectIdSet set;
+
+  @Before
+  public void setUp() {
+    set = new ObjectIdSet();
+  }
+
+  @Test
+  public void newSetShouldBeEmpty() {
+    assertThat(set.isEmpty()).isTrue();
+    assertThat(set.size()).isEqualTo(0);
+    assertThat(set.contains(ID)).isFalse();
+  }
+
+  @Test
+  public void idShouldBeAddedOnce() {
+    assertThat(set.add(ID)).isTrue();
+    assertThat(set.add(ID.copy())).isFalse();
+    assertThat(set.size()).isEqualTo(1);
+    assertThat(set.contains(ID)).isTrue();
+  }
+
+  @Test
+  public void idShouldBeRemoved() {
+    set.add(ID);
+    assertThat(set.remove(ID)).isTrue();
+    assertThat(set.remove(ID)).isFalse();
+    assertThat(set.isEmpty()).isTrue();
+    assertThat(set.contains(ID)).isFalse();
+  }
+
+  @Test
+  public void zeroIdShouldBeSupported() {
+    assertThat(set.add(ObjectId.zeroId())).isTrue();
+    assertThat(set.add(ObjectId.zeroId())).isFalse();
+    assertThat(set.contains(ObjectId.zeroId())).isTrue();
+    assertThat(toSet(set)).containsExactly(ObjectId.zeroId());
+    assertThat(set.remove(ObjectId.zeroId())).isTrue();
+    assertThat(set.isEmpty()).isTrue();
+  }
+
+  @Test
+  public void setShouldBeProbedWithRevObjects() {
+    set.add(ID);
+    try (RevWalk walk = new RevWalk(new InMemoryRepository(new DfsRepositoryDescription("repo")))) {
+      assertThat(set.remove(walk.lookupCommit(ID))).isTrue();
+    }
+    assertThat(set.isEmpty()).isTrue();
+  }
+
+  @Test
+  public void looseObjectNameShouldBeParsed() {
+    int[] words = new int[ObjectIdSet.WORDS];
+    String name = ID.name();
+    assertThat(ObjectIdSet.parseLooseObject(name.substring(0, 2), name.substring(2), words, 0))
+        .isTrue();
+    assertThat(ObjectId.fromRaw(words)).isEqualTo(ID);
+    assertThat(set.addRaw(words, 0)).isTrue();
+    assertThat(set.contains(ID)).isTrue();
+  }
+
+  @Test
+  public void invalidLooseObjectNamesShouldBeRejected() {
+    int[] words = new int[ObjectIdSet.WORDS];
+    assertThat(
+            ObjectIdSet.parseLooseObject("0g", "23456789abcdef0123456789abcdef01234567", words, 0))
+        .isFalse();
+    assertThat(ObjectIdSet.parseLooseObject("01", "tmp_obj_123", words, 0)).isFalse();
+    assertThat(ObjectIdSet.parseLooseObject("pack", "", words, 0)).isFalse();
+  }
+
+  @Test
+  public void setShouldBehaveAsHashSetWithCollidingIds() {
+    Random random = new Random(42);
+    ObjectId[] ids = new ObjectId[2000];
+    for (int i = 0; i < ids.length; i++) {
+      // half of the ids share the same hash code to exercise probing and removal
+      int hash = i % 2 == 0 ? 7 : random.nextInt();
+      ids[i] =
+          new ObjectId(
+              random.nextInt(), hash, random.nextInt(), random.nextInt(), random.nextInt());
+    }
+    Set<ObjectId> expected = new HashSet<>();
+    for (int i = 0; i < 50_000; i++) {
+      ObjectId id = ids[random.nextInt(ids.length)];
+      if (random.nextInt(3) == 0) {
+        assertThat(set.remove(id)).isEqualTo(expected.remove(id));
+      } else {
+        assertThat(set.add(id)).isEqualTo(expected.add(id));
+      }
+      assertThat(set.size()).isEqualTo(expected.size());
+    }
+    for (ObjectId id : ids) {
+      assertThat(set.contains(id)).isEqualTo(expected.contains(id));
+    }
+    assertThat(toSet(set)).containsExactlyElementsIn(expected);
+  }
+
+  private static Set<ObjectId> toSet(ObjectIdSet ids) {
+    Set<ObjectId> result = new HashSet<>();
+    ids.forEach(result::add);
+    return result;
+  }
+}
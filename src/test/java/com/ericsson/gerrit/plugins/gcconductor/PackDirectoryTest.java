@@ -0,0 +1,84 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.ericsson.gerrit.plugins.gcconductor;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PackDirectoryTest {
+  private static final long NOW = TimeUnit.DAYS.toMillis(1000);
+
+  @Rule public TemporaryFolder dir = new TemporaryFolder();
+
+  @Test
+  public void missingDirectoryShouldBeEmpty() {
+    PackDirectory packDirectory = PackDirectory.scan(new File(dir.getRoot(), "missing"));
+    assertThat(packDirectory.smallPacks).isEqualTo(0);
+    assertThat(packDirectory.garbageBytes).isEqualTo(0);
+    assertThat(packDirectory.daysSinceGc(NOW)).isEqualTo(0);
+  }
+
+  @Test
+  public void smallPacksShouldBeCounted() throws IOException {
+    createFile("pack-a.pack", 10, NOW);
+    createFile("pack-a.idx", 10, NOW);
+    createFile("pack-b.pack", (int) PackDirectory.SMALL_PACK_SIZE, NOW);
+    createFile("pack-b.idx", 10, NOW);
+    assertThat(PackDirectory.scan(dir.getRoot()).smallPacks).isEqualTo(1);
+  }
+
+  @Test
+  public void filesNotBelongingToAPackShouldBeGarbage() throws IOException {
+    createFile("pack-a.pack", 10, NOW);
+    createFile("pack-a.idx", 20, NOW);
+    createFile("pack-a.keep", 0, NOW);
+    // index left without its pack
+    createFile("pack-b.idx", 100, NOW);
+    // temporary pack of an interrupted gc or push
+    createFile("tmp_pack_1234", 1000, NOW);
+    assertThat(PackDirectory.scan(dir.getRoot()).garbageBytes).isEqualTo(1100);
+  }
+
+  @Test
+  public void lastGcShouldBeTheNewestBitmap() throws IOException {
+    createFile("pack-a.pack", 10, NOW - TimeUnit.DAYS.toMillis(30));
+    createFile("pack-b.pack", 10, NOW - TimeUnit.DAYS.toMillis(10));
+    createFile("pack-b.bitmap", 10, NOW - TimeUnit.DAYS.toMillis(10));
+    createFile("pack-c.pack", 10, NOW - TimeUnit.DAYS.toMillis(1));
+    assertThat(PackDirectory.scan(dir.getRoot()).daysSinceGc(NOW)).isEqualTo(10);
+  }
+
+  @Test
+  public void lastGcShouldBeTheOldestPackWithoutBitmap() throws IOException {
+    createFile("pack-a.pack", 10, NOW - TimeUnit.DAYS.toMillis(30));
+    createFile("pack-b.pack", 10, NOW - TimeUnit.DAYS.toMillis(10));
+    // bitmap of a pack that no longer exists
+    createFile("pack-c.bitmap", 10, NOW);
+    assertThat(PackDirectory.scan(dir.getRoot()).daysSinceGc(NOW)).isEqualTo(30);
+  }
+
+  private void createFile(String name, int size, long lastModified) throws IOException {
+    File file = new File(dir.getRoot(), name);
+    Files.write(file.toPath(), new byte[size]);
+    assertThat(file.setLastModified(lastModified)).isTrue();
+  }
+}
@@ -0,0 +1,69 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.ericsson.gerrit.plugins.gcconductor;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.gerrit.testing.GerritJUnit.assertThrows;
+
+import java.util.Optional;
+import org.junit.Test;
+
+public class QueueFilterTest {
+
+  @Test
+  public void allShouldNotFilterAnything() {
+    QueueFilter filter = QueueFilter.all();
+    assertThat(filter.getExecutorPrefix()).isEqualTo(Optional.empty());
+    assertThat(filter.getQueuedFrom()).isEqualTo(Optional.empty());
+    assertThat(filter.getAggressive()).isEqualTo(Optional.empty());
+    assertThat(filter.getPathPrefix()).isEqualTo(Optional.empty());
+    assertThat(filter.getLimit()).isEqualTo(0);
+    assertThat(filter.getOffset()).isEqualTo(0);
+  }
+
+  @Test
+  public void shouldReturnCriteria() {
+    QueueFilter filter =
+        QueueFilter.builder()
+            .executorPrefix("someHost-")
+            .queuedFrom("someHost")
+            .aggressive(false)
+            .pathPrefix("/path/")
+            .limit(10)
+            .offset(20)
+            .build();
+    assertThat(filter.getExecutorPrefix()).isEqualTo(Optional.of("someHost-"));
+    assertThat(filter.getQueuedFrom()).isEqualTo(Optional.of("someHost"));
+    assertThat(filter.getAggressive()).isEqualTo(Optional.of(false));
+    assertThat(filter.getPathPrefix()).isEqualTo(Optional.of("/path/"));
+    assertThat(filter.getLimit()).isEqualTo(10);
+    assertThat(filter.getOffset()).isEqualTo(20);
+  }
+
+  @Test
+  public void nullCriteriaShouldNotFilter() {
+    QueueFilter filter =
+        QueueFilter.builder().executorPrefix(null).queuedFrom(null).aggressive(null).build();
+    assertThat(filter.getExecutorPrefix()).isEqualTo(Optional.empty());
+    assertThat(filter.getQueuedFrom()).isEqualTo(Optional.empty());
+    assertThat(filter.getAggressive()).isEqualTo(Optional.empty());
+  }
+
+  @Test
+  public void shouldRejectNegativeLimitOrOffset() {
+    assertThrows(IllegalArgumentException.class, () -> QueueFilter.builder().limit(-1));
+    assertThrows(IllegalArgumentException.class, () -> QueueFilter.builder().offset(-1));
+  }
+}
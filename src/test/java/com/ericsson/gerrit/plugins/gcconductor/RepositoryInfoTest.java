@@ -48,4 +48,10 @@ public class RepositoryInfoTest {
     RepositoryInfo repoInfo = new RepositoryInfo(null, null, null, hostname, true);
     assertThat(repoInfo.getQueuedFrom()).isEqualTo(hostname);
   }
+
+  @Test
+  public void shouldReturnScore() {
+    assertThat(new RepositoryInfo(null, null, null, null, true, 42).getScore()).isEqualTo(42);
+    assertThat(new RepositoryInfo(null, null, null, null, true).getScore()).isEqualTo(0);
+  }
 }
@@ -0,0 +1,43 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.ericsson.gerrit.plugins.gcconductor;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+
+public class ScoreWeightsTest {
+  private static final long MEGABYTE = 1024 * 1024;
+
+  @Test
+  public void scoreShouldBeWeightedSum() {
+    ScoreWeights weights = new ScoreWeights(1, 2, 3, 4, 5, 6);
+    assertThat(weights.score(1, 1, 1, 1, MEGABYTE, 1)).isEqualTo(21);
+    assertThat(weights.score(10, 0, 100, 0, 0, 0)).isEqualTo(310);
+  }
+
+  @Test
+  public void garbageShouldBeWeightedPerMegabyte() {
+    ScoreWeights weights = new ScoreWeights(0, 0, 0, 0, 10, 0);
+    assertThat(weights.score(0, 0, 0, 0, MEGABYTE - 1, 0)).isEqualTo(0);
+    assertThat(weights.score(0, 0, 0, 0, 3 * MEGABYTE, 0)).isEqualTo(30);
+  }
+
+  @Test
+  public void scoreShouldNotBeNegative() {
+    ScoreWeights weights = new ScoreWeights(-10, 0, 1, 0, 0, 0);
+    assertThat(weights.score(5, 0, 10, 0, 0, 0)).isEqualTo(0);
+  }
+}
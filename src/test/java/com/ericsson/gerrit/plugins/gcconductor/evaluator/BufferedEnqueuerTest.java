@@ -0,0 +1,275 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.ericsson.gerrit.plugins.gcconductor.evaluator;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import com.ericsson.gerrit.plugins.gcconductor.DirectEnqueuer;
+import com.ericsson.gerrit.plugins.gcconductor.GcQueue;
+import com.ericsson.gerrit.plugins.gcconductor.GcQueueException;
+import com.ericsson.gerrit.plugins.gcconductor.GcRequest;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class BufferedEnqueuerTest {
+  private static final String HOSTNAME = "hostname";
+  private static final String REPOSITORY = "/path/someRepo.git";
+  private static final String REPOSITORY_OTHER = "/path/otherRepo.git";
+  private static final String REPOSITORY_THIRD = "/path/thirdRepo.git";
+  private static final int CAPACITY = 1000;
+  private static final GcRequest NON_AGGRESSIVE = new GcRequest(false, 0);
+  private static final GcRequest AGGRESSIVE = new GcRequest(true, 0);
+
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Mock private GcQueue queue;
+  @Mock private DirectEnqueuer directEnqueuer;
+  @Mock private EvaluatorConfig config;
+  @Mock private ScheduledExecutorService flusher;
+
+  private Path dataDir;
+  private BufferedEnqueuer enqueuer;
+
+  @Before
+  public void setUp() throws Exception {
+    dataDir = tempFolder.newFolder("data").toPath();
+  }
+
+  @After
+  public void tearDown() {
+    if (enqueuer != null) {
+      enqueuer.close();
+    }
+  }
+
+  @Test
+  public void repositoriesShouldBeAddedToTheQueueWhenFlushed() throws Exception {
+    enqueuer = open(CAPACITY);
+    enqueuer.enqueue(REPOSITORY, HOSTNAME, false, 0);
+    enqueuer.enqueue(REPOSITORY_OTHER, HOSTNAME, true, 0);
+    verifyNoInteractions(queue, directEnqueuer);
+    assertThat(enqueuer.size()).isEqualTo(2);
+
+    enqueuer.flush();
+    Map<String, GcRequest> expected = new LinkedHashMap<>();
+    expected.put(REPOSITORY, NON_AGGRESSIVE);
+    expected.put(REPOSITORY_OTHER, AGGRESSIVE);
+    verify(queue).addAll(expected, HOSTNAME);
+    assertThat(enqueuer.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void repositoriesShouldBeAddedToTheQueueInBatches() throws Exception {
+    enqueuer = open(CAPACITY);
+    for (int i = 0; i <= BufferedEnqueuer.BATCH_SIZE; i++) {
+      enqueuer.enqueue("/path/repo" + i + ".git", HOSTNAME, false, 0);
+    }
+    enqueuer.flush();
+    verify(queue, times(2)).addAll(anyMap(), eq(HOSTNAME));
+    assertThat(enqueuer.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void repositoriesShouldBeAddedWithTheHostnameTheyWereQueuedFrom() throws Exception {
+    enqueuer = open(CAPACITY);
+    enqueuer.enqueue(REPOSITORY, HOSTNAME, false, 0);
+    enqueuer.enqueue(REPOSITORY_OTHER, "otherHostname", false, 0);
+    enqueuer.flush();
+    verify(queue).addAll(Collections.singletonMap(REPOSITORY, NON_AGGRESSIVE), HOSTNAME);
+    verify(queue)
+        .addAll(Collections.singletonMap(REPOSITORY_OTHER, NON_AGGRESSIVE), "otherHostname");
+  }
+
+  @Test
+  public void sameRepositoryShouldBeBufferedOnceAndUpgradedToAggressive() throws Exception {
+    enqueuer = open(CAPACITY);
+    enqueuer.enqueue(REPOSITORY, HOSTNAME, false, 0);
+    enqueuer.enqueue(REPOSITORY, HOSTNAME, true, 0);
+    enqueuer.enqueue(REPOSITORY, HOSTNAME, false, 0);
+    assertThat(enqueuer.size()).isEqualTo(1);
+
+    enqueuer.flush();
+    verify(queue).addAll(Collections.singletonMap(REPOSITORY, AGGRESSIVE), HOSTNAME);
+  }
+
+  @Test
+  public void sameRepositoryShouldBeBufferedOnceWithTheHighestScore() throws Exception {
+    enqueuer = open(CAPACITY);
+    enqueuer.enqueue(REPOSITORY, HOSTNAME, false, 5);
+    enqueuer.enqueue(REPOSITORY, HOSTNAME, false, 3);
+    enqueuer.enqueue(REPOSITORY, HOSTNAME, true, 1);
+    assertThat(enqueuer.size()).isEqualTo(1);
+    enqueuer.close();
+
+    enqueuer = open(CAPACITY);
+    enqueuer.flush();
+    verify(queue).addAll(Collections.singletonMap(REPOSITORY, new GcRequest(true, 5)), HOSTNAME);
+  }
+
+  @Test
+  public void repositoriesShouldBeKeptWhenQueueFails() throws Exception {
+    when(queue.addAll(anyMap(), anyString()))
+        .thenThrow(new GcQueueException("some message", new Throwable()))
+        .thenReturn(1);
+    enqueuer = open(CAPACITY);
+    enqueuer.enqueue(REPOSITORY, HOSTNAME, false, 0);
+
+    enqueuer.flush();
+    assertThat(enqueuer.size()).isEqualTo(1);
+
+    enqueuer.flush();
+    assertThat(enqueuer.size()).isEqualTo(0);
+    verify(queue, times(2)).addAll(Collections.singletonMap(REPOSITORY, NON_AGGRESSIVE), HOSTNAME);
+  }
+
+  @Test
+  public void repositoriesShouldBeReplayedAfterRestart() throws Exception {
+    enqueuer = open(CAPACITY);
+    enqueuer.enqueue(REPOSITORY, HOSTNAME, false, 0);
+    enqueuer.enqueue(REPOSITORY_OTHER, HOSTNAME, false, 0);
+    enqueuer.enqueue(REPOSITORY, HOSTNAME, true, 0);
+    enqueuer.close();
+
+    enqueuer = open(CAPACITY);
+    assertThat(enqueuer.size()).isEqualTo(2);
+    enqueuer.flush();
+    Map<String, GcRequest> expected = new LinkedHashMap<>();
+    expected.put(REPOSITORY, AGGRESSIVE);
+    expected.put(REPOSITORY_OTHER, NON_AGGRESSIVE);
+    verify(queue).addAll(expected, HOSTNAME);
+  }
+
+  @Test
+  public void addedRepositoriesShouldNotBeReplayedAfterRestart() throws Exception {
+    enqueuer = open(CAPACITY);
+    enqueuer.enqueue(REPOSITORY, HOSTNAME, false, 0);
+    enqueuer.flush();
+    enqueuer.enqueue(REPOSITORY_OTHER, HOSTNAME, false, 0);
+    enqueuer.close();
+
+    enqueuer = open(CAPACITY);
+    assertThat(enqueuer.size()).isEqualTo(1);
+    enqueuer.flush();
+    verify(queue).addAll(Collections.singletonMap(REPOSITORY_OTHER, NON_AGGRESSIVE), HOSTNAME);
+  }
+
+  @Test
+  public void partiallyWrittenRepositoryShouldBeIgnoredWhenReplaying() throws Exception {
+    enqueuer = open(CAPACITY);
+    enqueuer.enqueue(REPOSITORY, HOSTNAME, false, 0);
+    enqueuer.close();
+    Files.write(
+        dataDir.resolve(BufferedEnqueuer.BUFFER_FILE),
+        new byte[] {1, 0, 8, 'h', 'o'},
+        StandardOpenOption.APPEND);
+
+    enqueuer = open(CAPACITY);
+    assertThat(enqueuer.size()).isEqualTo(1);
+  }
+
+  @Test
+  public void repositoryShouldBeAddedDirectlyWhenBufferIsFull() throws Exception {
+    enqueuer = open(1);
+    enqueuer.enqueue(REPOSITORY, HOSTNAME, false, 0);
+    enqueuer.enqueue(REPOSITORY_OTHER, HOSTNAME, false, 0);
+    assertThat(enqueuer.size()).isEqualTo(1);
+    verify(directEnqueuer).enqueue(REPOSITORY_OTHER, HOSTNAME, false, 0);
+    verify(directEnqueuer, never()).enqueue(eq(REPOSITORY), eq(HOSTNAME), eq(false), anyLong());
+  }
+
+  @Test
+  public void repositoriesReplayedBeyondBufferSizeShouldBeKept() throws Exception {
+    enqueuer = open(CAPACITY);
+    enqueuer.enqueue(REPOSITORY, HOSTNAME, false, 0);
+    enqueuer.enqueue(REPOSITORY_OTHER, HOSTNAME, false, 0);
+    enqueuer.close();
+
+    enqueuer = open(1);
+    assertThat(enqueuer.size()).isEqualTo(2);
+    enqueuer.enqueue(REPOSITORY_THIRD, HOSTNAME, false, 0);
+    assertThat(enqueuer.size()).isEqualTo(2);
+    verify(directEnqueuer).enqueue(REPOSITORY_THIRD, HOSTNAME, false, 0);
+  }
+
+  @Test
+  public void repositoryNotToBePickedRightAwayShouldBeAddedDirectly() throws Exception {
+    enqueuer = open(CAPACITY);
+    enqueuer.enqueue(REPOSITORY, HOSTNAME, false, 0, 1234);
+    assertThat(enqueuer.size()).isEqualTo(0);
+    verify(directEnqueuer).enqueue(REPOSITORY, HOSTNAME, false, 0, 1234);
+  }
+
+  @Test
+  public void repositoryShouldBeAddedDirectlyWhenBufferIsDisabled() throws Exception {
+    when(config.getBufferSize()).thenReturn(0);
+    enqueuer = new BufferedEnqueuer(queue, directEnqueuer, config, dataDir, flusher);
+    enqueuer.start();
+    enqueuer.enqueue(REPOSITORY, HOSTNAME, false, 0);
+    verify(directEnqueuer).enqueue(REPOSITORY, HOSTNAME, false, 0);
+    verifyNoInteractions(flusher);
+  }
+
+  @Test
+  public void flushShouldBeScheduledOnStartAndStoppedOnStop() throws Exception {
+    when(config.getBufferSize()).thenReturn(CAPACITY);
+    enqueuer = new BufferedEnqueuer(queue, directEnqueuer, config, dataDir, flusher);
+
+    enqueuer.start();
+    verify(flusher)
+        .scheduleWithFixedDelay(any(Runnable.class), eq(0L), anyLong(), eq(TimeUnit.MILLISECONDS));
+
+    enqueuer.enqueue(REPOSITORY, HOSTNAME, false, 0);
+    enqueuer.stop();
+    verify(flusher).shutdown();
+    verify(queue).addAll(Collections.singletonMap(REPOSITORY, NON_AGGRESSIVE), HOSTNAME);
+
+    // repositories enqueued once stopped are added directly
+    enqueuer.enqueue(REPOSITORY_OTHER, HOSTNAME, false, 0);
+    verify(directEnqueuer).enqueue(REPOSITORY_OTHER, HOSTNAME, false, 0);
+  }
+
+  private BufferedEnqueuer open(int capacity) throws Exception {
+    when(config.getBufferSize()).thenReturn(capacity);
+    BufferedEnqueuer bufferedEnqueuer =
+        new BufferedEnqueuer(queue, directEnqueuer, config, dataDir, flusher);
+    bufferedEnqueuer.open();
+    return bufferedEnqueuer;
+  }
+}
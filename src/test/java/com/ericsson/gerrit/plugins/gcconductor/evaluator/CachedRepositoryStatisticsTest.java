@@ -0,0 +1,155 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.ericsson.gerrit.plugins.gcconductor.evaluator;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.ericsson.gerrit.plugins.gcconductor.DirectRepositoryStatistics;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.internal.storage.file.FileRepository;
+import org.eclipse.jgit.internal.storage.file.GC.RepoStatistics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CachedRepositoryStatisticsTest {
+  private static final String PLUGIN_NAME = "gc-conductor";
+  private static final int CACHE_SIZE = 10;
+  private static final long WATCH_TIMEOUT_MS = TimeUnit.SECONDS.toMillis(30);
+  private static final int RACE_ITERATIONS = 2000;
+
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Mock private DirectRepositoryStatistics directStatistics;
+  @Mock private EvaluatorConfig config;
+
+  private FileRepository repository;
+  private CachedRepositoryStatistics statistics;
+
+  @Before
+  public void setUp() throws Exception {
+    File directory = tempFolder.newFolder("someRepo.git");
+    try (Git git = Git.init().setBare(true).setDirectory(directory).call()) {
+      repository = (FileRepository) git.getRepository();
+    }
+    when(directStatistics.get(repository)).thenAnswer(invocation -> new RepoStatistics());
+  }
+
+  @After
+  public void tearDown() {
+    if (statistics != null) {
+      statistics.stop();
+    }
+  }
+
+  @Test
+  public void statisticsShouldBeCached() throws Exception {
+    start(CACHE_SIZE);
+    RepoStatistics repoStatistics = statistics.get(repository);
+    assertThat(statistics.get(repository)).isSameInstanceAs(repoStatistics);
+    verify(directStatistics).get(repository);
+  }
+
+  @Test
+  public void invalidatedStatisticsShouldBeReadAgain() throws Exception {
+    start(CACHE_SIZE);
+    RepoStatistics repoStatistics = statistics.get(repository);
+    statistics.invalidate(repository.getDirectory().getAbsolutePath());
+    assertThat(statistics.size()).isEqualTo(0);
+    assertThat(statistics.get(repository)).isNotSameInstanceAs(repoStatistics);
+    verify(directStatistics, times(2)).get(repository);
+  }
+
+  @Test
+  public void changesOfPackDirectoryShouldInvalidateStatistics() throws Exception {
+    start(CACHE_SIZE);
+    statistics.get(repository);
+    assertThat(statistics.size()).isEqualTo(1);
+
+    File packDirectory = repository.getObjectDatabase().getPackDirectory();
+    Files.createFile(packDirectory.toPath().resolve("pack-0123456789.pack"));
+    long deadline = System.currentTimeMillis() + WATCH_TIMEOUT_MS;
+    while (statistics.size() != 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertThat(statistics.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void statisticsCachedWhileInvalidatedShouldStillBeWatched() throws Exception {
+    start(CACHE_SIZE);
+    String repositoryPath = repository.getDirectory().getAbsolutePath();
+    Thread invalidator =
+        new Thread(
+            () -> {
+              for (int i = 0; i < RACE_ITERATIONS; i++) {
+                statistics.invalidate(repositoryPath);
+              }
+            });
+    invalidator.start();
+    for (int i = 0; i < RACE_ITERATIONS; i++) {
+      statistics.get(repository);
+    }
+    invalidator.join();
+    statistics.get(repository);
+    assertThat(statistics.size()).isEqualTo(1);
+
+    // the cached statistics share the watch key of the removed ones, which must not be cancelled
+    File packDirectory = repository.getObjectDatabase().getPackDirectory();
+    Files.createFile(packDirectory.toPath().resolve("pack-0123456789.pack"));
+    long deadline = System.currentTimeMillis() + WATCH_TIMEOUT_MS;
+    while (statistics.size() != 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertThat(statistics.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void statisticsShouldNotBeCachedWhenCacheIsDisabled() throws Exception {
+    start(0);
+    statistics.get(repository);
+    statistics.get(repository);
+    verify(directStatistics, times(2)).get(repository);
+  }
+
+  @Test
+  public void statisticsShouldNotBeCachedOnceStopped() throws Exception {
+    start(CACHE_SIZE);
+    statistics.get(repository);
+    statistics.stop();
+    assertThat(statistics.size()).isEqualTo(0);
+    statistics.get(repository);
+    statistics.get(repository);
+    verify(directStatistics, times(3)).get(repository);
+  }
+
+  private void start(int cacheSize) {
+    when(config.getStatisticsCacheSize()).thenReturn(cacheSize);
+    statistics = new CachedRepositoryStatistics(directStatistics, config, PLUGIN_NAME);
+    statistics.start();
+  }
+}
@@ -0,0 +1,111 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.ericsson.gerrit.plugins.gcconductor.evaluator;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class EvaluationQueueTest {
+
+  @Mock private ScheduledExecutorService executor;
+  @Mock private EvaluatorConfig config;
+
+  private final List<Runnable> threads = new ArrayList<>();
+  private final List<String> ran = new ArrayList<>();
+
+  private EvaluationQueue newQueue(int capacity) {
+    when(config.getEvaluationQueueCapacity()).thenReturn(capacity);
+    doAnswer(
+            invocation -> {
+              threads.add(invocation.getArgument(0));
+              return null;
+            })
+        .when(executor)
+        .execute(any(Runnable.class));
+    return new EvaluationQueue(executor, config, new DisabledMetricMaker());
+  }
+
+  private Runnable task(String name) {
+    return () -> ran.add(name);
+  }
+
+  private void runThreads() {
+    threads.forEach(Runnable::run);
+  }
+
+  @Test
+  public void tasksShouldRunByPriority() {
+    EvaluationQueue queue = newQueue(10);
+    queue.submit(task("low"), 0);
+    queue.submit(task("high"), 2);
+    queue.submit(task("medium"), 1);
+    assertThat(queue.size()).isEqualTo(3);
+
+    runThreads();
+    assertThat(ran).containsExactly("high", "medium", "low").inOrder();
+    assertThat(queue.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void tasksWithSamePriorityShouldRunBySubmissionOrder() {
+    EvaluationQueue queue = newQueue(10);
+    queue.submit(task("first"), 1);
+    queue.submit(task("second"), 1);
+    queue.submit(task("third"), 1);
+
+    runThreads();
+    assertThat(ran).containsExactly("first", "second", "third").inOrder();
+  }
+
+  @Test
+  public void lowestPriorityTaskShouldBeShedWhenFull() {
+    EvaluationQueue queue = newQueue(1);
+    ListenableFuture<?> low = queue.submit(task("low"), 0);
+    ListenableFuture<?> high = queue.submit(task("high"), 1);
+    assertThat(low.isCancelled()).isTrue();
+    assertThat(queue.size()).isEqualTo(1);
+    assertThat(threads).hasSize(1);
+
+    runThreads();
+    assertThat(ran).containsExactly("high");
+    assertThat(high.isDone()).isTrue();
+    assertThat(high.isCancelled()).isFalse();
+  }
+
+  @Test
+  public void submittedTaskShouldBeShedWhenFullOfHigherPriorities() {
+    EvaluationQueue queue = newQueue(1);
+    ListenableFuture<?> first = queue.submit(task("first"), 1);
+    ListenableFuture<?> second = queue.submit(task("second"), 1);
+    assertThat(second.isCancelled()).isTrue();
+    assertThat(first.isDone()).isFalse();
+
+    runThreads();
+    assertThat(ran).containsExactly("first");
+  }
+}
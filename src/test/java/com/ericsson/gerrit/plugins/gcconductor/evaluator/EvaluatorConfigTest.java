@@ -14,6 +14,8 @@
 
 package com.ericsson.gerrit.plugins.gcconductor.evaluator;
 
+import static com.ericsson.gerrit.plugins.gcconductor.CommonConfig.AGE_WEIGHT_DEFAULT;
+import static com.ericsson.gerrit.plugins.gcconductor.CommonConfig.AGE_WEIGHT_KEY;
 import static com.ericsson.gerrit.plugins.gcconductor.CommonConfig.DB_NAME_KEY;
 import static com.ericsson.gerrit.plugins.gcconductor.CommonConfig.DB_PASS_KEY;
 import static com.ericsson.gerrit.plugins.gcconductor.CommonConfig.DB_URL_KEY;
@@ -23,17 +25,36 @@ import static com.ericsson.gerrit.plugins.gcconductor.CommonConfig.DEFAULT_DB_NA
 import static com.ericsson.gerrit.plugins.gcconductor.CommonConfig.DEFAULT_DB_PASSWORD;
 import static com.ericsson.gerrit.plugins.gcconductor.CommonConfig.DEFAULT_DB_URL;
 import static com.ericsson.gerrit.plugins.gcconductor.CommonConfig.DEFAULT_DB_USERNAME;
+import static com.ericsson.gerrit.plugins.gcconductor.CommonConfig.DEFAULT_QUEUE_PATH;
 import static com.ericsson.gerrit.plugins.gcconductor.CommonConfig.LOOSE_DEFAULT;
+import static com.ericsson.gerrit.plugins.gcconductor.CommonConfig.LOOSE_EVALUATION_DEFAULT;
+import static com.ericsson.gerrit.plugins.gcconductor.CommonConfig.LOOSE_EVALUATION_KEY;
 import static com.ericsson.gerrit.plugins.gcconductor.CommonConfig.LOOSE_KEY;
 import static com.ericsson.gerrit.plugins.gcconductor.CommonConfig.PACKED_DEFAULT;
 import static com.ericsson.gerrit.plugins.gcconductor.CommonConfig.PACKED_KEY;
+import static com.ericsson.gerrit.plugins.gcconductor.CommonConfig.PACK_WEIGHT_DEFAULT;
+import static com.ericsson.gerrit.plugins.gcconductor.CommonConfig.PACK_WEIGHT_KEY;
+import static com.ericsson.gerrit.plugins.gcconductor.CommonConfig.QUEUE_PATH_KEY;
+import static com.ericsson.gerrit.plugins.gcconductor.evaluator.EvaluatorConfig.BUFFER_SIZE_DEFAULT;
+import static com.ericsson.gerrit.plugins.gcconductor.evaluator.EvaluatorConfig.BUFFER_SIZE_KEY;
+import static com.ericsson.gerrit.plugins.gcconductor.evaluator.EvaluatorConfig.EVALUATION_QUEUE_CAPACITY_DEFAULT;
+import static com.ericsson.gerrit.plugins.gcconductor.evaluator.EvaluatorConfig.EVALUATION_QUEUE_CAPACITY_KEY;
 import static com.ericsson.gerrit.plugins.gcconductor.evaluator.EvaluatorConfig.EXPIRE_TIME_RECHECK_DEFAULT;
 import static com.ericsson.gerrit.plugins.gcconductor.evaluator.EvaluatorConfig.EXPIRE_TIME_RECHECK_KEY;
+import static com.ericsson.gerrit.plugins.gcconductor.evaluator.EvaluatorConfig.REF_UPDATE_QUIET_PERIOD_DEFAULT;
+import static com.ericsson.gerrit.plugins.gcconductor.evaluator.EvaluatorConfig.REF_UPDATE_QUIET_PERIOD_KEY;
+import static com.ericsson.gerrit.plugins.gcconductor.evaluator.EvaluatorConfig.SCHEDULED_EVALUATION_INTERVAL_KEY;
+import static com.ericsson.gerrit.plugins.gcconductor.evaluator.EvaluatorConfig.SCHEDULED_EVALUATION_RATE_DEFAULT;
+import static com.ericsson.gerrit.plugins.gcconductor.evaluator.EvaluatorConfig.SCHEDULED_EVALUATION_RATE_KEY;
+import static com.ericsson.gerrit.plugins.gcconductor.evaluator.EvaluatorConfig.STATISTICS_CACHE_SIZE_DEFAULT;
+import static com.ericsson.gerrit.plugins.gcconductor.evaluator.EvaluatorConfig.STATISTICS_CACHE_SIZE_KEY;
 import static com.ericsson.gerrit.plugins.gcconductor.evaluator.EvaluatorConfig.THREAD_POOL_DEFAULT;
 import static com.ericsson.gerrit.plugins.gcconductor.evaluator.EvaluatorConfig.THREAD_POOL_KEY;
 import static com.google.common.truth.Truth.assertThat;
 import static org.mockito.Mockito.when;
 
+import com.ericsson.gerrit.plugins.gcconductor.CommonConfig.LooseEvaluation;
+import com.ericsson.gerrit.plugins.gcconductor.ScoreWeights;
 import com.google.gerrit.server.config.ConfigUtil;
 import com.google.gerrit.server.config.PluginConfig;
 import java.util.concurrent.TimeUnit;
@@ -47,13 +68,21 @@ public class EvaluatorConfigTest {
 
   private static final int PACKED_NOT_DEFAULT = 41;
   private static final int LOOSE_NOT_DEFAULT = 401;
+  private static final LooseEvaluation LOOSE_EVALUATION_NOT_DEFAULT = LooseEvaluation.SAMPLING;
   private static final String URL_NOT_DEFAULT = "jdbc:postgresql:test/";
   private static final String DATABASE_NAME_NOT_DEFAULT = "jdbc:postgresql:test/";
   private static final String URL_OPTION_NOT_DEFAULT = "?someOption=false";
   private static final String USER_NOT_DEFAULT = "user";
   private static final String PASS_NOT_DEFAULT = "pass";
+  private static final String QUEUE_PATH_NOT_DEFAULT = "/path/to/queue";
   private static final int THREAD_POOL_NOT_DEFAULT = 5;
   private static final String EXPIRE_TIME_RECHECK_NOT_DEFAULT = "10s";
+  private static final int BUFFER_SIZE_NOT_DEFAULT = 100;
+  private static final int STATISTICS_CACHE_SIZE_NOT_DEFAULT = 50;
+  private static final String REF_UPDATE_QUIET_PERIOD_NOT_DEFAULT = "0";
+  private static final int EVALUATION_QUEUE_CAPACITY_NOT_DEFAULT = 10;
+  private static final String SCHEDULED_EVALUATION_INTERVAL_NOT_DEFAULT = "1 day";
+  private static final int SCHEDULED_EVALUATION_RATE_NOT_DEFAULT = 2;
   private static final boolean USING_DEFAULT_VALUES = true;
   private static final boolean USING_CUSTOM_VALUES = false;
 
@@ -65,14 +94,25 @@ public class EvaluatorConfigTest {
     buildMocks(USING_DEFAULT_VALUES);
     assertThat(configuration.getPackedThreshold()).isEqualTo(PACKED_DEFAULT);
     assertThat(configuration.getLooseThreshold()).isEqualTo(LOOSE_DEFAULT);
+    assertThat(configuration.getLooseEvaluation()).isEqualTo(LOOSE_EVALUATION_DEFAULT);
     assertThat(configuration.getDatabaseUrl()).isEqualTo(DEFAULT_DB_URL);
     assertThat(configuration.getDatabaseName()).isEqualTo(DEFAULT_DB_NAME);
     assertThat(configuration.getDatabaseUrlOptions()).isEmpty();
     assertThat(configuration.getUsername()).isEqualTo(DEFAULT_DB_USERNAME);
     assertThat(configuration.getPassword()).isEqualTo(DEFAULT_DB_PASSWORD);
+    assertThat(configuration.getQueuePath()).isEqualTo(DEFAULT_QUEUE_PATH);
     assertThat(configuration.getThreadPoolSize()).isEqualTo(THREAD_POOL_DEFAULT);
     assertThat(configuration.getExpireTimeRecheck())
         .isEqualTo(convertTimeUnitStringToMilliseconds(EXPIRE_TIME_RECHECK_DEFAULT));
+    assertThat(configuration.getBufferSize()).isEqualTo(BUFFER_SIZE_DEFAULT);
+    assertThat(configuration.getStatisticsCacheSize()).isEqualTo(STATISTICS_CACHE_SIZE_DEFAULT);
+    assertThat(configuration.getRefUpdateQuietPeriod())
+        .isEqualTo(convertTimeUnitStringToMilliseconds(REF_UPDATE_QUIET_PERIOD_DEFAULT));
+    assertThat(configuration.getEvaluationQueueCapacity())
+        .isEqualTo(EVALUATION_QUEUE_CAPACITY_DEFAULT);
+    assertThat(configuration.getScheduledEvaluationInterval()).isEqualTo(0);
+    assertThat(configuration.getScheduledEvaluationRate())
+        .isEqualTo(SCHEDULED_EVALUATION_RATE_DEFAULT);
   }
 
   @Test
@@ -80,20 +120,104 @@ public class EvaluatorConfigTest {
     buildMocks(USING_CUSTOM_VALUES);
     assertThat(configuration.getPackedThreshold()).isEqualTo(PACKED_NOT_DEFAULT);
     assertThat(configuration.getLooseThreshold()).isEqualTo(LOOSE_NOT_DEFAULT);
+    assertThat(configuration.getLooseEvaluation()).isEqualTo(LOOSE_EVALUATION_NOT_DEFAULT);
     assertThat(configuration.getDatabaseUrl()).isEqualTo(URL_NOT_DEFAULT);
     assertThat(configuration.getDatabaseName()).isEqualTo(DATABASE_NAME_NOT_DEFAULT);
     assertThat(configuration.getDatabaseUrlOptions()).isEqualTo(URL_OPTION_NOT_DEFAULT);
     assertThat(configuration.getUsername()).isEqualTo(USER_NOT_DEFAULT);
     assertThat(configuration.getPassword()).isEqualTo(PASS_NOT_DEFAULT);
+    assertThat(configuration.getQueuePath()).isEqualTo(QUEUE_PATH_NOT_DEFAULT);
     assertThat(configuration.getThreadPoolSize()).isEqualTo(THREAD_POOL_NOT_DEFAULT);
     assertThat(configuration.getExpireTimeRecheck())
         .isEqualTo(convertTimeUnitStringToMilliseconds(EXPIRE_TIME_RECHECK_NOT_DEFAULT));
+    assertThat(configuration.getBufferSize()).isEqualTo(BUFFER_SIZE_NOT_DEFAULT);
+    assertThat(configuration.getStatisticsCacheSize())
+        .isEqualTo(STATISTICS_CACHE_SIZE_NOT_DEFAULT);
+    assertThat(configuration.getRefUpdateQuietPeriod()).isEqualTo(0);
+    assertThat(configuration.getEvaluationQueueCapacity())
+        .isEqualTo(EVALUATION_QUEUE_CAPACITY_NOT_DEFAULT);
+    assertThat(configuration.getScheduledEvaluationInterval())
+        .isEqualTo(convertTimeUnitStringToMilliseconds(SCHEDULED_EVALUATION_INTERVAL_NOT_DEFAULT));
+    assertThat(configuration.getScheduledEvaluationRate())
+        .isEqualTo(SCHEDULED_EVALUATION_RATE_NOT_DEFAULT);
+  }
+
+  @Test
+  public void testNegativeBufferSizeDisablesBuffer() {
+    when(pluginConfigMock.getString(EXPIRE_TIME_RECHECK_KEY, EXPIRE_TIME_RECHECK_DEFAULT))
+        .thenReturn(EXPIRE_TIME_RECHECK_DEFAULT);
+    when(pluginConfigMock.getString(REF_UPDATE_QUIET_PERIOD_KEY, REF_UPDATE_QUIET_PERIOD_DEFAULT))
+        .thenReturn(REF_UPDATE_QUIET_PERIOD_DEFAULT);
+    when(pluginConfigMock.getString(DB_URL_KEY, DEFAULT_DB_URL)).thenReturn(DEFAULT_DB_URL);
+    when(pluginConfigMock.getInt(BUFFER_SIZE_KEY, BUFFER_SIZE_DEFAULT)).thenReturn(-1);
+
+    configuration = new EvaluatorConfig(pluginConfigMock);
+    assertThat(configuration.getBufferSize()).isEqualTo(0);
+  }
+
+  @Test
+  public void testNegativeStatisticsCacheSizeDisablesCache() {
+    when(pluginConfigMock.getString(EXPIRE_TIME_RECHECK_KEY, EXPIRE_TIME_RECHECK_DEFAULT))
+        .thenReturn(EXPIRE_TIME_RECHECK_DEFAULT);
+    when(pluginConfigMock.getString(REF_UPDATE_QUIET_PERIOD_KEY, REF_UPDATE_QUIET_PERIOD_DEFAULT))
+        .thenReturn(REF_UPDATE_QUIET_PERIOD_DEFAULT);
+    when(pluginConfigMock.getString(DB_URL_KEY, DEFAULT_DB_URL)).thenReturn(DEFAULT_DB_URL);
+    when(pluginConfigMock.getInt(STATISTICS_CACHE_SIZE_KEY, STATISTICS_CACHE_SIZE_DEFAULT))
+        .thenReturn(-1);
+
+    configuration = new EvaluatorConfig(pluginConfigMock);
+    assertThat(configuration.getStatisticsCacheSize()).isEqualTo(0);
+  }
+
+  @Test
+  public void testEvaluationQueueCapacityIsAtLeastOne() {
+    when(pluginConfigMock.getString(EXPIRE_TIME_RECHECK_KEY, EXPIRE_TIME_RECHECK_DEFAULT))
+        .thenReturn(EXPIRE_TIME_RECHECK_DEFAULT);
+    when(pluginConfigMock.getString(REF_UPDATE_QUIET_PERIOD_KEY, REF_UPDATE_QUIET_PERIOD_DEFAULT))
+        .thenReturn(REF_UPDATE_QUIET_PERIOD_DEFAULT);
+    when(pluginConfigMock.getString(DB_URL_KEY, DEFAULT_DB_URL)).thenReturn(DEFAULT_DB_URL);
+    when(pluginConfigMock.getInt(EVALUATION_QUEUE_CAPACITY_KEY, EVALUATION_QUEUE_CAPACITY_DEFAULT))
+        .thenReturn(0);
+
+    configuration = new EvaluatorConfig(pluginConfigMock);
+    assertThat(configuration.getEvaluationQueueCapacity()).isEqualTo(1);
+  }
+
+  @Test
+  public void testScheduledEvaluationRateIsAtLeastOne() {
+    when(pluginConfigMock.getString(EXPIRE_TIME_RECHECK_KEY, EXPIRE_TIME_RECHECK_DEFAULT))
+        .thenReturn(EXPIRE_TIME_RECHECK_DEFAULT);
+    when(pluginConfigMock.getString(REF_UPDATE_QUIET_PERIOD_KEY, REF_UPDATE_QUIET_PERIOD_DEFAULT))
+        .thenReturn(REF_UPDATE_QUIET_PERIOD_DEFAULT);
+    when(pluginConfigMock.getString(DB_URL_KEY, DEFAULT_DB_URL)).thenReturn(DEFAULT_DB_URL);
+    when(pluginConfigMock.getInt(SCHEDULED_EVALUATION_RATE_KEY, SCHEDULED_EVALUATION_RATE_DEFAULT))
+        .thenReturn(0);
+
+    configuration = new EvaluatorConfig(pluginConfigMock);
+    assertThat(configuration.getScheduledEvaluationRate()).isEqualTo(1);
+  }
+
+  @Test
+  public void testScoreWeights() {
+    when(pluginConfigMock.getString(EXPIRE_TIME_RECHECK_KEY, EXPIRE_TIME_RECHECK_DEFAULT))
+        .thenReturn(EXPIRE_TIME_RECHECK_DEFAULT);
+    when(pluginConfigMock.getString(REF_UPDATE_QUIET_PERIOD_KEY, REF_UPDATE_QUIET_PERIOD_DEFAULT))
+        .thenReturn(REF_UPDATE_QUIET_PERIOD_DEFAULT);
+    when(pluginConfigMock.getString(DB_URL_KEY, DEFAULT_DB_URL)).thenReturn(DEFAULT_DB_URL);
+    when(pluginConfigMock.getInt(PACK_WEIGHT_KEY, PACK_WEIGHT_DEFAULT)).thenReturn(3);
+    when(pluginConfigMock.getInt(AGE_WEIGHT_KEY, AGE_WEIGHT_DEFAULT)).thenReturn(7);
+
+    configuration = new EvaluatorConfig(pluginConfigMock);
+    // weights not stubbed are read as 0 from the mock
+    assertThat(configuration.getScoreWeights()).isEqualTo(new ScoreWeights(3, 0, 0, 0, 0, 7));
   }
 
   @Test
   public void testDatabaseUrlAlwaysEndWithSlash() {
     when(pluginConfigMock.getString(EXPIRE_TIME_RECHECK_KEY, EXPIRE_TIME_RECHECK_DEFAULT))
         .thenReturn(EXPIRE_TIME_RECHECK_DEFAULT);
+    when(pluginConfigMock.getString(REF_UPDATE_QUIET_PERIOD_KEY, REF_UPDATE_QUIET_PERIOD_DEFAULT))
+        .thenReturn(REF_UPDATE_QUIET_PERIOD_DEFAULT);
     when(pluginConfigMock.getString(DB_URL_KEY, DEFAULT_DB_URL)).thenReturn("someUrl");
 
     configuration = new EvaluatorConfig(pluginConfigMock);
@@ -105,6 +229,8 @@ public class EvaluatorConfigTest {
         .thenReturn(useDefaults ? PACKED_DEFAULT : PACKED_NOT_DEFAULT);
     when(pluginConfigMock.getInt(LOOSE_KEY, LOOSE_DEFAULT))
         .thenReturn(useDefaults ? LOOSE_DEFAULT : LOOSE_NOT_DEFAULT);
+    when(pluginConfigMock.getEnum(LOOSE_EVALUATION_KEY, LOOSE_EVALUATION_DEFAULT))
+        .thenReturn(useDefaults ? LOOSE_EVALUATION_DEFAULT : LOOSE_EVALUATION_NOT_DEFAULT);
     when(pluginConfigMock.getString(DB_URL_KEY, DEFAULT_DB_URL))
         .thenReturn(useDefaults ? DEFAULT_DB_URL : URL_NOT_DEFAULT);
     when(pluginConfigMock.getString(DB_NAME_KEY, DEFAULT_DB_NAME))
@@ -115,10 +241,30 @@ public class EvaluatorConfigTest {
         .thenReturn(useDefaults ? DEFAULT_DB_USERNAME : USER_NOT_DEFAULT);
     when(pluginConfigMock.getString(DB_PASS_KEY, DEFAULT_DB_PASSWORD))
         .thenReturn(useDefaults ? DEFAULT_DB_PASSWORD : PASS_NOT_DEFAULT);
+    when(pluginConfigMock.getString(QUEUE_PATH_KEY, DEFAULT_QUEUE_PATH))
+        .thenReturn(useDefaults ? DEFAULT_QUEUE_PATH : QUEUE_PATH_NOT_DEFAULT);
     when(pluginConfigMock.getInt(THREAD_POOL_KEY, THREAD_POOL_DEFAULT))
         .thenReturn(useDefaults ? THREAD_POOL_DEFAULT : THREAD_POOL_NOT_DEFAULT);
     when(pluginConfigMock.getString(EXPIRE_TIME_RECHECK_KEY, EXPIRE_TIME_RECHECK_DEFAULT))
         .thenReturn(useDefaults ? EXPIRE_TIME_RECHECK_DEFAULT : EXPIRE_TIME_RECHECK_NOT_DEFAULT);
+    when(pluginConfigMock.getInt(BUFFER_SIZE_KEY, BUFFER_SIZE_DEFAULT))
+        .thenReturn(useDefaults ? BUFFER_SIZE_DEFAULT : BUFFER_SIZE_NOT_DEFAULT);
+    when(pluginConfigMock.getInt(STATISTICS_CACHE_SIZE_KEY, STATISTICS_CACHE_SIZE_DEFAULT))
+        .thenReturn(
+            useDefaults ? STATISTICS_CACHE_SIZE_DEFAULT : STATISTICS_CACHE_SIZE_NOT_DEFAULT);
+    when(pluginConfigMock.getString(REF_UPDATE_QUIET_PERIOD_KEY, REF_UPDATE_QUIET_PERIOD_DEFAULT))
+        .thenReturn(
+            useDefaults ? REF_UPDATE_QUIET_PERIOD_DEFAULT : REF_UPDATE_QUIET_PERIOD_NOT_DEFAULT);
+    when(pluginConfigMock.getInt(EVALUATION_QUEUE_CAPACITY_KEY, EVALUATION_QUEUE_CAPACITY_DEFAULT))
+        .thenReturn(
+            useDefaults ? EVALUATION_QUEUE_CAPACITY_DEFAULT : EVALUATION_QUEUE_CAPACITY_NOT_DEFAULT);
+    when(pluginConfigMock.getString(SCHEDULED_EVALUATION_INTERVAL_KEY))
+        .thenReturn(useDefaults ? null : SCHEDULED_EVALUATION_INTERVAL_NOT_DEFAULT);
+    when(pluginConfigMock.getInt(SCHEDULED_EVALUATION_RATE_KEY, SCHEDULED_EVALUATION_RATE_DEFAULT))
+        .thenReturn(
+            useDefaults
+                ? SCHEDULED_EVALUATION_RATE_DEFAULT
+                : SCHEDULED_EVALUATION_RATE_NOT_DEFAULT);
 
     configuration = new EvaluatorConfig(pluginConfigMock);
   }
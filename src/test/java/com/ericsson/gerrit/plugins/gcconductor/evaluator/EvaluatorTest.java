@@ -14,6 +14,14 @@
 
 package com.ericsson.gerrit.plugins.gcconductor.evaluator;
 
+import static com.google.common.truth.Truth.assertThat;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
@@ -23,19 +31,22 @@ import static org.mockito.Mockito.when;
 
 import com.ericsson.gerrit.plugins.gcconductor.EvaluationTask;
 import com.ericsson.gerrit.plugins.gcconductor.EvaluationTask.Factory;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.SettableFuture;
 import com.google.gerrit.entities.Project;
 import com.google.gerrit.extensions.events.GitReferenceUpdatedListener;
+import com.google.gerrit.metrics.DisabledMetricMaker;
 import com.google.gerrit.server.git.GitRepositoryManager;
 import java.io.File;
 import java.io.IOException;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
 import org.eclipse.jgit.errors.RepositoryNotFoundException;
 import org.eclipse.jgit.lib.Config;
 import org.eclipse.jgit.lib.Repository;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
@@ -44,12 +55,16 @@ public class EvaluatorTest {
   private static final String REPOSITORY_PATH = "/path/someRepo.git";
   private static final String REPOSITORY_PATH_OTHER = "/path/otherRepo.git";
   private static final Project.NameKey NAME_KEY = Project.nameKey("testProject");
+  private static final Project.NameKey NAME_KEY_OTHER = Project.nameKey("otherProject");
 
   @Mock private GitReferenceUpdatedListener.Event event;
+  @Mock private GitReferenceUpdatedListener.Event eventOther;
   @Mock private GitRepositoryManager repoManager;
   @Mock private Repository repository;
   @Mock private Repository repositoryOther;
-  @Mock private ExecutorService executor;
+  @Mock private ScheduledExecutorService executor;
+  @Mock private EvaluationQueue evaluationQueue;
+  @Mock private CachedRepositoryStatistics statistics;
   @Mock private EvaluatorConfig config;
   @Mock private Config gerritConfig;
 
@@ -63,6 +78,7 @@ public class EvaluatorTest {
     when(event.getProjectName()).thenReturn(NAME_KEY.get());
 
     when(config.getExpireTimeRecheck()).thenReturn(0L);
+    when(config.getRefUpdateQuietPeriod()).thenReturn(0L);
     when(gerritConfig.getInt(
             "receive", null, "threadPoolSize", Runtime.getRuntime().availableProcessors()))
         .thenReturn(1);
@@ -70,9 +86,9 @@ public class EvaluatorTest {
     when(repository.getDirectory()).thenReturn(new File(REPOSITORY_PATH));
     when(repositoryOther.getDirectory()).thenReturn(new File(REPOSITORY_PATH_OTHER));
 
-    taskSamePathCompleted = new EvaluationTask(null, null, null, REPOSITORY_PATH);
-    taskSamePathNotCompleted = new EvaluationTask(null, null, null, REPOSITORY_PATH);
-    taskDifferentPath = new EvaluationTask(null, null, null, REPOSITORY_PATH_OTHER);
+    taskSamePathCompleted = new EvaluationTask(null, null, null, null, null, REPOSITORY_PATH);
+    taskSamePathNotCompleted = new EvaluationTask(null, null, null, null, null, REPOSITORY_PATH);
+    taskDifferentPath = new EvaluationTask(null, null, null, null, null, REPOSITORY_PATH_OTHER);
 
     Factory eventTaskFactory = mock(Factory.class);
     when(eventTaskFactory.create(REPOSITORY_PATH))
@@ -80,19 +96,34 @@ public class EvaluatorTest {
         .thenReturn(taskSamePathCompleted);
     when(eventTaskFactory.create(REPOSITORY_PATH_OTHER)).thenReturn(taskDifferentPath);
 
-    when(executor.submit(taskSamePathCompleted))
-        .thenReturn(CompletableFuture.completedFuture(null));
-    when(executor.submit(taskSamePathNotCompleted)).thenReturn(new CompletableFuture<>());
-    when(executor.submit(taskDifferentPath)).thenReturn(CompletableFuture.completedFuture(null));
+    // tasks for the same path are equal, so their futures follow the order they are created in
+    doReturn(SettableFuture.create(), Futures.immediateFuture(null))
+        .when(evaluationQueue)
+        .submit(eq(taskSamePathNotCompleted), anyInt());
+    doReturn(Futures.immediateFuture(null))
+        .when(evaluationQueue)
+        .submit(eq(taskDifferentPath), anyInt());
 
-    evaluator = new Evaluator(executor, eventTaskFactory, repoManager, config, gerritConfig);
+    evaluator = newEvaluator(eventTaskFactory);
+  }
+
+  private Evaluator newEvaluator(Factory eventTaskFactory) {
+    return new Evaluator(
+        executor,
+        evaluationQueue,
+        eventTaskFactory,
+        repoManager,
+        statistics,
+        config,
+        gerritConfig,
+        new DisabledMetricMaker());
   }
 
   @Test
   public void onPostUploadShouldCreateTaskOnlyIfPreUploadCalled() {
     evaluator.onPreUpload(repository, null, null, null, null, null);
     evaluator.onPostUpload(null);
-    verify(executor).submit(taskSamePathCompleted);
+    verify(evaluationQueue).submit(eq(taskSamePathCompleted), anyInt());
   }
 
   @Test
@@ -102,7 +133,7 @@ public class EvaluatorTest {
     when(repository.getDirectory()).thenReturn(fileMock);
     evaluator.onPreUpload(repository, null, null, null, null, null);
     evaluator.onPostUpload(null);
-    verify(executor, never()).submit(taskSamePathCompleted);
+    verify(evaluationQueue, never()).submit(eq(taskSamePathCompleted), anyInt());
   }
 
   @Test
@@ -110,7 +141,7 @@ public class EvaluatorTest {
     evaluator.onPreUpload(repository, null, null, null, null, null);
     evaluator.onPostUpload(null);
     evaluator.onPostUpload(null);
-    verify(executor, times(1)).submit(taskSamePathCompleted);
+    verify(evaluationQueue, times(1)).submit(eq(taskSamePathCompleted), anyInt());
   }
 
   @Test
@@ -119,8 +150,8 @@ public class EvaluatorTest {
     evaluator.onPostUpload(null);
     evaluator.onPreUpload(repositoryOther, null, null, null, null, null);
     evaluator.onPostUpload(null);
-    verify(executor, times(1)).submit(taskSamePathCompleted);
-    verify(executor, times(1)).submit(taskDifferentPath);
+    verify(evaluationQueue, times(1)).submit(eq(taskSamePathCompleted), anyInt());
+    verify(evaluationQueue, times(1)).submit(eq(taskDifferentPath), anyInt());
   }
 
   @Test
@@ -129,7 +160,7 @@ public class EvaluatorTest {
     evaluator.onPostUpload(null);
     evaluator.onPreUpload(repository, null, null, null, null, null);
     evaluator.onPostUpload(null);
-    verify(executor, times(1)).submit(taskSamePathCompleted);
+    verify(evaluationQueue, times(1)).submit(eq(taskSamePathCompleted), anyInt());
   }
 
   @Test
@@ -138,7 +169,7 @@ public class EvaluatorTest {
     evaluator.onPostUpload(null);
     evaluator.onPreUpload(repositoryOther, null, null, null, null, null);
     evaluator.onPostUpload(null);
-    verify(executor, times(2)).submit(taskDifferentPath);
+    verify(evaluationQueue, times(2)).submit(eq(taskDifferentPath), anyInt());
   }
 
   @Test
@@ -146,21 +177,58 @@ public class EvaluatorTest {
     when(config.getExpireTimeRecheck()).thenReturn(1000L);
     Factory eventTaskFactory = mock(Factory.class);
     when(eventTaskFactory.create(REPOSITORY_PATH)).thenReturn(taskSamePathCompleted);
-    evaluator = new Evaluator(executor, eventTaskFactory, repoManager, config, gerritConfig);
+    evaluator = newEvaluator(eventTaskFactory);
     evaluator.onPreUpload(repository, null, null, null, null, null);
     evaluator.onPostUpload(null);
     evaluator.onPreUpload(repository, null, null, null, null, null);
     evaluator.onPostUpload(null);
-    verify(executor, times(1)).submit(taskSamePathCompleted);
+    verify(evaluationQueue, times(1)).submit(eq(taskSamePathCompleted), anyInt());
+  }
+
+  @Test
+  public void expiredRecheckEntriesShouldBeDropped() {
+    evaluator.onPreUpload(repository, null, null, null, null, null);
+    evaluator.onPostUpload(null);
+    assertThat(evaluator.recheckEntries()).isEqualTo(0);
+  }
+
+  @Test
+  public void notExpiredRecheckEntriesShouldBeKept() {
+    when(config.getExpireTimeRecheck()).thenReturn(60000L);
+    Factory eventTaskFactory = mock(Factory.class);
+    when(eventTaskFactory.create(REPOSITORY_PATH)).thenReturn(taskSamePathCompleted);
+    evaluator = newEvaluator(eventTaskFactory);
+    evaluator.onPreUpload(repository, null, null, null, null, null);
+    evaluator.onPostUpload(null);
+    assertThat(evaluator.recheckEntries()).isEqualTo(1);
+  }
+
+  @Test
+  public void shedEvaluationsShouldNotBeRecent() {
+    when(config.getExpireTimeRecheck()).thenReturn(60000L);
+    Factory eventTaskFactory = mock(Factory.class);
+    when(eventTaskFactory.create(REPOSITORY_PATH_OTHER)).thenReturn(taskDifferentPath);
+    doReturn(Futures.immediateCancelledFuture())
+        .when(evaluationQueue)
+        .submit(eq(taskDifferentPath), anyInt());
+    evaluator = newEvaluator(eventTaskFactory);
+    evaluator.onPreUpload(repositoryOther, null, null, null, null, null);
+    evaluator.onPostUpload(null);
+    evaluator.onPreUpload(repositoryOther, null, null, null, null, null);
+    evaluator.onPostUpload(null);
+    assertThat(evaluator.recheckEntries()).isEqualTo(0);
+    verify(evaluationQueue, times(2)).submit(eq(taskDifferentPath), anyInt());
   }
 
   @Test
   public void onGitReferenceUpdatedShouldCreateTaskExpired() throws Exception {
-    when(repoManager.openRepository(NAME_KEY)).thenReturn(repository).thenReturn(repositoryOther);
-    evaluator.onGitReferenceUpdated(event);
+    when(eventOther.getProjectName()).thenReturn(NAME_KEY_OTHER.get());
+    when(repoManager.openRepository(NAME_KEY)).thenReturn(repository);
+    when(repoManager.openRepository(NAME_KEY_OTHER)).thenReturn(repositoryOther);
     evaluator.onGitReferenceUpdated(event);
-    verify(executor, times(1)).submit(taskSamePathCompleted);
-    verify(executor, times(1)).submit(taskDifferentPath);
+    evaluator.onGitReferenceUpdated(eventOther);
+    verify(evaluationQueue, times(1)).submit(eq(taskSamePathCompleted), anyInt());
+    verify(evaluationQueue, times(1)).submit(eq(taskDifferentPath), anyInt());
   }
 
   @Test
@@ -168,7 +236,7 @@ public class EvaluatorTest {
     when(repoManager.openRepository(NAME_KEY)).thenReturn(repository);
     evaluator.onGitReferenceUpdated(event);
     evaluator.onGitReferenceUpdated(event);
-    verify(executor, times(1)).submit(taskSamePathCompleted);
+    verify(evaluationQueue, times(1)).submit(eq(taskSamePathCompleted), anyInt());
   }
 
   @Test
@@ -176,7 +244,7 @@ public class EvaluatorTest {
     when(repoManager.openRepository(NAME_KEY)).thenReturn(repositoryOther);
     evaluator.onGitReferenceUpdated(event);
     evaluator.onGitReferenceUpdated(event);
-    verify(executor, times(2)).submit(taskDifferentPath);
+    verify(evaluationQueue, times(2)).submit(eq(taskDifferentPath), anyInt());
   }
 
   @Test
@@ -185,23 +253,102 @@ public class EvaluatorTest {
     when(config.getExpireTimeRecheck()).thenReturn(1000L);
     Factory eventTaskFactory = mock(Factory.class);
     when(eventTaskFactory.create(REPOSITORY_PATH)).thenReturn(taskSamePathCompleted);
-    evaluator = new Evaluator(executor, eventTaskFactory, repoManager, config, gerritConfig);
+    evaluator = newEvaluator(eventTaskFactory);
+    evaluator.onGitReferenceUpdated(event);
+    evaluator.onGitReferenceUpdated(event);
+    verify(evaluationQueue, times(1)).submit(eq(taskSamePathCompleted), anyInt());
+  }
+
+  @Test
+  public void onGitReferenceUpdatedShouldOpenRepositoryOnlyOnce() throws Exception {
+    when(repoManager.openRepository(NAME_KEY)).thenReturn(repositoryOther);
+    evaluator.onGitReferenceUpdated(event);
+    evaluator.onGitReferenceUpdated(event);
+    verify(repoManager, times(1)).openRepository(NAME_KEY);
+    verify(statistics, times(2)).invalidate(REPOSITORY_PATH_OTHER);
+  }
+
+  @Test
+  public void onGitReferenceUpdatedShouldWaitForQuietPeriod() throws Exception {
+    when(config.getRefUpdateQuietPeriod()).thenReturn(60000L);
+    evaluator = newEvaluator(mock(Factory.class));
+    evaluator.onGitReferenceUpdated(event);
+    evaluator.onGitReferenceUpdated(event);
+    verify(executor, times(1)).schedule(any(Runnable.class), anyLong(), eq(NANOSECONDS));
+    verify(repoManager, never()).openRepository(NAME_KEY);
+  }
+
+  @Test
+  public void onGitReferenceUpdatedShouldWaitAgainIfUpdatedDuringQuietPeriod() throws Exception {
+    when(config.getRefUpdateQuietPeriod()).thenReturn(60000L);
+    evaluator = newEvaluator(mock(Factory.class));
+    evaluator.onGitReferenceUpdated(event);
+    ArgumentCaptor<Runnable> endOfBurst = ArgumentCaptor.forClass(Runnable.class);
+    verify(executor).schedule(endOfBurst.capture(), anyLong(), eq(NANOSECONDS));
+    evaluator.onGitReferenceUpdated(event);
+    endOfBurst.getValue().run();
+    verify(executor, times(2)).schedule(any(Runnable.class), anyLong(), eq(NANOSECONDS));
+    verify(repoManager, never()).openRepository(NAME_KEY);
+  }
+
+  @Test
+  public void onGitReferenceUpdatedShouldCreateSingleTaskAtEndOfBurst() throws Exception {
+    when(repoManager.openRepository(NAME_KEY)).thenReturn(repository);
+    when(config.getRefUpdateQuietPeriod()).thenReturn(1L);
+    Factory eventTaskFactory = mock(Factory.class);
+    when(eventTaskFactory.create(REPOSITORY_PATH)).thenReturn(taskSamePathCompleted);
+    evaluator = newEvaluator(eventTaskFactory);
     evaluator.onGitReferenceUpdated(event);
     evaluator.onGitReferenceUpdated(event);
-    verify(executor, times(1)).submit(taskSamePathCompleted);
+    ArgumentCaptor<Runnable> endOfBurst = ArgumentCaptor.forClass(Runnable.class);
+    verify(executor).schedule(endOfBurst.capture(), anyLong(), eq(NANOSECONDS));
+    MILLISECONDS.sleep(10);
+    endOfBurst.getValue().run();
+    verify(statistics).invalidate(REPOSITORY_PATH);
+    verify(evaluationQueue).submit(eq(taskSamePathCompleted), eq(2));
   }
 
   @Test
   public void onGitReferenceUpdatedThrowsRepositoryNotFoundException() throws Exception {
     doThrow(new RepositoryNotFoundException("")).when(repoManager).openRepository(NAME_KEY);
     evaluator.onGitReferenceUpdated(event);
-    verify(executor, never()).submit(taskSamePathCompleted);
+    verify(evaluationQueue, never()).submit(eq(taskSamePathCompleted), anyInt());
+  }
+
+  @Test
+  public void onGitReferenceUpdatedShouldInvalidateStatistics() throws Exception {
+    when(repoManager.openRepository(NAME_KEY)).thenReturn(repository);
+    evaluator.onGitReferenceUpdated(event);
+    verify(statistics).invalidate(REPOSITORY_PATH);
+  }
+
+  @Test
+  public void onPostUploadShouldNotInvalidateStatistics() {
+    evaluator.onPreUpload(repository, null, null, null, null, null);
+    evaluator.onPostUpload(null);
+    verify(statistics, never()).invalidate(REPOSITORY_PATH);
+  }
+
+  @Test
+  public void evaluateProjectShouldCreateTaskWithLowestPriority() throws Exception {
+    when(repoManager.openRepository(NAME_KEY)).thenReturn(repository);
+    evaluator.evaluateProject(NAME_KEY.get());
+    verify(evaluationQueue).submit(eq(taskSamePathNotCompleted), eq(0));
+    verify(statistics, never()).invalidate(REPOSITORY_PATH);
+  }
+
+  @Test
+  public void evaluateProjectShouldNotCreateTaskIfAlreadyQueued() throws Exception {
+    when(repoManager.openRepository(NAME_KEY)).thenReturn(repository);
+    evaluator.onGitReferenceUpdated(event);
+    evaluator.evaluateProject(NAME_KEY.get());
+    verify(evaluationQueue, times(1)).submit(any(EvaluationTask.class), anyInt());
   }
 
   @Test
   public void onGitReferenceUpdatedThrowsIOException() throws Exception {
     doThrow(new IOException()).when(repoManager).openRepository(NAME_KEY);
     evaluator.onGitReferenceUpdated(event);
-    verify(executor, never()).submit(taskSamePathCompleted);
+    verify(evaluationQueue, never()).submit(eq(taskSamePathCompleted), anyInt());
   }
 }
@@ -0,0 +1,181 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.ericsson.gerrit.plugins.gcconductor.evaluator;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.server.project.ProjectCache;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ScheduledEvaluatorTest {
+  private static final long INTERVAL = 3_600_000;
+  private static final Project.NameKey NAME_KEY = Project.nameKey("testProject");
+  private static final Project.NameKey NAME_KEY_OTHER = Project.nameKey("otherProject");
+
+  @Mock private ScheduledExecutorService executor;
+  @Mock private EvaluationQueue evaluationQueue;
+  @Mock private Evaluator evaluator;
+  @Mock private ProjectCache projectCache;
+  @Mock private EvaluatorConfig config;
+  @Mock private ScheduledFuture<Object> schedule;
+  @Mock private ScheduledFuture<Object> pass;
+
+  private ScheduledEvaluator scheduledEvaluator;
+
+  @Before
+  public void setUp() {
+    when(config.getScheduledEvaluationInterval()).thenReturn(INTERVAL);
+    when(config.getScheduledEvaluationRate()).thenReturn(10);
+    scheduledEvaluator = newScheduledEvaluator();
+  }
+
+  private ScheduledEvaluator newScheduledEvaluator() {
+    return new ScheduledEvaluator(executor, evaluationQueue, evaluator, projectCache, config);
+  }
+
+  @Test
+  public void shouldNotScheduleEvaluationWhenIntervalIsZero() {
+    when(config.getScheduledEvaluationInterval()).thenReturn(0L);
+    scheduledEvaluator = newScheduledEvaluator();
+    scheduledEvaluator.start();
+    verifyNoInteractions(executor);
+  }
+
+  @Test
+  public void shouldScheduleEvaluationEveryInterval() {
+    scheduledEvaluator.start();
+    verify(executor)
+        .scheduleAtFixedRate(any(Runnable.class), eq(INTERVAL), eq(INTERVAL), eq(MILLISECONDS));
+  }
+
+  @Test
+  public void shouldEvaluateProjectsAtConfiguredRate() {
+    when(projectCache.all()).thenReturn(ImmutableSortedSet.of(NAME_KEY));
+    scheduledEvaluator.startPass();
+    verify(executor)
+        .scheduleAtFixedRate(
+            any(Runnable.class), eq(100_000_000L), eq(100_000_000L), eq(NANOSECONDS));
+  }
+
+  @Test
+  public void shouldEvaluateAllProjectsThenEndPass() {
+    when(projectCache.all()).thenReturn(ImmutableSortedSet.of(NAME_KEY, NAME_KEY_OTHER));
+    doReturn(pass)
+        .when(executor)
+        .scheduleAtFixedRate(any(Runnable.class), anyLong(), anyLong(), eq(NANOSECONDS));
+    scheduledEvaluator.startPass();
+
+    scheduledEvaluator.evaluateNext();
+    scheduledEvaluator.evaluateNext();
+    verify(evaluator).evaluateProject(NAME_KEY.get());
+    verify(evaluator).evaluateProject(NAME_KEY_OTHER.get());
+    verify(pass, never()).cancel(false);
+
+    scheduledEvaluator.evaluateNext();
+    verify(pass).cancel(false);
+  }
+
+  @Test
+  public void shouldGoOnWithNextProjectWhenEvaluationFails() {
+    when(projectCache.all()).thenReturn(ImmutableSortedSet.of(NAME_KEY, NAME_KEY_OTHER));
+    doThrow(new IllegalStateException("boom")).when(evaluator).evaluateProject(NAME_KEY.get());
+    doReturn(pass)
+        .when(executor)
+        .scheduleAtFixedRate(any(Runnable.class), anyLong(), anyLong(), eq(NANOSECONDS));
+    scheduledEvaluator.startPass();
+
+    scheduledEvaluator.evaluateNext();
+    scheduledEvaluator.evaluateNext();
+    verify(evaluator).evaluateProject(NAME_KEY_OTHER.get());
+
+    scheduledEvaluator.evaluateNext();
+    verify(pass).cancel(false);
+  }
+
+  @Test
+  public void shouldStartNextPassWhenProjectsCannotBeListed() {
+    when(projectCache.all())
+        .thenThrow(new IllegalStateException("boom"))
+        .thenReturn(ImmutableSortedSet.of(NAME_KEY));
+    scheduledEvaluator.startPass();
+    verify(executor, never())
+        .scheduleAtFixedRate(any(Runnable.class), anyLong(), anyLong(), eq(NANOSECONDS));
+
+    scheduledEvaluator.startPass();
+    verify(executor)
+        .scheduleAtFixedRate(any(Runnable.class), anyLong(), anyLong(), eq(NANOSECONDS));
+  }
+
+  @Test
+  public void shouldNotEvaluateWhileEvaluationsAreWaiting() {
+    when(projectCache.all()).thenReturn(ImmutableSortedSet.of(NAME_KEY));
+    when(evaluationQueue.size()).thenReturn(1);
+    doReturn(pass)
+        .when(executor)
+        .scheduleAtFixedRate(any(Runnable.class), anyLong(), anyLong(), eq(NANOSECONDS));
+    scheduledEvaluator.startPass();
+    scheduledEvaluator.evaluateNext();
+    verify(evaluator, never()).evaluateProject(anyString());
+  }
+
+  @Test
+  public void shouldNotStartPassWhilePreviousOneIsRunning() {
+    when(projectCache.all()).thenReturn(ImmutableSortedSet.of(NAME_KEY));
+    doReturn(pass)
+        .when(executor)
+        .scheduleAtFixedRate(any(Runnable.class), anyLong(), anyLong(), eq(NANOSECONDS));
+    scheduledEvaluator.startPass();
+    scheduledEvaluator.startPass();
+    verify(projectCache, times(1)).all();
+  }
+
+  @Test
+  public void stopShouldCancelScheduleAndRunningPass() {
+    when(projectCache.all()).thenReturn(ImmutableSortedSet.of(NAME_KEY));
+    doReturn(schedule)
+        .when(executor)
+        .scheduleAtFixedRate(any(Runnable.class), anyLong(), anyLong(), eq(MILLISECONDS));
+    doReturn(pass)
+        .when(executor)
+        .scheduleAtFixedRate(any(Runnable.class), anyLong(), anyLong(), eq(NANOSECONDS));
+    scheduledEvaluator.start();
+    scheduledEvaluator.startPass();
+
+    scheduledEvaluator.stop();
+    verify(schedule).cancel(false);
+    verify(pass).cancel(false);
+  }
+}
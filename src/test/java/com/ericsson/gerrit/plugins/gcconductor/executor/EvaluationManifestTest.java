@@ -0,0 +1,203 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.ericsson.gerrit.plugins.gcconductor.executor;
+
+import static com.ericsson.gerrit.plugins.gcconductor.CommonConfig.PACKED_KEY;
+import static com.ericsson.gerrit.plugins.gcconductor.executor.ExecutorConfig.EVALUATION_SECTION;
+import static com.google.common.truth.Truth.assertThat;
+
+import com.ericsson.gerrit.plugins.gcconductor.executor.EvaluationManifest.State;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.jgit.lib.Config;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class EvaluationManifestTest {
+  private static final String REPOSITORY = "/repositories/repository.git";
+  private static final String OTHER_REPOSITORY = "/repositories/other.git";
+  private static final long MAX_AGE = TimeUnit.DAYS.toMillis(1);
+  private static final State STATE = new State(1, 2, 3, 4);
+
+  @Rule public TemporaryFolder dir = new TemporaryFolder();
+
+  private Path file;
+  private ExecutorConfig config;
+
+  @Before
+  public void setUp() {
+    file = dir.getRoot().toPath().resolve("data").resolve("manifest");
+    config = new ExecutorConfig(new Config());
+  }
+
+  @Test
+  public void shouldNotSkipRepositoryWithoutManifest() {
+    assertThat(load().isUnchangedClean(REPOSITORY, STATE)).isFalse();
+  }
+
+  @Test
+  public void shouldSkipUnchangedCleanRepository() {
+    EvaluationManifest manifest = load();
+    manifest.record(REPOSITORY, STATE, true, Long.MAX_VALUE);
+    manifest.save(true);
+
+    assertThat(load().isUnchangedClean(REPOSITORY, new State(1, 2, 3, 4))).isTrue();
+  }
+
+  @Test
+  public void shouldKeepSkippedRepositoryInManifest() {
+    EvaluationManifest manifest = load();
+    manifest.record(REPOSITORY, STATE, true, Long.MAX_VALUE);
+    manifest.save(true);
+    manifest = load();
+    assertThat(manifest.isUnchangedClean(REPOSITORY, STATE)).isTrue();
+    manifest.save(true);
+
+    assertThat(load().isUnchangedClean(REPOSITORY, STATE)).isTrue();
+  }
+
+  @Test
+  public void shouldNotSkipDirtyRepository() {
+    EvaluationManifest manifest = load();
+    manifest.record(REPOSITORY, STATE, false, Long.MAX_VALUE);
+    manifest.save(true);
+
+    assertThat(load().isUnchangedClean(REPOSITORY, STATE)).isFalse();
+  }
+
+  @Test
+  public void shouldNotSkipChangedRepository() {
+    EvaluationManifest manifest = load();
+    manifest.record(REPOSITORY, STATE, true, Long.MAX_VALUE);
+    manifest.save(true);
+
+    manifest = load();
+    assertThat(manifest.isUnchangedClean(REPOSITORY, new State(5, 2, 3, 4))).isFalse();
+    assertThat(manifest.isUnchangedClean(REPOSITORY, new State(1, 5, 3, 4))).isFalse();
+    assertThat(manifest.isUnchangedClean(REPOSITORY, new State(1, 2, 5, 4))).isFalse();
+    assertThat(manifest.isUnchangedClean(REPOSITORY, new State(1, 2, 3, 5))).isFalse();
+  }
+
+  @Test
+  public void shouldNotSkipRepositoryWhenResultExpired() throws Exception {
+    EvaluationManifest manifest = EvaluationManifest.load(file, config, 1);
+    manifest.record(REPOSITORY, STATE, true, Long.MAX_VALUE);
+    manifest.save(true);
+    Thread.sleep(10);
+
+    assertThat(EvaluationManifest.load(file, config, 1).isUnchangedClean(REPOSITORY, STATE))
+        .isFalse();
+  }
+
+  @Test
+  public void shouldNotSkipRepositoryWhenFreshLooseObjectsBecamePrunable() throws Exception {
+    EvaluationManifest manifest = load();
+    manifest.record(REPOSITORY, STATE, true, System.currentTimeMillis() + 1);
+    manifest.save(true);
+    Thread.sleep(10);
+
+    assertThat(load().isUnchangedClean(REPOSITORY, STATE)).isFalse();
+  }
+
+  @Test
+  public void shouldDiscardManifestRecordedWithOtherThresholds() {
+    EvaluationManifest manifest = load();
+    manifest.record(REPOSITORY, STATE, true, Long.MAX_VALUE);
+    manifest.save(true);
+    Config other = new Config();
+    other.setInt(EVALUATION_SECTION, null, PACKED_KEY, 3);
+
+    assertThat(
+            EvaluationManifest.load(file, new ExecutorConfig(other), MAX_AGE)
+                .isUnchangedClean(REPOSITORY, STATE))
+        .isFalse();
+  }
+
+  @Test
+  public void shouldDropRepositoriesNotFoundByCompletePass() {
+    EvaluationManifest manifest = load();
+    manifest.record(REPOSITORY, STATE, true, Long.MAX_VALUE);
+    manifest.record(OTHER_REPOSITORY, STATE, true, Long.MAX_VALUE);
+    manifest.save(true);
+    manifest = load();
+    manifest.record(REPOSITORY, STATE, true, Long.MAX_VALUE);
+    manifest.save(true);
+
+    manifest = load();
+    assertThat(manifest.isUnchangedClean(REPOSITORY, STATE)).isTrue();
+    assertThat(manifest.isUnchangedClean(OTHER_REPOSITORY, STATE)).isFalse();
+  }
+
+  @Test
+  public void shouldKeepRepositoriesNotEvaluatedByIncompletePass() {
+    EvaluationManifest manifest = load();
+    manifest.record(REPOSITORY, STATE, true, Long.MAX_VALUE);
+    manifest.record(OTHER_REPOSITORY, STATE, true, Long.MAX_VALUE);
+    manifest.save(true);
+    manifest = load();
+    manifest.record(REPOSITORY, STATE, false, Long.MAX_VALUE);
+    manifest.save(false);
+
+    manifest = load();
+    assertThat(manifest.isUnchangedClean(REPOSITORY, STATE)).isFalse();
+    assertThat(manifest.isUnchangedClean(OTHER_REPOSITORY, STATE)).isTrue();
+  }
+
+  @Test
+  public void shouldDiscardUnreadableManifest() throws Exception {
+    Files.createDirectories(file.getParent());
+    Files.write(file, new byte[] {0, 0, 0, 1, 0});
+
+    assertThat(load().isUnchangedClean(REPOSITORY, STATE)).isFalse();
+  }
+
+  @Test
+  public void stateShouldChangeWithObjectsRefsAndConfig() throws Exception {
+    File repository = dir.newFolder("repository.git");
+    File objects = new File(repository, "objects");
+    new File(objects, "pack").mkdirs();
+    String repositoryPath = repository.getAbsolutePath();
+    State state = State.read(repositoryPath);
+    assertThat(State.read(repositoryPath)).isEqualTo(state);
+
+    File fanOut = new File(objects, "ab");
+    fanOut.mkdir();
+    State withLooseObjects = State.read(repositoryPath);
+    assertThat(withLooseObjects).isNotEqualTo(state);
+    fanOut.setLastModified(fanOut.lastModified() + 1000);
+    assertThat(State.read(repositoryPath)).isNotEqualTo(withLooseObjects);
+
+    state = State.read(repositoryPath);
+    File pack = new File(objects, "pack");
+    pack.setLastModified(pack.lastModified() + 1000);
+    assertThat(State.read(repositoryPath)).isNotEqualTo(state);
+
+    state = State.read(repositoryPath);
+    Files.write(new File(repository, "packed-refs").toPath(), new byte[0]);
+    assertThat(State.read(repositoryPath)).isNotEqualTo(state);
+
+    state = State.read(repositoryPath);
+    Files.write(new File(repository, "config").toPath(), new byte[0]);
+    assertThat(State.read(repositoryPath)).isNotEqualTo(state);
+  }
+
+  private EvaluationManifest load() {
+    return EvaluationManifest.load(file, config, MAX_AGE);
+  }
+}
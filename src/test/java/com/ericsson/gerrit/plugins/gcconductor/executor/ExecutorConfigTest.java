@@ -1,5 +1,7 @@
 package com.ericsson.gerrit.plugins.gcconductor.executor;
 
+import static com.ericsson.gerrit.plugins.gcconductor.CommonConfig.AGE_WEIGHT_DEFAULT;
+import static com.ericsson.gerrit.plugins.gcconductor.CommonConfig.AGE_WEIGHT_KEY;
 import static com.ericsson.gerrit.plugins.gcconductor.CommonConfig.DB_NAME_KEY;
 import static com.ericsson.gerrit.plugins.gcconductor.CommonConfig.DB_PASS_KEY;
 import static com.ericsson.gerrit.plugins.gcconductor.CommonConfig.DB_URL_KEY;
@@ -9,31 +11,59 @@ import static com.ericsson.gerrit.plugins.gcconductor.CommonConfig.DEFAULT_DB_NA
 import static com.ericsson.gerrit.plugins.gcconductor.CommonConfig.DEFAULT_DB_PASSWORD;
 import static com.ericsson.gerrit.plugins.gcconductor.CommonConfig.DEFAULT_DB_URL;
 import static com.ericsson.gerrit.plugins.gcconductor.CommonConfig.DEFAULT_DB_USERNAME;
+import static com.ericsson.gerrit.plugins.gcconductor.CommonConfig.DEFAULT_QUEUE_PATH;
+import static com.ericsson.gerrit.plugins.gcconductor.CommonConfig.GARBAGE_WEIGHT_DEFAULT;
 import static com.ericsson.gerrit.plugins.gcconductor.CommonConfig.LOOSE_DEFAULT;
+import static com.ericsson.gerrit.plugins.gcconductor.CommonConfig.LOOSE_EVALUATION_DEFAULT;
+import static com.ericsson.gerrit.plugins.gcconductor.CommonConfig.LOOSE_EVALUATION_KEY;
 import static com.ericsson.gerrit.plugins.gcconductor.CommonConfig.LOOSE_KEY;
+import static com.ericsson.gerrit.plugins.gcconductor.CommonConfig.LOOSE_OBJECT_WEIGHT_DEFAULT;
+import static com.ericsson.gerrit.plugins.gcconductor.CommonConfig.LOOSE_REF_WEIGHT_DEFAULT;
 import static com.ericsson.gerrit.plugins.gcconductor.CommonConfig.PACKED_DEFAULT;
 import static com.ericsson.gerrit.plugins.gcconductor.CommonConfig.PACKED_KEY;
+import static com.ericsson.gerrit.plugins.gcconductor.CommonConfig.PACK_WEIGHT_DEFAULT;
+import static com.ericsson.gerrit.plugins.gcconductor.CommonConfig.PACK_WEIGHT_KEY;
+import static com.ericsson.gerrit.plugins.gcconductor.CommonConfig.QUEUE_PATH_KEY;
+import static com.ericsson.gerrit.plugins.gcconductor.CommonConfig.SMALL_PACK_WEIGHT_DEFAULT;
 import static com.ericsson.gerrit.plugins.gcconductor.executor.ExecutorConfig.CORE_SECTION;
 import static com.ericsson.gerrit.plugins.gcconductor.executor.ExecutorConfig.DB_SECTION;
 import static com.ericsson.gerrit.plugins.gcconductor.executor.ExecutorConfig.DEFAULT_DELAY;
+import static com.ericsson.gerrit.plugins.gcconductor.executor.ExecutorConfig.DEFAULT_DISCOVERY_THREADS;
 import static com.ericsson.gerrit.plugins.gcconductor.executor.ExecutorConfig.DEFAULT_EXECUTORS;
 import static com.ericsson.gerrit.plugins.gcconductor.executor.ExecutorConfig.DEFAULT_INITIAL_DELAY;
 import static com.ericsson.gerrit.plugins.gcconductor.executor.ExecutorConfig.DEFAULT_INTERVAL;
+import static com.ericsson.gerrit.plugins.gcconductor.executor.ExecutorConfig.DEFAULT_MANIFEST_MAX_AGE;
+import static com.ericsson.gerrit.plugins.gcconductor.executor.ExecutorConfig.DEFAULT_MANIFEST_PATH;
+import static com.ericsson.gerrit.plugins.gcconductor.executor.ExecutorConfig.DEFAULT_POLL_INTERVAL;
+import static com.ericsson.gerrit.plugins.gcconductor.executor.ExecutorConfig.DEFAULT_PREFETCH;
 import static com.ericsson.gerrit.plugins.gcconductor.executor.ExecutorConfig.DEFAULT_REPOS_PATH;
+import static com.ericsson.gerrit.plugins.gcconductor.executor.ExecutorConfig.DEFAULT_SPREAD_WINDOW;
+import static com.ericsson.gerrit.plugins.gcconductor.executor.ExecutorConfig.DEFAULT_THREADS;
+import static com.ericsson.gerrit.plugins.gcconductor.executor.ExecutorConfig.DEFAULT_THREADS_PER_FILESYSTEM;
 import static com.ericsson.gerrit.plugins.gcconductor.executor.ExecutorConfig.DELAY_KEY;
+import static com.ericsson.gerrit.plugins.gcconductor.executor.ExecutorConfig.DISCOVERY_THREADS_KEY;
 import static com.ericsson.gerrit.plugins.gcconductor.executor.ExecutorConfig.EMPTY;
 import static com.ericsson.gerrit.plugins.gcconductor.executor.ExecutorConfig.EVALUATION_SECTION;
 import static com.ericsson.gerrit.plugins.gcconductor.executor.ExecutorConfig.EXECUTOR_KEY;
 import static com.ericsson.gerrit.plugins.gcconductor.executor.ExecutorConfig.INTERVAL_KEY;
+import static com.ericsson.gerrit.plugins.gcconductor.executor.ExecutorConfig.MANIFEST_MAX_AGE_KEY;
+import static com.ericsson.gerrit.plugins.gcconductor.executor.ExecutorConfig.MANIFEST_PATH_KEY;
 import static com.ericsson.gerrit.plugins.gcconductor.executor.ExecutorConfig.PICK_OWN_HOST_KEY;
+import static com.ericsson.gerrit.plugins.gcconductor.executor.ExecutorConfig.POLL_INTERVAL_KEY;
+import static com.ericsson.gerrit.plugins.gcconductor.executor.ExecutorConfig.PREFETCH_KEY;
 import static com.ericsson.gerrit.plugins.gcconductor.executor.ExecutorConfig.REPOS_PATH_KEY;
+import static com.ericsson.gerrit.plugins.gcconductor.executor.ExecutorConfig.SPREAD_WINDOW_KEY;
 import static com.ericsson.gerrit.plugins.gcconductor.executor.ExecutorConfig.START_TIME_KEY;
+import static com.ericsson.gerrit.plugins.gcconductor.executor.ExecutorConfig.THREADS_KEY;
+import static com.ericsson.gerrit.plugins.gcconductor.executor.ExecutorConfig.THREADS_PER_FILESYSTEM_KEY;
 import static com.google.common.truth.Truth.assertThat;
 import static java.util.concurrent.TimeUnit.DAYS;
 import static java.util.concurrent.TimeUnit.HOURS;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.MINUTES;
 
+import com.ericsson.gerrit.plugins.gcconductor.CommonConfig.LooseEvaluation;
+import com.ericsson.gerrit.plugins.gcconductor.ScoreWeights;
 import java.time.LocalDateTime;
 import java.time.Month;
 import java.time.ZoneOffset;
@@ -50,8 +80,11 @@ public class ExecutorConfigTest {
   private static final String URL_OPTIONS = "urlOptions";
   private static final String CUSTOM_DB_USER = "customDbUser";
   private static final String CUSTOM_DB_PASS = "customDbPass";
+  private static final String CUSTOM_QUEUE_PATH = "/other/path/to/queue";
   private static final int CUSTOM_DELAY = 5;
   private static final int CUSTOM_EXECUTORS = 10;
+  private static final int CUSTOM_POLL_INTERVAL = 30;
+  private static final int CUSTOM_PREFETCH = 20;
   private static final int CUSTOM_PACKED = 41;
   private static final int CUSTOM_LOOSE = 401;
   private static final int ONE_DAY_AS_MS = 86_400_000;
@@ -77,14 +110,33 @@ public class ExecutorConfigTest {
     assertThat(executorConfig.getDatabaseUrlOptions()).isEqualTo(EMPTY);
     assertThat(executorConfig.getUsername()).isEqualTo(DEFAULT_DB_USERNAME);
     assertThat(executorConfig.getPassword()).isEqualTo(DEFAULT_DB_PASSWORD);
+    assertThat(executorConfig.getQueuePath()).isEqualTo(DEFAULT_QUEUE_PATH);
     assertThat(executorConfig.getDelay()).isEqualTo(DEFAULT_DELAY);
     assertThat(executorConfig.getExecutors()).isEqualTo(DEFAULT_EXECUTORS);
+    assertThat(executorConfig.getPollInterval()).isEqualTo(DEFAULT_POLL_INTERVAL);
+    assertThat(executorConfig.getPrefetch()).isEqualTo(DEFAULT_PREFETCH);
     assertThat(executorConfig.isPickOwnHostOnly()).isEqualTo(true);
     assertThat(executorConfig.getLooseThreshold()).isEqualTo(LOOSE_DEFAULT);
+    assertThat(executorConfig.getLooseEvaluation()).isEqualTo(LOOSE_EVALUATION_DEFAULT);
     assertThat(executorConfig.getPackedThreshold()).isEqualTo(PACKED_DEFAULT);
     assertThat(executorConfig.getRepositoriesPath()).isEqualTo(DEFAULT_REPOS_PATH);
     assertThat(executorConfig.getInterval()).isEqualTo(DEFAULT_INTERVAL);
     assertThat(executorConfig.getInitialDelay()).isEqualTo(DEFAULT_INITIAL_DELAY);
+    assertThat(executorConfig.getDiscoveryThreads()).isEqualTo(DEFAULT_DISCOVERY_THREADS);
+    assertThat(executorConfig.getThreads()).isEqualTo(DEFAULT_THREADS);
+    assertThat(executorConfig.getThreadsPerFilesystem()).isEqualTo(DEFAULT_THREADS_PER_FILESYSTEM);
+    assertThat(executorConfig.getManifestPath()).isEqualTo(DEFAULT_MANIFEST_PATH);
+    assertThat(executorConfig.getManifestMaxAge()).isEqualTo(DEFAULT_MANIFEST_MAX_AGE);
+    assertThat(executorConfig.getSpreadWindow()).isEqualTo(DEFAULT_SPREAD_WINDOW);
+    assertThat(executorConfig.getScoreWeights())
+        .isEqualTo(
+            new ScoreWeights(
+                PACK_WEIGHT_DEFAULT,
+                SMALL_PACK_WEIGHT_DEFAULT,
+                LOOSE_OBJECT_WEIGHT_DEFAULT,
+                LOOSE_REF_WEIGHT_DEFAULT,
+                GARBAGE_WEIGHT_DEFAULT,
+                AGE_WEIGHT_DEFAULT));
   }
 
   @Test
@@ -94,14 +146,26 @@ public class ExecutorConfigTest {
     config.setString(DB_SECTION, null, DB_URL_OPTIONS_KEY, URL_OPTIONS);
     config.setString(DB_SECTION, null, DB_USERNAME_KEY, CUSTOM_DB_USER);
     config.setString(DB_SECTION, null, DB_PASS_KEY, CUSTOM_DB_PASS);
+    config.setString(DB_SECTION, null, QUEUE_PATH_KEY, CUSTOM_QUEUE_PATH);
     config.setInt(CORE_SECTION, null, DELAY_KEY, CUSTOM_DELAY);
     config.setInt(CORE_SECTION, null, EXECUTOR_KEY, CUSTOM_EXECUTORS);
+    config.setInt(CORE_SECTION, null, POLL_INTERVAL_KEY, CUSTOM_POLL_INTERVAL);
+    config.setInt(CORE_SECTION, null, PREFETCH_KEY, CUSTOM_PREFETCH);
     config.setBoolean(CORE_SECTION, null, PICK_OWN_HOST_KEY, false);
     config.setInt(EVALUATION_SECTION, null, LOOSE_KEY, CUSTOM_LOOSE);
     config.setInt(EVALUATION_SECTION, null, PACKED_KEY, CUSTOM_PACKED);
+    config.setEnum(EVALUATION_SECTION, null, LOOSE_EVALUATION_KEY, LooseEvaluation.SAMPLING);
     config.setString(EVALUATION_SECTION, null, REPOS_PATH_KEY, CUSTOM_REPOS_PATH);
     config.setString(EVALUATION_SECTION, null, INTERVAL_KEY, "1 day");
     config.setString(EVALUATION_SECTION, null, START_TIME_KEY, "Sun 00:00");
+    config.setInt(EVALUATION_SECTION, null, DISCOVERY_THREADS_KEY, 8);
+    config.setInt(EVALUATION_SECTION, null, THREADS_KEY, 16);
+    config.setInt(EVALUATION_SECTION, null, THREADS_PER_FILESYSTEM_KEY, 4);
+    config.setString(EVALUATION_SECTION, null, MANIFEST_PATH_KEY, "/other/path/to/manifest");
+    config.setString(EVALUATION_SECTION, null, MANIFEST_MAX_AGE_KEY, "1 day");
+    config.setString(EVALUATION_SECTION, null, SPREAD_WINDOW_KEY, "1 day");
+    config.setInt(EVALUATION_SECTION, null, PACK_WEIGHT_KEY, 3);
+    config.setInt(EVALUATION_SECTION, null, AGE_WEIGHT_KEY, 0);
     executorConfig = new ExecutorConfig(config);
 
     assertThat(executorConfig.getDatabaseUrl()).isEqualTo(CUSTOM_DB_URL);
@@ -109,14 +173,33 @@ public class ExecutorConfigTest {
     assertThat(executorConfig.getDatabaseUrlOptions()).isEqualTo(URL_OPTIONS);
     assertThat(executorConfig.getUsername()).isEqualTo(CUSTOM_DB_USER);
     assertThat(executorConfig.getPassword()).isEqualTo(CUSTOM_DB_PASS);
+    assertThat(executorConfig.getQueuePath()).isEqualTo(CUSTOM_QUEUE_PATH);
     assertThat(executorConfig.getDelay()).isEqualTo(CUSTOM_DELAY);
     assertThat(executorConfig.getExecutors()).isEqualTo(CUSTOM_EXECUTORS);
+    assertThat(executorConfig.getPollInterval()).isEqualTo(CUSTOM_POLL_INTERVAL);
+    assertThat(executorConfig.getPrefetch()).isEqualTo(CUSTOM_PREFETCH);
     assertThat(executorConfig.isPickOwnHostOnly()).isEqualTo(false);
     assertThat(executorConfig.getLooseThreshold()).isEqualTo(CUSTOM_LOOSE);
+    assertThat(executorConfig.getLooseEvaluation()).isEqualTo(LooseEvaluation.SAMPLING);
     assertThat(executorConfig.getPackedThreshold()).isEqualTo(CUSTOM_PACKED);
     assertThat(executorConfig.getRepositoriesPath()).isEqualTo(CUSTOM_REPOS_PATH);
     assertThat(executorConfig.getInterval()).isEqualTo(ONE_DAY_AS_MS);
     assertThat(executorConfig.getInitialDelay()).isAtLeast(1L);
+    assertThat(executorConfig.getDiscoveryThreads()).isEqualTo(8);
+    assertThat(executorConfig.getThreads()).isEqualTo(16);
+    assertThat(executorConfig.getThreadsPerFilesystem()).isEqualTo(4);
+    assertThat(executorConfig.getManifestPath()).isEqualTo("/other/path/to/manifest");
+    assertThat(executorConfig.getManifestMaxAge()).isEqualTo(ONE_DAY_AS_MS);
+    assertThat(executorConfig.getSpreadWindow()).isEqualTo(ONE_DAY_AS_MS);
+    assertThat(executorConfig.getScoreWeights())
+        .isEqualTo(
+            new ScoreWeights(
+                3,
+                SMALL_PACK_WEIGHT_DEFAULT,
+                LOOSE_OBJECT_WEIGHT_DEFAULT,
+                LOOSE_REF_WEIGHT_DEFAULT,
+                GARBAGE_WEIGHT_DEFAULT,
+                0));
   }
 
   @Test
@@ -132,10 +215,24 @@ public class ExecutorConfigTest {
   public void shouldUseDefaultValuesIfConfigInvalid() {
     config.setString(EVALUATION_SECTION, null, INTERVAL_KEY, "1 x");
     config.setString(EVALUATION_SECTION, null, START_TIME_KEY, "123 ab:cd");
+    config.setString(EVALUATION_SECTION, null, MANIFEST_MAX_AGE_KEY, "-1 day");
+    config.setString(EVALUATION_SECTION, null, SPREAD_WINDOW_KEY, "1 x");
     executorConfig = new ExecutorConfig(config);
 
     assertThat(executorConfig.getInterval()).isEqualTo(DEFAULT_INTERVAL);
     assertThat(executorConfig.getInitialDelay()).isEqualTo(DEFAULT_INITIAL_DELAY);
+    assertThat(executorConfig.getManifestMaxAge()).isEqualTo(DEFAULT_MANIFEST_MAX_AGE);
+    assertThat(executorConfig.getSpreadWindow()).isEqualTo(DEFAULT_SPREAD_WINDOW);
+  }
+
+  @Test
+  public void shouldUseAtLeastOneDiscoveryAndEvaluationThread() {
+    config.setInt(EVALUATION_SECTION, null, DISCOVERY_THREADS_KEY, 0);
+    config.setInt(EVALUATION_SECTION, null, THREADS_KEY, 0);
+    executorConfig = new ExecutorConfig(config);
+
+    assertThat(executorConfig.getDiscoveryThreads()).isEqualTo(1);
+    assertThat(executorConfig.getThreads()).isEqualTo(1);
   }
 
   @Test
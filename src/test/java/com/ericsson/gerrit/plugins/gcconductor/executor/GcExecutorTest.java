@@ -18,14 +18,13 @@ import static com.ericsson.gerrit.plugins.gcconductor.executor.GcExecutor.CONFIG
 import static com.google.common.truth.Truth.assertThat;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 import com.ericsson.gerrit.plugins.gcconductor.GcQueue;
 import com.ericsson.gerrit.plugins.gcconductor.GcQueueException;
-import com.ericsson.gerrit.plugins.gcconductor.RepositoryInfo;
-import com.google.common.collect.ImmutableList;
 import java.io.File;
 import java.nio.file.Files;
 import java.nio.file.StandardOpenOption;
@@ -51,6 +50,9 @@ public class GcExecutorTest {
   @Mock private GcWorker gcWorker;
   @Mock private GcQueue gcQueue;
   @Mock private ScheduledEvaluator scheduledEvaluator;
+  @Mock private WorkerWakeUp wakeUp;
+  @Mock private PrefetchBuffer prefetchBuffer;
+  @Mock private LeaseRenewer leaseRenewer;
 
   @Rule public TemporaryFolder testTempFolder = new TemporaryFolder();
 
@@ -58,54 +60,48 @@ public class GcExecutorTest {
   public void testGcExecutor() {
     when(config.getExecutors()).thenReturn(1);
     when(gcWorkerFactory.create(EXECUTOR)).thenReturn(gcWorker);
-    GcExecutor gcExecutor =
-        new GcExecutor(gcQueue, config, gcWorkerFactory, scheduledEvaluator, HOSTNAME);
+    GcExecutor gcExecutor = createGcExecutor();
     verify(gcWorker).start();
     gcExecutor.onShutdown();
     verify(gcWorker).shutdown();
   }
 
   @Test
-  public void testLeftOverReposAreUnpickedWhenStarting() throws Exception {
+  public void testWorkersAreWokenUpByQueueChanges() {
     when(config.getExecutors()).thenReturn(1);
     when(gcWorkerFactory.create(EXECUTOR)).thenReturn(gcWorker);
-    when(gcQueue.list())
-        .thenReturn(
-            ImmutableList.of(new RepositoryInfo(REPOSITORY, null, EXECUTOR, HOSTNAME, true)));
-    GcExecutor gcExecutor =
-        new GcExecutor(gcQueue, config, gcWorkerFactory, scheduledEvaluator, HOSTNAME);
-    verify(gcQueue).unpick(REPOSITORY);
-    verify(gcWorker).start();
+    GcExecutor gcExecutor = createGcExecutor();
+    verify(gcQueue).addListener(wakeUp);
     gcExecutor.onShutdown();
-    verify(gcWorker).shutdown();
   }
 
   @Test
-  public void testUnassignedReposAreNotUnpickedWhenStarting() throws Exception {
+  public void testLeasesAreRenewedWhileRunning() {
     when(config.getExecutors()).thenReturn(1);
     when(gcWorkerFactory.create(EXECUTOR)).thenReturn(gcWorker);
-    when(gcQueue.list())
-        .thenReturn(ImmutableList.of(new RepositoryInfo(REPOSITORY, null, null, HOSTNAME, true)));
-    GcExecutor gcExecutor =
-        new GcExecutor(gcQueue, config, gcWorkerFactory, scheduledEvaluator, HOSTNAME);
-    verify(gcQueue, never()).unpick(REPOSITORY);
-    verify(gcWorker).start();
+    GcExecutor gcExecutor = createGcExecutor();
+    verify(leaseRenewer).start(HOSTNAME + "-");
     gcExecutor.onShutdown();
-    verify(gcWorker).shutdown();
+    verify(leaseRenewer).stop();
+  }
+
+  @Test
+  public void testPrefetchedReposAreReleasedOnShutdown() throws Exception {
+    when(config.getExecutors()).thenReturn(1);
+    when(gcWorkerFactory.create(EXECUTOR)).thenReturn(gcWorker);
+    GcExecutor gcExecutor = createGcExecutor();
+    gcExecutor.onShutdown();
+    verify(prefetchBuffer).clear();
+    verify(gcQueue, times(2)).unpickAll(HOSTNAME + "-");
   }
 
   @Test
-  public void testExecutorDoesNotUnpickNotOwnedRepo() throws Exception {
+  public void testLeftOverReposAreUnpickedWhenStarting() throws Exception {
     when(config.getExecutors()).thenReturn(1);
     when(gcWorkerFactory.create(EXECUTOR)).thenReturn(gcWorker);
-    when(gcQueue.list())
-        .thenReturn(
-            ImmutableList.of(
-                new RepositoryInfo(
-                    REPOSITORY, null, "another executor", "another hostname", true)));
-    GcExecutor gcExecutor =
-        new GcExecutor(gcQueue, config, gcWorkerFactory, scheduledEvaluator, HOSTNAME);
-    verify(gcQueue, never()).unpick(REPOSITORY);
+    GcExecutor gcExecutor = createGcExecutor();
+    verify(gcQueue).unpickAll(HOSTNAME + "-");
+    verify(gcQueue, never()).list();
     verify(gcWorker).start();
     gcExecutor.onShutdown();
     verify(gcWorker).shutdown();
@@ -115,10 +111,8 @@ public class GcExecutorTest {
   public void testQueueThrowsExceptionUnpickingAtStart() throws Exception {
     when(config.getExecutors()).thenReturn(1);
     when(gcWorkerFactory.create(EXECUTOR)).thenReturn(gcWorker);
-    doThrow(new GcQueueException("", new Throwable())).when(gcQueue).list();
-    GcExecutor gcExecutor =
-        new GcExecutor(gcQueue, config, gcWorkerFactory, scheduledEvaluator, HOSTNAME);
-    verify(gcQueue, never()).unpick(REPOSITORY);
+    doThrow(new GcQueueException("", new Throwable())).when(gcQueue).unpickAll(HOSTNAME + "-");
+    GcExecutor gcExecutor = createGcExecutor();
     verify(gcWorker).start();
     gcExecutor.onShutdown();
     verify(gcWorker).shutdown();
@@ -130,10 +124,7 @@ public class GcExecutorTest {
     when(config.getInitialDelay()).thenReturn(1L);
     when(config.getInterval()).thenReturn(1L);
     when(gcWorkerFactory.create(EXECUTOR)).thenReturn(gcWorker);
-    when(gcQueue.list())
-        .thenReturn(ImmutableList.of(new RepositoryInfo(REPOSITORY, null, null, HOSTNAME, true)));
-    GcExecutor gcExecutor =
-        new GcExecutor(gcQueue, config, gcWorkerFactory, scheduledEvaluator, HOSTNAME);
+    GcExecutor gcExecutor = createGcExecutor();
     verify(gcWorker).start();
     verify(scheduledEvaluator).scheduleWith(1L, 1L);
     gcExecutor.onShutdown();
@@ -145,10 +136,7 @@ public class GcExecutorTest {
     when(config.getExecutors()).thenReturn(1);
     when(config.getInitialDelay()).thenReturn(1L);
     when(gcWorkerFactory.create(EXECUTOR)).thenReturn(gcWorker);
-    when(gcQueue.list())
-        .thenReturn(ImmutableList.of(new RepositoryInfo(REPOSITORY, null, null, HOSTNAME, true)));
-    GcExecutor gcExecutor =
-        new GcExecutor(gcQueue, config, gcWorkerFactory, scheduledEvaluator, HOSTNAME);
+    GcExecutor gcExecutor = createGcExecutor();
     verify(gcWorker).start();
     verifyNoInteractions(scheduledEvaluator);
     gcExecutor.onShutdown();
@@ -182,4 +170,16 @@ public class GcExecutorTest {
     assertThat(config.toText()).isEmpty();
     System.clearProperty(CONFIG_FILE_PROPERTY);
   }
+
+  private GcExecutor createGcExecutor() {
+    return new GcExecutor(
+        gcQueue,
+        config,
+        gcWorkerFactory,
+        scheduledEvaluator,
+        wakeUp,
+        prefetchBuffer,
+        leaseRenewer,
+        HOSTNAME);
+  }
 }
@@ -14,9 +14,10 @@
 
 package com.ericsson.gerrit.plugins.gcconductor.executor;
 
-import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
@@ -38,11 +39,14 @@ public class GcWorkerTest {
   private static final String REPO_PATH = "repo";
   private static final String HOSTNAME = "hostname";
   private static final Optional<String> QUEUED_FROM = Optional.empty();
+  private static final int POLL_INTERVAL = 1;
 
   @Mock private GcQueue queue;
   @Mock private GarbageCollector garbageCollector;
   @Mock private CancellableProgressMonitor cpm;
 
+  private PrefetchBuffer prefetchBuffer;
+  private WorkerWakeUp wakeUp;
   private RepositoryInfo repoInfo;
 
   private GcWorker gcTask;
@@ -51,7 +55,19 @@ public class GcWorkerTest {
   public void setUp() {
     Thread.interrupted(); // reset the flag
     repoInfo = new RepositoryInfo(REPO_PATH, null, EXEC_NAME, HOSTNAME, true);
-    gcTask = new GcWorker(queue, garbageCollector, cpm, QUEUED_FROM, 0, EXEC_NAME);
+    wakeUp = new WorkerWakeUp();
+    prefetchBuffer = new PrefetchBuffer(queue, 1, HOSTNAME);
+    gcTask =
+        new GcWorker(
+            queue,
+            prefetchBuffer,
+            wakeUp,
+            garbageCollector,
+            cpm,
+            QUEUED_FROM,
+            0,
+            POLL_INTERVAL,
+            EXEC_NAME);
   }
 
   @Test
@@ -60,7 +76,7 @@ public class GcWorkerTest {
     when(cpm.isCancelled()).thenReturn(false).thenReturn(false).thenReturn(true);
     gcTask.run();
     verify(garbageCollector).call();
-    verify(queue).remove(REPO_PATH);
+    verify(queue).remove(REPO_PATH, EXEC_NAME);
     cpm.cancel();
   }
 
@@ -69,8 +85,8 @@ public class GcWorkerTest {
     when(cpm.isCancelled()).thenReturn(false).thenReturn(true);
     gcTask.run();
     verifyNoInteractions(garbageCollector);
-    verify(queue, never()).remove(any(String.class));
-    verify(queue, never()).unpick(any(String.class));
+    verify(queue, never()).remove(anyString(), anyString());
+    verify(queue, never()).unpick(anyString(), anyString());
   }
 
   @Test
@@ -80,8 +96,23 @@ public class GcWorkerTest {
     t.start();
     t.interrupt();
     verifyNoInteractions(garbageCollector);
-    verify(queue, never()).remove(any(String.class));
-    verify(queue, never()).unpick(any(String.class));
+    verify(queue, never()).remove(anyString(), anyString());
+    verify(queue, never()).unpick(anyString(), anyString());
+  }
+
+  @Test
+  public void queueChangeWakesUpWaitingWorker() throws Exception {
+    gcTask =
+        new GcWorker(
+            queue, prefetchBuffer, wakeUp, garbageCollector, cpm, QUEUED_FROM, 0, 3600, EXEC_NAME);
+    when(cpm.isCancelled()).thenReturn(false).thenReturn(false).thenReturn(false).thenReturn(true);
+    when(queue.pick(EXEC_NAME, 0, QUEUED_FROM)).thenReturn(null).thenReturn(repoInfo);
+    Thread t = new Thread(() -> gcTask.run());
+    t.start();
+    verify(queue, timeout(1000)).pick(EXEC_NAME, 0, QUEUED_FROM);
+    wakeUp.onQueueChanged();
+    verify(queue, timeout(1000)).remove(REPO_PATH, EXEC_NAME);
+    t.join(1000);
   }
 
   @Test
@@ -90,8 +121,8 @@ public class GcWorkerTest {
     when(queue.pick(EXEC_NAME, 0, QUEUED_FROM)).thenReturn(repoInfo);
     doThrow(new IOException()).when(garbageCollector).call();
     gcTask.run();
-    verify(queue).remove(REPO_PATH);
-    verify(queue, never()).unpick(any(String.class));
+    verify(queue).remove(REPO_PATH, EXEC_NAME);
+    verify(queue, never()).unpick(anyString(), anyString());
   }
 
   @Test
@@ -100,8 +131,8 @@ public class GcWorkerTest {
     doThrow(new GcQueueException("", new Throwable())).when(queue).pick(EXEC_NAME, 0, QUEUED_FROM);
     gcTask.run();
     verifyNoInteractions(garbageCollector);
-    verify(queue, never()).remove(any(String.class));
-    verify(queue, never()).unpick(any(String.class));
+    verify(queue, never()).remove(anyString(), anyString());
+    verify(queue, never()).unpick(anyString(), anyString());
   }
 
   @Test
@@ -110,19 +141,19 @@ public class GcWorkerTest {
     when(queue.pick(EXEC_NAME, 0, QUEUED_FROM)).thenReturn(repoInfo);
     doThrow(new IOException()).when(garbageCollector).call();
     gcTask.run();
-    verify(queue).unpick(REPO_PATH);
-    verify(queue, never()).remove(REPO_PATH);
+    verify(queue).unpick(REPO_PATH, EXEC_NAME);
+    verify(queue, never()).remove(REPO_PATH, EXEC_NAME);
   }
 
   @Test
   public void queueThrowsExceptionWhenRemovingRepository() throws Exception {
     when(cpm.isCancelled()).thenReturn(false).thenReturn(false).thenReturn(true);
     when(queue.pick(EXEC_NAME, 0, QUEUED_FROM)).thenReturn(repoInfo);
-    doThrow(new GcQueueException("", new Throwable())).when(queue).remove(REPO_PATH);
+    doThrow(new GcQueueException("", new Throwable())).when(queue).remove(REPO_PATH, EXEC_NAME);
     gcTask.run();
     verify(garbageCollector).call();
-    verify(queue).remove(REPO_PATH);
-    verify(queue, never()).unpick(REPO_PATH);
+    verify(queue).remove(REPO_PATH, EXEC_NAME);
+    verify(queue, never()).unpick(REPO_PATH, EXEC_NAME);
   }
 
   @Test
@@ -130,10 +161,10 @@ public class GcWorkerTest {
     when(cpm.isCancelled()).thenReturn(false).thenReturn(true).thenReturn(true).thenReturn(true);
     when(queue.pick(EXEC_NAME, 0, QUEUED_FROM)).thenReturn(repoInfo);
     doThrow(new IOException()).when(garbageCollector).call();
-    doThrow(new GcQueueException("", new Throwable())).when(queue).unpick(REPO_PATH);
+    doThrow(new GcQueueException("", new Throwable())).when(queue).unpick(REPO_PATH, EXEC_NAME);
     gcTask.run();
-    verify(queue).unpick(REPO_PATH);
-    verify(queue, never()).remove(REPO_PATH);
+    verify(queue).unpick(REPO_PATH, EXEC_NAME);
+    verify(queue, never()).remove(REPO_PATH, EXEC_NAME);
   }
 
   @Test
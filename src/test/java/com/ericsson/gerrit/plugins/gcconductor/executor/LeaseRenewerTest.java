@@ -0,0 +1,60 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.ericsson.gerrit.plugins.gcconductor.executor;
+
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verify;
+
+import com.ericsson.gerrit.plugins.gcconductor.GcQueue;
+import com.ericsson.gerrit.plugins.gcconductor.GcQueueException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class LeaseRenewerTest {
+  private static final String EXECUTOR_PREFIX = "hostname-";
+
+  @Mock private GcQueue queue;
+
+  private LeaseRenewer leaseRenewer;
+
+  @Before
+  public void setUp() {
+    leaseRenewer = new LeaseRenewer(queue);
+    leaseRenewer.start(EXECUTOR_PREFIX);
+  }
+
+  @After
+  public void tearDown() {
+    leaseRenewer.stop();
+  }
+
+  @Test
+  public void shouldRenewLeasesOfExecutors() throws Exception {
+    leaseRenewer.run();
+    verify(queue).renewLeases(EXECUTOR_PREFIX);
+  }
+
+  @Test
+  public void queueThrowsExceptionWhenRenewingLeases() throws Exception {
+    doThrow(new GcQueueException("", new Throwable())).when(queue).renewLeases(EXECUTOR_PREFIX);
+    leaseRenewer.run();
+    verify(queue).renewLeases(EXECUTOR_PREFIX);
+  }
+}
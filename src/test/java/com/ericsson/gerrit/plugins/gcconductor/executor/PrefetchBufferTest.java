@@ -0,0 +1,83 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.ericsson.gerrit.plugins.gcconductor.executor;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+import com.ericsson.gerrit.plugins.gcconductor.GcQueue;
+import com.ericsson.gerrit.plugins.gcconductor.RepositoryInfo;
+import com.google.common.collect.ImmutableList;
+import java.util.Optional;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class PrefetchBufferTest {
+  private static final String HOSTNAME = "hostname";
+  private static final String PREFETCH_EXECUTOR = "hostname-prefetch";
+  private static final String WORKER = "hostname-0";
+  private static final Optional<String> QUEUED_FROM = Optional.empty();
+
+  @Mock private GcQueue queue;
+
+  @Test
+  public void shouldPickDirectlyWhenPrefetchIsDisabled() throws Exception {
+    RepositoryInfo repoInfo = new RepositoryInfo("repo", null, WORKER, HOSTNAME, false);
+    when(queue.pick(WORKER, 0, QUEUED_FROM)).thenReturn(repoInfo);
+    PrefetchBuffer buffer = new PrefetchBuffer(queue, 1, HOSTNAME);
+    assertThat(buffer.pick(WORKER, 0, QUEUED_FROM)).isEqualTo(repoInfo);
+    verify(queue, never()).pickBatch(anyString(), anyInt(), anyLong(), any());
+  }
+
+  @Test
+  public void shouldDrainBufferBeforePickingAgain() throws Exception {
+    RepositoryInfo repo1 = new RepositoryInfo("repo1", null, PREFETCH_EXECUTOR, HOSTNAME, false);
+    RepositoryInfo repo2 = new RepositoryInfo("repo2", null, PREFETCH_EXECUTOR, HOSTNAME, false);
+    when(queue.pickBatch(PREFETCH_EXECUTOR, 2, 0, QUEUED_FROM))
+        .thenReturn(ImmutableList.of(repo1, repo2))
+        .thenReturn(ImmutableList.of());
+    PrefetchBuffer buffer = new PrefetchBuffer(queue, 2, HOSTNAME);
+    assertThat(buffer.pick(WORKER, 0, QUEUED_FROM)).isEqualTo(repo1);
+    assertThat(buffer.pick(WORKER, 0, QUEUED_FROM)).isEqualTo(repo2);
+    assertThat(buffer.pick(WORKER, 0, QUEUED_FROM)).isNull();
+    verify(queue, times(2)).pickBatch(PREFETCH_EXECUTOR, 2, 0, QUEUED_FROM);
+    // buffered repositories are handed out without querying the queue
+    verifyNoMoreInteractions(queue);
+  }
+
+  @Test
+  public void shouldPickAgainAfterClear() throws Exception {
+    RepositoryInfo repo1 = new RepositoryInfo("repo1", null, PREFETCH_EXECUTOR, HOSTNAME, false);
+    RepositoryInfo repo2 = new RepositoryInfo("repo2", null, PREFETCH_EXECUTOR, HOSTNAME, false);
+    when(queue.pickBatch(PREFETCH_EXECUTOR, 2, 0, QUEUED_FROM))
+        .thenReturn(ImmutableList.of(repo1, repo2))
+        .thenReturn(ImmutableList.of());
+    PrefetchBuffer buffer = new PrefetchBuffer(queue, 2, HOSTNAME);
+    assertThat(buffer.pick(WORKER, 0, QUEUED_FROM)).isEqualTo(repo1);
+    buffer.clear();
+    assertThat(buffer.pick(WORKER, 0, QUEUED_FROM)).isNull();
+  }
+}
@@ -0,0 +1,114 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.ericsson.gerrit.plugins.gcconductor.executor;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.gerrit.testing.GerritJUnit.assertThrows;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class RepositoryWalkerTest {
+
+  @Rule public TemporaryFolder dir = new TemporaryFolder();
+
+  @Test
+  public void shouldFindNestedRepositories() throws Exception {
+    Path first = createRepository("first.git");
+    Path second = createRepository("some/folder/second.git");
+    Path third = createRepository("some/other/folder/third.git");
+
+    assertThat(walk()).containsExactly(first, second, third);
+  }
+
+  @Test
+  public void shouldNotFindFoldersIfNotRepository() throws Exception {
+    dir.newFolder("notRepository", "subFolder");
+    dir.newFile("notRepository/file");
+
+    assertThat(walk()).isEmpty();
+  }
+
+  @Test
+  public void shouldNotWalkRepositorySubfolders() throws Exception {
+    Path repository = createRepository("repository.git");
+    createRepository("repository.git/nested/inner.git");
+
+    assertThat(walk()).containsExactly(repository);
+  }
+
+  @Test
+  public void shouldNotFollowSymbolicLinkToParentFolder() throws Exception {
+    Path repository = createRepository("folder/repository.git");
+    Files.createSymbolicLink(dir.getRoot().toPath().resolve("folder/loop"), dir.getRoot().toPath());
+
+    assertThat(walk()).containsExactly(repository);
+  }
+
+  @Test
+  public void shouldFindMoreRepositoriesThanQueueCapacity() throws Exception {
+    int repositories = RepositoryWalker.FOUND_QUEUE_CAPACITY + 10;
+    for (int i = 0; i < repositories; i++) {
+      createRepository("folder" + i % 10 + "/repository" + i + ".git");
+    }
+    List<String> found = new ArrayList<>();
+
+    int count = new RepositoryWalker(dir.getRoot().toPath(), 4).walk(found::add);
+
+    assertThat(count).isEqualTo(repositories);
+    assertThat(found).hasSize(repositories);
+    assertThat(found).containsNoDuplicates();
+  }
+
+  @Test
+  public void shouldStopWalkingWhenInterrupted() throws Exception {
+    createRepository("first.git");
+    createRepository("second.git");
+    List<String> found = new ArrayList<>();
+    RepositoryWalker walker = new RepositoryWalker(dir.getRoot().toPath(), 2);
+
+    assertThrows(
+        InterruptedException.class,
+        () ->
+            walker.walk(
+                repository -> {
+                  found.add(repository);
+                  Thread.currentThread().interrupt();
+                }));
+    assertThat(found).hasSize(1);
+  }
+
+  private Set<Path> walk() throws Exception {
+    Set<Path> found = ConcurrentHashMap.newKeySet();
+    new RepositoryWalker(dir.getRoot().toPath(), 2).walk(path -> found.add(Paths.get(path)));
+    return found;
+  }
+
+  private Path createRepository(String path) throws Exception {
+    Path repository = dir.getRoot().toPath().resolve(path);
+    Files.createDirectories(repository.resolve("objects"));
+    Files.createDirectories(repository.resolve("refs"));
+    Files.write(repository.resolve("HEAD"), "ref: refs/heads/master\n".getBytes());
+    return repository;
+  }
+}
@@ -14,16 +14,32 @@
 
 package com.ericsson.gerrit.plugins.gcconductor.executor;
 
+import static com.google.common.truth.Truth.assertThat;
 import static com.google.gerrit.testing.GerritJUnit.assertThrows;
+import static java.util.concurrent.TimeUnit.DAYS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 import com.ericsson.gerrit.plugins.gcconductor.EvaluationTask;
 import com.ericsson.gerrit.plugins.gcconductor.EvaluationTask.Factory;
+import com.ericsson.gerrit.plugins.gcconductor.EvaluationTask.Result;
+import com.google.common.collect.Range;
 import com.google.inject.ProvisionException;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.lib.Repository;
 import org.junit.Before;
@@ -38,6 +54,7 @@ import org.mockito.junit.MockitoJUnitRunner;
 public class ScheduledEvaluationTaskTest {
 
   @Rule public TemporaryFolder dir = new TemporaryFolder();
+  @Rule public TemporaryFolder manifestDir = new TemporaryFolder();
 
   @Mock private ExecutorConfig config;
   @Mock private Factory evaluationTaskFactory;
@@ -48,6 +65,9 @@ public class ScheduledEvaluationTaskTest {
   @Before
   public void setUp() {
     when(config.getRepositoriesPath()).thenReturn(dir.getRoot().getAbsolutePath());
+    when(config.getDiscoveryThreads()).thenReturn(2);
+    when(config.getThreads()).thenReturn(1);
+    when(config.getThreadsPerFilesystem()).thenReturn(0);
     periodicEvaluator = new ScheduledEvaluationTask(evaluationTaskFactory, config);
   }
 
@@ -65,7 +85,82 @@ public class ScheduledEvaluationTaskTest {
     when(evaluationTaskFactory.create(repository.getDirectory().getAbsolutePath()))
         .thenReturn(evaluationTask);
     periodicEvaluator.run();
-    verify(evaluationTask).run();
+    verify(evaluationTask).evaluate(any());
+  }
+
+  @Test
+  public void shouldSpreadGcOfRepositoriesOverWindow() throws Exception {
+    when(config.getSpreadWindow()).thenReturn(DAYS.toMillis(1));
+    periodicEvaluator = new ScheduledEvaluationTask(evaluationTaskFactory, config);
+    Repository repository = createRepository("repoTest");
+    when(evaluationTaskFactory.create(repository.getDirectory().getAbsolutePath()))
+        .thenReturn(evaluationTask);
+    List<Long> notBefore = new ArrayList<>();
+    doAnswer(
+            invocation -> {
+              notBefore.add(invocation.<LongSupplier>getArgument(0).getAsLong());
+              return Result.DIRTY;
+            })
+        .when(evaluationTask)
+        .evaluate(any());
+    long before = System.currentTimeMillis();
+    periodicEvaluator.run();
+    assertThat(notBefore).hasSize(1);
+    assertThat(notBefore.get(0)).isAtLeast(before);
+    assertThat(notBefore.get(0)).isLessThan(System.currentTimeMillis() + DAYS.toMillis(1));
+  }
+
+  @Test
+  public void shouldOnlySpreadRepositoriesFoundDirty() throws Exception {
+    when(config.getSpreadWindow()).thenReturn(DAYS.toMillis(1));
+    periodicEvaluator = new ScheduledEvaluationTask(evaluationTaskFactory, config);
+    for (int i = 0; i < 12; i++) {
+      createRepository("repoTest" + i);
+    }
+    AtomicInteger evaluated = new AtomicInteger();
+    List<Long> notBefore = Collections.synchronizedList(new ArrayList<>());
+    doAnswer(
+            invocation -> {
+              // one repository in four is found dirty
+              if (evaluated.incrementAndGet() % 4 != 0) {
+                return Result.CLEAN;
+              }
+              notBefore.add(invocation.<LongSupplier>getArgument(0).getAsLong());
+              return Result.DIRTY;
+            })
+        .when(evaluationTask)
+        .evaluate(any());
+    when(evaluationTaskFactory.create(anyString())).thenReturn(evaluationTask);
+
+    periodicEvaluator.run();
+
+    // the first repository found dirty is not deferred, the pass start is the earliest time
+    long start = Collections.min(notBefore);
+    assertThat(notBefore)
+        .containsExactly(
+            periodicEvaluator.notBefore(start, 0),
+            periodicEvaluator.notBefore(start, 1),
+            periodicEvaluator.notBefore(start, 2));
+  }
+
+  @Test
+  public void notBeforeShouldBeEvenlySpreadOverWindow() throws Exception {
+    assertThat(periodicEvaluator.notBefore(1000, 5)).isEqualTo(0);
+
+    long window = DAYS.toMillis(1);
+    when(config.getSpreadWindow()).thenReturn(window);
+    periodicEvaluator = new ScheduledEvaluationTask(evaluationTaskFactory, config);
+    assertThat(periodicEvaluator.notBefore(1000, 0)).isEqualTo(1000);
+    int[] perTenth = new int[10];
+    for (int i = 0; i < 1000; i++) {
+      long offset = periodicEvaluator.notBefore(1000, i) - 1000;
+      assertThat(offset).isAtLeast(0L);
+      assertThat(offset).isLessThan(window);
+      perTenth[(int) (offset * 10 / window)]++;
+    }
+    for (int count : perTenth) {
+      assertThat(count).isIn(Range.closed(95, 105));
+    }
   }
 
   @Test
@@ -75,6 +170,113 @@ public class ScheduledEvaluationTaskTest {
     verify(evaluationTaskFactory, never()).create(notARepo.getAbsolutePath());
   }
 
+  @Test
+  public void shouldEvaluateRepositoriesInParallel() throws Exception {
+    when(config.getThreads()).thenReturn(2);
+    periodicEvaluator = new ScheduledEvaluationTask(evaluationTaskFactory, config);
+    createRepository("repoTest1");
+    createRepository("repoTest2");
+    CountDownLatch bothRunning = new CountDownLatch(2);
+    AtomicBoolean ranInParallel = new AtomicBoolean(true);
+    doAnswer(
+            invocation -> {
+              bothRunning.countDown();
+              if (!bothRunning.await(10, SECONDS)) {
+                ranInParallel.set(false);
+              }
+              return null;
+            })
+        .when(evaluationTask)
+        .evaluate(any());
+    when(evaluationTaskFactory.create(anyString())).thenReturn(evaluationTask);
+
+    periodicEvaluator.run();
+
+    verify(evaluationTask, times(2)).evaluate(any());
+    assertThat(ranInParallel.get()).isTrue();
+  }
+
+  @Test
+  public void shouldCapEvaluationsPerFilesystem() throws Exception {
+    when(config.getThreads()).thenReturn(4);
+    when(config.getThreadsPerFilesystem()).thenReturn(1);
+    periodicEvaluator = new ScheduledEvaluationTask(evaluationTaskFactory, config);
+    for (int i = 0; i < 4; i++) {
+      createRepository("repoTest" + i);
+    }
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+    doAnswer(
+            invocation -> {
+              maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+              Thread.sleep(50);
+              running.decrementAndGet();
+              return null;
+            })
+        .when(evaluationTask)
+        .evaluate(any());
+    when(evaluationTaskFactory.create(anyString())).thenReturn(evaluationTask);
+
+    periodicEvaluator.run();
+
+    verify(evaluationTask, times(4)).evaluate(any());
+    assertThat(maxRunning.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldSkipRepositoryUnchangedSinceFoundClean() throws Exception {
+    when(config.getManifestMaxAge()).thenReturn(DAYS.toMillis(1));
+    when(config.getManifestPath())
+        .thenReturn(manifestDir.getRoot().toPath().resolve("manifest").toString());
+    periodicEvaluator = new ScheduledEvaluationTask(evaluationTaskFactory, config);
+    Repository repository = createRepository("repoTest");
+    when(evaluationTaskFactory.create(repository.getDirectory().getAbsolutePath()))
+        .thenReturn(evaluationTask);
+    when(evaluationTask.evaluate(any())).thenReturn(Result.CLEAN);
+    when(evaluationTask.getCleanUntil()).thenReturn(Long.MAX_VALUE);
+
+    periodicEvaluator.run();
+    periodicEvaluator.run();
+    verify(evaluationTask, times(1)).evaluate(any());
+
+    new File(repository.getDirectory(), "packed-refs").createNewFile();
+    periodicEvaluator.run();
+    verify(evaluationTask, times(2)).evaluate(any());
+  }
+
+  @Test
+  public void shouldNotSkipCleanRepositoryOnceFreshLooseObjectsArePrunable() throws Exception {
+    when(config.getManifestMaxAge()).thenReturn(DAYS.toMillis(1));
+    when(config.getManifestPath())
+        .thenReturn(manifestDir.getRoot().toPath().resolve("manifest").toString());
+    periodicEvaluator = new ScheduledEvaluationTask(evaluationTaskFactory, config);
+    Repository repository = createRepository("repoTest");
+    when(evaluationTaskFactory.create(repository.getDirectory().getAbsolutePath()))
+        .thenReturn(evaluationTask);
+    when(evaluationTask.evaluate(any())).thenReturn(Result.CLEAN);
+    when(evaluationTask.getCleanUntil()).thenReturn(System.currentTimeMillis());
+
+    periodicEvaluator.run();
+    periodicEvaluator.run();
+    verify(evaluationTask, times(2)).evaluate(any());
+  }
+
+  @Test
+  public void shouldNotSkipDirtyRepository() throws Exception {
+    when(config.getManifestMaxAge()).thenReturn(DAYS.toMillis(1));
+    when(config.getManifestPath())
+        .thenReturn(manifestDir.getRoot().toPath().resolve("manifest").toString());
+    periodicEvaluator = new ScheduledEvaluationTask(evaluationTaskFactory, config);
+    Repository repository = createRepository("repoTest");
+    when(evaluationTaskFactory.create(repository.getDirectory().getAbsolutePath()))
+        .thenReturn(evaluationTask);
+    when(evaluationTask.evaluate(any())).thenReturn(Result.DIRTY);
+
+    periodicEvaluator.run();
+    periodicEvaluator.run();
+    verify(evaluationTask, times(2)).evaluate(any());
+  }
+
   @Test
   public void shouldHonorInterruption() throws Exception {
     createRepository("repoTest");
@@ -0,0 +1,173 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.ericsson.gerrit.plugins.gcconductor.filequeue;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.gerrit.testing.GerritJUnit.assertThrows;
+
+import com.ericsson.gerrit.plugins.gcconductor.AbstractGcQueueTest;
+import com.ericsson.gerrit.plugins.gcconductor.GcQueue;
+import com.ericsson.gerrit.plugins.gcconductor.RepositoryInfo;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FileQueueTest extends AbstractGcQueueTest {
+
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private final AtomicLong clockOffset = new AtomicLong();
+  private final List<FileQueue> queues = new ArrayList<>();
+  private Path directory;
+
+  @Override
+  protected GcQueue createQueue() throws Exception {
+    directory = tempFolder.newFolder("queue").toPath();
+    return open();
+  }
+
+  @Override
+  protected void expireLeases() {
+    clockOffset.addAndGet(FileQueue.LEASE_DURATION_MS + 1);
+  }
+
+  @After
+  public void tearDown() {
+    queues.forEach(FileQueue::onShutdown);
+  }
+
+  @Test
+  public void shouldKeepQueueAfterRestart() throws Exception {
+    queue.add("/repo1", "hostname", false);
+    queue.add("/repo2", "hostname", true);
+    queue.add("/repo3", "hostname", false);
+    queue.bumpToFirst("/repo3");
+    queue.pick("executor", 0, Optional.empty());
+    queue.remove("/repo2");
+    ((FileQueue) queue).onShutdown();
+
+    List<RepositoryInfo> repositories = open().list();
+    assertThat(repositories).hasSize(2);
+    assertThat(repositories.get(0).getPath()).isEqualTo("/repo3");
+    assertThat(repositories.get(0).getExecutor()).isEqualTo("executor");
+    assertThat(repositories.get(1).getPath()).isEqualTo("/repo1");
+    assertThat(repositories.get(1).getExecutor()).isNull();
+  }
+
+  @Test
+  public void shouldDiscardIncompleteChangeAfterCrash() throws Exception {
+    queue.add("/repo1", "hostname", false);
+    Path journalPath = directory.resolve(Journal.JOURNAL_FILE);
+    long size = Files.size(journalPath);
+    queue.add("/repo2", "hostname", false);
+    // simulate a crash in the middle of writing the last change
+    try (FileChannel channel = FileChannel.open(journalPath, StandardOpenOption.WRITE)) {
+      channel.truncate(size + 5);
+    }
+
+    GcQueue restarted = open();
+    assertThat(restarted.contains("/repo1")).isTrue();
+    assertThat(restarted.contains("/repo2")).isFalse();
+    assertThat(Files.size(journalPath)).isEqualTo(size);
+    assertThat(restarted.add("/repo2", "hostname", false)).isTrue();
+  }
+
+  @Test
+  public void shouldFailIfJournalIsCorrupted() throws Exception {
+    ((FileQueue) queue).onShutdown();
+    Files.write(directory.resolve(Journal.JOURNAL_FILE), "not a journal".getBytes());
+    assertThrows(IOException.class, () -> open());
+  }
+
+  @Test
+  public void shouldSeeChangesOfOtherProcesses() throws Exception {
+    GcQueue other = open();
+    queue.add("/repo1", "hostname", false);
+    assertThat(other.contains("/repo1")).isTrue();
+
+    RepositoryInfo picked = other.pick("executor", 0, Optional.empty());
+    assertThat(picked.getPath()).isEqualTo("/repo1");
+    assertThat(queue.pick("otherExecutor", 0, Optional.empty())).isNull();
+
+    other.remove("/repo1");
+    assertThat(queue.contains("/repo1")).isFalse();
+  }
+
+  @Test
+  public void shouldCompactJournal() throws Exception {
+    Path journalPath = directory.resolve(Journal.JOURNAL_FILE);
+    GcQueue other = open();
+    queue.add("/kept", "hostname", false);
+    queue.pick("executor", 0, Optional.empty());
+    for (int i = 0; i < 6_000; i++) {
+      queue.add("/repo" + i, "hostname", false);
+      queue.remove("/repo" + i);
+    }
+    // the 12_002 changes take more than 500KB, the journal was compacted once more than 10_000
+    // changes described a single repository
+    assertThat(Files.size(journalPath)).isLessThan(200_000L);
+
+    List<RepositoryInfo> repositories = other.list();
+    assertThat(repositories).hasSize(1);
+    assertThat(repositories.get(0).getPath()).isEqualTo("/kept");
+    assertThat(repositories.get(0).getExecutor()).isEqualTo("executor");
+    assertThat(open().list()).hasSize(1);
+  }
+
+  @Test
+  public void shouldKeepTimeNotToPickBeforeAfterCompaction() throws Exception {
+    long notBefore = System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1);
+    queue.add("/deferred", "hostname", false, 0, notBefore);
+    for (int i = 0; i < 6_000; i++) {
+      queue.add("/repo" + i, "hostname", false);
+      queue.remove("/repo" + i);
+    }
+    ((FileQueue) queue).onShutdown();
+
+    GcQueue restarted = open();
+    assertThat(restarted.pick("executor", 0, Optional.empty())).isNull();
+    clockOffset.addAndGet(TimeUnit.HOURS.toMillis(1));
+    assertThat(restarted.pick("executor", 0, Optional.empty()).getPath()).isEqualTo("/deferred");
+  }
+
+  @Test
+  public void shouldNotifyChangesOfOtherProcesses() throws Exception {
+    Semaphore notifications = new Semaphore(0);
+    queue.addListener(notifications::release);
+    assertThat(notifications.tryAcquire(10, TimeUnit.SECONDS)).isTrue();
+
+    open().add("/repo1", "hostname", false);
+    assertThat(notifications.tryAcquire(10, TimeUnit.SECONDS)).isTrue();
+  }
+
+  private FileQueue open() throws IOException {
+    FileQueue fileQueue =
+        new FileQueue(directory, () -> System.currentTimeMillis() + clockOffset.get());
+    queues.add(fileQueue);
+    return fileQueue;
+  }
+}
@@ -66,6 +66,11 @@ public class PostgresModuleTest {
     assertThat(dataSource.isClosed()).isFalse();
   }
 
+  @Test
+  public void shouldPoolPreparedStatements() {
+    assertThat(dataSource.isPoolPreparedStatements()).isTrue();
+  }
+
   @Test
   public void shouldNotComplainsIfGcDatabaseAlreadyExists() throws SQLException {
     dataSource.close();
@@ -0,0 +1,143 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.ericsson.gerrit.plugins.gcconductor.postgresqueue;
+
+import static com.ericsson.gerrit.plugins.gcconductor.postgresqueue.TestUtil.configMockFor;
+import static com.ericsson.gerrit.plugins.gcconductor.postgresqueue.TestUtil.newContainer;
+
+import com.ericsson.gerrit.plugins.gcconductor.GcQueue;
+import com.ericsson.gerrit.plugins.gcconductor.evaluator.EvaluatorConfig;
+import com.ericsson.gerrit.plugins.gcconductor.filequeue.FileQueue;
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.dbcp.BasicDataSource;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+/**
+ * Compares the latency of queue operations with and without prepared statements caching, and
+ * with the file queue.
+ *
+ * <p>Ignored by default since it only reports timings, remove the annotation to run it.
+ */
+@Ignore
+public class PostgresQueueBenchmark {
+  private static final int WARM_UP_ITERATIONS = 500;
+  private static final int ITERATIONS = 5_000;
+
+  private static PostgreSQLContainer<?> container;
+  private static EvaluatorConfig config;
+
+  @BeforeClass
+  public static void startPostgres() throws Exception {
+    container = newContainer();
+    container.start();
+    config = configMockFor(container);
+    // create the database
+    new PostgresModule(null).provideGcDatabaseAccess(config).close();
+  }
+
+  @AfterClass
+  public static void stopPostgres() {
+    container.stop();
+  }
+
+  @Test
+  public void compareStatementCaching() throws Exception {
+    BasicDataSource uncached = new BasicDataSource();
+    uncached.setDriverClassName(DatabaseConstants.DRIVER);
+    uncached.setUrl(config.getDatabaseUrl() + config.getDatabaseName());
+    uncached.setUsername(config.getUsername());
+    uncached.setPassword(config.getPassword());
+    uncached.addConnectionProperty("prepareThreshold", "0");
+    BasicDataSource cached = new PostgresModule(null).provideGcDatabaseAccess(config);
+    try {
+      run("uncached", new PostgresQueue(uncached));
+      run("cached", new PostgresQueue(cached));
+    } finally {
+      uncached.close();
+      cached.close();
+    }
+  }
+
+  @Test
+  public void compareWithFileQueue() throws Exception {
+    Path directory = Files.createTempDirectory("gc-conductor-queue");
+    BasicDataSource dataSource = new PostgresModule(null).provideGcDatabaseAccess(config);
+    FileQueue fileQueue = new FileQueue(directory, System::currentTimeMillis);
+    try {
+      runAddAndPick("postgres", new PostgresQueue(dataSource));
+      runAddAndPick("file", fileQueue);
+    } finally {
+      fileQueue.onShutdown();
+      dataSource.close();
+      MoreFiles.deleteRecursively(directory, RecursiveDeleteOption.ALLOW_INSECURE);
+    }
+  }
+
+  private static void runAddAndPick(String name, GcQueue queue) throws Exception {
+    addAndPick(queue, WARM_UP_ITERATIONS);
+    long[] elapsed = addAndPick(queue, ITERATIONS);
+    System.out.printf(
+        "%s: add %d us, pick %d us%n",
+        name,
+        TimeUnit.NANOSECONDS.toMicros(elapsed[0]) / ITERATIONS,
+        TimeUnit.NANOSECONDS.toMicros(elapsed[1]) / ITERATIONS);
+  }
+
+  private static long[] addAndPick(GcQueue queue, int iterations) throws Exception {
+    long addTime = 0;
+    long pickTime = 0;
+    for (int i = 0; i < iterations; i++) {
+      String repository = "/benchmark/repository" + i + ".git";
+      long start = System.nanoTime();
+      queue.add(repository, "hostname", false);
+      addTime += System.nanoTime() - start;
+      start = System.nanoTime();
+      queue.pick("executor-" + i, 0, Optional.empty());
+      pickTime += System.nanoTime() - start;
+      queue.remove(repository);
+    }
+    return new long[] {addTime, pickTime};
+  }
+
+  private static void run(String name, PostgresQueue queue) throws Exception {
+    runIterations(queue, WARM_UP_ITERATIONS);
+    long start = System.nanoTime();
+    runIterations(queue, ITERATIONS);
+    long elapsed = System.nanoTime() - start;
+    // each iteration runs 4 queue operations
+    System.out.printf(
+        "%s: %d us per operation%n",
+        name, TimeUnit.NANOSECONDS.toMicros(elapsed) / (ITERATIONS * 4L));
+  }
+
+  private static void runIterations(PostgresQueue queue, int iterations) throws Exception {
+    for (int i = 0; i < iterations; i++) {
+      String repository = "/benchmark/repository" + i + ".git";
+      queue.add(repository, "hostname", false);
+      queue.contains(repository);
+      queue.pick("executor", 0, Optional.empty());
+      queue.remove(repository);
+    }
+  }
+}
@@ -22,26 +22,30 @@ import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import com.ericsson.gerrit.plugins.gcconductor.AbstractGcQueueTest;
+import com.ericsson.gerrit.plugins.gcconductor.GcQueue;
 import com.ericsson.gerrit.plugins.gcconductor.GcQueueException;
-import com.ericsson.gerrit.plugins.gcconductor.RepositoryInfo;
+import com.ericsson.gerrit.plugins.gcconductor.GcRequest;
+import com.ericsson.gerrit.plugins.gcconductor.QueueFilter;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
-import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.TimeUnit;
 import org.apache.commons.dbcp.BasicDataSource;
 import org.junit.After;
-import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.testcontainers.containers.PostgreSQLContainer;
 
-public class PostgresQueueTest {
+public class PostgresQueueTest extends AbstractGcQueueTest {
 
   private BasicDataSource dataSource;
-  private PostgresQueue queue;
+  private PostgresQueue postgresQueue;
 
   private static PostgreSQLContainer<?> container;
 
@@ -51,15 +55,16 @@ public class PostgresQueueTest {
     container.start();
   }
 
-  @Before
-  public void setUp() throws Exception {
+  @Override
+  protected GcQueue createQueue() throws Exception {
     dataSource = new PostgresModule(null).provideGcDatabaseAccess(configMockFor(container));
-    queue = new PostgresQueue(dataSource);
-    emptyQueue();
+    postgresQueue = new PostgresQueue(dataSource);
+    return postgresQueue;
   }
 
   @After
   public void tearDown() throws Exception {
+    postgresQueue.onShutdown();
     if (dataSource != null) {
       dataSource.close();
     }
@@ -70,6 +75,46 @@ public class PostgresQueueTest {
     assertThat(queue.list()).isEmpty();
   }
 
+  @Test
+  public void shouldCreatePickIndexesOnInit() throws Exception {
+    List<String> indexes = new ArrayList<>();
+    try (Connection conn = dataSource.getConnection();
+        Statement stat = conn.createStatement();
+        ResultSet resultSet =
+            stat.executeQuery("SELECT indexname FROM pg_indexes WHERE tablename='repositories'")) {
+      while (resultSet.next()) {
+        indexes.add(resultSet.getString(1));
+      }
+    }
+    assertThat(indexes)
+        .containsAtLeast("repositories_unassigned_due_idx", "repositories_executor_idx");
+    assertThat(indexes)
+        .containsNoneOf(
+            "repositories_unassigned_score_idx",
+            "repositories_ready_score_idx",
+            "repositories_not_before_idx");
+  }
+
+  @Test
+  public void shouldGiveLeaseToRepositoriesAssignedWithoutOneOnInit() throws Exception {
+    queue.add("repo", "hostname", false);
+    queue.pick("someExecutor", 0, Optional.empty());
+    try (Connection conn = dataSource.getConnection();
+        Statement stat = conn.createStatement()) {
+      stat.execute("UPDATE repositories SET lease_expiry = NULL");
+    }
+
+    new PostgresQueue(dataSource).onShutdown();
+
+    try (Connection conn = dataSource.getConnection();
+        Statement stat = conn.createStatement();
+        ResultSet resultSet =
+            stat.executeQuery("SELECT lease_expiry FROM repositories WHERE repository='repo'")) {
+      assertThat(resultSet.next()).isTrue();
+      assertThat(resultSet.getTimestamp(1)).isNotNull();
+    }
+  }
+
   @Test
   public void shouldThrowExceptionIfFailsToCreateSchemaOnInit() throws Exception {
     BasicDataSource dataSouceMock = mock(BasicDataSource.class);
@@ -77,44 +122,6 @@ public class PostgresQueueTest {
     assertThrows(SQLException.class, () -> queue = new PostgresQueue(dataSouceMock));
   }
 
-  @Test
-  public void testAddContainsAndRemove() throws Exception {
-    String repoPath = "/some/path/to/some/repository";
-    String hostname = "someHostname";
-
-    assertThat(queue.list()).isEmpty();
-    assertThat(queue.contains(repoPath)).isFalse();
-
-    queue.add(repoPath, hostname, true);
-    assertThat(queue.list().size()).isEqualTo(1);
-    assertThat(queue.contains(repoPath)).isTrue();
-
-    queue.add(repoPath, hostname, true);
-    assertThat(queue.list().size()).isEqualTo(1);
-    assertThat(queue.contains(repoPath)).isTrue();
-
-    String repoPath2 = "/some/path/to/some/repository2";
-    String hostname2 = "someHostname2";
-
-    queue.add(repoPath2, hostname2, true);
-    assertThat(queue.list().size()).isEqualTo(2);
-    assertThat(queue.contains(repoPath)).isTrue();
-    assertThat(queue.contains(repoPath2)).isTrue();
-
-    queue.remove(repoPath2);
-    assertThat(queue.list().size()).isEqualTo(1);
-    assertThat(queue.contains(repoPath)).isTrue();
-    assertThat(queue.contains(repoPath2)).isFalse();
-
-    queue.remove(repoPath);
-    assertThat(queue.list().size()).isEqualTo(0);
-    assertThat(queue.contains(repoPath)).isFalse();
-
-    queue.remove(repoPath);
-    assertThat(queue.list().size()).isEqualTo(0);
-    assertThat(queue.contains(repoPath)).isFalse();
-  }
-
   @Test
   public void testAddThatFailsWhenGettingConnection() throws Exception {
     queue = new PostgresQueue(createDataSourceThatFailsWhenGettingConnection());
@@ -133,6 +140,22 @@ public class PostgresQueueTest {
     assertThrows(GcQueueException.class, () -> queue.add("repo", "hostname", true));
   }
 
+  @Test
+  public void testAddAllThatFailsWhenGettingConnection() throws Exception {
+    queue = new PostgresQueue(createDataSourceThatFailsWhenGettingConnection());
+    assertThrows(
+        GcQueueException.class,
+        () -> queue.addAll(Collections.singletonMap("repo", new GcRequest(true, 0)), "hostname"));
+  }
+
+  @Test
+  public void testAddAllThatFailsWhenExecutingQuery() throws Exception {
+    queue = new PostgresQueue(createDataSourceThatFailsWhenExecutingQuery());
+    assertThrows(
+        GcQueueException.class,
+        () -> queue.addAll(Collections.singletonMap("repo", new GcRequest(true, 0)), "hostname"));
+  }
+
   @Test
   public void testContainsThatFailsWhenGettingConnection() throws Exception {
     queue = new PostgresQueue(createDataSourceThatFailsWhenGettingConnection());
@@ -175,39 +198,6 @@ public class PostgresQueueTest {
     assertThrows(GcQueueException.class, () -> queue.remove("repo"));
   }
 
-  @Test
-  public void testList() throws Exception {
-    String repoPath = "/some/path/to/some/repository.git";
-    String repoPath2 = "/some/path/to/some/repository2.git";
-    String hostname = "hostname";
-    String executor = "hostname-1";
-
-    assertThat(queue.list()).isEmpty();
-    Timestamp before = new Timestamp(System.currentTimeMillis());
-    queue.add(repoPath, hostname, true);
-    queue.add(repoPath2, hostname, true);
-    queue.pick(executor, 0, Optional.empty());
-
-    assertThat(queue.list().size()).isEqualTo(2);
-
-    assertThat(queue.list().get(0).getPath()).isEqualTo(repoPath);
-    assertThat(queue.list().get(0).getExecutor()).isEqualTo(executor);
-    assertThat(queue.list().get(0).getQueuedAt()).isAtLeast(before);
-    assertTimestampDiff(queue.list().get(0).getQueuedAt());
-    assertThat(queue.list().get(0).getQueuedFrom()).isEqualTo(hostname);
-
-    assertThat(queue.list().get(1).getPath()).isEqualTo(repoPath2);
-    assertThat(queue.list().get(1).getExecutor()).isNull();
-    assertThat(queue.list().get(1).getQueuedAt()).isAtLeast(queue.list().get(0).getQueuedAt());
-    assertTimestampDiff(queue.list().get(1).getQueuedAt());
-    assertThat(queue.list().get(1).getQueuedFrom()).isEqualTo(hostname);
-  }
-
-  private void assertTimestampDiff(Timestamp actual) {
-    long timestampDiff = Math.abs(actual.getTime() - System.currentTimeMillis());
-    assertThat(timestampDiff).isAtMost(TimeUnit.SECONDS.toMillis(1));
-  }
-
   @Test
   public void testListThatFailsWhenGettingConnection() throws Exception {
     queue = new PostgresQueue(createDataSourceThatFailsWhenGettingConnection());
@@ -233,81 +223,24 @@ public class PostgresQueueTest {
   }
 
   @Test
-  public void testPick() throws Exception {
-    String repoPath = "/some/path/to/some/repository";
-    String hostname = "someHostname";
-    String executor = "someExecutor";
-    String executor2 = "someExecutor2";
-
-    // queue is empty nothing to pick
-    assertThat(queue.list()).isEmpty();
-    assertThat(queue.pick(executor, 0, Optional.empty())).isNull();
-
-    // queue contains 1 repository, should pick that one
-    queue.add(repoPath, hostname, true);
-    RepositoryInfo picked = queue.pick(executor, 0, Optional.empty());
-    assertThat(picked).isNotNull();
-    assertThat(picked.getPath()).isEqualTo(repoPath);
-    assertThat(picked.getExecutor()).isEqualTo(executor);
-
-    // queue contains 1 already picked repository, should pick same one
-    picked = queue.pick(executor, 0, Optional.empty());
-    assertThat(picked).isNotNull();
-    assertThat(picked.getPath()).isEqualTo(repoPath);
-    assertThat(picked.getExecutor()).isEqualTo(executor);
-
-    // queue contains 1 already picked repository, nothing to pick for other
-    // executors
-    assertThat(queue.pick(executor2, 0, Optional.empty())).isNull();
-  }
-
-  @Test
-  public void testPickRepositoriesInOrder() throws Exception {
-    String repositoryFormat = "my/path%s.git";
-    for (int i = 0; i < 100; i++) {
-      queue.add(String.format(repositoryFormat, i), "someHostname", true);
-    }
-    for (int i = 0; i < 100; i++) {
-      String pickedRepo = queue.pick("someExecutor", 0, Optional.empty()).getPath();
-      assertThat(pickedRepo).isEqualTo(String.format(repositoryFormat, i));
-      queue.remove(pickedRepo);
-    }
+  public void testListWithFilterThatFailsWhenExecutingQuery() throws Exception {
+    queue = new PostgresQueue(createDataSourceThatFailsWhenExecutingQuery());
+    assertThrows(
+        GcQueueException.class,
+        () -> queue.list(QueueFilter.builder().pathPrefix("/repos").build(), r -> {}));
   }
 
   @Test
-  public void testPickInQueueForLongerThan() throws Exception {
-    String repoPath = "/some/path/to/some/repository";
-    String hostname = "someHostname";
-    String executor = "someExecutor";
-
-    // pick repository older than 10 seconds, nothing to pick
-    queue.add(repoPath, hostname, true);
-    assertThat(queue.pick(executor, 10, Optional.empty())).isNull();
-    assertThat(queue.list().get(0).getExecutor()).isNull();
-
-    // make 2 seconds elapse and pick repository older than 1 second, should pick one
-    TimeUnit.SECONDS.sleep((2));
-    RepositoryInfo picked = queue.pick(executor, 1, Optional.empty());
-    assertThat(picked.getPath()).isEqualTo(repoPath);
-    assertThat(picked.getExecutor()).isEqualTo(executor);
+  public void testPickBatchThatFailsWhenExecutingQuery() throws Exception {
+    queue = new PostgresQueue(createDataSourceThatFailsWhenExecutingQuery());
+    assertThrows(
+        GcQueueException.class, () -> queue.pickBatch("executor", 10, 0, Optional.empty()));
   }
 
   @Test
-  public void testPickQueuedFrom() throws Exception {
-    String repoPath = "/some/path/to/some/repository";
-    String hostname = "hostname";
-    String otherHostname = "otherHostname";
-    String executor = "hostname-1";
-
-    // pick repository queued from otherHostname, nothing to pick
-    queue.add(repoPath, hostname, true);
-    assertThat(queue.pick(executor, 0, Optional.of(otherHostname))).isNull();
-    assertThat(queue.list().get(0).getExecutor()).isNull();
-
-    // pick repository queued from hostname, should pick one
-    RepositoryInfo picked = queue.pick(executor, 0, Optional.of(hostname));
-    assertThat(picked.getPath()).isEqualTo(repoPath);
-    assertThat(picked.getExecutor()).isEqualTo(executor);
+  public void testRenewLeasesThatFailsWhenExecutingQuery() throws Exception {
+    queue = new PostgresQueue(createDataSourceThatFailsWhenExecutingQuery());
+    assertThrows(GcQueueException.class, () -> queue.renewLeases("someHostname"));
   }
 
   @Test
@@ -334,26 +267,6 @@ public class PostgresQueueTest {
     assertThrows(GcQueueException.class, () -> queue.pick("executor", 0, Optional.empty()));
   }
 
-  @Test
-  public void testUnpick() throws Exception {
-    String repoPath = "/some/path/to/some/repository";
-    String hostname = "someHostname";
-    String executor = "someExecutor";
-
-    // queue contains 1 repository, should pick that one
-    queue.add(repoPath, hostname, true);
-    RepositoryInfo picked = queue.pick(executor, 0, Optional.empty());
-    assertThat(picked.getPath()).isEqualTo(repoPath);
-    assertThat(picked.getExecutor()).isEqualTo(executor);
-
-    queue.unpick(repoPath);
-    // unpick repo so should pick that one again
-    queue.unpick(repoPath);
-    picked = queue.pick(executor, 0, Optional.empty());
-    assertThat(picked.getPath()).isEqualTo(repoPath);
-    assertThat(picked.getExecutor()).isEqualTo(executor);
-  }
-
   @Test
   public void testUnpickThatFailsWhenGettingConnection() throws Exception {
     queue = new PostgresQueue(createDataSourceThatFailsWhenGettingConnection());
@@ -373,20 +286,9 @@ public class PostgresQueueTest {
   }
 
   @Test
-  public void testResetQueuedFrom() throws Exception {
-    String repoPath = "/some/path/to/some/repository";
-    String repoPath2 = "/some/path/to/some/repository2";
-    String hostname = "hostname";
-    String otherHostname = "otherHostname";
-
-    queue.add(repoPath, hostname, true);
-    queue.add(repoPath2, hostname, true);
-    assertThat(queue.list().get(0).getQueuedFrom()).isEqualTo(hostname);
-    assertThat(queue.list().get(1).getQueuedFrom()).isEqualTo(hostname);
-
-    queue.resetQueuedFrom(otherHostname);
-    assertThat(queue.list().get(0).getQueuedFrom()).isEqualTo(otherHostname);
-    assertThat(queue.list().get(1).getQueuedFrom()).isEqualTo(otherHostname);
+  public void testUnpickAllThatFailsWhenExecutingQuery() throws Exception {
+    queue = new PostgresQueue(createDataSourceThatFailsWhenExecutingQuery());
+    assertThrows(GcQueueException.class, () -> queue.unpickAll("host-"));
   }
 
   @Test
@@ -407,38 +309,6 @@ public class PostgresQueueTest {
     assertThrows(GcQueueException.class, () -> queue.resetQueuedFrom("someHostname"));
   }
 
-  @Test
-  public void testBumpToFirst() throws Exception {
-    String repoPath = "/some/path/to/some/repository";
-    String repoPath2 = "/some/path/to/some/repository2";
-    String repoPath3 = "/some/path/to/some/repository3";
-    String hostname = "hostname";
-
-    // Queue contains 1 repository, bumping should have no effect
-    queue.add(repoPath, hostname, true);
-    assertThat(queue.list().get(0).getPath()).isEqualTo(repoPath);
-    queue.bumpToFirst(repoPath);
-    assertThat(queue.list().get(0).getPath()).isEqualTo(repoPath);
-
-    // Queue has 3 repositories, should be able to change their order
-    queue.add(repoPath2, hostname, true);
-    queue.add(repoPath3, hostname, true);
-    assertThat(queue.list().get(1).getPath()).isEqualTo(repoPath2);
-    assertThat(queue.list().get(2).getPath()).isEqualTo(repoPath3);
-
-    // repoPath3 should be first, all other repositories should be shifted down
-    queue.bumpToFirst(repoPath3);
-    assertThat(queue.list().get(0).getPath()).isEqualTo(repoPath3);
-    assertThat(queue.list().get(1).getPath()).isEqualTo(repoPath);
-    assertThat(queue.list().get(2).getPath()).isEqualTo(repoPath2);
-
-    // Bumping a repository that is already first priority should have no effect
-    queue.bumpToFirst(repoPath3);
-    assertThat(queue.list().get(0).getPath()).isEqualTo(repoPath3);
-    assertThat(queue.list().get(1).getPath()).isEqualTo(repoPath);
-    assertThat(queue.list().get(2).getPath()).isEqualTo(repoPath2);
-  }
-
   @Test
   public void testBumpToFirstThatFailsWhenGettingConnection() throws Exception {
     queue = new PostgresQueue(createDataSourceThatFailsWhenGettingConnection());
@@ -474,7 +344,8 @@ public class PostgresQueueTest {
     Statement statementMock = mock(Statement.class);
 
     when(dataSouceMock.getConnection()).thenReturn(connectionMock);
-    when(connectionMock.createStatement()).thenReturn(statementMock).thenThrow(new SQLException());
+    when(connectionMock.createStatement()).thenReturn(statementMock);
+    when(connectionMock.prepareStatement(anyString())).thenThrow(new SQLException());
 
     return dataSouceMock;
   }
@@ -483,11 +354,13 @@ public class PostgresQueueTest {
     BasicDataSource dataSouceMock = mock(BasicDataSource.class);
     Connection connectionMock = mock(Connection.class);
     Statement statementMock = mock(Statement.class);
+    PreparedStatement preparedStatementMock = mock(PreparedStatement.class);
 
     when(dataSouceMock.getConnection()).thenReturn(connectionMock);
     when(connectionMock.createStatement()).thenReturn(statementMock);
-    when(statementMock.execute(anyString())).thenReturn(true).thenThrow(new SQLException());
-    when(statementMock.executeQuery(anyString())).thenThrow(new SQLException());
+    when(connectionMock.prepareStatement(anyString())).thenReturn(preparedStatementMock);
+    when(preparedStatementMock.executeUpdate()).thenThrow(new SQLException());
+    when(preparedStatementMock.executeQuery()).thenThrow(new SQLException());
 
     return dataSouceMock;
   }
@@ -496,26 +369,25 @@ public class PostgresQueueTest {
     BasicDataSource dataSouceMock = mock(BasicDataSource.class);
     Connection connectionMock = mock(Connection.class);
     Statement statementMock = mock(Statement.class);
+    PreparedStatement preparedStatementMock = mock(PreparedStatement.class);
     ResultSet resultSetMock = mock(ResultSet.class);
 
     when(dataSouceMock.getConnection()).thenReturn(connectionMock);
     when(connectionMock.createStatement()).thenReturn(statementMock);
-    when(statementMock.executeQuery(anyString())).thenReturn(resultSetMock);
+    when(connectionMock.prepareStatement(anyString())).thenReturn(preparedStatementMock);
+    when(preparedStatementMock.executeQuery()).thenReturn(resultSetMock);
     when(resultSetMock.next()).thenThrow(new SQLException());
 
     return dataSouceMock;
   }
 
-  private void emptyQueue() throws Exception {
-    queue.list().stream().map(RepositoryInfo::getPath).forEach(this::doEmptyQueue);
-    assertThat(queue.list()).isEmpty();
-  }
-
-  private void doEmptyQueue(String repository) {
-    try {
-      queue.remove(repository);
-    } catch (GcQueueException e) {
-      throw new RuntimeException(e);
+  @Override
+  protected void expireLeases() throws Exception {
+    try (Connection conn = dataSource.getConnection();
+        Statement stat = conn.createStatement()) {
+      stat.execute(
+          "UPDATE repositories SET lease_expiry = localtimestamp - interval '1 second'"
+              + " WHERE lease_expiry IS NOT NULL");
     }
   }
 }